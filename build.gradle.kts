@@ -19,4 +19,25 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+// Benchmarks (mains que miden, no pruebas): src/benchmark/java, con acceso a las clases de main.
+// Ejecutar con: gradle benchmark -Pclase=BenchmarkGC -Pargs="16 50"
+val benchmark by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations[benchmark.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[benchmark.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+// Que "gradle build" también compile los benchmarks
+tasks.check {
+    dependsOn(benchmark.classesTaskName)
+}
+
+tasks.register<JavaExec>("benchmark") {
+    description = "Ejecuta el benchmark indicado con -Pclase (y -Pargs)"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set(providers.gradleProperty("clase").map { "org.example.$it" })
+    args(providers.gradleProperty("args").getOrElse("").split(" ").filter { it.isNotBlank() })
+    jvmArgs("-Dfile.encoding=UTF-8")
+}
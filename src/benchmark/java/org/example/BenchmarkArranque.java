@@ -0,0 +1,110 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Mide el tiempo de arranque del almacenamiento de GA2 para catálogos de distinto tamaño:
+//   texto:        carga de DB.txt + Prestamos.txt como hasta ahora
+//   instantánea:  carga de las instantáneas binarias + reproducción de la cola de los diarios
+// Uso: BenchmarkArranque [tamaños separados por coma] [cambios en la cola del diario]
+//      (por defecto 10000,1000000,10000000 y 5000; para 10M libros usar -Xmx4g o más)
+public class BenchmarkArranque {
+
+    public static void main(String[] args) throws Exception {
+        String[] tamanos = (args.length > 0 ? args[0] : "10000,1000000,10000000").split(",");
+        int cambios = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+        System.out.printf("%12s %14s %18s %14s%n", "libros", "texto (ms)", "instantánea (ms)", "cola diario");
+        for (String t : tamanos) {
+            int libros = Integer.parseInt(t.trim());
+            Path dir = Files.createTempDirectory("bench-arranque");
+            try {
+                medir(dir, libros, cambios);
+            } finally {
+                borrar(dir);
+            }
+        }
+    }
+
+    private static void medir(Path dir, int libros, int cambios) throws IOException {
+        String db = dir.resolve("DB.txt").toString();
+        String prestamos = dir.resolve("Prestamos.txt").toString();
+        generarArchivos(db, prestamos, libros);
+
+        // Arranque desde texto
+        long inicio = System.nanoTime();
+        AlmacenamientoArchivos texto = new AlmacenamientoArchivos(
+                db, dir.resolve("DB.bin").toString(), prestamos, dir.resolve("Prestamos.diario").toString(), "Bench");
+        texto.asegurarCargado();
+        long msTexto = (System.nanoTime() - inicio) / 1_000_000;
+        texto.cerrar();
+        texto = null;
+        Files.deleteIfExists(dir.resolve("Prestamos.diario"));
+
+        // Primer arranque con instantáneas (las crea) y una cola de cambios en los diarios
+        AlmacenamientoArchivos primero = conInstantaneas(dir, db, prestamos);
+        primero.asegurarCargado();
+        for (int i = 0; i < cambios; i++) {
+            int id = 1 + (int) ((i * 7919L) % libros);
+            String estado = primero.obtenerEstadoLibro(id);
+            if (CatalogoMemoria.DISPONIBLE.equals(estado)) {
+                primero.actualizarEstadoLibro(id, CatalogoMemoria.PRESTADO);
+                LocalDate hoy = LocalDate.now();
+                primero.registrarPrestamo(new Prestamo(id, hoy, hoy.plusDays(14), 1));
+            } else {
+                primero.actualizarEstadoLibro(id, CatalogoMemoria.DISPONIBLE);
+                primero.eliminarPrestamo(id);
+            }
+        }
+        primero.cerrar();
+        primero = null;
+        System.gc();
+
+        // Reinicio: instantáneas + cola de los diarios
+        inicio = System.nanoTime();
+        AlmacenamientoArchivos reinicio = conInstantaneas(dir, db, prestamos);
+        reinicio.asegurarCargado();
+        long msInstantanea = (System.nanoTime() - inicio) / 1_000_000;
+        reinicio.cerrar();
+
+        System.out.printf("%12d %14d %18d %14d%n", libros, msTexto, msInstantanea, cambios);
+    }
+
+    private static AlmacenamientoArchivos conInstantaneas(Path dir, String db, String prestamos) {
+        AlmacenamientoArchivos a = new AlmacenamientoArchivos(
+                db, dir.resolve("DB.bin").toString(), prestamos, dir.resolve("Prestamos.diario").toString(), "Bench");
+        a.activarInstantaneas(dir.resolve("DB.instantanea").toString(), dir.resolve("DB.diario").toString(),
+                dir.resolve("Prestamos.instantanea").toString());
+        return a;
+    }
+
+    // Catálogo con un libro de cada diez prestado y su préstamo correspondiente
+    private static void generarArchivos(String db, String prestamos, int libros) throws IOException {
+        LocalDate hoy = LocalDate.now();
+        try (BufferedWriter bwDb = Files.newBufferedWriter(Path.of(db), StandardCharsets.UTF_8);
+             BufferedWriter bwPr = Files.newBufferedWriter(Path.of(prestamos), StandardCharsets.UTF_8)) {
+            for (int id = 1; id <= libros; id++) {
+                boolean prestado = id % 10 == 0;
+                bwDb.write(id + ", Libro " + id + ", Autor " + (id % 5000) + ", "
+                        + (prestado ? CatalogoMemoria.PRESTADO : CatalogoMemoria.DISPONIBLE));
+                bwDb.newLine();
+                if (prestado) {
+                    bwPr.write(new Prestamo(id, hoy, hoy.plusDays(14), 1).aLinea());
+                    bwPr.newLine();
+                }
+            }
+        }
+    }
+
+    private static void borrar(Path dir) throws IOException {
+        try (Stream<Path> archivos = Files.walk(dir)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
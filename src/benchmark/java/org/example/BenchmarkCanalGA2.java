@@ -0,0 +1,101 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Mide el camino GA -> GA2 contra un GA2 simulado (ROUTER que responde "SI" al instante, devolviendo el sobre):
+//   1) Anterior: dealer.send + Thread.sleep(50) + recvStr bloqueante, una solicitud a la vez
+//   2) CanalGA2 con una solicitud a la vez (piso de latencia sin la pausa fija)
+//   3) CanalGA2 con varias solicitudes en vuelo
+// Usa el puerto 5599. Uso: BenchmarkCanalGA2 [solicitudes] [en vuelo]   (por defecto 200 64)
+public class BenchmarkCanalGA2 {
+
+    private static final String DIRECCION = "tcp://localhost:5599";
+
+    public static void main(String[] args) throws Exception {
+        int solicitudes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int enVuelo = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        ZMQ.Context context = ZMQ.context(1);
+        Thread ga2 = new Thread(() -> simularGA2(context), "ga2-simulado");
+        ga2.setDaemon(true);
+        ga2.start();
+        Thread.sleep(200);
+
+        // 1) Camino anterior
+        ZMQ.Socket dealer = context.socket(ZMQ.DEALER);
+        dealer.setIdentity("BENCH-ANTERIOR".getBytes());
+        dealer.setReceiveTimeOut(10000);
+        dealer.setLinger(0);
+        dealer.connect(DIRECCION);
+        Thread.sleep(200);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < solicitudes; i++) {
+            dealer.send("Disponibilidad?" + i, 0);
+            Thread.sleep(50);
+            dealer.recvStr();
+        }
+        imprimir("Anterior (send + sleep 50 + recv)", solicitudes, System.nanoTime() - inicio);
+        dealer.close();
+
+        // 2) y 3) CanalGA2
+        CanalGA2<Integer> canal = new CanalGA2<>(context, DIRECCION, "BENCH-CANAL", 10000);
+        ZMQ.Poller poller = context.poller(1);
+        poller.register(canal.getSocket(), ZMQ.Poller.POLLIN);
+        Thread.sleep(200);
+        imprimir("CanalGA2, 1 en vuelo", solicitudes, medirCanal(canal, poller, solicitudes, 1));
+        imprimir("CanalGA2, " + enVuelo + " en vuelo", solicitudes, medirCanal(canal, poller, solicitudes, enVuelo));
+
+        canal.cerrar();
+        System.exit(0);
+    }
+
+    // Mantiene hasta "enVuelo" solicitudes pendientes hasta recibir todas las respuestas
+    private static long medirCanal(CanalGA2<Integer> canal, ZMQ.Poller poller, int solicitudes, int enVuelo) {
+        int enviadas = 0;
+        int recibidas = 0;
+        long inicio = System.nanoTime();
+        while (recibidas < solicitudes) {
+            while (enviadas < solicitudes && canal.enVuelo() < enVuelo) {
+                canal.enviar("Disponibilidad?" + enviadas, enviadas);
+                enviadas++;
+            }
+            poller.poll(1000);
+            if (poller.pollin(0) && canal.recibir() != null) {
+                recibidas++;
+            }
+            recibidas += canal.vencidas().size();
+        }
+        return System.nanoTime() - inicio;
+    }
+
+    private static void imprimir(String nombre, int solicitudes, long nanos) {
+        double ms = nanos / 1_000_000.0;
+        System.out.printf(" %-36s %6d solicitudes en %8.1f ms  -> %8.3f ms/solicitud, %9.1f solicitudes/s%n",
+                nombre, solicitudes, ms, ms / solicitudes, solicitudes * 1000.0 / ms);
+    }
+
+    // GA2 simulado: devuelve el sobre recibido con "SI" como respuesta
+    private static void simularGA2(ZMQ.Context context) {
+        ZMQ.Socket router = context.socket(ZMQ.ROUTER);
+        router.bind("tcp://*:5599");
+        while (!Thread.currentThread().isInterrupted()) {
+            List<byte[]> tramas = new ArrayList<>();
+            byte[] trama = router.recv(0);
+            if (trama == null) {
+                break;
+            }
+            tramas.add(trama);
+            while (router.hasReceiveMore()) {
+                tramas.add(router.recv(0));
+            }
+            for (int i = 0; i < tramas.size() - 1; i++) {
+                router.send(tramas.get(i), ZMQ.SNDMORE);
+            }
+            router.send("SI", 0);
+        }
+        router.close();
+    }
+}
@@ -0,0 +1,136 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Compara el rendimiento del GC anterior (un solo REP que atiende una solicitud a la vez y duerme
+// 100 ms después de cada respuesta) con el GC actual (ROUTER + trabajadores).
+// Varios clientes REQ envían consultas BUSCAR; un GA2 simulado (ROUTER en 5580) responde al instante.
+// Usa los puertos reales (5555, 5560, 5580), así que GC y GA2 no deben estar corriendo.
+// Uso: BenchmarkGC [clientes] [solicitudes por cliente]   (por defecto 16 50)
+//      -Dgc.trabajadores=N para el tamaño del pool del GC actual
+public class BenchmarkGC {
+
+    private static final String DIRECCION_GC = "tcp://localhost:5555";
+
+    public static void main(String[] args) throws Exception {
+        int clientes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int solicitudes = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        ZMQ.Context context = ZMQ.context(1);
+        Thread ga2 = new Thread(() -> simularGA2(context), "ga2-simulado");
+        ga2.setDaemon(true);
+        ga2.start();
+
+        // Los dos GC escriben una línea por solicitud; se silencia la consola durante las mediciones
+        PrintStream consola = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        // 1) Bucle anterior: REP de un solo hilo con Thread.sleep(100) por solicitud
+        Thread anterior = new Thread(() -> bucleAnterior(context), "gc-anterior");
+        anterior.setDaemon(true);
+        anterior.start();
+        double anteriorOps = medir(context, clientes, solicitudes, consola, "GC anterior (REP + sleep)");
+        anterior.interrupt();
+        anterior.join();
+        Thread.sleep(500); // Dar tiempo a que se libere el puerto 5555
+
+        // 2) GC actual: ROUTER -> DEALER -> trabajadores (corre hasta que termina el proceso)
+        Thread actual = new Thread(() -> {
+            try {
+                new GC().iniciar();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "gc-actual");
+        actual.setDaemon(true);
+        actual.start();
+        double actualOps = medir(context, clientes, solicitudes, consola,
+                "GC actual (ROUTER + " + Integer.getInteger("gc.trabajadores", 8) + " trabajadores)");
+
+        System.setOut(consola);
+        System.out.printf(" Mejora: x%.1f%n", actualOps / Math.max(0.001, anteriorOps));
+        System.exit(0);
+    }
+
+    // Lanza los clientes, espera a que terminen y muestra solicitudes por segundo
+    private static double medir(ZMQ.Context context, int clientes, int solicitudes, PrintStream consola, String nombre)
+            throws InterruptedException {
+        AtomicInteger respondidas = new AtomicInteger();
+        Thread[] hilos = new Thread[clientes];
+        long inicio = System.nanoTime();
+        for (int c = 0; c < clientes; c++) {
+            int numero = c;
+            hilos[c] = new Thread(() -> {
+                ZMQ.Socket socket = context.socket(ZMQ.REQ);
+                socket.setLinger(0);
+                socket.setReceiveTimeOut(60000);
+                socket.connect(DIRECCION_GC);
+                for (int i = 0; i < solicitudes; i++) {
+                    socket.send("BUSCAR:1:cliente" + numero + " solicitud" + i, 0);
+                    if (socket.recvStr() == null) {
+                        break;
+                    }
+                    respondidas.incrementAndGet();
+                }
+                socket.close();
+            });
+            hilos[c].start();
+        }
+        for (Thread t : hilos) {
+            t.join();
+        }
+        long ms = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        double ops = respondidas.get() * 1000.0 / ms;
+        consola.printf(" %-40s %6d respuestas en %6d ms  -> %8.1f solicitudes/s%n", nombre, respondidas.get(), ms, ops);
+        return ops;
+    }
+
+    // Réplica del bucle que tenía GC.iniciar: recibir, reenviar la consulta a GA2, responder y dormir 100 ms
+    private static void bucleAnterior(ZMQ.Context context) {
+        ZMQ.Socket rep = context.socket(ZMQ.REP);
+        rep.setLinger(0);
+        rep.setReceiveTimeOut(200);
+        rep.bind(DIRECCION_GC);
+        ZMQ.Socket socketGA2 = context.socket(ZMQ.REQ);
+        socketGA2.setLinger(0);
+        socketGA2.connect("tcp://localhost:5580");
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                String solicitud = rep.recvStr();
+                if (solicitud == null) {
+                    continue;
+                }
+                socketGA2.send(solicitud, 0);
+                rep.send(socketGA2.recvStr(), 0);
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            rep.close();
+            socketGA2.close();
+        }
+    }
+
+    // GA2 simulado: ROUTER que responde "Sin resultados" a cada consulta, sin importar quién la envía
+    private static void simularGA2(ZMQ.Context context) {
+        ZMQ.Socket router = context.socket(ZMQ.ROUTER);
+        router.bind("tcp://*:5580");
+        while (!Thread.currentThread().isInterrupted()) {
+            byte[] identidad = router.recv(0);
+            if (identidad == null) {
+                break;
+            }
+            router.recv(0); // Delimitador vacío del REQ
+            router.recvStr();
+            router.sendMore(identidad);
+            router.sendMore("");
+            router.send("Sin resultados", 0);
+        }
+        router.close();
+    }
+}
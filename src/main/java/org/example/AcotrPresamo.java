@@ -1,19 +1,59 @@
 package org.example;
 
 import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class AcotrPresamo {
 
     //  Conexion
-    private static final String PUERTO_RECIBIR = "tcp://*:5556";      // Puerto donde GC se conecta
+    // Broker del GC (BrokerActores) que reparte los préstamos entre los actores (-Dactor.gc=tcp://host:5556)
+    private static final String PUERTO_GC = System.getProperty("actor.gc", "tcp://localhost:5556");
     private static final String PUERTO_GA = "tcp://localhost:5557";   // Puerto del Gestor de Almacenamiento (GA)
-    private static final String PUERTO_GA2 = "tcp://localhost:5580";  // Puerto del GA2 (fallback directo)
+
+    private static final long TIMEOUT_GA_MS = 3000;   // Sin respuesta de GA en este tiempo -> se intenta con GA2
+    private static final long TIMEOUT_GA2_MS = 10000; // Sin respuesta de GA2 -> error al GC
+
+    // Máximo de préstamos consultándose a la vez en GA/GA2 (-Dactor.maxEnVuelo=N)
+    private final int maxEnVuelo = Integer.getInteger("actor.maxEnVuelo", 256);
 
     private ZMQ.Context context;
-    private ZMQ.Socket responder;  // Para recibir solicitudes desde GC
-    private ZMQ.Socket socketGA;   // Para consultar disponibilidad con GA
-    private ZMQ.Socket socketGA2;  // Para consultar disponibilidad con GA2 (fallback)
+    private ZMQ.Socket responder;  // DEALER: recibe del broker del GC las solicitudes de sus trabajadores
+    private ZMQ.Socket socketGA;   // DEALER: consultas de disponibilidad a GA
+    // DEALER por shard de GA2 (fallback y hedging), hacia su REP; el préstamo va al shard dueño del libro
+    private final TablaShards tablaShards = TablaShards.desdePropiedades();
+    private final List<ZMQ.Socket> socketsGA2 = new ArrayList<>();
+
+    // Consultas en vuelo por ID de solicitud. Cada mensaje a GA/GA2 lleva el ID (varint) como sobre:
+    // [ID][""][Disponibilidad?X]. REP lo devuelve intacto, así que las respuestas se emparejan
+    // sin importar el orden en que lleguen.
+    private final Map<Long, SolicitudPendiente> pendientes = new HashMap<>();
+    private long siguienteId;
+    // Las claves de idempotencia son este prefijo + el ID de solicitud (ver ClaveIdempotencia)
+    private final String prefijoClaves = ClaveIdempotencia.nuevoPrefijo();
+    // true si GA aceptó el protocolo binario: los préstamos individuales van como [PRESTAMO][ID varint]
+    private boolean binarioGA;
+    // Con GA caído las consultas van directo a GA2 sin esperar TIMEOUT_GA_MS cada una. Los DEALER no
+    // quedan bloqueados tras un timeout (a diferencia de REQ), así que no hace falta recrear sockets.
+    private final InterruptorCircuito circuitoGA = new InterruptorCircuito("GA");
+    // Hedging (-Dactor.hedging=true): si GA tarda más que el percentil de sus latencias, la misma consulta
+    // de préstamo se envía también a GA2 y se usa la primera respuesta. Las dos copias llevan la misma
+    // clave de idempotencia, así que GA2 ejecuta una sola y la otra recibe el mismo resultado: un "SI" o
+    // un "NO" se usan apenas llegan. Un error (p. ej. GA sin respuesta de GA2) se retiene hasta que
+    // responda la otra copia, que pudo haber prestado el libro.
+    private final boolean hedging = Boolean.getBoolean("actor.hedging");
+    private final RetardoHedging retardoHedging = RetardoHedging.desdePropiedades();
+
+    // Latidos con el broker del GC: sin noticias suyas en LATIDOS_PERDIDOS intervalos se reconecta
+    private long ultimoLatidoGC;
+    private long proximoLatido;
+    private ZMQ.Poller todos;
+    private ZMQ.Poller soloRespuestas;
 
     public static void main(String[] args) {
         new AcotrPresamo().iniciar();
@@ -23,66 +63,378 @@ public class AcotrPresamo {
         context = ZMQ.context(1);
         inicializarSockets();
 
-        System.out.println(" Actor de Préstamo activo en " + PUERTO_RECIBIR + "...");
+        System.out.println(" Actor de Préstamo conectado al GC en " + PUERTO_GC + "...");
         System.out.println(" Conectado a GA en " + PUERTO_GA);
 
+        // Negociar el protocolo binario con GA; hasta que responda se usa texto
+        SolicitudPendiente negociacion = new SolicitudPendiente(null, ProtocoloBinario.NEGOCIACION, null, 0);
+        negociacion.negociacion = true;
+        enviarConsulta(negociacion);
+
+        crearPollers();
+
         while (!Thread.currentThread().isInterrupted()) {
-            procesarSolicitudes();
+            boolean aceptando = pendientes.size() < maxEnVuelo;
+            ZMQ.Poller poller = aceptando ? todos : soloRespuestas;
+            int base = aceptando ? 1 : 0;
+            if (poller.poll(tiempoHastaProximoVencimiento()) < 0) {
+                break;
+            }
+
+            if (aceptando && poller.pollin(0)) {
+                procesarSolicitudes();
+            }
+            if (poller.pollin(base)) {
+                recibirRespuesta(socketGA, "GA");
+            }
+            for (int i = 0; i < socketsGA2.size(); i++) {
+                if (poller.pollin(base + 1 + i)) {
+                    recibirRespuesta(socketsGA2.get(i), "GA2");
+                }
+            }
+            revisarVencimientos();
+            revisarLatidos(aceptando);
         }
 
         cerrarSockets();
     }
 
+    // Dos pollers: con el cupo lleno solo se escuchan respuestas, sin aceptar préstamos nuevos del GC
+    private void crearPollers() {
+        todos = context.poller(2 + socketsGA2.size());
+        todos.register(responder, ZMQ.Poller.POLLIN);
+        todos.register(socketGA, ZMQ.Poller.POLLIN);
+        soloRespuestas = context.poller(1 + socketsGA2.size());
+        soloRespuestas.register(socketGA, ZMQ.Poller.POLLIN);
+        for (ZMQ.Socket socketGA2 : socketsGA2) {
+            todos.register(socketGA2, ZMQ.Poller.POLLIN);
+            soloRespuestas.register(socketGA2, ZMQ.Poller.POLLIN);
+        }
+    }
+
+    // Registro en el broker del GC, con tantos créditos como préstamos se aceptan en vuelo
+    private void conectarGC() {
+        responder = context.socket(ZMQ.DEALER);
+        responder.setLinger(0);
+        responder.connect(PUERTO_GC);
+        responder.send("LISTO:" + maxEnVuelo, 0);
+        ultimoLatidoGC = System.currentTimeMillis();
+        proximoLatido = ultimoLatidoGC + BrokerActores.INTERVALO_LATIDO_MS;
+    }
+
+    private void revisarLatidos(boolean aceptando) {
+        long ahora = System.currentTimeMillis();
+        if (!aceptando) {
+            // Con el cupo lleno no se lee el socket del GC, así que sus latidos quedan en cola sin leer
+            ultimoLatidoGC = ahora;
+        } else if (ahora - ultimoLatidoGC > BrokerActores.INTERVALO_LATIDO_MS * BrokerActores.LATIDOS_PERDIDOS) {
+            // Las respuestas de los préstamos en vuelo salen por el socket nuevo; si el broker ya las
+            // dio por perdidas, las descarta
+            System.out.println(" ⚠ Sin latidos del GC, reconectando a " + PUERTO_GC + "...");
+            responder.close();
+            conectarGC();
+            crearPollers();
+            return;
+        }
+        if (ahora >= proximoLatido) {
+            responder.send("LATIDO", 0);
+            proximoLatido = ahora + BrokerActores.INTERVALO_LATIDO_MS;
+        }
+    }
+
     //Sockets
     private void inicializarSockets() {
-        responder = context.socket(ZMQ.REP);
-        responder.bind(PUERTO_RECIBIR);
+        conectarGC();
 
-        socketGA = context.socket(ZMQ.REQ);
+        socketGA = context.socket(ZMQ.DEALER);
+        socketGA.setLinger(0);
         socketGA.connect(PUERTO_GA);
-        // Configurar timeout de 3 segundos para detectar si GA no está disponible
-        socketGA.setReceiveTimeOut(3000);
-        
-        socketGA2 = context.socket(ZMQ.REQ);
-        socketGA2.connect(PUERTO_GA2);
-        System.out.println(" Conectado a GA2 (fallback) en " + PUERTO_GA2);
+
+        for (TablaShards.Shard shard : tablaShards.getShards()) {
+            ZMQ.Socket socketGA2 = context.socket(ZMQ.DEALER);
+            socketGA2.setLinger(0);
+            socketGA2.connect(shard.direccionRep);
+            socketsGA2.add(socketGA2);
+            System.out.println(" Conectado a " + shard.nombre + " (fallback) en " + shard.direccionRep);
+        }
     }
 
-    // Solicitudes
+    // Solicitudes: se envía la consulta a GA y se vuelve a escuchar sin esperar la respuesta
     private void procesarSolicitudes() {
-        String solicitud = responder.recvStr();
+        byte[] identidad = responder.recv(0);
+        ultimoLatidoGC = System.currentTimeMillis();
+        if (!responder.hasReceiveMore()) {
+            return; // LATIDO del broker
+        }
+        responder.recv(0); // Delimitador vacío del REQ del GC
+        String solicitud = responder.recvStr(0);
         System.out.println("\n Solicitud recibida del GC: " + solicitud);
 
+        // Lote de préstamos: "BATCH:PRESTAMO:1;PRESTAMO:2" -> una sola consulta "BATCH:Disponibilidad?1;Disponibilidad?2"
+        if (Lote.esLote(solicitud)) {
+            List<String> consultas = new ArrayList<>();
+            for (String operacion : Lote.operaciones(solicitud)) {
+                String id = extraerIdLibro(operacion);
+                consultas.add("Disponibilidad?" + (id == null ? "" : id));
+            }
+            if (consultas.isEmpty()) {
+                responder(identidad, "Error: Lote vacío");
+                return;
+            }
+            enviarConsulta(new SolicitudPendiente(identidad, Lote.armar(consultas), null, consultas.size()));
+            return;
+        }
+
         // Extraer ID del libro de la solicitud (formato: PRESTAMO:ID)
         String idLibro = extraerIdLibro(solicitud);
         if (idLibro == null || idLibro.isEmpty()) {
-            responder.send("Error: No se pudo extraer el ID del libro");
+            responder(identidad, "Error: No se pudo extraer el ID del libro");
+            return;
+        }
+
+        // Consultar disponibilidad con GA enviando el ID (en binario si el ID es numérico)
+        int id = CatalogoMemoria.parsearId(idLibro);
+        byte[] trama = id >= 0 ? ProtocoloBinario.codificar(ProtocoloBinario.PRESTAMO, id) : null;
+        enviarConsulta(new SolicitudPendiente(identidad, "Disponibilidad?" + idLibro, trama, 0));
+    }
+
+    private void enviarConsulta(SolicitudPendiente pendiente) {
+        long idSolicitud = ++siguienteId;
+        pendientes.put(idSolicitud, pendiente);
+
+        if (!pendiente.negociacion && !circuitoGA.permitir()) {
+            if (!consultarConGA2(idSolicitud, pendiente)) {
+                pendientes.remove(idSolicitud);
+            }
             return;
         }
 
-        // Consultar disponibilidad con GA enviando el ID
-        String mensajeDisponibilidad = "Disponibilidad?" + idLibro;
-        String respuestaGA = null;
-        
-        // Intentar primero con GA
         try {
-            socketGA.send(mensajeDisponibilidad);
-            respuestaGA = socketGA.recvStr();
-            
-            // Si recibimos null (timeout), GA no está disponible
-            if (respuestaGA == null) {
+            enviar(socketGA, idSolicitud, claveDe(idSolicitud, pendiente), pendiente.mensaje, binarioGA ? pendiente.trama : null);
+            pendiente.enviadoEn = System.currentTimeMillis();
+            pendiente.vence = pendiente.enviadoEn + TIMEOUT_GA_MS;
+            if (hedging && !pendiente.negociacion && pendiente.operacionesLote == 0) {
+                pendiente.hedgeEn = pendiente.enviadoEn + retardoHedging.getRetardoMs();
+            }
+        } catch (Exception e) {
+            if (pendiente.negociacion) {
+                pendientes.remove(idSolicitud);
+                return;
+            }
+            System.out.println(" ⚠ Error al comunicarse con GA: " + e.getMessage() + ", intentando con GA2...");
+            circuitoGA.registrarFallo();
+            if (!consultarConGA2(idSolicitud, pendiente)) {
+                pendientes.remove(idSolicitud);
+            }
+        }
+    }
+
+    // Respuesta de GA o GA2: [ID][""][respuesta]
+    private void recibirRespuesta(ZMQ.Socket socket, String origen) {
+        long idSolicitud = ProtocoloBinario.leerVarint(socket.recv(0));
+        String respuesta = null;
+        while (socket.hasReceiveMore()) {
+            respuesta = socket.recvStr(0);
+        }
+
+        if (socket == socketGA) {
+            circuitoGA.registrarExito();
+        }
+        SolicitudPendiente pendiente = pendientes.get(idSolicitud);
+        if (pendiente == null) {
+            // Llegó después de que la solicitud se resolvió por otra vía (o venció)
+            System.out.println(" Respuesta tardía de " + origen + " descartada (solicitud " + idSolicitud + ")");
+            return;
+        }
+        if (socket == socketGA && !pendiente.negociacion) {
+            retardoHedging.registrarLatencia(System.currentTimeMillis() - pendiente.enviadoEn);
+        }
+        if (pendiente.hedgeEnviado) {
+            boolean porHedge = socket != socketGA;
+            if (!esDefinitiva(respuesta)) {
+                if (pendiente.respuestaRetenida == null) {
+                    // La otra copia todavía puede haber prestado el libro: se espera su respuesta
+                    pendiente.respuestaRetenida = respuesta;
+                    pendiente.retenidaDeHedge = porHedge;
+                    return;
+                }
+                respuesta = pendiente.respuestaRetenida;
+                porHedge = pendiente.retenidaDeHedge;
+            }
+            retardoHedging.registrarGanador(porHedge);
+        }
+        if (pendiente.partesGA2 != null && socket != socketGA) {
+            // Lote repartido entre shards: se responde cuando llegan todas las partes
+            int[] posiciones = pendiente.partesGA2.remove(socketsGA2.indexOf(socket));
+            if (posiciones == null || !pendiente.loteGA2.completarParte(posiciones, respuesta)) {
+                return;
+            }
+            respuesta = pendiente.loteGA2.respuesta();
+        }
+        pendientes.remove(idSolicitud);
+        if (pendiente.negociacion) {
+            binarioGA = ProtocoloBinario.ACEPTADO.equals(respuesta);
+            System.out.println(" Protocolo con GA: " + (binarioGA ? "binario" : "texto"));
+            return;
+        }
+        if (pendiente.enGA2) {
+            System.out.println(" ✓ Respuesta recibida de " + origen + (origen.equals("GA2") ? " (fallback)" : "") + ": " + respuesta);
+        } else {
+            System.out.println(" Respuesta del " + origen + ": " + respuesta);
+        }
+        responder(pendiente, respuesta);
+    }
+
+    // Respuesta al GC: un resultado por préstamo si la solicitud era un lote
+    private void responder(SolicitudPendiente pendiente, String respuestaGA) {
+        if (pendiente.operacionesLote == 0) {
+            responder(pendiente.identidad, manejarRespuestaGA(respuestaGA));
+            return;
+        }
+        List<String> resultados = Lote.resultados(respuestaGA, pendiente.operacionesLote);
+        if (resultados == null) {
+            System.out.println("️ Respuesta de lote inesperada del GA: " + respuestaGA);
+            responder(pendiente.identidad, respuestaGA != null && respuestaGA.startsWith("Error")
+                    ? respuestaGA : "Error: respuesta desconocida del GA");
+            return;
+        }
+        List<String> finales = new ArrayList<>(resultados.size());
+        for (String resultado : resultados) {
+            finales.add(manejarRespuestaGA(resultado));
+        }
+        responder(pendiente.identidad, Lote.armarResultados(finales));
+    }
+
+    // Pasa a GA2 las consultas sin respuesta de GA y responde con error las que tampoco contestó GA2
+    private void revisarVencimientos() {
+        long ahora = System.currentTimeMillis();
+        boolean circuitoAbierto = false;
+        Iterator<Map.Entry<Long, SolicitudPendiente>> it = pendientes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, SolicitudPendiente> entrada = it.next();
+            SolicitudPendiente pendiente = entrada.getValue();
+            if (pendiente.hedgeEn > 0 && !pendiente.hedgeEnviado && !pendiente.enGA2 && pendiente.hedgeEn <= ahora) {
+                enviarHedge(entrada.getKey(), pendiente);
+            }
+            if (pendiente.vence > ahora) {
+                continue;
+            }
+            if (pendiente.negociacion) {
+                // GA no respondió la negociación: se sigue en texto (GA2 no se negocia)
+                it.remove();
+                continue;
+            }
+            if (!pendiente.enGA2) {
                 System.out.println(" ⚠ GA no respondió (timeout), intentando con GA2...");
-                respuestaGA = consultarConGA2(mensajeDisponibilidad);
+                circuitoAbierto |= circuitoGA.registrarFallo();
+                if (pendiente.hedgeEnviado) {
+                    if (esperarSoloHedge(pendiente)) {
+                        it.remove();
+                    }
+                } else if (!consultarConGA2(entrada.getKey(), pendiente)) {
+                    it.remove();
+                }
+            } else if (pendiente.partesGA2 != null) {
+                // Lote repartido: los shards que no respondieron llevan error en sus operaciones
+                System.err.println(" ✗ " + pendiente.partesGA2.size() + " shards de GA2 no respondieron al lote");
+                it.remove();
+                for (int[] posiciones : pendiente.partesGA2.values()) {
+                    pendiente.loteGA2.completarParte(posiciones, "Error: No se pudo comunicar ni con GA ni con GA2");
+                }
+                responder(pendiente, pendiente.loteGA2.respuesta());
+            } else if (pendiente.respuestaRetenida != null) {
+                // Con hedge: GA2 no respondió, pero GA sí
+                it.remove();
+                retardoHedging.registrarGanador(pendiente.retenidaDeHedge);
+                responder(pendiente, pendiente.respuestaRetenida);
             } else {
-                System.out.println(" Respuesta del GA: " + respuestaGA);
+                System.err.println(" ✗ GA2 tampoco respondió: " + pendiente.mensaje);
+                it.remove();
+                responder(pendiente, "Error: No se pudo comunicar ni con GA ni con GA2");
             }
+        }
+
+        // Si el circuito se acaba de abrir, las demás consultas que esperan a GA pasan ya a GA2: la caída
+        // cuesta un solo timeout, no uno por consulta en vuelo
+        if (circuitoAbierto) {
+            it = pendientes.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, SolicitudPendiente> entrada = it.next();
+                SolicitudPendiente pendiente = entrada.getValue();
+                if (pendiente.enGA2 || pendiente.negociacion) {
+                    continue;
+                }
+                if (pendiente.hedgeEnviado ? esperarSoloHedge(pendiente) : !consultarConGA2(entrada.getKey(), pendiente)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    // GA no respondió pero el hedge ya está en GA2: no se reenvía, se espera solo esa copia.
+    // Retorna true si la solicitud quedó resuelta (GA2 ya había respondido con un "NO" retenido).
+    private boolean esperarSoloHedge(SolicitudPendiente pendiente) {
+        pendiente.enGA2 = true;
+        pendiente.vence = pendiente.hedgeEn + TIMEOUT_GA2_MS;
+        if (pendiente.respuestaRetenida == null) {
+            return false;
+        }
+        retardoHedging.registrarGanador(pendiente.retenidaDeHedge);
+        responder(pendiente, pendiente.respuestaRetenida);
+        return true;
+    }
+
+    // Misma consulta (en texto, con el mismo ID) a GA2 sin cancelar la de GA
+    private void enviarHedge(long idSolicitud, SolicitudPendiente pendiente) {
+        pendiente.hedgeEnviado = true;
+        try {
+            enviar(socketsGA2.get(tablaShards.indiceDe(pendiente.mensaje)), idSolicitud, claveDe(idSolicitud, pendiente),
+                    pendiente.mensaje, null);
+            retardoHedging.registrarHedge();
         } catch (Exception e) {
-            System.out.println(" ⚠ Error al comunicarse con GA: " + e.getMessage() + ", intentando con GA2...");
-            respuestaGA = consultarConGA2(mensajeDisponibilidad);
+            System.err.println(" ✗ Error al enviar hedge a GA2: " + e.getMessage());
+            pendiente.hedgeEnviado = false;
+            pendiente.hedgeEn = 0;
         }
+    }
+
+    private long tiempoHastaProximoVencimiento() {
+        long proximo = Long.MAX_VALUE;
+        for (SolicitudPendiente p : pendientes.values()) {
+            proximo = Math.min(proximo, p.vence);
+            if (p.hedgeEn > 0 && !p.hedgeEnviado && !p.enGA2) {
+                proximo = Math.min(proximo, p.hedgeEn);
+            }
+        }
+        proximo = Math.min(proximo, proximoLatido);
+        return Math.max(0, Math.min(1000, proximo - System.currentTimeMillis()));
+    }
+
+    private void enviar(ZMQ.Socket socket, long idSolicitud, String clave, String mensaje, byte[] trama) {
+        socket.sendMore(ProtocoloBinario.codificarVarint(idSolicitud));
+        socket.sendMore("");
+        if (trama != null) {
+            socket.send(ClaveIdempotencia.agregar(clave, trama), 0);
+        } else {
+            socket.send(ClaveIdempotencia.agregar(clave, mensaje), 0);
+        }
+    }
 
-        String respuestaFinal = manejarRespuestaGA(respuestaGA);
-        responder.send(respuestaFinal);
+    // Misma clave para GA, el fallback y el hedge de una consulta: GA2 la ejecuta una sola vez
+    private String claveDe(long idSolicitud, SolicitudPendiente pendiente) {
+        return pendiente.negociacion ? null : prefijoClaves + "-" + idSolicitud;
+    }
+
+    // Con claves de idempotencia las dos copias de un hedge reciben el mismo "SI" o "NO"; solo un error
+    // puede diferir de lo que pasó en la otra copia
+    private static boolean esDefinitiva(String respuesta) {
+        return respuesta != null && (respuesta.equals("SI") || respuesta.startsWith("NO"));
+    }
+
+    private void responder(byte[] identidad, String respuesta) {
+        responder.sendMore(identidad);
+        responder.sendMore("");
+        responder.send(respuesta, 0);
     }
 
     // Extraer ID del libro de la solicitud
@@ -113,17 +465,38 @@ public class AcotrPresamo {
         }
     }
 
-    // Consultar con GA2 (fallback)
-    private String consultarConGA2(String mensaje) {
+    // Consultar con GA2 (fallback, siempre en texto), con el mismo ID de solicitud y la misma clave de
+    // idempotencia: si GA ya la había pasado a GA2, GA2 responde el resultado original sin repetirla.
+    // Si no se puede enviar responde con error.
+    private boolean consultarConGA2(long idSolicitud, SolicitudPendiente pendiente) {
+        String clave = claveDe(idSolicitud, pendiente);
+        pendiente.enGA2 = true;
+        pendiente.vence = System.currentTimeMillis() + TIMEOUT_GA2_MS;
         try {
-            System.out.println(" Enviando solicitud a GA2 (fallback): " + mensaje);
-            socketGA2.send(mensaje);
-            String respuesta = socketGA2.recvStr();
-            System.out.println(" ✓ Respuesta recibida de GA2 (fallback): " + respuesta);
-            return respuesta;
+            System.out.println(" Enviando solicitud a GA2 (fallback): " + pendiente.mensaje);
+            if (pendiente.operacionesLote == 0) {
+                enviar(socketsGA2.get(tablaShards.indiceDe(pendiente.mensaje)), idSolicitud, clave, pendiente.mensaje, null);
+                return true;
+            }
+            // Lote: una parte por shard, todas con el mismo ID de solicitud
+            List<String> operaciones = Lote.operaciones(pendiente.mensaje);
+            Map<Integer, List<Integer>> porShard = tablaShards.dividir(operaciones);
+            if (porShard.size() == 1) {
+                enviar(socketsGA2.get(porShard.keySet().iterator().next()), idSolicitud, clave, pendiente.mensaje, null);
+                return true;
+            }
+            pendiente.loteGA2 = new LoteDividido<>(pendiente, operaciones.size(), porShard.size());
+            pendiente.partesGA2 = new HashMap<>();
+            for (Map.Entry<Integer, List<Integer>> parte : porShard.entrySet()) {
+                pendiente.partesGA2.put(parte.getKey(), parte.getValue().stream().mapToInt(Integer::intValue).toArray());
+                enviar(socketsGA2.get(parte.getKey()), idSolicitud, ClaveIdempotencia.deParte(clave, parte.getKey()),
+                        LoteDividido.armarParte(operaciones, parte.getValue()), null);
+            }
+            return true;
         } catch (Exception e) {
             System.err.println(" ✗ Error al comunicarse con GA2: " + e.getMessage());
-            return "Error: No se pudo comunicar ni con GA ni con GA2";
+            responder(pendiente, "Error: No se pudo comunicar ni con GA ni con GA2");
+            return false;
         }
     }
 
@@ -131,8 +504,35 @@ public class AcotrPresamo {
     private void cerrarSockets() {
         responder.close();
         socketGA.close();
-        socketGA2.close();
+        for (ZMQ.Socket socketGA2 : socketsGA2) {
+            socketGA2.close();
+        }
         context.term();
         System.out.println("\n Actor de préstamo finalizado correctamente.");
     }
+
+    // Préstamo esperando respuesta de GA (o de GA2 si GA no respondió a tiempo)
+    private static final class SolicitudPendiente {
+        final byte[] identidad; // Identidad del REQ del trabajador del GC (sobre que agrega el broker)
+        final String mensaje;
+        final byte[] trama;        // Misma consulta en ProtocoloBinario, o null si no tiene forma binaria
+        final int operacionesLote; // 0 si no es un lote
+        long vence;
+        boolean enGA2;
+        boolean negociacion;
+        long enviadoEn;            // Envío a GA (para medir su latencia)
+        long hedgeEn;              // Momento de enviar el hedge a GA2 (0 = sin hedging)
+        boolean hedgeEnviado;
+        String respuestaRetenida;  // Primera respuesta distinta de "SI" mientras la otra copia sigue en vuelo
+        boolean retenidaDeHedge;
+        LoteDividido<SolicitudPendiente> loteGA2; // Lote repartido entre shards en el fallback (si no, null)
+        Map<Integer, int[]> partesGA2;            // Shard -> posiciones de las partes que faltan
+
+        SolicitudPendiente(byte[] identidad, String mensaje, byte[] trama, int operacionesLote) {
+            this.identidad = identidad;
+            this.mensaje = mensaje;
+            this.trama = trama;
+            this.operacionesLote = operacionesLote;
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Interfaz de almacenamiento de GA/GA2: consulta y cambio de estado de libros y
+// alta/actualización/baja de préstamos. Implementaciones: AlmacenamientoArchivos (DB.txt +
+// Prestamos.txt) y AlmacenamientoJdbc (PostgreSQL).
+// Las lecturas retornan null si el libro o préstamo no existe; los fallos del backend se
+// reportan con AlmacenamientoException.
+public interface Almacenamiento extends CommitGrupal.Participante {
+
+    // Carga o conecta el almacenamiento (solo la primera vez); false si no está disponible
+    boolean asegurarCargado();
+
+    // Con escritura diferida los cambios se hacen durables en el próximo volcar() del commit en grupo
+    void setEscrituraDiferida(boolean diferida);
+
+    // Estado del libro ("DISPONIBLE", "PRESTADO", ...) o null si no existe
+    String obtenerEstadoLibro(int idLibro);
+
+    boolean actualizarEstadoLibro(int idLibro, String nuevoEstado);
+
+    // BUSCAR: libros cuyo título o autor coincidan con las palabras de la consulta (por prefijo), paginados
+    ResultadoBusqueda buscarLibros(String consulta, int pagina, int tamanoPagina);
+
+    Prestamo buscarPrestamo(int idLibro);
+
+    boolean registrarPrestamo(Prestamo prestamo);
+
+    boolean actualizarPrestamo(int idLibro, LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas);
+
+    boolean eliminarPrestamo(int idLibro);
+
+    // IDs de los libros entre desde y hasta (inclusive), de menor a mayor (para la antientropía con GA2)
+    int[] idsLibros(int desde, int hasta);
+
+    // Estado de cada libro entre desde y hasta (inclusive), de menor a mayor ID (para ResumenRangos).
+    // Por defecto un CambioLibro.capturar por libro; AlmacenamientoJdbc lo resuelve con una sola consulta.
+    default List<CambioLibro> librosEnRango(int desde, int hasta) {
+        int[] ids = idsLibros(desde, hasta);
+        List<CambioLibro> libros = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            CambioLibro libro = CambioLibro.capturar(this, id);
+            if (libro != null) {
+                libros.add(libro);
+            }
+        }
+        return libros;
+    }
+
+    // VENCIDOS: préstamos con fecha de devolución anterior a "hoy", del más atrasado al más reciente
+    List<Prestamo> prestamosVencidos(LocalDate hoy, int limite);
+
+    void cerrar();
+}
@@ -0,0 +1,95 @@
+package org.example;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+// Almacenamiento sobre archivos: catálogo en memoria (DB.txt o DB.bin) + diario de préstamos
+public class AlmacenamientoArchivos implements Almacenamiento {
+
+    private final CatalogoMemoria catalogo;
+    private final DiarioPrestamos diarioPrestamos;
+
+    public AlmacenamientoArchivos(String rutaDB, String rutaDBBinario, String rutaPrestamos,
+                                  String rutaDiarioPrestamos, String etiqueta) {
+        this.catalogo = new CatalogoMemoria(rutaDB, rutaDBBinario, etiqueta);
+        this.diarioPrestamos = new DiarioPrestamos(rutaPrestamos, rutaDiarioPrestamos, etiqueta);
+    }
+
+    // Activa instantáneas binarias del catálogo (con su diario de cambios de estado) y de los préstamos;
+    // el arranque carga las instantáneas y solo reproduce la cola de los diarios
+    public void activarInstantaneas(String rutaInstantaneaDB, String rutaDiarioDB, String rutaInstantaneaPrestamos) {
+        catalogo.activarInstantaneas(rutaInstantaneaDB, rutaDiarioDB);
+        diarioPrestamos.activarBaseBinaria(rutaInstantaneaPrestamos);
+    }
+
+    @Override
+    public boolean asegurarCargado() {
+        boolean catalogoCargado = catalogo.asegurarCargado();
+        boolean prestamosCargados = diarioPrestamos.asegurarCargado();
+        return catalogoCargado && prestamosCargados;
+    }
+
+    @Override
+    public void setEscrituraDiferida(boolean diferida) {
+        catalogo.setEscrituraDiferida(diferida);
+        diarioPrestamos.setVolcadoDiferido(diferida);
+    }
+
+    @Override
+    public void volcar() throws IOException {
+        catalogo.volcar();
+        diarioPrestamos.volcar();
+    }
+
+    @Override
+    public String obtenerEstadoLibro(int idLibro) {
+        return catalogo.obtenerEstado(idLibro);
+    }
+
+    @Override
+    public boolean actualizarEstadoLibro(int idLibro, String nuevoEstado) {
+        return catalogo.actualizarEstado(idLibro, nuevoEstado);
+    }
+
+    @Override
+    public ResultadoBusqueda buscarLibros(String consulta, int pagina, int tamanoPagina) {
+        return catalogo.buscar(consulta, pagina, tamanoPagina);
+    }
+
+    @Override
+    public int[] idsLibros(int desde, int hasta) {
+        return catalogo.idsEnRango(desde, hasta);
+    }
+
+    @Override
+    public Prestamo buscarPrestamo(int idLibro) {
+        return diarioPrestamos.buscar(idLibro);
+    }
+
+    @Override
+    public boolean registrarPrestamo(Prestamo prestamo) {
+        return diarioPrestamos.registrar(prestamo);
+    }
+
+    @Override
+    public boolean actualizarPrestamo(int idLibro, LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas) {
+        return diarioPrestamos.renovar(idLibro, nuevaFechaDevolucion, nuevasVecesPrestadas);
+    }
+
+    @Override
+    public boolean eliminarPrestamo(int idLibro) {
+        return diarioPrestamos.eliminar(idLibro);
+    }
+
+    @Override
+    public List<Prestamo> prestamosVencidos(LocalDate hoy, int limite) {
+        return diarioPrestamos.vencidos(hoy, limite);
+    }
+
+    @Override
+    public void cerrar() {
+        catalogo.cerrar();
+        diarioPrestamos.cerrar();
+    }
+}
@@ -0,0 +1,11 @@
+package org.example;
+
+// Fallo del backend de almacenamiento (por ejemplo, la base de datos no responde)
+public class AlmacenamientoException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AlmacenamientoException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
@@ -0,0 +1,572 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Almacenamiento sobre PostgreSQL (JDBC) con pool de conexiones y sentencias preparadas.
+// Las mutaciones se aplican primero a una capa en memoria (visible para las lecturas) y se
+// escriben en volcar() como lotes JDBC (executeBatch) dentro de una sola transacción, así el
+// commit en grupo de GA2 se traduce en un único COMMIT por lote. Si el lote falla, sus cambios se
+// descartan de la capa en memoria: al cliente ya se le respondió error y no deben aparecer después.
+//
+// Configuración (propiedades del sistema, con el prefijo del componente, ej. "ga2"):
+//   <prefijo>.jdbc.url, <prefijo>.jdbc.usuario, <prefijo>.jdbc.clave, <prefijo>.jdbc.pool
+// Para probar contra un PostgreSQL local:
+//   AlmacenamientoJdbc importar DB2.txt Prestamos2.txt   (crea las tablas y carga los datos)
+//   GA2 -Dga2.almacenamiento=jdbc
+public class AlmacenamientoJdbc implements Almacenamiento {
+
+    private static final String URL_POR_DEFECTO = "jdbc:postgresql://localhost:5432/biblioteca";
+
+    private static final String SQL_CREAR_LIBROS =
+            "CREATE TABLE IF NOT EXISTS libros (" +
+            " id INTEGER PRIMARY KEY," +
+            " titulo VARCHAR(200) NOT NULL," +
+            " autor VARCHAR(200) NOT NULL," +
+            " estado VARCHAR(20) NOT NULL)";
+    private static final String SQL_CREAR_PRESTAMOS =
+            "CREATE TABLE IF NOT EXISTS prestamos (" +
+            " id_libro INTEGER PRIMARY KEY REFERENCES libros(id)," +
+            " fecha_prestamo DATE NOT NULL," +
+            " fecha_devolucion DATE NOT NULL," +
+            " veces_prestadas INTEGER NOT NULL)";
+    // Título y autor sin tildes y en minúsculas, como los normaliza IndiceBusqueda, para que BUSCAR
+    // encuentre "García" con "garcia". Columna generada: la mantiene la base en cualquier INSERT/UPDATE
+    // (translate antes de lower porque lower no cambia letras acentuadas con collation "C")
+    private static final String SQL_AGREGAR_BUSQUEDA =
+            "ALTER TABLE libros ADD COLUMN IF NOT EXISTS busqueda TEXT GENERATED ALWAYS AS (lower(translate(" +
+            "titulo || ' ' || autor, " +
+            "'ÁÀÄÂÃÅáàäâãåÉÈËÊéèëêÍÌÏÎíìïîÓÒÖÔÕóòöôõÚÙÜÛúùüûÑñÇçÝý', " +
+            "'AAAAAAaaaaaaEEEEeeeeIIIIiiiiOOOOOoooooUUUUuuuuNnCcYy'))) STORED";
+    private static final String SQL_CREAR_INDICE_VENCIMIENTO =
+            "CREATE INDEX IF NOT EXISTS prestamos_fecha_devolucion ON prestamos (fecha_devolucion)";
+    private static final String SQL_VENCIDOS =
+            "SELECT id_libro, fecha_prestamo, fecha_devolucion, veces_prestadas FROM prestamos " +
+            "WHERE fecha_devolucion < ? ORDER BY fecha_devolucion, id_libro LIMIT ?";
+    private static final String SQL_ESTADO = "SELECT estado FROM libros WHERE id = ?";
+    private static final String SQL_IDS_RANGO = "SELECT id FROM libros WHERE id BETWEEN ? AND ? ORDER BY id";
+    private static final String SQL_LIBROS_RANGO =
+            "SELECT l.id, l.estado, p.fecha_prestamo, p.fecha_devolucion, p.veces_prestadas FROM libros l " +
+            "LEFT JOIN prestamos p ON p.id_libro = l.id WHERE l.id BETWEEN ? AND ? ORDER BY l.id";
+    private static final String SQL_ACTUALIZAR_ESTADO = "UPDATE libros SET estado = ? WHERE id = ?";
+    private static final String SQL_INSERTAR_LIBRO =
+            "INSERT INTO libros (id, titulo, autor, estado) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET titulo = EXCLUDED.titulo, autor = EXCLUDED.autor, estado = EXCLUDED.estado";
+    private static final String SQL_PRESTAMO =
+            "SELECT fecha_prestamo, fecha_devolucion, veces_prestadas FROM prestamos WHERE id_libro = ?";
+    private static final String SQL_GUARDAR_PRESTAMO =
+            "INSERT INTO prestamos (id_libro, fecha_prestamo, fecha_devolucion, veces_prestadas) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (id_libro) DO UPDATE SET fecha_prestamo = EXCLUDED.fecha_prestamo, " +
+            "fecha_devolucion = EXCLUDED.fecha_devolucion, veces_prestadas = EXCLUDED.veces_prestadas";
+    private static final String SQL_ELIMINAR_PRESTAMO = "DELETE FROM prestamos WHERE id_libro = ?";
+
+    // Marca de préstamo eliminado en la capa de cambios pendientes
+    private static final Prestamo ELIMINADO = new Prestamo(-1, null, null, 0);
+
+    private final PoolConexiones pool;
+    private final String etiqueta;
+
+    // Cambios aplicados y aún no escritos en la base; se vuelcan como lotes en volcar()
+    private final Map<Integer, String> estadosPendientes = new LinkedHashMap<>();
+    private final Map<Integer, Prestamo> prestamosPendientes = new LinkedHashMap<>();
+    private final Object bloqueoVolcado = new Object();
+    private volatile boolean escrituraDiferida;
+    private boolean cargado;
+
+    public AlmacenamientoJdbc(PoolConexiones pool, String etiqueta) {
+        this.pool = pool;
+        this.etiqueta = etiqueta;
+    }
+
+    // Crea el almacenamiento a partir de las propiedades "<prefijo>.jdbc.*"
+    public static AlmacenamientoJdbc desdePropiedades(String prefijo, String etiqueta) {
+        PoolConexiones pool = new PoolConexiones(
+                System.getProperty(prefijo + ".jdbc.url", URL_POR_DEFECTO),
+                System.getProperty(prefijo + ".jdbc.usuario", "postgres"),
+                System.getProperty(prefijo + ".jdbc.clave", "postgres"),
+                Integer.getInteger(prefijo + ".jdbc.pool", 8));
+        return new AlmacenamientoJdbc(pool, etiqueta);
+    }
+
+    @Override
+    public synchronized boolean asegurarCargado() {
+        if (cargado) {
+            return true;
+        }
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (Statement st = conexion.createStatement()) {
+                st.execute(SQL_CREAR_LIBROS);
+                st.execute(SQL_CREAR_PRESTAMOS);
+                st.execute(SQL_AGREGAR_BUSQUEDA);
+                st.execute(SQL_CREAR_INDICE_VENCIMIENTO);
+            }
+            cargado = true;
+            System.out.println(etiqueta + ":  Conectado a la base de datos (almacenamiento JDBC)");
+            return true;
+        } catch (SQLException e) {
+            System.err.println(etiqueta + ":  Error al conectar con la base de datos: " + e.getMessage());
+            return false;
+        } finally {
+            pool.devolver(conexion);
+        }
+    }
+
+    @Override
+    public void setEscrituraDiferida(boolean diferida) {
+        this.escrituraDiferida = diferida;
+    }
+
+    @Override
+    public String obtenerEstadoLibro(int idLibro) {
+        synchronized (this) {
+            String pendiente = estadosPendientes.get(idLibro);
+            if (pendiente != null) {
+                return pendiente;
+            }
+        }
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_ESTADO)) {
+                ps.setInt(1, idLibro);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            }
+        } catch (SQLException e) {
+            throw new AlmacenamientoException("No se pudo consultar el libro " + idLibro, e);
+        } finally {
+            pool.devolver(conexion);
+        }
+    }
+
+    @Override
+    public boolean actualizarEstadoLibro(int idLibro, String nuevoEstado) {
+        if (obtenerEstadoLibro(idLibro) == null) {
+            return false;
+        }
+        synchronized (this) {
+            estadosPendientes.put(idLibro, nuevoEstado);
+        }
+        volcarSiInmediato();
+        return true;
+    }
+
+    // Cada palabra (normalizada como en IndiceBusqueda) debe empezar una palabra de la columna
+    // "busqueda" (\m = inicio de palabra en PostgreSQL); para catálogos grandes conviene un índice
+    // pg_trgm sobre esa columna. El total sale de count(*) OVER () en la misma consulta; solo una página
+    // sin filas (pasada la última) necesita contarlo aparte.
+    @Override
+    public ResultadoBusqueda buscarLibros(String consulta, int pagina, int tamanoPagina) {
+        List<String> terminos = IndiceBusqueda.palabrasDe(consulta);
+        if (terminos.isEmpty()) {
+            return new ResultadoBusqueda(pagina, tamanoPagina, 0);
+        }
+        StringBuilder condicion = new StringBuilder(" FROM libros WHERE ");
+        for (int i = 0; i < terminos.size(); i++) {
+            condicion.append(i > 0 ? " AND " : "").append("busqueda ~ ?");
+        }
+
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            ResultadoBusqueda resultado = null;
+            try (PreparedStatement ps = conexion.prepareStatement(
+                    "SELECT id, titulo, autor, estado, count(*) OVER ()" + condicion + " ORDER BY id LIMIT ? OFFSET ?")) {
+                int p = asignarTerminos(ps, terminos);
+                ps.setInt(p++, tamanoPagina);
+                ps.setInt(p, (pagina - 1) * tamanoPagina);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (resultado == null) {
+                            resultado = new ResultadoBusqueda(pagina, tamanoPagina, rs.getInt(5));
+                        }
+                        int id = rs.getInt(1);
+                        String estado;
+                        synchronized (this) {
+                            estado = estadosPendientes.getOrDefault(id, rs.getString(4));
+                        }
+                        resultado.agregar(id, rs.getString(2), rs.getString(3), estado);
+                    }
+                }
+            }
+            if (resultado != null || pagina <= 1) {
+                return resultado != null ? resultado : new ResultadoBusqueda(pagina, tamanoPagina, 0);
+            }
+            try (PreparedStatement ps = conexion.prepareStatement("SELECT count(*)" + condicion)) {
+                asignarTerminos(ps, terminos);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return new ResultadoBusqueda(pagina, tamanoPagina, rs.next() ? rs.getInt(1) : 0);
+                }
+            }
+        } catch (SQLException e) {
+            throw new AlmacenamientoException("No se pudo buscar \"" + consulta + "\"", e);
+        } finally {
+            pool.devolver(conexion);
+        }
+    }
+
+    // Un parámetro "\m<término>" por término de búsqueda; retorna el índice del siguiente parámetro
+    private static int asignarTerminos(PreparedStatement ps, List<String> terminos) throws SQLException {
+        int p = 1;
+        for (String termino : terminos) {
+            ps.setString(p++, "\\m" + termino);
+        }
+        return p;
+    }
+
+    @Override
+    public int[] idsLibros(int desde, int hasta) {
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_IDS_RANGO)) {
+                ps.setInt(1, desde);
+                ps.setInt(2, hasta);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int[] ids = new int[16];
+                    int n = 0;
+                    while (rs.next()) {
+                        if (n == ids.length) {
+                            ids = Arrays.copyOf(ids, n * 2);
+                        }
+                        ids[n++] = rs.getInt(1);
+                    }
+                    return Arrays.copyOf(ids, n);
+                }
+            }
+        } catch (SQLException e) {
+            throw new AlmacenamientoException("No se pudieron listar los libros " + desde + "-" + hasta, e);
+        } finally {
+            pool.devolver(conexion);
+        }
+    }
+
+    // Una consulta para todo el rango en vez de dos por libro; los cambios aún no volcados se combinan encima
+    @Override
+    public List<CambioLibro> librosEnRango(int desde, int hasta) {
+        Map<Integer, String> estados;
+        Map<Integer, Prestamo> prestamos;
+        synchronized (this) {
+            estados = new LinkedHashMap<>(estadosPendientes);
+            prestamos = new LinkedHashMap<>(prestamosPendientes);
+        }
+        List<CambioLibro> libros = new ArrayList<>();
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_LIBROS_RANGO)) {
+                ps.setInt(1, desde);
+                ps.setInt(2, hasta);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        Prestamo prestamo = rs.getDate(3) == null ? null
+                                : new Prestamo(id, rs.getDate(3).toLocalDate(), rs.getDate(4).toLocalDate(), rs.getInt(5));
+                        if (prestamos.containsKey(id)) {
+                            prestamo = prestamos.get(id) == ELIMINADO ? null : prestamos.get(id);
+                        }
+                        libros.add(new CambioLibro(id, estados.getOrDefault(id, rs.getString(2)), prestamo));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new AlmacenamientoException("No se pudieron leer los libros " + desde + "-" + hasta, e);
+        } finally {
+            pool.devolver(conexion);
+        }
+        return libros;
+    }
+
+    @Override
+    public Prestamo buscarPrestamo(int idLibro) {
+        synchronized (this) {
+            Prestamo pendiente = prestamosPendientes.get(idLibro);
+            if (pendiente != null) {
+                return pendiente == ELIMINADO ? null : pendiente;
+            }
+        }
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_PRESTAMO)) {
+                ps.setInt(1, idLibro);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    return new Prestamo(idLibro, rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate(), rs.getInt(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw new AlmacenamientoException("No se pudo consultar el préstamo " + idLibro, e);
+        } finally {
+            pool.devolver(conexion);
+        }
+    }
+
+    @Override
+    public boolean registrarPrestamo(Prestamo prestamo) {
+        synchronized (this) {
+            prestamosPendientes.put(prestamo.getIdLibro(), prestamo);
+        }
+        volcarSiInmediato();
+        return true;
+    }
+
+    @Override
+    public boolean actualizarPrestamo(int idLibro, LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas) {
+        Prestamo actual = buscarPrestamo(idLibro);
+        if (actual == null) {
+            return false;
+        }
+        synchronized (this) {
+            prestamosPendientes.put(idLibro, actual.renovado(nuevaFechaDevolucion, nuevasVecesPrestadas));
+        }
+        volcarSiInmediato();
+        return true;
+    }
+
+    @Override
+    public boolean eliminarPrestamo(int idLibro) {
+        if (buscarPrestamo(idLibro) == null) {
+            return false;
+        }
+        synchronized (this) {
+            prestamosPendientes.put(idLibro, ELIMINADO);
+        }
+        volcarSiInmediato();
+        return true;
+    }
+
+    // Usa el índice sobre fecha_devolucion; los préstamos aún no volcados se combinan encima
+    @Override
+    public List<Prestamo> prestamosVencidos(LocalDate hoy, int limite) {
+        Map<Integer, Prestamo> pendientes;
+        synchronized (this) {
+            pendientes = new LinkedHashMap<>(prestamosPendientes);
+        }
+        List<Prestamo> resultado = new ArrayList<>();
+        Connection conexion = null;
+        try {
+            conexion = pool.obtener();
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_VENCIDOS)) {
+                ps.setDate(1, Date.valueOf(hoy));
+                ps.setInt(2, limite + pendientes.size());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        if (!pendientes.containsKey(id)) {
+                            resultado.add(new Prestamo(id, rs.getDate(2).toLocalDate(), rs.getDate(3).toLocalDate(), rs.getInt(4)));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new AlmacenamientoException("No se pudieron consultar los préstamos vencidos", e);
+        } finally {
+            pool.devolver(conexion);
+        }
+        for (Prestamo p : pendientes.values()) {
+            if (p != ELIMINADO && p.getFechaDevolucion().isBefore(hoy)) {
+                resultado.add(p);
+            }
+        }
+        resultado.sort(Comparator.comparing(Prestamo::getFechaDevolucion).thenComparingInt(Prestamo::getIdLibro));
+        return resultado.size() > limite ? new ArrayList<>(resultado.subList(0, limite)) : resultado;
+    }
+
+    // Escribe los cambios pendientes como lotes JDBC en una sola transacción
+    @Override
+    public void volcar() throws IOException {
+        synchronized (bloqueoVolcado) {
+            Map<Integer, String> estados;
+            Map<Integer, Prestamo> prestamos;
+            synchronized (this) {
+                if (estadosPendientes.isEmpty() && prestamosPendientes.isEmpty()) {
+                    return;
+                }
+                estados = new LinkedHashMap<>(estadosPendientes);
+                prestamos = new LinkedHashMap<>(prestamosPendientes);
+            }
+
+            Connection conexion = null;
+            try {
+                conexion = pool.obtener();
+                conexion.setAutoCommit(false);
+                try (PreparedStatement psEstado = conexion.prepareStatement(SQL_ACTUALIZAR_ESTADO);
+                     PreparedStatement psGuardar = conexion.prepareStatement(SQL_GUARDAR_PRESTAMO);
+                     PreparedStatement psEliminar = conexion.prepareStatement(SQL_ELIMINAR_PRESTAMO)) {
+                    for (Map.Entry<Integer, String> e : estados.entrySet()) {
+                        psEstado.setString(1, e.getValue());
+                        psEstado.setInt(2, e.getKey());
+                        psEstado.addBatch();
+                    }
+                    for (Map.Entry<Integer, Prestamo> e : prestamos.entrySet()) {
+                        Prestamo p = e.getValue();
+                        if (p == ELIMINADO) {
+                            psEliminar.setInt(1, e.getKey());
+                            psEliminar.addBatch();
+                        } else {
+                            psGuardar.setInt(1, p.getIdLibro());
+                            psGuardar.setDate(2, Date.valueOf(p.getFechaPrestamo()));
+                            psGuardar.setDate(3, Date.valueOf(p.getFechaDevolucion()));
+                            psGuardar.setInt(4, p.getVecesPrestadas());
+                            psGuardar.addBatch();
+                        }
+                    }
+                    psEstado.executeBatch();
+                    psEliminar.executeBatch();
+                    psGuardar.executeBatch();
+                }
+                conexion.commit();
+            } catch (SQLException e) {
+                deshacer(conexion);
+                // Se descarta lo no confirmado, igual que los diarios de archivos recortan su cola; de ahí
+                // en más CommitGrupal no vuelca nada y GA2 no atiende solicitudes hasta reiniciar
+                quitarPendientes(estados, prestamos);
+                throw new IOException("No se pudo escribir el lote en la base de datos: " + e.getMessage(), e);
+            } finally {
+                restaurarAutoCommit(conexion);
+                pool.devolver(conexion);
+            }
+            quitarPendientes(estados, prestamos);
+        }
+    }
+
+    // Quita de la capa pendiente solo lo que no volvió a cambiar mientras se escribía
+    private synchronized void quitarPendientes(Map<Integer, String> estados, Map<Integer, Prestamo> prestamos) {
+        for (Map.Entry<Integer, String> e : estados.entrySet()) {
+            estadosPendientes.remove(e.getKey(), e.getValue());
+        }
+        for (Map.Entry<Integer, Prestamo> e : prestamos.entrySet()) {
+            prestamosPendientes.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void cerrar() {
+        try {
+            volcar();
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al volcar cambios al cerrar: " + e.getMessage());
+        }
+        pool.cerrar();
+    }
+
+    private void volcarSiInmediato() {
+        if (escrituraDiferida) {
+            return;
+        }
+        try {
+            volcar();
+        } catch (IOException e) {
+            throw new AlmacenamientoException(e.getMessage(), e);
+        }
+    }
+
+    private static void deshacer(Connection conexion) {
+        if (conexion == null) {
+            return;
+        }
+        try {
+            conexion.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static void restaurarAutoCommit(Connection conexion) {
+        if (conexion == null) {
+            return;
+        }
+        try {
+            conexion.setAutoCommit(true);
+        } catch (SQLException ignored) {
+        }
+    }
+
+    // Importa DB.txt y Prestamos.txt a la base configurada con "ga2.jdbc.*" usando lotes JDBC
+    public static void main(String[] args) {
+        if (args.length != 3 || !args[0].equals("importar")) {
+            System.out.println("Uso: AlmacenamientoJdbc importar <DB.txt> <Prestamos.txt>");
+            return;
+        }
+        AlmacenamientoJdbc almacenamiento = desdePropiedades("ga2", "Importador");
+        if (!almacenamiento.asegurarCargado()) {
+            return;
+        }
+        Connection conexion = null;
+        try {
+            conexion = almacenamiento.pool.obtener();
+            conexion.setAutoCommit(false);
+            int libros = 0;
+            int prestamos = 0;
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_INSERTAR_LIBRO);
+                 BufferedReader br = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                String linea;
+                while ((linea = br.readLine()) != null) {
+                    String[] partes = linea.split(",", 4);
+                    int id = partes.length == 4 ? CatalogoMemoria.parsearId(partes[0]) : -1;
+                    if (id < 0) {
+                        continue;
+                    }
+                    ps.setInt(1, id);
+                    ps.setString(2, partes[1].trim());
+                    ps.setString(3, partes[2].trim());
+                    ps.setString(4, partes[3].trim());
+                    ps.addBatch();
+                    if (++libros % 1000 == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_GUARDAR_PRESTAMO);
+                 BufferedReader br = Files.newBufferedReader(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                String linea;
+                while ((linea = br.readLine()) != null) {
+                    Prestamo p = Prestamo.desdeLinea(linea);
+                    if (p == null) {
+                        continue;
+                    }
+                    ps.setInt(1, p.getIdLibro());
+                    ps.setDate(2, Date.valueOf(p.getFechaPrestamo()));
+                    ps.setDate(3, Date.valueOf(p.getFechaDevolucion()));
+                    ps.setInt(4, p.getVecesPrestadas());
+                    ps.addBatch();
+                    if (++prestamos % 1000 == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            conexion.commit();
+            System.out.println(" Importados " + libros + " libros y " + prestamos + " préstamos");
+        } catch (SQLException | IOException e) {
+            deshacer(conexion);
+            System.err.println(" Error al importar: " + e.getMessage());
+        } finally {
+            restaurarAutoCommit(conexion);
+            almacenamiento.pool.devolver(conexion);
+            almacenamiento.cerrar();
+        }
+    }
+}
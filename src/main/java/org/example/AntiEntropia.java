@@ -0,0 +1,167 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+// Lado de GA de la antientropía con un shard de GA2: compara el estado de los libros y préstamos del
+// rango del shard con el de GA2 por resúmenes de hash (ver ResumenRangos) y repara solo los libros que
+// difieren, sin copiar archivos enteros:
+//   "RESUMEN_RANGO:DESDE:HASTA" -> "RESUMEN:h0,h1,..."  se compara con el resumen local y se sigue
+//                                                        solo por los subrangos distintos
+//   "ESTADO_RANGO:DESDE:HASTA"  -> "ESTADO:SEQ|..."      en las hojas: GA copia el estado de GA2 (CambioLibro)
+// El estado de una hoja se aplica solo si el flujo de cambios ya llegó hasta SEQ; si no, la diferencia
+// es un cambio en camino y la hoja se deja para la próxima pasada. Una solicitud en vuelo a la vez y
+// recorrido en profundidad: la cola tiene a lo sumo PARTES rangos por nivel.
+// Los libros que faltan de un lado no se pueden crear con CambioLibro (no lleva título ni autor): se
+// informan para copiarlos a mano.
+// No es thread-safe: lo usa solo el hilo de GA. El resumen local de cada rango (que recorre todos sus
+// libros) lo calcula GA en otro hilo y lo pasa a recibirResumen.
+public class AntiEntropia {
+
+    private final String nombre;
+    private final int desde;
+    private final int hasta;
+
+    private final ArrayDeque<int[]> rangos = new ArrayDeque<>();
+    private boolean enCurso;
+    private long inicio;
+    private int solicitudes;
+    private int hojas;
+    private int reparados;
+    private int faltantes;
+    private int postergadas;
+
+    public AntiEntropia(String nombre, int desde, int hasta) {
+        this.nombre = nombre;
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+
+    public boolean enProgreso() {
+        return enCurso || !rangos.isEmpty();
+    }
+
+    // Empieza una pasada sobre todo el rango del shard; false si ya hay una en progreso
+    public boolean iniciar() {
+        if (enProgreso()) {
+            return false;
+        }
+        rangos.push(new int[]{desde, hasta});
+        inicio = System.currentTimeMillis();
+        solicitudes = 0;
+        hojas = 0;
+        reparados = 0;
+        faltantes = 0;
+        postergadas = 0;
+        return true;
+    }
+
+    // Próxima solicitud a enviar a GA2, o null si hay una en vuelo o la pasada terminó
+    public String siguienteSolicitud() {
+        if (enCurso || rangos.isEmpty()) {
+            return null;
+        }
+        int[] rango = rangos.pop();
+        enCurso = true;
+        solicitudes++;
+        return (ResumenRangos.esHoja(rango[0], rango[1]) ? "ESTADO_RANGO:" : "RESUMEN_RANGO:") + rango[0] + ":" + rango[1];
+    }
+
+    // Respuesta a RESUMEN_RANGO (null si GA2 no respondió) y resumen local del mismo rango
+    // (ResumenRangos.resumir; null si no se pudo calcular)
+    public void recibirResumen(String solicitud, String respuesta, long[] propio) {
+        enCurso = false;
+        int[] rango = rangoDe(solicitud, "RESUMEN_RANGO:");
+        long[] remoto = respuesta != null && respuesta.startsWith("RESUMEN:")
+                ? ResumenRangos.desdeTexto(respuesta.substring("RESUMEN:".length())) : null;
+        if (rango == null || remoto == null || propio == null) {
+            abortar(propio == null ? "error al calcular el resumen local" : respuesta);
+            return;
+        }
+        // En orden inverso para que la pila recorra los subrangos de menor a mayor
+        for (int i = ResumenRangos.PARTES - 1; i >= 0; i--) {
+            int[] sub = ResumenRangos.subrango(rango[0], rango[1], i);
+            if (remoto[i] != propio[i] && sub[0] <= sub[1]) {
+                rangos.push(sub);
+            }
+        }
+        terminarSiCorresponde();
+    }
+
+    // Respuesta a ESTADO_RANGO (null si GA2 no respondió); "aplicadoHasta" es lo aplicado del flujo del shard
+    public void recibirEstado(String solicitud, String respuesta, Almacenamiento local, long aplicadoHasta) {
+        enCurso = false;
+        int[] rango = rangoDe(solicitud, "ESTADO_RANGO:");
+        if (rango == null || respuesta == null || !respuesta.startsWith("ESTADO:")) {
+            abortar(respuesta);
+            return;
+        }
+        String[] partes = respuesta.substring("ESTADO:".length()).split("\\|");
+        long seq;
+        try {
+            seq = Long.parseLong(partes[0].trim());
+        } catch (NumberFormatException e) {
+            abortar(respuesta);
+            return;
+        }
+        hojas++;
+        if (seq > aplicadoHasta) {
+            postergadas++;
+            terminarSiCorresponde();
+            return;
+        }
+
+        Set<Integer> enGA2 = new HashSet<>();
+        for (int i = 1; i < partes.length; i++) {
+            CambioLibro libro = CambioLibro.desdeTexto(partes[i]);
+            if (libro == null) {
+                continue;
+            }
+            enGA2.add(libro.getIdLibro());
+            if (local.obtenerEstadoLibro(libro.getIdLibro()) == null) {
+                System.out.println("GA:  ⚠ Antientropía: el libro " + libro.getIdLibro() + " de " + nombre + " no existe en GA");
+                faltantes++;
+            } else if (libro.aplicar(local)) {
+                System.out.println("GA:  Antientropía: libro reparado con el estado de " + nombre + ": " + libro);
+                reparados++;
+            }
+        }
+        for (int id : local.idsLibros(rango[0], rango[1])) {
+            if (!enGA2.contains(id)) {
+                System.out.println("GA:  ⚠ Antientropía: el libro " + id + " no existe en " + nombre);
+                faltantes++;
+            }
+        }
+        terminarSiCorresponde();
+    }
+
+    private void abortar(String respuesta) {
+        System.out.println("GA:  Antientropía con " + nombre + " interrumpida (" + (respuesta == null
+                ? "sin respuesta" : respuesta) + "), se reintenta en la próxima pasada");
+        rangos.clear();
+    }
+
+    private void terminarSiCorresponde() {
+        if (enProgreso()) {
+            return;
+        }
+        if (hojas == 0) {
+            System.out.println("GA:  Antientropía con " + nombre + ": sin diferencias (" + solicitudes + " solicitudes, "
+                    + (System.currentTimeMillis() - inicio) + " ms)");
+            return;
+        }
+        System.out.println("GA:  Antientropía con " + nombre + ": " + hojas + " rangos distintos, " + reparados
+                + " libros reparados, " + faltantes + " faltantes, " + postergadas + " rangos con cambios en camino ("
+                + solicitudes + " solicitudes, " + (System.currentTimeMillis() - inicio) + " ms)");
+    }
+
+    static int[] rangoDe(String solicitud, String prefijo) {
+        String[] partes = solicitud.substring(prefijo.length()).split(":");
+        try {
+            return new int[]{Integer.parseInt(partes[0]), Integer.parseInt(partes[1])};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bloqueos por franjas indexados por ID de libro: las operaciones sobre el mismo libro se
+// serializan y las de libros distintos (en franjas distintas) avanzan en paralelo.
+// Cada operación toma un solo bloqueo; un lote toma varios, siempre en orden de franja,
+// así que no hay riesgo de interbloqueo entre franjas.
+public class BloqueosPorLibro {
+
+    private final ReentrantLock[] franjas;
+    private final int mascara;
+
+    // "cantidad" se redondea a la potencia de dos siguiente
+    public BloqueosPorLibro(int cantidad) {
+        int n = 1;
+        while (n < cantidad) {
+            n <<= 1;
+        }
+        franjas = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        mascara = n - 1;
+    }
+
+    public ReentrantLock bloqueoPara(int idLibro) {
+        return franjas[franja(idLibro)];
+    }
+
+    // Bloqueos de todas las franjas de los libros dados, sin repetir y en orden de franja
+    public List<ReentrantLock> bloqueosPara(int[] idsLibro) {
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (int id : idsLibro) {
+            indices.add(franja(id));
+        }
+        List<ReentrantLock> resultado = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            resultado.add(franjas[i]);
+        }
+        return resultado;
+    }
+
+    private int franja(int idLibro) {
+        int h = idLibro * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mascara;
+    }
+}
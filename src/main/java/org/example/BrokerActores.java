@@ -0,0 +1,230 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Broker del GC para un grupo de actores de préstamo (AcotrPresamo), en cualquier cantidad de hosts:
+//  - Los trabajadores del GC envían cada préstamo por un REQ a DIRECCION_TRABAJADORES, como antes lo
+//    enviaban directo al actor.
+//  - Los actores se conectan con DEALER a PUERTO_ACTORES y se registran con "LISTO:N", donde N es
+//    cuántos préstamos pueden tener en vuelo. Cada préstamo asignado gasta un crédito y cada respuesta
+//    lo devuelve. El siguiente préstamo va al actor con crédito que lleva más tiempo sin recibir uno.
+//  - Latidos: el broker envía "LATIDO" a cada actor cada INTERVALO_LATIDO_MS y los actores hacen lo
+//    mismo. Un actor del que no llega nada en LATIDOS_PERDIDOS intervalos se da por muerto: sale del
+//    reparto y sus préstamos en vuelo se responden con error (no se reintentan en otro actor porque la
+//    consulta a GA pudo haber prestado el libro). Un actor que deja de oír al broker se reconecta.
+// Mensajes con el actor: [identidad del trabajador][""][solicitud] hacia el actor, lo mismo con la
+// respuesta de vuelta; "LISTO:N" y "LATIDO" van en un solo frame.
+public class BrokerActores implements Runnable {
+
+    public static final String DIRECCION_TRABAJADORES = "inproc://gc-actores";
+    public static final String PUERTO_ACTORES = System.getProperty("gc.puertoActores", "tcp://*:5556");
+
+    static final long INTERVALO_LATIDO_MS = Long.getLong("actores.latidoMs", 1000);
+    static final int LATIDOS_PERDIDOS = 3;
+
+    private final ZMQ.Context context;
+
+    private final Map<ByteBuffer, Actor> actores = new HashMap<>();
+    // Actores con crédito; el primero es el que lleva más tiempo sin recibir un préstamo
+    private final ArrayDeque<Actor> disponibles = new ArrayDeque<>();
+    // Préstamos en vuelo por identidad del trabajador (un REQ tiene a lo sumo uno)
+    private final Map<ByteBuffer, Actor> enCurso = new HashMap<>();
+
+    private ZMQ.Socket trabajadores; // ROUTER inproc: trabajadores del GC
+    private ZMQ.Socket socketActores; // ROUTER tcp: actores de préstamo
+    private long proximoLatido;
+
+    public BrokerActores(ZMQ.Context context) {
+        this.context = context;
+    }
+
+    // Crea los sockets; llamar antes de arrancar el hilo y de que los trabajadores se conecten
+    // a DIRECCION_TRABAJADORES (inproc exige que el bind ocurra primero)
+    public void iniciar() {
+        trabajadores = context.socket(ZMQ.ROUTER);
+        trabajadores.bind(DIRECCION_TRABAJADORES);
+        socketActores = context.socket(ZMQ.ROUTER);
+        socketActores.bind(PUERTO_ACTORES);
+        System.out.println(" Esperando actores de préstamo en " + PUERTO_ACTORES + "...");
+    }
+
+    @Override
+    public void run() {
+        // Sin actores con crédito solo se escucha a los actores: los préstamos esperan en la cola del ROUTER
+        ZMQ.Poller todos = context.poller(2);
+        todos.register(socketActores, ZMQ.Poller.POLLIN);
+        todos.register(trabajadores, ZMQ.Poller.POLLIN);
+        ZMQ.Poller soloActores = context.poller(1);
+        soloActores.register(socketActores, ZMQ.Poller.POLLIN);
+        proximoLatido = System.currentTimeMillis() + INTERVALO_LATIDO_MS;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean aceptando = !disponibles.isEmpty();
+                ZMQ.Poller poller = aceptando ? todos : soloActores;
+                poller.poll(Math.max(1, proximoLatido - System.currentTimeMillis()));
+                if (poller.pollin(0)) {
+                    recibirActor();
+                }
+                if (aceptando && poller.pollin(1)) {
+                    asignarPrestamo();
+                }
+                if (System.currentTimeMillis() >= proximoLatido) {
+                    enviarLatidos();
+                    descartarMuertos();
+                    proximoLatido = System.currentTimeMillis() + INTERVALO_LATIDO_MS;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Al cerrar el contexto los sockets dejan de funcionar
+            System.out.println(" Broker de actores detenido: " + e.getMessage());
+        } finally {
+            trabajadores.close();
+            socketActores.close();
+        }
+    }
+
+    // "LISTO:N", "LATIDO" o [trabajador][""][respuesta] de un actor
+    private void recibirActor() {
+        byte[] identidad = socketActores.recv(0);
+        List<byte[]> frames = new ArrayList<>(3);
+        while (socketActores.hasReceiveMore()) {
+            frames.add(socketActores.recv(0));
+        }
+        Actor actor = actores.get(ByteBuffer.wrap(identidad));
+        if (actor != null) {
+            actor.ultimaSenal = System.currentTimeMillis();
+        }
+
+        if (frames.size() == 1) {
+            String mensaje = new String(frames.get(0), StandardCharsets.UTF_8);
+            if (mensaje.startsWith("LISTO:")) {
+                registrar(identidad, actor, mensaje);
+            } else if (!mensaje.equals("LATIDO")) {
+                System.out.println("️ Broker de actores: Mensaje de actor no reconocido: " + mensaje);
+            }
+            // Un LATIDO de un actor desconocido (p. ej. tras reiniciar el GC) se ignora: sin latidos del
+            // broker, el actor se reconecta y vuelve a registrarse
+            return;
+        }
+        if (frames.size() < 3) {
+            return;
+        }
+
+        byte[] trabajador = frames.get(0);
+        Actor asignado = enCurso.remove(ByteBuffer.wrap(trabajador));
+        if (asignado == null) {
+            // El actor se dio por muerto y el trabajador ya recibió un error
+            System.out.println(" Respuesta tardía de un actor de préstamo descartada");
+            return;
+        }
+        trabajadores.sendMore(trabajador);
+        trabajadores.sendMore("");
+        trabajadores.send(frames.get(2), 0);
+        if (actores.get(asignado.clave) == asignado) {
+            devolverCredito(asignado);
+        }
+    }
+
+    private void registrar(byte[] identidad, Actor actor, String mensaje) {
+        int creditos;
+        try {
+            creditos = Integer.parseInt(mensaje.substring("LISTO:".length()).trim());
+        } catch (NumberFormatException e) {
+            System.out.println("️ Broker de actores: Registro inválido: " + mensaje);
+            return;
+        }
+        if (actor == null) {
+            actor = new Actor(identidad);
+            actores.put(actor.clave, actor);
+        }
+        disponibles.remove(actor);
+        actor.creditos = Math.max(0, creditos - actor.enVuelo);
+        if (actor.creditos > 0) {
+            disponibles.addLast(actor);
+        }
+        System.out.println(" Actor de préstamo registrado (" + creditos + " en vuelo como máximo, "
+                + actores.size() + " actores activos)");
+    }
+
+    // Un préstamo de un trabajador va al actor disponible que espera hace más tiempo
+    private void asignarPrestamo() {
+        byte[] trabajador = trabajadores.recv(0);
+        trabajadores.recv(0); // Delimitador vacío del REQ
+        byte[] solicitud = trabajadores.recv(0);
+
+        Actor actor = disponibles.pollFirst();
+        actor.creditos--;
+        actor.enVuelo++;
+        if (actor.creditos > 0) {
+            disponibles.addLast(actor);
+        }
+        enCurso.put(ByteBuffer.wrap(trabajador), actor);
+        socketActores.sendMore(actor.identidad);
+        socketActores.sendMore(trabajador);
+        socketActores.sendMore("");
+        socketActores.send(solicitud, 0);
+    }
+
+    private void devolverCredito(Actor actor) {
+        actor.enVuelo--;
+        if (actor.creditos++ == 0) {
+            disponibles.addLast(actor);
+        }
+    }
+
+    private void enviarLatidos() {
+        for (Actor actor : actores.values()) {
+            socketActores.sendMore(actor.identidad);
+            socketActores.send("LATIDO", 0);
+        }
+    }
+
+    private void descartarMuertos() {
+        long limite = System.currentTimeMillis() - INTERVALO_LATIDO_MS * LATIDOS_PERDIDOS;
+        Iterator<Actor> it = actores.values().iterator();
+        while (it.hasNext()) {
+            Actor actor = it.next();
+            if (actor.ultimaSenal >= limite) {
+                continue;
+            }
+            it.remove();
+            disponibles.remove(actor);
+            System.out.println(" ⚠ Actor de préstamo sin latidos, se descarta (" + actor.enVuelo
+                    + " préstamos en vuelo, " + actores.size() + " actores activos)");
+
+            Iterator<Map.Entry<ByteBuffer, Actor>> prestamos = enCurso.entrySet().iterator();
+            while (prestamos.hasNext()) {
+                Map.Entry<ByteBuffer, Actor> prestamo = prestamos.next();
+                if (prestamo.getValue() != actor) {
+                    continue;
+                }
+                prestamos.remove();
+                trabajadores.sendMore(prestamo.getKey().array());
+                trabajadores.sendMore("");
+                trabajadores.send("Error: El actor de préstamo dejó de responder", 0);
+            }
+        }
+    }
+
+    private static final class Actor {
+        final byte[] identidad;
+        final ByteBuffer clave;
+        int creditos;
+        int enVuelo;
+        long ultimaSenal = System.currentTimeMillis();
+
+        Actor(byte[] identidad) {
+            this.identidad = identidad;
+            this.clave = ByteBuffer.wrap(identidad);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Resultados recientes de GA2 por clave de idempotencia (ver ClaveIdempotencia), acotados por tamaño y
+// por tiempo: se descarta la entrada más vieja al pasar de "maximo" y las que superan "ttlMs".
+// El TTL tiene que cubrir con margen el tiempo en que un cliente puede reintentar (timeouts del actor).
+// No se guardan errores: un reintento después de un error se vuelve a ejecutar.
+// La consulta y el guardado se hacen con el bloqueo del libro tomado, así que dos copias de la misma
+// operación quedan en serie: la segunda ve el resultado de la primera. Eso pasa antes de que el commit
+// en grupo confirme la escritura; si el commit falla, GA2 quita la clave (el cliente recibió un error).
+public class CacheIdempotencia {
+
+    private final int maximo;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>();
+
+    public CacheIdempotencia(int maximo, long ttlMs) {
+        this.maximo = maximo;
+        this.ttlMs = ttlMs;
+    }
+
+    public static CacheIdempotencia desdePropiedades() {
+        return new CacheIdempotencia(Integer.getInteger("ga2.idempotencia.maximo", 100000),
+                Long.getLong("ga2.idempotencia.ttlMs", 600000));
+    }
+
+    // Resultado original de la clave, o null si no está (o la clave es null)
+    public synchronized String buscar(String clave) {
+        if (clave == null) {
+            return null;
+        }
+        Entrada entrada = entradas.get(clave);
+        if (entrada == null || entrada.vence <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entrada.respuesta;
+    }
+
+    public synchronized void guardar(String clave, String respuesta) {
+        if (clave == null || respuesta == null || respuesta.startsWith("Error")) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        entradas.remove(clave);
+        entradas.put(clave, new Entrada(respuesta, ahora + ttlMs));
+        // Orden de inserción = orden de vencimiento
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (it.hasNext()) {
+            Entrada masVieja = it.next().getValue();
+            if (entradas.size() <= maximo && masVieja.vence > ahora) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    public synchronized void quitar(String clave) {
+        if (clave != null) {
+            entradas.remove(clave);
+        }
+    }
+
+    public synchronized int tamano() {
+        return entradas.size();
+    }
+
+    private static final class Entrada {
+        final String respuesta;
+        final long vence;
+
+        Entrada(String respuesta, long vence) {
+            this.respuesta = respuesta;
+            this.vence = vence;
+        }
+    }
+}
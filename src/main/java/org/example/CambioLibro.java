@@ -0,0 +1,101 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+// Estado de un libro después de una operación en GA2, para que GA lo copie en vez de repetir la operación:
+//   "ID=<id>;<estado>;<fechaPrestamo>;<fechaDevolucion>;<vecesPrestadas>"   (libro con préstamo activo)
+//   "ID=<id>;<estado>"                                                     (sin préstamo)
+// Como lleva el resultado y no la operación, aplicarlo es determinista (las fechas son las de GA2, no
+// LocalDate.now() en GA) e idempotente: aplicarlo dos veces deja el mismo estado.
+public final class CambioLibro {
+
+    private final int idLibro;
+    private final String estado;
+    private final Prestamo prestamo; // null si el libro quedó sin préstamo
+
+    public CambioLibro(int idLibro, String estado, Prestamo prestamo) {
+        this.idLibro = idLibro;
+        this.estado = estado;
+        this.prestamo = prestamo;
+    }
+
+    // Estado actual del libro en el almacenamiento (llamar con el bloqueo del libro tomado); null si no existe
+    public static CambioLibro capturar(Almacenamiento almacenamiento, int idLibro) {
+        String estado = almacenamiento.obtenerEstadoLibro(idLibro);
+        if (estado == null) {
+            return null;
+        }
+        return new CambioLibro(idLibro, estado, almacenamiento.buscarPrestamo(idLibro));
+    }
+
+    public int getIdLibro() {
+        return idLibro;
+    }
+
+    public String aTexto() {
+        String texto = "ID=" + idLibro + ";" + estado;
+        if (prestamo != null) {
+            texto += ";" + prestamo.getFechaPrestamo() + ";" + prestamo.getFechaDevolucion() + ";" + prestamo.getVecesPrestadas();
+        }
+        return texto;
+    }
+
+    // Parsea un registro; retorna null si no tiene este formato (p. ej. el "ID=<id>" de versiones anteriores)
+    public static CambioLibro desdeTexto(String texto) {
+        if (texto == null || !texto.startsWith("ID=")) {
+            return null;
+        }
+        String[] partes = texto.substring("ID=".length()).split(";");
+        if (partes.length != 2 && partes.length != 5) {
+            return null;
+        }
+        try {
+            int id = CatalogoMemoria.parsearId(partes[0]);
+            if (id < 0 || partes[1].trim().isEmpty()) {
+                return null;
+            }
+            Prestamo prestamo = partes.length == 5 ? new Prestamo(id,
+                    LocalDate.parse(partes[2].trim()),
+                    LocalDate.parse(partes[3].trim()),
+                    Integer.parseInt(partes[4].trim())) : null;
+            return new CambioLibro(id, partes[1].trim(), prestamo);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Deja el libro en este estado; solo escribe lo que difiere. Retorna true si cambió algo.
+    public boolean aplicar(Almacenamiento almacenamiento) {
+        boolean cambio = false;
+        String estadoActual = almacenamiento.obtenerEstadoLibro(idLibro);
+        if (estadoActual == null) {
+            return false;
+        }
+        if (!estadoActual.equals(estado)) {
+            cambio = almacenamiento.actualizarEstadoLibro(idLibro, estado);
+        }
+
+        Prestamo actual = almacenamiento.buscarPrestamo(idLibro);
+        if (prestamo == null) {
+            if (actual != null) {
+                cambio |= almacenamiento.eliminarPrestamo(idLibro);
+            }
+        } else if (actual == null) {
+            cambio |= almacenamiento.registrarPrestamo(prestamo);
+        } else if (!actual.getFechaPrestamo().equals(prestamo.getFechaPrestamo())) {
+            // Otro préstamo (el anterior se devolvió y el libro se volvió a prestar)
+            almacenamiento.eliminarPrestamo(idLibro);
+            cambio |= almacenamiento.registrarPrestamo(prestamo);
+        } else if (!Objects.equals(actual.getFechaDevolucion(), prestamo.getFechaDevolucion())
+                || actual.getVecesPrestadas() != prestamo.getVecesPrestadas()) {
+            cambio |= almacenamiento.actualizarPrestamo(idLibro, prestamo.getFechaDevolucion(), prestamo.getVecesPrestadas());
+        }
+        return cambio;
+    }
+
+    @Override
+    public String toString() {
+        return aTexto();
+    }
+}
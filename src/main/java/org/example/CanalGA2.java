@@ -0,0 +1,171 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Canal asíncrono de GA hacia el ROUTER de GA2 sobre un DEALER: cada solicitud sale como
+// [idCorrelacion][""][solicitud] y GA2 devuelve el mismo sobre con la respuesta, así que puede haber
+// muchas solicitudes en vuelo y las respuestas se emparejan por ID al llegar.
+// El ID de correlación va como varint; si GA2 acepta la negociación, las operaciones sobre un libro
+// viajan en formato ProtocoloBinario y el resto sigue en texto. Después de la respuesta GA2 puede
+// agregar una trama con el estado resultante de los libros (ver CambioLibro). Una operación del actor
+// lleva además su clave de idempotencia (ver ClaveIdempotencia), que GA2 usa para no repetirla.
+// No es thread-safe: lo usa solo el hilo que hace poll sobre getSocket().
+public class CanalGA2<T> {
+
+    private final ZMQ.Socket dealer;
+    private final long timeoutMs;
+    // Con timeout fijo, el orden de inserción es también el orden de vencimiento
+    private final LinkedHashMap<Long, Pendiente<T>> pendientes = new LinkedHashMap<>();
+    private long siguienteId;
+    private boolean binario;
+
+    public CanalGA2(ZMQ.Context context, String direccion, String identidad, long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        dealer = context.socket(ZMQ.DEALER);
+        dealer.setIdentity(identidad.getBytes(StandardCharsets.UTF_8));
+        dealer.setLinger(0);
+        dealer.connect(direccion);
+    }
+
+    // Pregunta a GA2 si acepta el protocolo binario; mientras no responda se usa texto
+    public void negociarBinario() {
+        enviarTrama(ProtocoloBinario.NEGOCIACION, null, null, null, true);
+    }
+
+    public boolean usaBinario() {
+        return binario;
+    }
+
+    // Para registrarlo en un Poller
+    public ZMQ.Socket getSocket() {
+        return dealer;
+    }
+
+    // Envía sin esperar; "contexto" vuelve junto con la respuesta
+    public void enviar(String solicitud, T contexto) {
+        enviar(solicitud, (String) null, contexto);
+    }
+
+    // Igual, con la clave de idempotencia de la operación (o null)
+    public void enviar(String solicitud, String clave, T contexto) {
+        enviar(solicitud, binario ? ProtocoloBinario.desdeTexto(solicitud) : null, clave, contexto);
+    }
+
+    // Igual, con la trama binaria ya armada (o null); se usa solo si GA2 aceptó el protocolo binario
+    public void enviar(String solicitud, byte[] trama, T contexto) {
+        enviar(solicitud, trama, null, contexto);
+    }
+
+    public void enviar(String solicitud, byte[] trama, String clave, T contexto) {
+        enviarTrama(solicitud, binario ? trama : null, clave, contexto, false);
+    }
+
+    private void enviarTrama(String solicitud, byte[] trama, String clave, T contexto, boolean negociacion) {
+        long id = ++siguienteId;
+        pendientes.put(id, new Pendiente<>(solicitud, contexto, System.currentTimeMillis() + timeoutMs, negociacion));
+        dealer.sendMore(ProtocoloBinario.codificarVarint(id));
+        dealer.sendMore("");
+        if (clave != null) {
+            dealer.send(ClaveIdempotencia.agregar(clave, trama != null ? trama : solicitud.getBytes(StandardCharsets.UTF_8)), 0);
+        } else if (trama != null) {
+            dealer.send(trama, 0);
+        } else {
+            dealer.send(solicitud, 0);
+        }
+    }
+
+    // Lee una respuesta del socket (llamar cuando el poller indica POLLIN). Retorna null si la
+    // respuesta corresponde a una solicitud que ya venció.
+    public Respuesta<T> recibir() {
+        long id = ProtocoloBinario.leerVarint(dealer.recv(0));
+        List<String> tramas = new ArrayList<>(3); // [""][respuesta][cambios]
+        while (dealer.hasReceiveMore()) {
+            tramas.add(dealer.recvStr(0));
+        }
+        String texto = tramas.size() > 1 ? tramas.get(1) : null;
+        String cambios = tramas.size() > 2 ? tramas.get(2) : null;
+        Pendiente<T> pendiente = pendientes.remove(id);
+        if (pendiente == null) {
+            System.out.println("GA:  Respuesta tardía de GA2 descartada (solicitud " + id + ")");
+            return null;
+        }
+        if (pendiente.negociacion) {
+            binario = ProtocoloBinario.ACEPTADO.equals(texto);
+            System.out.println("GA:  Protocolo con GA2: " + (binario ? "binario" : "texto"));
+            return null;
+        }
+        return new Respuesta<>(pendiente.solicitud, texto, cambios, pendiente.contexto);
+    }
+
+    // Quita y retorna las solicitudes sin respuesta dentro del timeout (con texto null)
+    public List<Respuesta<T>> vencidas() {
+        List<Respuesta<T>> resultado = new ArrayList<>();
+        long ahora = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, Pendiente<T>>> it = pendientes.entrySet().iterator();
+        while (it.hasNext()) {
+            Pendiente<T> pendiente = it.next().getValue();
+            if (pendiente.vence > ahora) {
+                break;
+            }
+            it.remove();
+            if (pendiente.negociacion) {
+                System.out.println("GA:  GA2 no respondió la negociación, se usa protocolo de texto");
+                continue;
+            }
+            resultado.add(new Respuesta<>(pendiente.solicitud, null, null, pendiente.contexto));
+        }
+        return resultado;
+    }
+
+    // Tiempo de poll hasta el próximo vencimiento (-1 si no hay nada en vuelo)
+    public long msHastaProximoVencimiento() {
+        if (pendientes.isEmpty()) {
+            return -1;
+        }
+        long vence = pendientes.values().iterator().next().vence;
+        return Math.max(0, vence - System.currentTimeMillis());
+    }
+
+    public int enVuelo() {
+        return pendientes.size();
+    }
+
+    public void cerrar() {
+        dealer.close();
+    }
+
+    public static final class Respuesta<T> {
+        public final String solicitud;
+        public final String texto; // null si GA2 no respondió a tiempo
+        public final String cambios; // Registros de CambioLibro separados por "|" (null si GA2 no los envió)
+        public final T contexto;
+
+        Respuesta(String solicitud, String texto, String cambios, T contexto) {
+            this.solicitud = solicitud;
+            this.texto = texto;
+            this.cambios = cambios;
+            this.contexto = contexto;
+        }
+    }
+
+    private static final class Pendiente<T> {
+        final String solicitud;
+        final T contexto;
+        final long vence;
+        final boolean negociacion;
+
+        Pendiente(String solicitud, T contexto, long vence, boolean negociacion) {
+            this.solicitud = solicitud;
+            this.contexto = contexto;
+            this.vence = vence;
+            this.negociacion = negociacion;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Catálogo en formato binario de registros de tamaño fijo direccionados por ID.
+// El archivo se abre con FileChannel y se mapea en memoria, así un cambio de estado es
+// la escritura de un solo byte en la posición del registro.
+//
+// Cabecera (64 bytes): MAGICO(4) VERSION(2) TAM_REGISTRO(2) ID_BASE(4) CAPACIDAD(4) relleno
+// Registro (256 bytes): ID(4) ESTADO(1) LARGO_TITULO(1) TITULO(150) LARGO_AUTOR(1) AUTOR(99)
+public class CatalogoBinario implements Closeable {
+
+    private static final int MAGICO = 0x4249424C; // "BIBL"
+    private static final short VERSION = 1;
+    static final int CABECERA = 64;
+    static final int TAM_REGISTRO = 256;
+
+    private static final int POS_ESTADO = 4;
+    private static final int POS_TITULO = 5;
+    private static final int MAX_TITULO = 150;
+    private static final int POS_AUTOR = POS_TITULO + 1 + MAX_TITULO;
+    private static final int MAX_AUTOR = TAM_REGISTRO - POS_AUTOR - 1;
+
+    private static final byte ESTADO_DISPONIBLE = 'D';
+    private static final byte ESTADO_PRESTADO = 'P';
+
+    // Un MappedByteBuffer no puede pasar de 2 GB: se mapea por segmentos de registros
+    private static final int REGISTROS_POR_SEGMENTO = 1 << 20;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer[] segmentos;
+    private final int idBase;
+    private final int capacidad;
+
+    private CatalogoBinario(FileChannel canal, int idBase, int capacidad) throws IOException {
+        this.canal = canal;
+        this.idBase = idBase;
+        this.capacidad = capacidad;
+        int cantidadSegmentos = (capacidad + REGISTROS_POR_SEGMENTO - 1) / REGISTROS_POR_SEGMENTO;
+        this.segmentos = new MappedByteBuffer[cantidadSegmentos];
+        for (int s = 0; s < cantidadSegmentos; s++) {
+            long inicio = CABECERA + (long) s * REGISTROS_POR_SEGMENTO * TAM_REGISTRO;
+            int registros = Math.min(REGISTROS_POR_SEGMENTO, capacidad - s * REGISTROS_POR_SEGMENTO);
+            segmentos[s] = canal.map(FileChannel.MapMode.READ_WRITE, inicio, (long) registros * TAM_REGISTRO);
+        }
+    }
+
+    // Abre un catálogo binario existente
+    public static CatalogoBinario abrir(String ruta) throws IOException {
+        FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            canal.read(cabecera, 0);
+            cabecera.flip();
+            if (cabecera.remaining() < 16 || cabecera.getInt() != MAGICO) {
+                throw new IOException("No es un catálogo binario válido: " + ruta);
+            }
+            short version = cabecera.getShort();
+            short tamRegistro = cabecera.getShort();
+            if (version != VERSION || tamRegistro != TAM_REGISTRO) {
+                throw new IOException("Versión de catálogo binario no soportada: " + version + "/" + tamRegistro);
+            }
+            int idBase = cabecera.getInt();
+            int capacidad = cabecera.getInt();
+            return new CatalogoBinario(canal, idBase, capacidad);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    // Crea un catálogo binario vacío con espacio para los IDs [idMinimo, idMaximo]
+    public static CatalogoBinario crear(String ruta, int idMinimo, int idMaximo) throws IOException {
+        Path path = Paths.get(ruta);
+        FileChannel canal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        int capacidad = idMaximo >= idMinimo ? idMaximo - idMinimo + 1 : 0;
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+        cabecera.putInt(MAGICO).putShort(VERSION).putShort((short) TAM_REGISTRO).putInt(idMinimo).putInt(capacidad);
+        cabecera.position(CABECERA).flip();
+        canal.write(cabecera, 0);
+        // Extender el archivo al tamaño final (los registros vacíos quedan con ID 0)
+        long tamano = CABECERA + (long) capacidad * TAM_REGISTRO;
+        if (tamano > CABECERA) {
+            canal.write(ByteBuffer.wrap(new byte[1]), tamano - 1);
+        }
+        return new CatalogoBinario(canal, idMinimo, capacidad);
+    }
+
+    public int getIdBase() {
+        return idBase;
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    // Indica si hay un libro con ese ID
+    public boolean existe(int idLibro) {
+        int indice = idLibro - idBase;
+        if (indice < 0 || indice >= capacidad) {
+            return false;
+        }
+        return segmento(indice).getInt(posicion(indice)) == idLibro;
+    }
+
+    // ID guardado en el registro número "indice" (0 si la ranura está vacía)
+    public int idEn(int indice) {
+        return segmento(indice).getInt(posicion(indice));
+    }
+
+    public String obtenerEstado(int idLibro) {
+        if (!existe(idLibro)) {
+            return null;
+        }
+        int indice = idLibro - idBase;
+        return estadoComoTexto(segmento(indice).get(posicion(indice) + POS_ESTADO));
+    }
+
+    public String obtenerTitulo(int idLibro) {
+        return existe(idLibro) ? leerTexto(idLibro - idBase, POS_TITULO) : null;
+    }
+
+    public String obtenerAutor(int idLibro) {
+        return existe(idLibro) ? leerTexto(idLibro - idBase, POS_AUTOR) : null;
+    }
+
+    // Cambia el estado con una sola escritura de un byte en la posición del registro
+    public boolean actualizarEstado(int idLibro, String nuevoEstado) {
+        byte codigo = codigoEstado(nuevoEstado);
+        if (codigo == 0 || !existe(idLibro)) {
+            return false;
+        }
+        int indice = idLibro - idBase;
+        segmento(indice).put(posicion(indice) + POS_ESTADO, codigo);
+        return true;
+    }
+
+    // Escribe (o reemplaza) el registro completo de un libro
+    public void escribirLibro(int idLibro, String titulo, String autor, String estado) {
+        int indice = idLibro - idBase;
+        if (indice < 0 || indice >= capacidad) {
+            throw new IllegalArgumentException("ID fuera del rango del catálogo binario: " + idLibro);
+        }
+        byte codigo = codigoEstado(estado);
+        if (codigo == 0) {
+            throw new IllegalArgumentException("Estado no soportado en formato binario: " + estado);
+        }
+        MappedByteBuffer buffer = segmento(indice);
+        int base = posicion(indice);
+        buffer.putInt(base, idLibro);
+        buffer.put(base + POS_ESTADO, codigo);
+        escribirTexto(buffer, base + POS_TITULO, titulo, MAX_TITULO);
+        escribirTexto(buffer, base + POS_AUTOR, autor, MAX_AUTOR);
+    }
+
+    // Fuerza los cambios mapeados al disco (fsync)
+    public void forzar() {
+        for (MappedByteBuffer segmento : segmentos) {
+            segmento.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        forzar();
+        canal.close();
+    }
+
+    private MappedByteBuffer segmento(int indice) {
+        return segmentos[indice / REGISTROS_POR_SEGMENTO];
+    }
+
+    private static int posicion(int indice) {
+        return (indice % REGISTROS_POR_SEGMENTO) * TAM_REGISTRO;
+    }
+
+    private String leerTexto(int indice, int desplazamiento) {
+        MappedByteBuffer buffer = segmento(indice);
+        int base = posicion(indice) + desplazamiento;
+        int largo = buffer.get(base) & 0xFF;
+        byte[] bytes = new byte[largo];
+        for (int i = 0; i < largo; i++) {
+            bytes[i] = buffer.get(base + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Escribe un texto con prefijo de largo, recortado sin partir caracteres UTF-8
+    private static void escribirTexto(MappedByteBuffer buffer, int base, String texto, int maximo) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        int largo = Math.min(bytes.length, maximo);
+        while (largo < bytes.length && largo > 0 && (bytes[largo] & 0xC0) == 0x80) {
+            largo--;
+        }
+        buffer.put(base, (byte) largo);
+        for (int i = 0; i < maximo; i++) {
+            buffer.put(base + 1 + i, i < largo ? bytes[i] : 0);
+        }
+    }
+
+    private static byte codigoEstado(String estado) {
+        if (CatalogoMemoria.DISPONIBLE.equals(estado)) {
+            return ESTADO_DISPONIBLE;
+        } else if (CatalogoMemoria.PRESTADO.equals(estado)) {
+            return ESTADO_PRESTADO;
+        }
+        return 0;
+    }
+
+    private static String estadoComoTexto(byte codigo) {
+        if (codigo == ESTADO_DISPONIBLE) {
+            return CatalogoMemoria.DISPONIBLE;
+        } else if (codigo == ESTADO_PRESTADO) {
+            return CatalogoMemoria.PRESTADO;
+        }
+        return "DESCONOCIDO";
+    }
+}
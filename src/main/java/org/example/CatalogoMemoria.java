@@ -0,0 +1,718 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Catálogo de libros cargado una sola vez en memoria e indexado por ID (consultas O(1)).
+// Los cambios de estado se persisten sin reescribir el catálogo completo, según de dónde se cargó:
+// - Catálogo binario (ver ConvertidorCatalogo): un byte en el registro del libro, en el archivo mapeado.
+// - Instantánea (activarInstantaneas): un registro "SEQ, ESTADO, ID, ESTADO" en el diario; cuando el
+//   diario crece se escribe en segundo plano una instantánea nueva, y al arrancar se carga la última y
+//   se reproduce solo la cola del diario.
+// - Archivo de texto: el mismo registro en "<ruta>.diario"; el archivo se reescribe desde memoria solo
+//   al compactar (cuando el diario crece, al arrancar si quedaron registros y al cerrar).
+// Con escritura diferida los registros quedan en el buffer hasta que CommitGrupal llama a volcar().
+public class CatalogoMemoria implements CommitGrupal.Participante {
+
+    public static final String DISPONIBLE = "DISPONIBLE";
+    public static final String PRESTADO = "PRESTADO";
+
+    private static final byte ESTADO_DISPONIBLE = 0;
+    private static final byte ESTADO_PRESTADO = 1;
+    private static final byte ESTADO_OTRO = 2;
+
+    private static final int MAGICO_INSTANTANEA = 0x43415449; // "CATI"
+    private static final int VERSION_INSTANTANEA = 1;
+    private static final int UMBRAL_MINIMO_INSTANTANEA = 10000;
+
+    private final String ruta;
+    private final String rutaBinario; // Catálogo binario opcional (null si no se usa)
+    private final String etiqueta;    // Prefijo para los mensajes de log ("GA", "GA2")
+    private CatalogoBinario binario;
+
+    // Índice ID -> posición dentro de los arreglos
+    private IndiceEnteros indice;
+    // Estado compacto: un arreglo por columna, ordenado como en el archivo
+    private int[] ids;
+    private TextosEmpaquetados titulos;
+    private TextosEmpaquetados autores;
+    private byte[] estados;
+    // Estados que no son DISPONIBLE ni PRESTADO (se conservan tal cual aparecen en el archivo)
+    private final Map<Integer, String> estadosOtros = new HashMap<>();
+    // Índice de palabras de títulos y autores para BUSCAR; se construye en la primera búsqueda
+    private IndiceBusqueda indiceBusqueda;
+    // IDs ordenados para idsEnRango (antientropía); se construye en la primera consulta por rango
+    private int[] idsOrdenados;
+    private int cantidad;
+    private boolean cargado;
+    private boolean escrituraDiferida;
+    private boolean sucio;
+
+    // Instantánea binaria + diario de cambios de estado (null si no están activados)
+    private Path rutaInstantanea;
+    private Path rutaDiario;
+    private Path rutaDiarioCongelado;
+    private FileOutputStream salidaDiario;
+    private BufferedWriter escritorDiario;
+    private long secuencia;
+    private int registrosDiario;
+    // Bytes del diario cubiertos por el último fsync: si un volcado falla se recorta hasta aquí
+    private long diarioConfirmado;
+    // Un volcado falló: no se escribe más hasta reiniciar (ver CommitGrupal.estaAveriado)
+    private boolean averiado;
+    private boolean escribiendoInstantanea;
+    // Diario sin instantánea: se compacta reescribiendo el archivo de texto
+    private boolean diarioDeTexto;
+    private ExecutorService instantaneador;
+
+    public CatalogoMemoria(String ruta, String etiqueta) {
+        this(ruta, null, etiqueta);
+    }
+
+    public CatalogoMemoria(String ruta, String rutaBinario, String etiqueta) {
+        this.ruta = ruta;
+        this.rutaBinario = rutaBinario;
+        this.etiqueta = etiqueta;
+    }
+
+    // Activa instantánea + diario; debe llamarse antes de la primera carga.
+    // No aplica si se usa el catálogo binario mapeado, que ya persiste cada cambio en su lugar.
+    public synchronized void activarInstantaneas(String rutaInstantanea, String rutaDiario) {
+        this.rutaInstantanea = Paths.get(rutaInstantanea);
+        this.rutaDiario = Paths.get(rutaDiario);
+        this.rutaDiarioCongelado = Paths.get(rutaDiario + ".instantanea");
+        this.instantaneador = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "instantanea-catalogo");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Carga el archivo completo en memoria (solo la primera vez o si una carga anterior falló)
+    public synchronized boolean asegurarCargado() {
+        if (cargado) {
+            return true;
+        }
+        indice = new IndiceEnteros(1024);
+        ids = new int[1024];
+        titulos = new TextosEmpaquetados(1024);
+        autores = new TextosEmpaquetados(1024);
+        estados = new byte[1024];
+        estadosOtros.clear();
+        indiceBusqueda = null;
+        idsOrdenados = null;
+        cantidad = 0;
+        secuencia = 0;
+
+        if (rutaBinario != null && new File(rutaBinario).exists()) {
+            return cargarBinario();
+        }
+        if (rutaInstantanea != null && Files.exists(rutaInstantanea)) {
+            return cargarInstantanea();
+        }
+
+        File archivo = new File(ruta);
+        if (!archivo.exists()) {
+            System.err.println(etiqueta + ":  Error - Archivo " + archivo.getName() + " no encontrado en: " + ruta);
+            return false;
+        }
+
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(ruta), StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                agregarLinea(linea);
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al leer " + archivo.getName() + ": " + e.getMessage());
+            return false;
+        }
+
+        if (rutaInstantanea != null) {
+            // Primer arranque con instantáneas: aplicar lo que haya en el diario y crear la primera
+            if (!abrirDiario()) {
+                return false;
+            }
+            programarInstantanea();
+        } else {
+            rutaDiario = Paths.get(ruta + ".diario");
+            rutaDiarioCongelado = Paths.get(ruta + ".diario.congelado"); // Sin uso: se compacta sin rotar el diario
+            diarioDeTexto = true;
+            if (!abrirDiario()) {
+                return false;
+            }
+            if (registrosDiario > 0) {
+                System.out.println(etiqueta + ":  " + registrosDiario + " cambios reproducidos de " + rutaDiario.getFileName());
+                compactarTexto();
+            }
+        }
+        cargado = true;
+        System.out.println(etiqueta + ":  Catálogo cargado en memoria (" + cantidad + " libros) desde " + archivo.getName());
+        return true;
+    }
+
+    // Carga la instantánea binaria y reproduce encima la cola del diario
+    private boolean cargarInstantanea() {
+        try (Instantanea.Lector lector = new Instantanea.Lector(rutaInstantanea, MAGICO_INSTANTANEA, VERSION_INSTANTANEA)) {
+            secuencia = lector.getSecuencia();
+            cantidad = lector.leerInt();
+            ids = lector.leerEnteros(cantidad);
+            estados = lector.leerBytes(cantidad);
+            int otros = lector.leerInt();
+            for (int i = 0; i < otros; i++) {
+                int id = lector.leerInt();
+                estadosOtros.put(id, lector.leerTexto());
+            }
+            titulos = TextosEmpaquetados.leer(lector, cantidad);
+            autores = TextosEmpaquetados.leer(lector, cantidad);
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al leer instantánea " + rutaInstantanea.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+        indice = new IndiceEnteros(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            indice.poner(ids[i], i);
+        }
+        long secuenciaInstantanea = secuencia;
+        if (!abrirDiario()) {
+            return false;
+        }
+        cargado = true;
+        System.out.println(etiqueta + ":  Catálogo cargado en memoria (" + cantidad + " libros) desde "
+                + rutaInstantanea.getFileName() + " (secuencia " + secuenciaInstantanea + ", "
+                + registrosDiario + " cambios reproducidos del diario)");
+        if (Files.exists(rutaDiarioCongelado)) {
+            programarInstantanea();
+        }
+        return true;
+    }
+
+    // Reproduce el diario congelado (instantánea que no terminó) y el activo, y abre este para agregar
+    private boolean abrirDiario() {
+        try {
+            reproducirDiario(rutaDiarioCongelado);
+            registrosDiario = reproducirDiario(rutaDiario);
+            salidaDiario = new FileOutputStream(rutaDiario.toFile(), true);
+            escritorDiario = new BufferedWriter(new OutputStreamWriter(salidaDiario, StandardCharsets.UTF_8));
+            diarioConfirmado = salidaDiario.getChannel().size();
+            return true;
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al abrir diario del catálogo: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Aplica los registros ESTADO posteriores a la secuencia actual; retorna cuántos aplicó
+    private int reproducirDiario(Path diario) throws IOException {
+        if (!Files.exists(diario)) {
+            return 0;
+        }
+        int aplicados = 0;
+        try (BufferedReader br = Files.newBufferedReader(diario, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] partes = linea.split(",\\s*", 4);
+                long seq;
+                try {
+                    seq = Long.parseLong(partes[0].trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (seq <= secuencia) {
+                    continue;
+                }
+                secuencia = seq;
+                if (partes.length == 4 && partes[1].equals("ESTADO")) {
+                    int pos = indice.obtener(parsearId(partes[2]));
+                    if (pos >= 0) {
+                        asignarEstado(pos, partes[3].trim());
+                        aplicados++;
+                    }
+                }
+            }
+        }
+        return aplicados;
+    }
+
+    // Congela el diario actual, abre uno nuevo y escribe la instantánea en segundo plano
+    private void programarInstantanea() {
+        if (escribiendoInstantanea) {
+            return;
+        }
+        try {
+            if (!Files.exists(rutaDiarioCongelado)) {
+                forzarDiario();
+                escritorDiario.close();
+                Files.move(rutaDiario, rutaDiarioCongelado, StandardCopyOption.REPLACE_EXISTING);
+                salidaDiario = new FileOutputStream(rutaDiario.toFile(), true);
+                escritorDiario = new BufferedWriter(new OutputStreamWriter(salidaDiario, StandardCharsets.UTF_8));
+                // Conservar la secuencia para que siga siendo monótona si la instantánea no llega a escribirse
+                escritorDiario.write(secuencia + ", INSTANTANEA");
+                escritorDiario.newLine();
+                escritorDiario.flush();
+                diarioConfirmado = salidaDiario.getChannel().size();
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al rotar diario del catálogo: " + e.getMessage());
+            return;
+        }
+        registrosDiario = 0;
+
+        // Copia consistente del estado; los textos no cambian después de la carga y se comparten
+        long seq = secuencia;
+        int n = cantidad;
+        int[] copiaIds = Arrays.copyOf(ids, n);
+        byte[] copiaEstados = Arrays.copyOf(estados, n);
+        Map<Integer, String> copiaOtros = new HashMap<>(estadosOtros);
+        TextosEmpaquetados t = titulos;
+        TextosEmpaquetados a = autores;
+        escribiendoInstantanea = true;
+        instantaneador.execute(() -> escribirInstantanea(seq, n, copiaIds, copiaEstados, copiaOtros, t, a));
+    }
+
+    private void escribirInstantanea(long seq, int n, int[] copiaIds, byte[] copiaEstados,
+                                     Map<Integer, String> copiaOtros, TextosEmpaquetados t, TextosEmpaquetados a) {
+        long inicio = System.nanoTime();
+        try (Instantanea.Escritor escritor = new Instantanea.Escritor(rutaInstantanea, MAGICO_INSTANTANEA, VERSION_INSTANTANEA, seq)) {
+            escritor.escribirInt(n);
+            escritor.escribirEnteros(copiaIds, n);
+            escritor.escribirBytes(copiaEstados, n);
+            escritor.escribirInt(copiaOtros.size());
+            for (Map.Entry<Integer, String> e : copiaOtros.entrySet()) {
+                escritor.escribirInt(e.getKey());
+                escritor.escribirTexto(e.getValue());
+            }
+            t.escribir(escritor, n);
+            a.escribir(escritor, n);
+            escritor.terminar();
+            Files.deleteIfExists(rutaDiarioCongelado);
+            System.out.println(etiqueta + ":  Instantánea del catálogo escrita (" + n + " libros, secuencia " + seq
+                    + ") en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al escribir instantánea del catálogo: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                escribiendoInstantanea = false;
+            }
+        }
+    }
+
+    // Carga el catálogo desde el archivo binario mapeado, que queda abierto para escribir cambios
+    private boolean cargarBinario() {
+        try {
+            binario = CatalogoBinario.abrir(rutaBinario);
+            for (int i = 0; i < binario.getCapacidad(); i++) {
+                int id = binario.idEn(i);
+                if (id != 0) {
+                    agregar(id, binario.obtenerTitulo(id), binario.obtenerAutor(id), binario.obtenerEstado(id));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al abrir catálogo binario " + rutaBinario + ": " + e.getMessage());
+            return false;
+        }
+        rutaInstantanea = null;
+        cargado = true;
+        System.out.println(etiqueta + ":  Catálogo cargado en memoria (" + cantidad + " libros) desde "
+                + new File(rutaBinario).getName() + " (binario, " + new File(ruta).getName() + " no se actualiza)");
+        return true;
+    }
+
+    // Con escritura diferida actualizarEstado() no toca el disco hasta el próximo volcar()
+    public synchronized void setEscrituraDiferida(boolean escrituraDiferida) {
+        this.escrituraDiferida = escrituraDiferida;
+    }
+
+    // Escribe los cambios acumulados con una sola escritura y un fsync
+    @Override
+    public synchronized void volcar() throws IOException {
+        if (averiado) {
+            throw new IOException("El catálogo no se vuelca después de un fallo de escritura");
+        }
+        if (!sucio) {
+            return;
+        }
+        if (binario != null) {
+            try {
+                binario.forzar();
+            } catch (UncheckedIOException e) {
+                averiado = true; // El estado ya está en el archivo mapeado: no hay cola que recortar
+                throw e.getCause();
+            }
+        } else if (escritorDiario != null) {
+            forzarDiario();
+        }
+        sucio = false;
+    }
+
+    // Flush + fsync del diario. Si falla, lo escrito desde el último fsync exitoso es de un volcado que
+    // el cliente recibió como error: se recorta para que no reaparezca al reproducir el diario
+    private void forzarDiario() throws IOException {
+        FileChannel canal = salidaDiario.getChannel();
+        try {
+            escritorDiario.flush();
+            canal.force(false);
+            diarioConfirmado = canal.size();
+        } catch (IOException e) {
+            averiado = true;
+            try {
+                canal.truncate(diarioConfirmado);
+                canal.force(false);
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    // Retorna el estado del libro ("DISPONIBLE", "PRESTADO", ...) o null si no existe
+    public synchronized String obtenerEstado(int idLibro) {
+        int pos = posicion(idLibro);
+        if (pos < 0) {
+            return null;
+        }
+        return estadoComoTexto(pos);
+    }
+
+    public synchronized boolean existe(int idLibro) {
+        return posicion(idLibro) >= 0;
+    }
+
+    public synchronized String obtenerTitulo(int idLibro) {
+        int pos = posicion(idLibro);
+        return pos < 0 ? null : titulos.obtener(pos);
+    }
+
+    public synchronized String obtenerAutor(int idLibro) {
+        int pos = posicion(idLibro);
+        return pos < 0 ? null : autores.obtener(pos);
+    }
+
+    public synchronized int tamano() {
+        return cantidad;
+    }
+
+    // IDs de todos los libros, en el orden del archivo (para RebalanceoShards)
+    public synchronized int[] ids() {
+        return ids == null ? new int[0] : Arrays.copyOf(ids, cantidad);
+    }
+
+    // IDs de los libros entre desde y hasta (inclusive), ordenados. Se ubican por búsqueda binaria en un
+    // índice ordenado de IDs que se arma la primera vez (solo cambia al cargar, cuando aparecen libros)
+    public synchronized int[] idsEnRango(int desde, int hasta) {
+        if (ids == null || desde > hasta) {
+            return new int[0];
+        }
+        if (idsOrdenados == null) {
+            idsOrdenados = Arrays.copyOf(ids, cantidad);
+            Arrays.sort(idsOrdenados);
+        }
+        int inicio = Arrays.binarySearch(idsOrdenados, desde);
+        int fin = Arrays.binarySearch(idsOrdenados, hasta);
+        inicio = inicio >= 0 ? inicio : -inicio - 1;
+        fin = fin >= 0 ? fin + 1 : -fin - 1;
+        return Arrays.copyOfRange(idsOrdenados, inicio, fin);
+    }
+
+    // Cambia el estado del libro en memoria y lo persiste: un byte en el catálogo binario o un registro
+    // en el diario
+    public synchronized boolean actualizarEstado(int idLibro, String nuevoEstado) {
+        int pos = posicion(idLibro);
+        if (pos < 0) {
+            System.err.println(etiqueta + ":  No se encontró el libro con ID " + idLibro + " para actualizar");
+            return false;
+        }
+        if (averiado) {
+            System.err.println(etiqueta + ":  Catálogo fuera de servicio por un fallo de escritura, no se actualiza el libro " + idLibro);
+            return false;
+        }
+
+        byte estadoAnterior = estados[pos];
+        String estadoOtroAnterior = estadosOtros.get(idLibro);
+        asignarEstado(pos, nuevoEstado);
+
+        boolean escrito;
+        if (binario != null) {
+            escrito = binario.actualizarEstado(idLibro, nuevoEstado);
+        } else {
+            escrito = agregarAlDiario(idLibro, nuevoEstado);
+        }
+        if (escrito && escrituraDiferida) {
+            sucio = true;
+        }
+        if (!escrito) {
+            // Revertir para que memoria y disco no diverjan
+            estados[pos] = estadoAnterior;
+            if (estadoOtroAnterior != null) {
+                estadosOtros.put(idLibro, estadoOtroAnterior);
+            } else {
+                estadosOtros.remove(idLibro);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    // Cierra el diario y espera a que termine la instantánea en curso (si la hay). Sin instantáneas
+    // deja el archivo de texto al día y borra el diario.
+    public void cerrar() {
+        synchronized (this) {
+            try {
+                if (diarioDeTexto && escritorDiario != null && !averiado && compactarTexto()) {
+                    escritorDiario.close();
+                    escritorDiario = null;
+                    Files.deleteIfExists(rutaDiario);
+                }
+                if (averiado && salidaDiario != null) {
+                    salidaDiario.close(); // Sin vaciar el buffer: tiene cambios que no se confirmaron
+                } else if (escritorDiario != null) {
+                    escritorDiario.close();
+                }
+                if (binario != null) {
+                    binario.close();
+                }
+            } catch (IOException e) {
+                System.err.println(etiqueta + ":  Error al cerrar el catálogo: " + e.getMessage());
+            }
+            if (instantaneador == null) {
+                return;
+            }
+            instantaneador.shutdown();
+        }
+        try {
+            instantaneador.awaitTermination(5, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Busca libros cuyo título o autor tengan, para cada palabra de la consulta, alguna palabra que
+    // empiece por ella. El índice da los candidatos de la palabra más selectiva y el resto se verifica
+    // sobre el texto de cada candidato; el estado se lee del catálogo en el momento de la búsqueda.
+    public synchronized ResultadoBusqueda buscar(String consulta, int pagina, int tamanoPagina) {
+        List<String> terminos = IndiceBusqueda.palabrasDe(consulta);
+        if (!cargado || terminos.isEmpty()) {
+            return new ResultadoBusqueda(pagina, tamanoPagina, 0);
+        }
+        if (indiceBusqueda == null) {
+            long inicio = System.nanoTime();
+            indiceBusqueda = new IndiceBusqueda();
+            for (int i = 0; i < cantidad; i++) {
+                indiceBusqueda.agregar(i, titulos.obtener(i), autores.obtener(i));
+            }
+            System.out.println(etiqueta + ":  Índice de búsqueda construido (" + indiceBusqueda.cantidadPalabras()
+                    + " palabras) en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+        }
+
+        String guia = terminos.get(0);
+        for (String termino : terminos) {
+            if (indiceBusqueda.costo(termino) < indiceBusqueda.costo(guia)) {
+                guia = termino;
+            }
+        }
+        int[] candidatos = indiceBusqueda.candidatos(guia);
+        int desde = (pagina - 1) * tamanoPagina;
+        int[] enPagina = new int[tamanoPagina];
+        int enPaginaCantidad = 0;
+        int total = 0;
+        for (int pos : candidatos) {
+            if (terminos.size() > 1 && !contieneTodos(pos, terminos)) {
+                continue;
+            }
+            if (total >= desde && enPaginaCantidad < tamanoPagina) {
+                enPagina[enPaginaCantidad++] = pos;
+            }
+            total++;
+        }
+
+        ResultadoBusqueda resultado = new ResultadoBusqueda(pagina, tamanoPagina, total);
+        for (int i = 0; i < enPaginaCantidad; i++) {
+            int pos = enPagina[i];
+            resultado.agregar(ids[pos], titulos.obtener(pos), autores.obtener(pos), estadoComoTexto(pos));
+        }
+        return resultado;
+    }
+
+    // Convierte un ID textual a int; retorna -1 si no es un número válido
+    public static int parsearId(String idLibro) {
+        if (idLibro == null) {
+            return -1;
+        }
+        String limpio = idLibro.trim();
+        if (limpio.isEmpty() || limpio.length() > 9) {
+            return -1;
+        }
+        int valor = 0;
+        for (int i = 0; i < limpio.length(); i++) {
+            char c = limpio.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    // Agrega "SEQ, ESTADO, ID, ESTADO" al diario y programa una instantánea si ya es largo
+    private boolean agregarAlDiario(int idLibro, String nuevoEstado) {
+        try {
+            escritorDiario.write((secuencia + 1) + ", ESTADO, " + idLibro + ", " + nuevoEstado);
+            escritorDiario.newLine();
+            if (!escrituraDiferida) {
+                escritorDiario.flush();
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al escribir en diario del catálogo: " + e.getMessage());
+            return false;
+        }
+        secuencia++;
+        registrosDiario++;
+        if (registrosDiario > Math.max(UMBRAL_MINIMO_INSTANTANEA, cantidad / 64)) {
+            if (diarioDeTexto) {
+                compactarTexto();
+            } else {
+                programarInstantanea();
+            }
+        }
+        return true;
+    }
+
+    // Reescribe el archivo de texto desde memoria (temporal + fsync + renombrado) y vacía el diario.
+    // Si se corta entre los dos pasos, al arrancar se reproduce el diario sobre un archivo que ya
+    // tiene esos estados, lo que no cambia nada.
+    private boolean compactarTexto() {
+        Path archivo = Paths.get(ruta);
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream salida = new FileOutputStream(temporal.toFile())) {
+                salida.write(contenidoTexto());
+                salida.getChannel().force(false);
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            escritorDiario.close();
+            salidaDiario = new FileOutputStream(rutaDiario.toFile(), false);
+            escritorDiario = new BufferedWriter(new OutputStreamWriter(salidaDiario, StandardCharsets.UTF_8));
+            diarioConfirmado = 0;
+            registrosDiario = 0;
+            return true;
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al compactar " + archivo.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean contieneTodos(int pos, List<String> terminos) {
+        List<String> palabras = IndiceBusqueda.palabrasDe(titulos.obtener(pos), autores.obtener(pos));
+        for (String termino : terminos) {
+            boolean encontrado = false;
+            for (String palabra : palabras) {
+                if (palabra.startsWith(termino)) {
+                    encontrado = true;
+                    break;
+                }
+            }
+            if (!encontrado) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int posicion(int idLibro) {
+        if (!cargado || idLibro < 0) {
+            return -1;
+        }
+        return indice.obtener(idLibro);
+    }
+
+    // Parsea una línea del formato "ID, NOMBRE, AUTOR, ESTADO" y la agrega a los arreglos
+    private void agregarLinea(String linea) {
+        if (linea == null || linea.trim().isEmpty()) {
+            return;
+        }
+        String[] partes = linea.split(",", 4);
+        if (partes.length != 4) {
+            return;
+        }
+        int id = parsearId(partes[0]);
+        if (id < 0) {
+            return;
+        }
+        agregar(id, partes[1].trim(), partes[2].trim(), partes[3].trim());
+    }
+
+    private void agregar(int id, String titulo, String autor, String estado) {
+        int pos = indice.obtener(id);
+        if (pos < 0) {
+            if (cantidad == ids.length) {
+                int nuevaCapacidad = ids.length * 2;
+                ids = Arrays.copyOf(ids, nuevaCapacidad);
+                estados = Arrays.copyOf(estados, nuevaCapacidad);
+            }
+            pos = cantidad++;
+            indice.poner(id, pos);
+            idsOrdenados = null;
+        } else if (indiceBusqueda != null) {
+            indiceBusqueda.quitar(pos, titulos.obtener(pos), autores.obtener(pos));
+        }
+        ids[pos] = id;
+        titulos.poner(pos, titulo);
+        autores.poner(pos, autor);
+        if (indiceBusqueda != null) {
+            indiceBusqueda.agregar(pos, titulo, autor);
+        }
+        asignarEstado(pos, estado);
+    }
+
+    private void asignarEstado(int pos, String estado) {
+        if (DISPONIBLE.equals(estado)) {
+            estados[pos] = ESTADO_DISPONIBLE;
+            estadosOtros.remove(ids[pos]);
+        } else if (PRESTADO.equals(estado)) {
+            estados[pos] = ESTADO_PRESTADO;
+            estadosOtros.remove(ids[pos]);
+        } else {
+            estados[pos] = ESTADO_OTRO;
+            estadosOtros.put(ids[pos], estado);
+        }
+    }
+
+    private String estadoComoTexto(int pos) {
+        switch (estados[pos]) {
+            case ESTADO_DISPONIBLE:
+                return DISPONIBLE;
+            case ESTADO_PRESTADO:
+                return PRESTADO;
+            default:
+                return estadosOtros.get(ids[pos]);
+        }
+    }
+
+    // Contenido completo del archivo de texto a partir del estado en memoria
+    private byte[] contenidoTexto() {
+        StringBuilder sb = new StringBuilder(cantidad * 48);
+        for (int i = 0; i < cantidad; i++) {
+            sb.append(ids[i]).append(", ")
+              .append(titulos.obtener(i)).append(", ")
+              .append(autores.obtener(i)).append(", ")
+              .append(estadoComoTexto(i)).append(System.lineSeparator());
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+// Clave de idempotencia de una operación, generada por el actor de préstamo y llevada de punta a punta
+// (actor -> GA -> GA2, o actor -> GA2 directo) como prefijo del cuerpo del mensaje:
+//   [0x1F]<clave>[0x1F]<cuerpo en texto o ProtocoloBinario>
+// 0x1F no es un carácter imprimible ni un opcode binario, así que no se confunde con ninguno de los dos
+// formatos; cada nodo quita el prefijo antes de interpretar el cuerpo. GA2 recuerda el resultado de cada
+// clave (CacheIdempotencia): un reintento o una copia de hedging de la misma operación recibe el resultado
+// original en vez de ejecutarse otra vez.
+// Las partes de un lote repartido entre shards llevan la clave del lote + "/" + índice del shard.
+public final class ClaveIdempotencia {
+
+    static final byte SEPARADOR = 0x1F;
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    private ClaveIdempotencia() {
+    }
+
+    // Prefijo único por proceso del actor, para que las claves de distintos actores no choquen
+    public static String nuevoPrefijo() {
+        return Long.toHexString(ALEATORIO.nextLong());
+    }
+
+    public static String deParte(String clave, int shard) {
+        return clave == null ? null : clave + "/" + shard;
+    }
+
+    public static byte[] agregar(String clave, byte[] cuerpo) {
+        if (clave == null) {
+            return cuerpo;
+        }
+        byte[] bytesClave = clave.getBytes(StandardCharsets.UTF_8);
+        byte[] trama = new byte[bytesClave.length + 2 + cuerpo.length];
+        trama[0] = SEPARADOR;
+        System.arraycopy(bytesClave, 0, trama, 1, bytesClave.length);
+        trama[bytesClave.length + 1] = SEPARADOR;
+        System.arraycopy(cuerpo, 0, trama, bytesClave.length + 2, cuerpo.length);
+        return trama;
+    }
+
+    public static String agregar(String clave, String cuerpo) {
+        return clave == null ? cuerpo : (char) SEPARADOR + clave + (char) SEPARADOR + cuerpo;
+    }
+
+    // Clave de la trama, o null si no tiene
+    public static String clave(byte[] trama) {
+        int fin = finDeClave(trama);
+        return fin < 0 ? null : new String(trama, 1, fin - 1, StandardCharsets.UTF_8);
+    }
+
+    // Cuerpo sin el prefijo (la misma trama si no tiene clave)
+    public static byte[] sinClave(byte[] trama) {
+        int fin = finDeClave(trama);
+        return fin < 0 ? trama : Arrays.copyOfRange(trama, fin + 1, trama.length);
+    }
+
+    public static String clave(String mensaje) {
+        int fin = finDeClave(mensaje);
+        return fin < 0 ? null : mensaje.substring(1, fin);
+    }
+
+    public static String sinClave(String mensaje) {
+        int fin = finDeClave(mensaje);
+        return fin < 0 ? mensaje : mensaje.substring(fin + 1);
+    }
+
+    private static int finDeClave(byte[] trama) {
+        if (trama == null || trama.length < 2 || trama[0] != SEPARADOR) {
+            return -1;
+        }
+        for (int i = 1; i < trama.length; i++) {
+            if (trama[i] == SEPARADOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int finDeClave(String mensaje) {
+        if (mensaje == null || mensaje.length() < 2 || mensaje.charAt(0) != SEPARADOR) {
+            return -1;
+        }
+        return mensaje.indexOf(SEPARADOR, 1);
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+// Cliente REQ síncrono hacia GA con fallback a GA2 ("Lazy Pirate"):
+//  - Un REQ que no recibió respuesta queda en estado inválido para enviar, así que tras un timeout el
+//    socket se cierra y se crea uno nuevo antes de la próxima solicitud.
+//  - Un InterruptorCircuito evita esperar el timeout de GA en cada solicitud mientras GA está caído:
+//    con el circuito abierto se va directo a GA2, y cada tanto una solicitud vuelve a probar GA.
+//  - La solicitud lleva la clave de idempotencia (ClaveIdempotencia) tanto a GA como al reenvío a GA2:
+//    si GA llegó a aplicarla antes del timeout, GA2 reconoce la repetición y no la aplica otra vez.
+// Retorna null si no respondió ninguno. No es thread-safe (un cliente por hilo).
+public class ClienteGA {
+
+    private final ZMQ.Context context;
+    private final String direccionGA;
+    private final String direccionGA2;
+    private final int timeoutGAMs;
+    private final int timeoutGA2Ms;
+    private final InterruptorCircuito circuito = new InterruptorCircuito("GA");
+
+    private ZMQ.Socket socketGA;
+    private ZMQ.Socket socketGA2;
+
+    public ClienteGA(ZMQ.Context context, String direccionGA, String direccionGA2, int timeoutGAMs, int timeoutGA2Ms) {
+        this.context = context;
+        this.direccionGA = direccionGA;
+        this.direccionGA2 = direccionGA2;
+        this.timeoutGAMs = timeoutGAMs;
+        this.timeoutGA2Ms = timeoutGA2Ms;
+        socketGA = conectar(direccionGA, timeoutGAMs);
+        socketGA2 = conectar(direccionGA2, timeoutGA2Ms);
+    }
+
+    // "clave" puede ser null (sin deduplicación)
+    public String enviar(String mensaje, String clave) {
+        String trama = ClaveIdempotencia.agregar(clave, mensaje);
+        if (circuito.permitir()) {
+            String respuesta = solicitar(socketGA, trama);
+            if (respuesta != null) {
+                circuito.registrarExito();
+                System.out.println(" GA respondió: " + respuesta);
+                return respuesta;
+            }
+            System.out.println(" ⚠ GA no respondió (timeout), intentando con GA2...");
+            socketGA.close();
+            socketGA = conectar(direccionGA, timeoutGAMs);
+            circuito.registrarFallo();
+        }
+
+        System.out.println(" Enviando solicitud a GA2 (fallback): " + mensaje);
+        String respuesta = solicitar(socketGA2, trama);
+        if (respuesta == null) {
+            System.err.println(" ✗ GA2 tampoco respondió");
+            socketGA2.close();
+            socketGA2 = conectar(direccionGA2, timeoutGA2Ms);
+            return null;
+        }
+        System.out.println(" ✓ Respuesta recibida de GA2 (fallback): " + respuesta);
+        return respuesta;
+    }
+
+    public InterruptorCircuito.Estado getEstadoCircuito() {
+        return circuito.getEstado();
+    }
+
+    public void cerrar() {
+        socketGA.close();
+        socketGA2.close();
+    }
+
+    // null si no hubo respuesta dentro del timeout o el envío falló
+    private String solicitar(ZMQ.Socket socket, String mensaje) {
+        try {
+            if (!socket.send(mensaje, 0)) {
+                return null;
+            }
+            return socket.recvStr();
+        } catch (RuntimeException e) {
+            System.out.println(" ⚠ Error de comunicación: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private ZMQ.Socket conectar(String direccion, int timeoutMs) {
+        ZMQ.Socket socket = context.socket(ZMQ.REQ);
+        socket.setReceiveTimeOut(timeoutMs);
+        socket.setSendTimeOut(timeoutMs);
+        socket.setLinger(0);
+        socket.connect(direccion);
+        return socket;
+    }
+}
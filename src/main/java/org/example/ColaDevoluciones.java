@@ -0,0 +1,337 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Cola durable de devoluciones/renovaciones del GC (modo -Ddevoluciones.cola=true), en lugar del PUB/SUB:
+//  - Los trabajadores del GC encolan por un REQ a DIRECCION_ENCOLAR; la respuesta "OK" llega recién
+//    cuando el mensaje está en el spool en disco, así que una devolución aceptada no se pierde si el GC
+//    se reinicia. Las solicitudes que llegan juntas se escriben con un solo force.
+//  - Los consumidores (DevolucionRenovacion en modo cola, uno o varios) se conectan con DEALER a
+//    PUERTO_CONSUMIDORES. Cada "LISTO" es un crédito para recibir un mensaje [SEQ][mensaje]; al terminar
+//    responden "ACK:SEQ" (o "NACK:SEQ" para que se reintente), lo que además da un crédito nuevo.
+//    Los mensajes se reparten solo entre consumidores con crédito, así que el trabajo se balancea.
+//  - Un mensaje sin ACK dentro de TIMEOUT_ACK_MS se vuelve a entregar (a otro consumidor si lo hay).
+//    La entrega es "al menos una vez": un consumidor que muere después de aplicar y antes del ACK
+//    provoca una segunda entrega. Por eso cada mensaje recibe al encolarse una clave de idempotencia
+//    (ClaveIdempotencia, prefijo de esta cola + SEQ) que se guarda con él en el spool: todas sus entregas,
+//    también después de un reinicio, llevan la misma clave y GA2 aplica la operación una sola vez.
+// Spool: una línea "E SEQ mensaje" por mensaje encolado y "A SEQ" por confirmación. Al arrancar se
+// reentregan los E sin A. Cuando no queda nada pendiente el archivo se trunca, y si crece mucho se
+// reescribe solo con lo pendiente.
+public class ColaDevoluciones implements Runnable {
+
+    public static final String DIRECCION_ENCOLAR = "inproc://gc-cola";
+    public static final String PUERTO_CONSUMIDORES = "tcp://*:5561";
+
+    private static final long TIMEOUT_ACK_MS = Long.getLong("devoluciones.timeoutAck", 30000);
+    private static final int LINEAS_MAX_SPOOL = 100000;
+
+    private final ZMQ.Context context;
+    private final Path rutaSpool;
+
+    // Mensajes esperando consumidor, en orden de llegada (los reintentos vuelven al frente)
+    private final ArrayDeque<Long> enEspera = new ArrayDeque<>();
+    private final TreeMap<Long, String> mensajes = new TreeMap<>(); // Pendientes (sin ACK), por secuencia
+    // Entregados sin ACK; con timeout fijo el orden de inserción es el de vencimiento
+    private final LinkedHashMap<Long, Entrega> entregados = new LinkedHashMap<>();
+    // Consumidores con crédito, uno por cada "LISTO"/"ACK" recibido (el primero es el que esperó más)
+    private final ArrayDeque<byte[]> creditos = new ArrayDeque<>();
+
+    private ZMQ.Socket entrada;      // ROUTER inproc: trabajadores del GC que encolan
+    private ZMQ.Socket consumidores; // ROUTER tcp: DevolucionRenovacion
+    private FileOutputStream salida;
+    private BufferedWriter escritor;
+    private long ultimaSecuencia;
+    private int lineasSpool;
+    // Distinto en cada arranque: la secuencia vuelve a empezar cuando el spool queda vacío
+    private final String prefijoClaves = ClaveIdempotencia.nuevoPrefijo();
+
+    public ColaDevoluciones(ZMQ.Context context, String rutaSpool) {
+        this.context = context;
+        this.rutaSpool = Paths.get(rutaSpool);
+    }
+
+    // Crea los sockets y recupera el spool; llamar antes de arrancar el hilo y de que los trabajadores
+    // se conecten a DIRECCION_ENCOLAR (inproc exige que el bind ocurra primero)
+    public void iniciar() throws IOException {
+        cargarSpool();
+        entrada = context.socket(ZMQ.ROUTER);
+        entrada.bind(DIRECCION_ENCOLAR);
+        consumidores = context.socket(ZMQ.ROUTER);
+        consumidores.bind(PUERTO_CONSUMIDORES);
+        System.out.println(" Cola de devoluciones en " + PUERTO_CONSUMIDORES + " (spool " + rutaSpool + ", "
+                + enEspera.size() + " mensajes pendientes)");
+    }
+
+    @Override
+    public void run() {
+        ZMQ.Poller poller = context.poller(2);
+        poller.register(entrada, ZMQ.Poller.POLLIN);
+        poller.register(consumidores, ZMQ.Poller.POLLIN);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // -1: el contexto se cerró (al cerrar el GC); sin este corte el bucle gira sin parar
+                if (poller.poll(msHastaProximoVencimiento()) < 0) {
+                    break;
+                }
+                if (poller.pollin(0)) {
+                    recibirEncolados();
+                }
+                if (poller.pollin(1)) {
+                    recibirConsumidor();
+                }
+                reentregarVencidos();
+                despachar();
+            }
+        } catch (RuntimeException e) {
+            // Al cerrar el contexto los sockets dejan de funcionar
+            System.out.println(" Cola de devoluciones detenida: " + e.getMessage());
+        } finally {
+            entrada.close();
+            consumidores.close();
+            cerrarSpool();
+        }
+    }
+
+    // Lee todas las solicitudes de encolar disponibles, las escribe con un solo force y recién entonces responde
+    private void recibirEncolados() {
+        List<byte[]> remitentes = new ArrayList<>();
+        do {
+            byte[] identidad = entrada.recv(0);
+            entrada.recv(0); // Delimitador vacío del REQ
+            String mensaje = entrada.recvStr(0);
+            remitentes.add(identidad);
+            try {
+                long seq = ++ultimaSecuencia;
+                if (ClaveIdempotencia.clave(mensaje) == null) {
+                    mensaje = ClaveIdempotencia.agregar(prefijoClaves + "-" + seq, mensaje);
+                }
+                escribirLinea("E " + seq + " " + mensaje.replace('\n', ' '));
+                mensajes.put(seq, mensaje);
+                enEspera.addLast(seq);
+            } catch (IOException e) {
+                System.err.println(" ✗ Cola de devoluciones: Error al escribir el spool: " + e.getMessage());
+            }
+        } while ((entrada.getEvents() & ZMQ.Poller.POLLIN) != 0);
+
+        String respuesta = "OK";
+        try {
+            volcar();
+        } catch (IOException e) {
+            System.err.println(" ✗ Cola de devoluciones: Error al volcar el spool: " + e.getMessage());
+            respuesta = "Error: No se pudo guardar en la cola";
+        }
+        for (byte[] identidad : remitentes) {
+            entrada.sendMore(identidad);
+            entrada.sendMore("");
+            entrada.send(respuesta, 0);
+        }
+    }
+
+    // "LISTO", "ACK:SEQ" o "NACK:SEQ" de un consumidor
+    private void recibirConsumidor() {
+        byte[] identidad = consumidores.recv(0);
+        String mensaje = null;
+        while (consumidores.hasReceiveMore()) {
+            mensaje = consumidores.recvStr(0);
+        }
+        if (mensaje == null) {
+            return;
+        }
+
+        if (mensaje.startsWith("ACK:") || mensaje.startsWith("NACK:")) {
+            long seq;
+            try {
+                seq = Long.parseLong(mensaje.substring(mensaje.indexOf(':') + 1).trim());
+            } catch (NumberFormatException e) {
+                System.out.println("️ Cola de devoluciones: Confirmación inválida: " + mensaje);
+                return;
+            }
+            Entrega entrega = entregados.remove(seq);
+            if (entrega != null) {
+                if (mensaje.startsWith("ACK:")) {
+                    confirmar(seq);
+                } else {
+                    // Se reintenta después de lo que ya estaba esperando
+                    enEspera.addLast(seq);
+                }
+            }
+        } else if (!mensaje.equals("LISTO")) {
+            System.out.println("️ Cola de devoluciones: Mensaje de consumidor no reconocido: " + mensaje);
+            return;
+        }
+        creditos.addLast(identidad);
+    }
+
+    private void confirmar(long seq) {
+        mensajes.remove(seq);
+        try {
+            escribirLinea("A " + seq);
+            if (mensajes.isEmpty()) {
+                reiniciarSpool();
+            } else if (lineasSpool > LINEAS_MAX_SPOOL) {
+                compactarSpool();
+            }
+            // Un ACK perdido solo causa una reentrega, así que no hace falta force por cada uno
+            escritor.flush();
+        } catch (IOException e) {
+            System.err.println(" ✗ Cola de devoluciones: Error al registrar ACK " + seq + ": " + e.getMessage());
+        }
+    }
+
+    private void despachar() {
+        while (!enEspera.isEmpty() && !creditos.isEmpty()) {
+            long seq = enEspera.pollFirst();
+            String mensaje = mensajes.get(seq);
+            if (mensaje == null) {
+                continue;
+            }
+            byte[] consumidor = creditos.pollFirst();
+            consumidores.sendMore(consumidor);
+            consumidores.sendMore(Long.toString(seq));
+            consumidores.send(mensaje, 0);
+            entregados.put(seq, new Entrega(consumidor, System.currentTimeMillis() + TIMEOUT_ACK_MS));
+        }
+    }
+
+    private void reentregarVencidos() {
+        long ahora = System.currentTimeMillis();
+        List<Long> vencidos = new ArrayList<>();
+        Iterator<Map.Entry<Long, Entrega>> it = entregados.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Entrega> entrada = it.next();
+            if (entrada.getValue().vence > ahora) {
+                break;
+            }
+            it.remove();
+            vencidos.add(entrada.getKey());
+            // El consumidor no respondió: sus créditos pendientes probablemente tampoco sirven
+            byte[] consumidor = entrada.getValue().consumidor;
+            creditos.removeIf(c -> Arrays.equals(c, consumidor));
+        }
+        // Los vencidos vuelven al frente, en su orden original
+        for (int i = vencidos.size() - 1; i >= 0; i--) {
+            System.out.println(" ⚠ Cola de devoluciones: Sin ACK para el mensaje " + vencidos.get(i) + ", se reentrega");
+            enEspera.addFirst(vencidos.get(i));
+        }
+    }
+
+    private long msHastaProximoVencimiento() {
+        if (entregados.isEmpty()) {
+            return -1;
+        }
+        long vence = entregados.values().iterator().next().vence;
+        return Math.max(1, vence - System.currentTimeMillis());
+    }
+
+    // Spool
+
+    private void cargarSpool() throws IOException {
+        if (Files.exists(rutaSpool)) {
+            Map<Long, String> leidos = new LinkedHashMap<>();
+            for (String linea : Files.readAllLines(rutaSpool, StandardCharsets.UTF_8)) {
+                String[] partes = linea.split(" ", 3);
+                if (partes.length < 2) {
+                    continue;
+                }
+                long seq;
+                try {
+                    seq = Long.parseLong(partes[1]);
+                } catch (NumberFormatException e) {
+                    continue; // Línea cortada por una caída durante la escritura
+                }
+                ultimaSecuencia = Math.max(ultimaSecuencia, seq);
+                if (partes[0].equals("E") && partes.length == 3) {
+                    leidos.put(seq, partes[2]);
+                } else if (partes[0].equals("A")) {
+                    leidos.remove(seq);
+                }
+            }
+            mensajes.putAll(leidos);
+            enEspera.addAll(leidos.keySet());
+        }
+        compactarSpool();
+    }
+
+    // Reescribe el spool solo con los mensajes pendientes (tmp + move, para no perderlo a medias)
+    private void compactarSpool() throws IOException {
+        cerrarSpool();
+        Path temporal = rutaSpool.resolveSibling(rutaSpool.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal.toFile());
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            for (Map.Entry<Long, String> mensaje : mensajes.entrySet()) {
+                bw.write("E " + mensaje.getKey() + " " + mensaje.getValue().replace('\n', ' '));
+                bw.newLine();
+            }
+            bw.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temporal, rutaSpool, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        abrirSpool(true);
+        lineasSpool = mensajes.size();
+    }
+
+    // Sin mensajes pendientes: el spool puede empezar de cero
+    private void reiniciarSpool() throws IOException {
+        cerrarSpool();
+        abrirSpool(false);
+        lineasSpool = 0;
+    }
+
+    private void abrirSpool(boolean agregar) throws IOException {
+        salida = new FileOutputStream(rutaSpool.toFile(), agregar);
+        escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+    }
+
+    private void escribirLinea(String linea) throws IOException {
+        escritor.write(linea);
+        escritor.newLine();
+        lineasSpool++;
+    }
+
+    private void volcar() throws IOException {
+        escritor.flush();
+        salida.getFD().sync();
+    }
+
+    private void cerrarSpool() {
+        if (escritor == null) {
+            return;
+        }
+        try {
+            escritor.close();
+        } catch (IOException e) {
+            System.err.println(" ✗ Cola de devoluciones: Error al cerrar el spool: " + e.getMessage());
+        }
+        escritor = null;
+        salida = null;
+    }
+
+    private static final class Entrega {
+        final byte[] consumidor;
+        final long vence;
+
+        Entrega(byte[] consumidor, long vence) {
+            this.consumidor = consumidor;
+            this.vence = vence;
+        }
+    }
+}
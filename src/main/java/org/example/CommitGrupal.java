@@ -0,0 +1,172 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Commit en grupo: las mutaciones que llegan dentro de una ventana de tiempo (o hasta completar
+// un lote) se vuelcan juntas, con una sola escritura y un solo fsync por archivo.
+// Cada mutación obtiene un ticket; la respuesta al cliente se libera cuando su ticket está confirmado.
+// Si un volcado falla, el commit en grupo queda cerrado hasta reiniciar (ver estaAveriado).
+public class CommitGrupal {
+
+    // Archivo (o estructura) que acumula cambios en memoria y los escribe + fsync al volcar
+    public interface Participante {
+        void volcar() throws IOException;
+    }
+
+    private final List<Participante> participantes = new CopyOnWriteArrayList<>();
+    private final long ventanaMs;
+    private final int tamanoLote;
+    private final String etiqueta;
+
+    private long ultimoRegistrado;   // Último ticket entregado
+    private long ultimoConfirmado;   // Todos los tickets <= a este ya están en disco (o fallaron)
+    private int pendientes;
+    // Primer ticket del volcado que falló (0: ninguno). La memoria de los participantes ya incluye esas
+    // escrituras, que el cliente recibió como error, así que desde ahí no se vuelca nada más y todos los
+    // tickets fallan: al reiniciar se reproduce solo lo que llegó a disco
+    private long fallidoDesde;
+    private volatile boolean activo = true;
+    // Un lote (BATCH) toma la parte de lectura mientras aplica sus operaciones; el volcado toma la de
+    // escritura, así todas las operaciones del lote caen en el mismo volcado (una transacción en JDBC)
+    private final ReentrantReadWriteLock barreraLotes = new ReentrantReadWriteLock();
+
+    public CommitGrupal(long ventanaMs, int tamanoLote, String etiqueta) {
+        this.ventanaMs = ventanaMs;
+        this.tamanoLote = tamanoLote;
+        this.etiqueta = etiqueta;
+    }
+
+    public void agregarParticipante(Participante participante) {
+        participantes.add(participante);
+    }
+
+    public void iniciar() {
+        Thread hilo = new Thread(this::cicloVolcado, "commit-grupal");
+        hilo.setDaemon(true);
+        hilo.start();
+        System.out.println(etiqueta + ":  Commit en grupo activo (ventana " + ventanaMs + " ms, lote " + tamanoLote + ")");
+    }
+
+    // Registra una mutación ya aplicada en memoria y retorna su ticket
+    public synchronized long registrar() {
+        pendientes++;
+        ultimoRegistrado++;
+        // Despertar al hilo de volcado al abrir un lote nuevo y al completarlo
+        if (pendientes == 1 || pendientes >= tamanoLote) {
+            notifyAll();
+        }
+        return ultimoRegistrado;
+    }
+
+    // Ticket de la última mutación registrada (las lecturas esperan a que lo que vieron sea durable)
+    public synchronized long ultimoRegistrado() {
+        return ultimoRegistrado;
+    }
+
+    public synchronized boolean estaConfirmado(long ticket) {
+        return ticket <= ultimoConfirmado;
+    }
+
+    // true si el ticket se volcó correctamente; solo tiene sentido cuando ya está confirmado
+    public synchronized boolean fueExitoso(long ticket) {
+        return fallidoDesde == 0 || ticket < fallidoDesde;
+    }
+
+    // true después de un volcado fallido: GA2 deja de atender solicitudes hasta reiniciar
+    public synchronized boolean estaAveriado() {
+        return fallidoDesde != 0;
+    }
+
+    // Bloquea hasta que el ticket esté en disco; false si su volcado falló
+    public boolean esperar(long ticket) {
+        synchronized (this) {
+            while (ticket > ultimoConfirmado) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return fueExitoso(ticket);
+    }
+
+    // Mientras se tiene este bloqueo no empieza ningún volcado
+    public Lock bloqueoLote() {
+        return barreraLotes.readLock();
+    }
+
+    // Vuelca lo pendiente de inmediato (al cerrar)
+    public void cerrar() {
+        activo = false;
+        long hasta;
+        synchronized (this) {
+            hasta = ultimoRegistrado;
+            pendientes = 0;
+            notifyAll();
+        }
+        volcarHasta(hasta);
+    }
+
+    private void cicloVolcado() {
+        while (activo) {
+            long hasta;
+            synchronized (this) {
+                try {
+                    while (pendientes == 0 && activo) {
+                        wait();
+                    }
+                    // Dar tiempo a que lleguen más mutaciones, salvo que el lote ya esté lleno
+                    long limite = System.currentTimeMillis() + ventanaMs;
+                    long restante = ventanaMs;
+                    while (pendientes < tamanoLote && restante > 0) {
+                        wait(restante);
+                        restante = limite - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                hasta = ultimoRegistrado;
+                pendientes = 0;
+            }
+            volcarHasta(hasta);
+        }
+    }
+
+    private void volcarHasta(long hasta) {
+        boolean exito = !estaAveriado();
+        barreraLotes.writeLock().lock();
+        try {
+            for (Participante participante : participantes) {
+                if (!exito) {
+                    break;
+                }
+                try {
+                    participante.volcar();
+                } catch (IOException e) {
+                    exito = false;
+                    System.err.println(etiqueta + ":  ✗ Error en commit en grupo: " + e.getMessage());
+                }
+            }
+        } finally {
+            barreraLotes.writeLock().unlock();
+        }
+        synchronized (this) {
+            if (!exito && fallidoDesde == 0) {
+                fallidoDesde = ultimoConfirmado + 1;
+                System.err.println(etiqueta + ":  ✗ Commit en grupo cerrado desde el ticket " + fallidoDesde
+                        + ": no se confirman más escrituras hasta reiniciar");
+            }
+            if (hasta > ultimoConfirmado) {
+                ultimoConfirmado = hasta;
+                notifyAll();
+            }
+        }
+    }
+}
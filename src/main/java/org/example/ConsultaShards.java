@@ -0,0 +1,140 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Consultas de solo lectura (BUSCAR, VENCIDOS) sobre varios shards de GA2: se piden a todos y las
+// respuestas de texto se combinan en una sola con el mismo formato que daría un único GA2.
+//  - VENCIDOS: se juntan los préstamos de todos los shards, del más atrasado al más reciente, hasta el límite.
+//  - BUSCAR: el orden global es el de los shards y, dentro de cada uno, el suyo. Una primera ronda pide
+//    la página a cada shard para conocer sus totales; con eso se calcula qué páginas locales cubren la
+//    página global y se piden solo las que falten.
+public final class ConsultaShards {
+
+    private static final int LIMITE_VENCIDOS = 100; // El mismo valor por defecto que usa GA2
+
+    private static final Pattern TOTAL_RESULTADOS = Pattern.compile("^Resultados \\d+-\\d+ de (\\d+) ");
+    private static final Pattern TOTAL_SIN_PAGINA = Pattern.compile("^Sin resultados en la página \\d+ \\((\\d+) resultados");
+    private static final Pattern DIAS_ATRASO = Pattern.compile("\\((\\d+) días de atraso\\)$");
+
+    // Envía una solicitud a un shard y retorna su respuesta (null si no respondió)
+    public interface Consultor {
+        String consultar(int shard, String solicitud);
+    }
+
+    private ConsultaShards() {
+    }
+
+    // "BUSCAR:<texto>", "BUSCAR:<pagina>:<texto>", "VENCIDOS" o "VENCIDOS:<limite>", como las recibe GA2
+    public static String consultar(String solicitud, int shards, Consultor consultor) {
+        if (solicitud.startsWith("BUSCAR:")) {
+            String resto = solicitud.substring("BUSCAR:".length());
+            int pagina = 1;
+            String consulta = resto;
+            String[] partes = resto.split(":", 2);
+            if (partes.length == 2 && partes[0].trim().matches("\\d{1,6}")) {
+                pagina = Math.max(1, Integer.parseInt(partes[0].trim()));
+                consulta = partes[1];
+            }
+            if (consulta.trim().isEmpty()) {
+                return "Error: Búsqueda vacía";
+            }
+            return buscar(consulta, pagina, shards, consultor);
+        }
+        int limite = LIMITE_VENCIDOS;
+        String[] partes = solicitud.split(":", 2);
+        if (partes.length == 2 && partes[1].trim().matches("\\d{1,6}")) {
+            limite = Math.max(1, Integer.parseInt(partes[1].trim()));
+        }
+        return vencidos(solicitud, limite, shards, consultor);
+    }
+
+    public static String vencidos(String solicitud, int limite, int shards, Consultor consultor) {
+        List<String> lineas = new ArrayList<>();
+        boolean recortado = false;
+        for (int shard = 0; shard < shards; shard++) {
+            String respuesta = consultor.consultar(shard, solicitud);
+            if (respuesta == null || respuesta.startsWith("Error")) {
+                return respuesta == null ? "Error: Un shard de GA2 no respondió a la consulta" : respuesta;
+            }
+            String[] partes = respuesta.split("\n");
+            recortado |= partes[0].contains("se muestran los primeros");
+            for (int i = 1; i < partes.length; i++) {
+                lineas.add(partes[i]);
+            }
+        }
+        if (lineas.isEmpty()) {
+            return "No hay préstamos vencidos";
+        }
+        lineas.sort((a, b) -> Long.compare(diasAtraso(b), diasAtraso(a)));
+        if (lineas.size() > limite) {
+            lineas = lineas.subList(0, limite);
+            recortado = true;
+        }
+        StringBuilder sb = new StringBuilder("Préstamos vencidos: " + lineas.size()
+                + (recortado ? " (se muestran los primeros " + limite + ")" : ""));
+        for (String linea : lineas) {
+            sb.append('\n').append(linea);
+        }
+        return sb.toString();
+    }
+
+    public static String buscar(String consulta, int pagina, int shards, Consultor consultor) {
+        int tamano = ResultadoBusqueda.TAMANO_PAGINA;
+        String[] primeras = new String[shards];
+        int[] totales = new int[shards];
+        int total = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            primeras[shard] = consultor.consultar(shard, "BUSCAR:" + pagina + ":" + consulta);
+            if (primeras[shard] == null || primeras[shard].startsWith("Error")) {
+                return primeras[shard] == null ? "Error: Un shard de GA2 no respondió a la consulta" : primeras[shard];
+            }
+            totales[shard] = totalBusqueda(primeras[shard]);
+            total += totales[shard];
+        }
+
+        ResultadoBusqueda resultado = new ResultadoBusqueda(pagina, tamano, total);
+        int desde = (pagina - 1) * tamano; // Posición global del primer resultado de la página
+        int base = 0;                      // Posición global del primer resultado del shard
+        for (int shard = 0; shard < shards && resultado.getLibros().size() < tamano; shard++) {
+            int inicioLocal = Math.max(0, desde + resultado.getLibros().size() - base);
+            base += totales[shard];
+            if (inicioLocal >= totales[shard]) {
+                continue;
+            }
+            // Páginas locales desde la que contiene inicioLocal hasta completar la página global
+            for (int paginaLocal = inicioLocal / tamano + 1;
+                 resultado.getLibros().size() < tamano && (paginaLocal - 1) * tamano < totales[shard]; paginaLocal++) {
+                String respuesta = paginaLocal == pagina ? primeras[shard]
+                        : consultor.consultar(shard, "BUSCAR:" + paginaLocal + ":" + consulta);
+                if (respuesta == null || respuesta.startsWith("Error")) {
+                    return respuesta == null ? "Error: Un shard de GA2 no respondió a la consulta" : respuesta;
+                }
+                String[] lineas = respuesta.split("\n");
+                for (int i = 1; i < lineas.length && resultado.getLibros().size() < tamano; i++) {
+                    if ((paginaLocal - 1) * tamano + (i - 1) >= inicioLocal) {
+                        resultado.agregarLinea(lineas[i]);
+                    }
+                }
+            }
+        }
+        return resultado.aTexto();
+    }
+
+    // Total de coincidencias según el encabezado de una respuesta de BUSCAR
+    static int totalBusqueda(String respuesta) {
+        Matcher m = TOTAL_RESULTADOS.matcher(respuesta);
+        if (m.find()) {
+            return Integer.parseInt(m.group(1));
+        }
+        m = TOTAL_SIN_PAGINA.matcher(respuesta);
+        return m.find() ? Integer.parseInt(m.group(1)) : 0;
+    }
+
+    private static long diasAtraso(String linea) {
+        Matcher m = DIAS_ATRASO.matcher(linea);
+        return m.find() ? Long.parseLong(m.group(1)) : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Convierte el catálogo entre el formato de texto (DB.txt) y el binario de registros fijos.
+// Uso: ConvertidorCatalogo aBinario <DB.txt> <DB.bin>
+//      ConvertidorCatalogo aTexto <DB.bin> <DB.txt>
+public class ConvertidorCatalogo {
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Uso: ConvertidorCatalogo aBinario <texto> <binario> | aTexto <binario> <texto>");
+            return;
+        }
+        try {
+            if (args[0].equals("aBinario")) {
+                int libros = textoABinario(args[1], args[2]);
+                System.out.println(" Catálogo convertido a binario: " + libros + " libros -> " + args[2]);
+            } else if (args[0].equals("aTexto")) {
+                int libros = binarioATexto(args[1], args[2]);
+                System.out.println(" Catálogo convertido a texto: " + libros + " libros -> " + args[2]);
+            } else {
+                System.out.println(" Modo desconocido: " + args[0]);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(" Error al convertir catálogo: " + e.getMessage());
+        }
+    }
+
+    // Lee un catálogo de texto "ID, NOMBRE, AUTOR, ESTADO" y escribe el binario equivalente
+    public static int textoABinario(String rutaTexto, String rutaBinario) throws IOException {
+        // Primera pasada: rango de IDs para dimensionar el archivo
+        int idMinimo = Integer.MAX_VALUE;
+        int idMaximo = Integer.MIN_VALUE;
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(rutaTexto), StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] partes = linea.split(",", 4);
+                int id = partes.length == 4 ? CatalogoMemoria.parsearId(partes[0]) : -1;
+                if (id >= 0) {
+                    idMinimo = Math.min(idMinimo, id);
+                    idMaximo = Math.max(idMaximo, id);
+                }
+            }
+        }
+        if (idMinimo > idMaximo) {
+            idMinimo = 1;
+            idMaximo = 0;
+        }
+
+        int libros = 0;
+        try (CatalogoBinario binario = CatalogoBinario.crear(rutaBinario, idMinimo, idMaximo);
+             BufferedReader br = Files.newBufferedReader(Paths.get(rutaTexto), StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] partes = linea.split(",", 4);
+                int id = partes.length == 4 ? CatalogoMemoria.parsearId(partes[0]) : -1;
+                if (id < 0) {
+                    continue;
+                }
+                binario.escribirLibro(id, partes[1].trim(), partes[2].trim(), partes[3].trim());
+                libros++;
+            }
+        }
+        return libros;
+    }
+
+    // Recorre el catálogo binario en orden de ID y escribe el formato de texto original
+    public static int binarioATexto(String rutaBinario, String rutaTexto) throws IOException {
+        int libros = 0;
+        try (CatalogoBinario binario = CatalogoBinario.abrir(rutaBinario);
+             BufferedWriter bw = Files.newBufferedWriter(Paths.get(rutaTexto), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < binario.getCapacidad(); i++) {
+                int id = binario.idEn(i);
+                if (id == 0) {
+                    continue;
+                }
+                bw.write(id + ", " + binario.obtenerTitulo(id) + ", " + binario.obtenerAutor(id) + ", " + binario.obtenerEstado(id));
+                bw.newLine();
+                libros++;
+            }
+        }
+        return libros;
+    }
+}
@@ -8,11 +8,22 @@ public class DevolucionRenovacion {
     private static final String PUERTO_SUB_GC = "tcp://localhost:5560";
     private static final String PUERTO_REQ_GA = "tcp://localhost:5557";
     private static final String PUERTO_GA2 = "tcp://localhost:5580";  // Puerto del GA2 (fallback directo)
+    private static final String PUERTO_COLA_GC = "tcp://localhost:5561"; // ColaDevoluciones del GC (modo cola)
+    private static final String ERROR_SIN_GA = "Error: No se pudo comunicar ni con GA ni con GA2";
+
+    // Modo cola (-Ddevoluciones.cola=true): se consume de la cola durable del GC con ACK en lugar del
+    // canal PUB/SUB. Se pueden arrancar varias instancias y la cola reparte los mensajes entre ellas.
+    private final boolean modoCola = Boolean.getBoolean("devoluciones.cola");
 
     private ZMQ.Context context;
-    private ZMQ.Socket subscriber; // Suscriptor de GC
-    private ZMQ.Socket socketGA;   // Comunicador con GA
-    private ZMQ.Socket socketGA2;  // Comunicador con GA2 (fallback)
+    private ZMQ.Socket subscriber; // Suscriptor de GC (o DEALER hacia la cola del GC en modo cola)
+    private ClienteGA clienteGA;   // REQ a GA con fallback a GA2 y circuit breaker
+
+    // Claves de idempotencia de los mensajes que no traen una (PUB/SUB): prefijo de este proceso + contador.
+    // En modo cola la clave la pone la cola y se guarda con el mensaje, así una reentrega (a esta u otra
+    // instancia) lleva la misma clave y GA2 no vuelve a aplicar, por ejemplo, una renovación.
+    private final String prefijoClaves = ClaveIdempotencia.nuevoPrefijo();
+    private long ultimaClave;
 
     public static void main(String[] args) {
         new DevolucionRenovacion().iniciar();
@@ -23,12 +34,21 @@ public class DevolucionRenovacion {
         context = ZMQ.context(1);
         inicializarSockets();
 
-        System.out.println(" DevolucionRenovacion conectado a GC (" + PUERTO_SUB_GC + ") y GA (" + PUERTO_REQ_GA + ")");
+        System.out.println(" DevolucionRenovacion conectado a GC (" + (modoCola ? PUERTO_COLA_GC : PUERTO_SUB_GC)
+                + ") y GA (" + PUERTO_REQ_GA + ")");
 
-        try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
+        if (modoCola) {
+            // Un crédito: la cola entrega el siguiente mensaje recién cuando se confirma el anterior
+            subscriber.send("LISTO", 0);
+            while (!Thread.currentThread().isInterrupted()) {
+                procesarMensajeCola();
+            }
+        } else {
+            try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
 
-        while (!Thread.currentThread().isInterrupted()) {
-            procesarMensajes();
+            while (!Thread.currentThread().isInterrupted()) {
+                procesarMensajes();
+            }
         }
 
         cerrarSockets();
@@ -36,21 +56,22 @@ public class DevolucionRenovacion {
 
     //Sockets
     private void inicializarSockets() {
-        // SUB para recibir mensajes del GC
-        subscriber = context.socket(ZMQ.SUB);
-        subscriber.connect(PUERTO_SUB_GC);
-        subscriber.subscribe("DEVOLUCION".getBytes());
-        subscriber.subscribe("RENOVACION".getBytes());
-
-        // REQ para enviar confirmación al GA
-        socketGA = context.socket(ZMQ.REQ);
-        socketGA.connect(PUERTO_REQ_GA);
-        // Configurar timeout de 3 segundos para detectar si GA no está disponible
-        socketGA.setReceiveTimeOut(3000);
-        
-        // REQ para enviar confirmación al GA2 (fallback)
-        socketGA2 = context.socket(ZMQ.REQ);
-        socketGA2.connect(PUERTO_GA2);
+        if (modoCola) {
+            // DEALER hacia la cola del GC: recibe [SEQ][mensaje] y responde ACK/NACK
+            subscriber = context.socket(ZMQ.DEALER);
+            subscriber.setLinger(0);
+            subscriber.connect(PUERTO_COLA_GC);
+        } else {
+            // SUB para recibir mensajes del GC
+            subscriber = context.socket(ZMQ.SUB);
+            subscriber.connect(PUERTO_SUB_GC);
+            subscriber.subscribe("DEVOLUCION".getBytes());
+            subscriber.subscribe("RENOVACION".getBytes());
+            subscriber.subscribe("LOTE".getBytes());
+        }
+
+        // GA con timeout de 3 segundos para detectar si no está disponible; GA2 como fallback
+        clienteGA = new ClienteGA(context, PUERTO_REQ_GA, PUERTO_GA2, 3000, 10000);
         System.out.println(" Conectado a GA2 (fallback) en " + PUERTO_GA2);
     }
 
@@ -58,6 +79,33 @@ public class DevolucionRenovacion {
     private void procesarMensajes() {
         String mensajeCompleto = subscriber.recvStr();
         System.out.println("\n Mensaje recibido del GC: " + mensajeCompleto);
+        procesarMensaje(mensajeCompleto);
+    }
+
+    // Modo cola: se confirma con ACK si GA o GA2 respondieron; si ninguno respondió, NACK para que se reintente
+    private void procesarMensajeCola() {
+        String seq = subscriber.recvStr(0);
+        if (seq == null) {
+            return;
+        }
+        String mensajeCompleto = subscriber.hasReceiveMore() ? subscriber.recvStr(0) : "";
+        System.out.println("\n Mensaje " + seq + " recibido de la cola del GC: " + mensajeCompleto);
+
+        String respuesta = procesarMensaje(mensajeCompleto);
+        if (ERROR_SIN_GA.equals(respuesta)) {
+            System.out.println(" ⚠ Mensaje " + seq + " sin procesar, se devuelve a la cola");
+            subscriber.send("NACK:" + seq, 0);
+        } else {
+            subscriber.send("ACK:" + seq, 0);
+        }
+    }
+
+    private String procesarMensaje(String mensajeCompleto) {
+        String clave = ClaveIdempotencia.clave(mensajeCompleto);
+        if (clave == null) {
+            clave = prefijoClaves + "-" + (++ultimaClave);
+        }
+        mensajeCompleto = ClaveIdempotencia.sinClave(mensajeCompleto);
 
         // Separar tópico del contenido
         String[] partes = mensajeCompleto.split(" ", 2);
@@ -65,72 +113,56 @@ public class DevolucionRenovacion {
         String contenido = partes.length > 1 ? partes[1] : "";
 
         if (topico.equals("DEVOLUCION")) {
-            manejarDevolucion(contenido);
+            return manejarDevolucion(contenido, clave);
 
         } else if (topico.equals("RENOVACION")) {
-            manejarRenovacion(contenido);
+            return manejarRenovacion(contenido, clave);
+
+        } else if (topico.equals("LOTE")) {
+            return manejarLote(contenido, clave);
 
         } else {
             System.out.println("️ Tópico desconocido: " + topico);
+            return "Tópico desconocido";
         }
     }
 
     // Manejo de devoluciones
-    private void manejarDevolucion(String contenido) {
+    private String manejarDevolucion(String contenido, String clave) {
         System.out.println(" Procesando devolución -> " + contenido);
         String mensaje = "DEVOLVER " + contenido;
-        String respGA = enviarAGa(mensaje);
+        String respGA = enviarAGa(mensaje, clave);
         System.out.println(" Respuesta recibida: " + respGA);
+        return respGA;
     }
 
     //  Manejo de renovaciones
-    private void manejarRenovacion(String contenido) {
+    private String manejarRenovacion(String contenido, String clave) {
         System.out.println(" Procesando renovación -> " + contenido);
         String mensaje = "RENOVAR " + contenido;
-        String respGA = enviarAGa(mensaje);
+        String respGA = enviarAGa(mensaje, clave);
         System.out.println(" Respuesta recibida: " + respGA);
+        return respGA;
     }
     
-    // Enviar mensaje a GA con fallback a GA2
-    private String enviarAGa(String mensaje) {
-        // Intentar primero con GA
-        try {
-            socketGA.send(mensaje);
-            String respuesta = socketGA.recvStr();
-            
-            // Si recibimos null (timeout), GA no está disponible
-            if (respuesta == null) {
-                System.out.println(" ⚠ GA no respondió (timeout), intentando con GA2...");
-                return enviarAGa2(mensaje);
-            } else {
-                System.out.println(" GA respondió: " + respuesta);
-                return respuesta;
-            }
-        } catch (Exception e) {
-            System.out.println(" ⚠ Error al comunicarse con GA: " + e.getMessage() + ", intentando con GA2...");
-            return enviarAGa2(mensaje);
-        }
+    //  Manejo de lotes de devoluciones/renovaciones: el mensaje BATCH va completo a GA en una sola solicitud
+    private String manejarLote(String contenido, String clave) {
+        System.out.println(" Procesando lote -> " + contenido);
+        String respGA = enviarAGa(contenido, clave);
+        System.out.println(" Respuesta recibida: " + respGA);
+        return respGA;
     }
     
-    // Enviar mensaje a GA2 (fallback)
-    private String enviarAGa2(String mensaje) {
-        try {
-            System.out.println(" Enviando solicitud a GA2 (fallback): " + mensaje);
-            socketGA2.send(mensaje);
-            String respuesta = socketGA2.recvStr();
-            System.out.println(" ✓ Respuesta recibida de GA2 (fallback): " + respuesta);
-            return respuesta;
-        } catch (Exception e) {
-            System.err.println(" ✗ Error al comunicarse con GA2: " + e.getMessage());
-            return "Error: No se pudo comunicar ni con GA ni con GA2";
-        }
+    // Enviar mensaje a GA con fallback a GA2
+    private String enviarAGa(String mensaje, String clave) {
+        String respuesta = clienteGA.enviar(mensaje, clave);
+        return respuesta != null ? respuesta : ERROR_SIN_GA;
     }
 
     // Cierre
     private void cerrarSockets() {
         subscriber.close();
-        socketGA.close();
-        socketGA2.close();
+        clienteGA.cerrar();
         context.term();
         System.out.println("\n DevolucionRenovacion finalizado correctamente.");
     }
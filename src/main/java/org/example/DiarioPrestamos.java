@@ -0,0 +1,464 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Estado de préstamos en memoria respaldado por un diario de solo-agregar.
+// Cada cambio agrega una línea al diario ("SEQ, LOAN|RETURN|RENEW, ...") en vez de reescribir
+// Prestamos.txt; un hilo de fondo compacta el diario sobre Prestamos.txt cuando crece demasiado.
+// Con volcado diferido las líneas quedan en el buffer hasta que CommitGrupal llama a volcar().
+// Con base binaria (activarBaseBinaria) la compactación escribe una instantánea binaria en vez de
+// Prestamos.txt, y al arrancar se carga en bloque antes de reproducir la cola del diario.
+// Los préstamos también se indexan por fecha de devolución (un cubo por día) para responder
+// VENCIDOS recorriendo solo los préstamos vencidos.
+public class DiarioPrestamos implements CommitGrupal.Participante {
+
+    private static final int UMBRAL_MINIMO_COMPACTACION = 1000;
+    private static final int MAGICO_BASE_BINARIA = 0x50524549; // "PREI"
+    private static final int VERSION_BASE_BINARIA = 1;
+
+    private final Path rutaBase;          // Prestamos.txt (formato original, compactado)
+    private final Path rutaDiario;        // Diario activo
+    private final Path rutaCompactando;   // Diario congelado mientras se compacta
+    private final String etiqueta;
+    private Path rutaBaseBinaria;         // Instantánea binaria de los préstamos (null si no se usa)
+
+    private final Map<Integer, Prestamo> prestamos = new LinkedHashMap<>();
+    // Fecha de devolución -> IDs de libros con préstamo que vence ese día (sin cubos vacíos)
+    private final TreeMap<LocalDate, Set<Integer>> porVencimiento = new TreeMap<>();
+    private final ExecutorService compactador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "compactador-prestamos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileOutputStream salida;
+    private BufferedWriter escritor;
+    private boolean volcadoDiferido;
+    private long secuencia;
+    private int registrosDiario;
+    // Bytes del diario cubiertos por el último fsync: si un volcado falla se recorta hasta aquí
+    private long diarioConfirmado;
+    // Un volcado falló: no se escribe más hasta reiniciar (ver CommitGrupal.estaAveriado)
+    private boolean averiado;
+    private boolean compactando;
+    private boolean cargado;
+
+    public DiarioPrestamos(String rutaBase, String rutaDiario, String etiqueta) {
+        this.rutaBase = Paths.get(rutaBase);
+        this.rutaDiario = Paths.get(rutaDiario);
+        this.rutaCompactando = Paths.get(rutaDiario + ".compactando");
+        this.etiqueta = etiqueta;
+    }
+
+    // La compactación escribirá la base en formato binario; debe llamarse antes de la primera carga
+    public synchronized void activarBaseBinaria(String rutaBaseBinaria) {
+        this.rutaBaseBinaria = Paths.get(rutaBaseBinaria);
+    }
+
+    // Carga Prestamos.txt (o la base binaria) y reproduce el diario encima (solo la primera vez)
+    public synchronized boolean asegurarCargado() {
+        if (cargado) {
+            return true;
+        }
+        prestamos.clear();
+        porVencimiento.clear();
+        secuencia = 0;
+        registrosDiario = 0;
+        try {
+            boolean baseBinariaPendiente = false;
+            if (rutaBaseBinaria != null && Files.exists(rutaBaseBinaria)) {
+                cargarBaseBinaria();
+            } else if (Files.exists(rutaBase)) {
+                baseBinariaPendiente = rutaBaseBinaria != null;
+                for (String linea : Files.readAllLines(rutaBase, StandardCharsets.UTF_8)) {
+                    Prestamo p = Prestamo.desdeLinea(linea);
+                    if (p != null) {
+                        poner(p);
+                    }
+                }
+            }
+            // Un diario ".compactando" indica que la última compactación no terminó
+            reproducir(rutaCompactando);
+            registrosDiario = reproducir(rutaDiario);
+
+            abrirEscritor();
+            cargado = true;
+            System.out.println(etiqueta + ":  Préstamos cargados en memoria (" + prestamos.size()
+                    + " activos, " + registrosDiario + " registros en diario, secuencia " + secuencia + ")");
+            if (Files.exists(rutaCompactando) || baseBinariaPendiente) {
+                programarCompactacion();
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al cargar préstamos: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    // Con volcado diferido agregar() no hace flush; el commit en grupo vuelca y sincroniza por lotes
+    public synchronized void setVolcadoDiferido(boolean volcadoDiferido) {
+        this.volcadoDiferido = volcadoDiferido;
+    }
+
+    // Escribe al archivo lo acumulado en el buffer y fuerza el fsync. Si falla, lo escrito desde el
+    // último fsync exitoso es de un volcado que el cliente recibió como error: se recorta para que no
+    // reaparezca al reproducir el diario
+    @Override
+    public synchronized void volcar() throws IOException {
+        if (averiado) {
+            throw new IOException("El diario de préstamos no se vuelca después de un fallo de escritura");
+        }
+        if (escritor == null) {
+            return;
+        }
+        FileChannel canal = salida.getChannel();
+        try {
+            escritor.flush();
+            canal.force(false);
+            diarioConfirmado = canal.size();
+        } catch (IOException e) {
+            averiado = true;
+            try {
+                canal.truncate(diarioConfirmado);
+                canal.force(false);
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    public synchronized Prestamo buscar(int idLibro) {
+        return prestamos.get(idLibro);
+    }
+
+    // Préstamos con fecha de devolución anterior a hoy, del más atrasado al más reciente, hasta "limite".
+    // Recorre solo los cubos de días vencidos, así que el costo es proporcional al resultado.
+    public synchronized List<Prestamo> vencidos(LocalDate hoy, int limite) {
+        List<Prestamo> resultado = new ArrayList<>();
+        for (Set<Integer> cubo : porVencimiento.headMap(hoy, false).values()) {
+            for (int idLibro : cubo) {
+                if (resultado.size() >= limite) {
+                    return resultado;
+                }
+                resultado.add(prestamos.get(idLibro));
+            }
+        }
+        return resultado;
+    }
+
+    public synchronized int cantidad() {
+        return prestamos.size();
+    }
+
+    // Todos los préstamos activos (para RebalanceoShards)
+    public synchronized List<Prestamo> todos() {
+        return new ArrayList<>(prestamos.values());
+    }
+
+    public synchronized long getSecuencia() {
+        return secuencia;
+    }
+
+    // LOAN: registra (o reemplaza) el préstamo de un libro
+    public synchronized boolean registrar(Prestamo prestamo) {
+        if (!agregar("LOAN, " + prestamo.aLinea())) {
+            return false;
+        }
+        poner(prestamo);
+        compactarSiHaceFalta();
+        return true;
+    }
+
+    // RETURN: elimina el préstamo de un libro; false si no había préstamo
+    public synchronized boolean eliminar(int idLibro) {
+        if (!prestamos.containsKey(idLibro)) {
+            return false;
+        }
+        if (!agregar("RETURN, " + idLibro)) {
+            return false;
+        }
+        quitar(idLibro);
+        compactarSiHaceFalta();
+        return true;
+    }
+
+    // RENEW: actualiza la fecha de devolución y el contador de un préstamo existente
+    public synchronized boolean renovar(int idLibro, LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas) {
+        Prestamo actual = prestamos.get(idLibro);
+        if (actual == null) {
+            return false;
+        }
+        if (!agregar("RENEW, " + idLibro + ", " + nuevaFechaDevolucion + ", " + nuevasVecesPrestadas)) {
+            return false;
+        }
+        poner(actual.renovado(nuevaFechaDevolucion, nuevasVecesPrestadas));
+        compactarSiHaceFalta();
+        return true;
+    }
+
+    // Cierra el diario y espera a que termine la compactación en curso (si la hay)
+    public void cerrar() {
+        synchronized (this) {
+            try {
+                if (averiado && salida != null) {
+                    salida.close(); // Sin vaciar el buffer: tiene registros que no se confirmaron
+                } else if (escritor != null) {
+                    escritor.close();
+                }
+            } catch (IOException e) {
+                System.err.println(etiqueta + ":  Error al cerrar diario de préstamos: " + e.getMessage());
+            }
+            compactador.shutdown();
+        }
+        try {
+            compactador.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Agrega un registro al diario con el siguiente número de secuencia (costo constante)
+    private boolean agregar(String registro) {
+        if (!asegurarCargado()) {
+            return false;
+        }
+        if (averiado) {
+            System.err.println(etiqueta + ":  Diario de préstamos fuera de servicio por un fallo de escritura");
+            return false;
+        }
+        try {
+            escritor.write((secuencia + 1) + ", " + registro);
+            escritor.newLine();
+            if (!volcadoDiferido) {
+                escritor.flush();
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al escribir en diario de préstamos: " + e.getMessage());
+            return false;
+        }
+        secuencia++;
+        registrosDiario++;
+        return true;
+    }
+
+    // Alta o reemplazo de un préstamo en memoria, moviéndolo al cubo de su fecha de devolución
+    private void poner(Prestamo prestamo) {
+        Prestamo anterior = prestamos.put(prestamo.getIdLibro(), prestamo);
+        if (anterior != null) {
+            quitarDeCubo(anterior);
+        }
+        porVencimiento.computeIfAbsent(prestamo.getFechaDevolucion(), f -> new LinkedHashSet<>()).add(prestamo.getIdLibro());
+    }
+
+    private void quitar(int idLibro) {
+        Prestamo anterior = prestamos.remove(idLibro);
+        if (anterior != null) {
+            quitarDeCubo(anterior);
+        }
+    }
+
+    private void quitarDeCubo(Prestamo prestamo) {
+        Set<Integer> cubo = porVencimiento.get(prestamo.getFechaDevolucion());
+        if (cubo != null && cubo.remove(prestamo.getIdLibro()) && cubo.isEmpty()) {
+            porVencimiento.remove(prestamo.getFechaDevolucion());
+        }
+    }
+
+    // Se llama después de aplicar el cambio en memoria, para que la copia a compactar lo incluya
+    // (el registro ya quedó en el diario que se congela y se descarta al compactar)
+    private void compactarSiHaceFalta() {
+        if (!compactando && registrosDiario > Math.max(UMBRAL_MINIMO_COMPACTACION, prestamos.size())) {
+            programarCompactacion();
+        }
+    }
+
+    // Congela el diario actual, abre uno nuevo y compacta en segundo plano
+    private void programarCompactacion() {
+        if (compactando) {
+            return;
+        }
+        try {
+            if (!Files.exists(rutaCompactando)) {
+                volcar();
+                escritor.close();
+                Files.move(rutaDiario, rutaCompactando, StandardCopyOption.REPLACE_EXISTING);
+                abrirEscritor();
+                // Conservar la secuencia en el diario nuevo para que siga siendo monótona tras reiniciar
+                escritor.write(secuencia + ", COMPACTADO");
+                escritor.newLine();
+                escritor.flush();
+                diarioConfirmado = salida.getChannel().size();
+                registrosDiario = 0;
+            }
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al rotar diario de préstamos: " + e.getMessage());
+            return;
+        }
+
+        List<Prestamo> activos = new ArrayList<>(prestamos.values());
+        compactando = true;
+        compactador.execute(() -> compactar(activos));
+    }
+
+    private void abrirEscritor() throws IOException {
+        salida = new FileOutputStream(rutaDiario.toFile(), true);
+        escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        diarioConfirmado = salida.getChannel().size();
+    }
+
+    // Escribe el estado completo en Prestamos.txt (o la base binaria) y descarta el diario congelado.
+    // La base nueva queda en disco (temporal + fsync + renombrado atómico + fsync del directorio) antes
+    // de borrar el diario congelado; si se corta antes, al arrancar se reproduce el diario encima.
+    private void compactar(List<Prestamo> activos) {
+        try {
+            if (rutaBaseBinaria != null) {
+                escribirBaseBinaria(activos);
+            } else {
+                StringBuilder sb = new StringBuilder(activos.size() * 32);
+                for (Prestamo p : activos) {
+                    sb.append(p.aLinea()).append(System.lineSeparator());
+                }
+                Path temporal = Paths.get(rutaBase + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(temporal.toFile())) {
+                    out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    out.getChannel().force(true);
+                }
+                Files.move(temporal, rutaBase, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            forzarDirectorio();
+            Files.deleteIfExists(rutaCompactando);
+            System.out.println(etiqueta + ":  Diario de préstamos compactado (" + activos.size() + " préstamos activos)");
+        } catch (IOException e) {
+            System.err.println(etiqueta + ":  Error al compactar diario de préstamos: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compactando = false;
+            }
+        }
+    }
+
+    // fsync del directorio para que el renombrado de la base sea durable
+    private void forzarDirectorio() throws IOException {
+        Path directorio = rutaDiario.toAbsolutePath().getParent();
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        }
+    }
+
+    // Base binaria: cantidad y luego 4 int por préstamo (ID, día de préstamo, día de devolución, veces)
+    private void escribirBaseBinaria(List<Prestamo> activos) throws IOException {
+        int[] valores = new int[activos.size() * 4];
+        int i = 0;
+        for (Prestamo p : activos) {
+            valores[i++] = p.getIdLibro();
+            valores[i++] = (int) p.getFechaPrestamo().toEpochDay();
+            valores[i++] = (int) p.getFechaDevolucion().toEpochDay();
+            valores[i++] = p.getVecesPrestadas();
+        }
+        try (Instantanea.Escritor escritor = new Instantanea.Escritor(rutaBaseBinaria, MAGICO_BASE_BINARIA, VERSION_BASE_BINARIA, 0)) {
+            escritor.escribirInt(activos.size());
+            escritor.escribirEnteros(valores, valores.length);
+            escritor.terminar();
+        }
+    }
+
+    private void cargarBaseBinaria() throws IOException {
+        try (Instantanea.Lector lector = new Instantanea.Lector(rutaBaseBinaria, MAGICO_BASE_BINARIA, VERSION_BASE_BINARIA)) {
+            int n = lector.leerInt();
+            int[] valores = lector.leerEnteros(n * 4);
+            for (int i = 0; i < valores.length; i += 4) {
+                poner(new Prestamo(valores[i],
+                        LocalDate.ofEpochDay(valores[i + 1]), LocalDate.ofEpochDay(valores[i + 2]), valores[i + 3]));
+            }
+        }
+    }
+
+    // Aplica los registros de un diario sobre el estado en memoria; retorna cuántos aplicó.
+    // Los registros llevan valores absolutos, así que reproducirlos dos veces es inofensivo.
+    private int reproducir(Path diario) throws IOException {
+        if (!Files.exists(diario)) {
+            return 0;
+        }
+        int aplicados = 0;
+        try (BufferedReader br = Files.newBufferedReader(diario, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] partes = linea.split(",\\s*", 3);
+                if (partes.length < 2) {
+                    continue;
+                }
+                long seq;
+                try {
+                    seq = Long.parseLong(partes[0].trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                secuencia = Math.max(secuencia, seq);
+                String tipo = partes[1].trim();
+                String datos = partes.length > 2 ? partes[2] : "";
+                if (aplicarRegistro(tipo, datos)) {
+                    aplicados++;
+                }
+            }
+        }
+        if (aplicados > 0) {
+            System.out.println(etiqueta + ":  Reproducidos " + aplicados + " registros de " + new File(diario.toString()).getName());
+        }
+        return aplicados;
+    }
+
+    private boolean aplicarRegistro(String tipo, String datos) {
+        try {
+            switch (tipo) {
+                case "LOAN": {
+                    Prestamo p = Prestamo.desdeLinea(datos);
+                    if (p == null) {
+                        return false;
+                    }
+                    poner(p);
+                    return true;
+                }
+                case "RETURN":
+                    quitar(CatalogoMemoria.parsearId(datos));
+                    return true;
+                case "RENEW": {
+                    String[] campos = datos.split(",");
+                    Prestamo actual = prestamos.get(CatalogoMemoria.parsearId(campos[0]));
+                    if (actual != null) {
+                        poner(actual.renovado(
+                                LocalDate.parse(campos[1].trim()), Integer.parseInt(campos[2].trim())));
+                    }
+                    return true;
+                }
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            System.err.println(etiqueta + ":  Registro de diario inválido: " + tipo + ", " + datos);
+            return false;
+        }
+    }
+}
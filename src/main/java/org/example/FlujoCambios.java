@@ -0,0 +1,166 @@
+package org.example;
+
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Lado de GA del flujo de cambios de un shard de GA2. GA2 publica cada cambio ya confirmado en disco
+// como "CAMBIO:SEQ, TIMESTAMP, TIPO, DATOS" en un PUB, y "LATIDO_CAMBIOS:SEQ" (último publicado) cuando
+// no hay tráfico. Este SUB los aplica en orden de secuencia:
+//  - SEQ == aplicado + 1: se aplica enseguida.
+//  - SEQ <= aplicado: repetido, se descarta.
+//  - Un hueco (SEQ > aplicado + 1, o un latido con SEQ mayor que lo aplicado) o el silencio del
+//    flujo pide el backlog a GA2 por el canal de solicitudes: "OBTENER_CAMBIOS_DESDE:N:MAX:Z", que
+//    responde una página comprimida (ver PaginaCambios); si trae ":MAS" se pide la siguiente enseguida.
+//    Mientras llega se ignora el flujo (lo que se pierda vuelve en el backlog o provoca otro pedido).
+// Al conectarse el flujo arranca pidiendo el backlog desde 0, es decir, todo lo pendiente en GA2.
+// No es thread-safe: lo usa solo el hilo de GA que hace poll sobre getSocket().
+public class FlujoCambios {
+
+    public static final long SILENCIO_MAX_MS = 3000; // Sin nada del flujo en este tiempo se pide el backlog
+
+    private final ZMQ.Socket suscriptor;
+    private final String nombre;
+    private String direccion;
+    private long aplicadoHasta;
+    private long confirmadoHasta;
+    private boolean pidiendoBacklog;
+    private boolean backlogNecesario = true;
+    private long ultimaSenal;
+
+    public FlujoCambios(ZMQ.Context context, String nombre) {
+        this.nombre = nombre;
+        suscriptor = context.socket(ZMQ.SUB);
+        suscriptor.setLinger(0);
+        suscriptor.subscribe("".getBytes());
+    }
+
+    // Para registrarlo en un Poller (sin conectar no recibe nada)
+    public ZMQ.Socket getSocket() {
+        return suscriptor;
+    }
+
+    public boolean estaConectado() {
+        return direccion != null;
+    }
+
+    // Secuencia del último cambio aplicado de este shard
+    public long getAplicadoHasta() {
+        return aplicadoHasta;
+    }
+
+    public void conectar(String direccion) {
+        this.direccion = direccion;
+        suscriptor.connect(direccion);
+        ultimaSenal = System.currentTimeMillis();
+        System.out.println("GA:  Suscrito al flujo de cambios de " + nombre + " en " + direccion);
+    }
+
+    // Lee un mensaje del flujo; retorna el cambio ("TIMESTAMP, TIPO, DATOS") si hay que aplicarlo ahora
+    public String recibir() {
+        String mensaje = suscriptor.recvStr(0);
+        ultimaSenal = System.currentTimeMillis();
+        if (mensaje == null || pidiendoBacklog) {
+            return null;
+        }
+        if (mensaje.startsWith("LATIDO_CAMBIOS:")) {
+            long ultima = parsearSecuencia(mensaje.substring("LATIDO_CAMBIOS:".length()));
+            if (ultima > aplicadoHasta) {
+                backlogNecesario = true;
+            }
+            return null;
+        }
+        if (!mensaje.startsWith("CAMBIO:")) {
+            return null;
+        }
+        String[] partes = mensaje.substring("CAMBIO:".length()).split(",", 2);
+        long seq = parsearSecuencia(partes[0]);
+        if (seq < 0 || partes.length < 2 || seq <= aplicadoHasta) {
+            return null;
+        }
+        if (seq > aplicadoHasta + 1) {
+            System.out.println("GA:  Hueco en el flujo de " + nombre + " (llegó #" + seq + ", aplicado hasta #"
+                    + aplicadoHasta + "), pidiendo backlog...");
+            backlogNecesario = true;
+            return null;
+        }
+        aplicadoHasta = seq;
+        return partes[1].trim();
+    }
+
+    // Solicitud de backlog a enviar a GA2, o null si no hace falta (o ya hay una en curso)
+    public String solicitudBacklog() {
+        if (pidiendoBacklog || !estaConectado()) {
+            return null;
+        }
+        if (!backlogNecesario && System.currentTimeMillis() - ultimaSenal < SILENCIO_MAX_MS) {
+            return null;
+        }
+        pidiendoBacklog = true;
+        backlogNecesario = false;
+        return "OBTENER_CAMBIOS_DESDE:" + aplicadoHasta + ":" + PaginaCambios.MAX_CAMBIOS + ":Z";
+    }
+
+    // Página del backlog (null si GA2 no respondió); retorna los cambios a aplicar, en orden
+    public List<String> recibirBacklog(String respuesta) {
+        pidiendoBacklog = false;
+        ultimaSenal = System.currentTimeMillis();
+        String pagina = respuesta == null || respuesta.startsWith("Error") ? null : PaginaCambios.abrir(respuesta);
+        if (pagina == null) {
+            System.out.println("GA:  No se pudo obtener el backlog de cambios de " + nombre);
+            backlogNecesario = true;
+            return Collections.emptyList();
+        }
+        String[] partes = pagina.split("\\|");
+        boolean hayMas = partes[0].endsWith(PaginaCambios.MAS);
+        long ultima = parsearSecuencia(hayMas ? partes[0].substring(0, partes[0].length() - PaginaCambios.MAS.length()) : partes[0]);
+        List<String> cambios = new ArrayList<>(partes.length - 1);
+        for (int i = 1; i < partes.length; i++) {
+            String[] cambio = partes[i].split(",", 2);
+            long seq = parsearSecuencia(cambio[0]);
+            if (seq < 0 || cambio.length < 2) {
+                System.err.println("GA:  Cambio sin secuencia en el backlog, se detiene: " + partes[i]);
+                backlogNecesario = true;
+                return cambios;
+            }
+            if (seq > aplicadoHasta) {
+                cambios.add(cambio[1].trim());
+                aplicadoHasta = seq;
+            }
+        }
+        if (hayMas || partes.length - 1 >= PaginaCambios.MAX_CAMBIOS) {
+            backlogNecesario = true; // Quedan más: se pide la página siguiente enseguida
+        } else if (ultima > aplicadoHasta) {
+            // Lo que falta hasta "ULTIMA" ya estaba confirmado en GA2 (aplicado antes de reiniciar GA)
+            aplicadoHasta = ultima;
+        }
+        if (!cambios.isEmpty()) {
+            System.out.println("GA:  Backlog de " + nombre + ": " + cambios.size() + " cambios (aplicado hasta #"
+                    + aplicadoHasta + ")");
+        }
+        return cambios;
+    }
+
+    // Confirmación a enviar a GA2 para que descarte lo aplicado, o null si no hay nada nuevo
+    public String solicitudConfirmacion() {
+        if (aplicadoHasta <= confirmadoHasta) {
+            return null;
+        }
+        confirmadoHasta = aplicadoHasta;
+        return "CAMBIOS_SINCRONIZADOS_HASTA:" + aplicadoHasta;
+    }
+
+    public void cerrar() {
+        suscriptor.close();
+    }
+
+    private static long parsearSecuencia(String texto) {
+        try {
+            return Long.parseLong(texto.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
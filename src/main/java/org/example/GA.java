@@ -1,144 +1,321 @@
 package org.example;
 
 import org.zeromq.ZMQ;
-import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GA {
 
     private static final int PUERTO = 5557;
-    private static final int PUERTOGA2 = 5570;
-    private static final String RUTA_DB = "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\DB.txt";
-    private static final String RUTA_PRESTAMOS = "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\Prestamos.txt";
+    private static final String DIRECTORIO = "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\";
+    private static final String RUTA_DB = DIRECTORIO + "DB.txt";
+    private static final String RUTA_DB_BINARIO = DIRECTORIO + "DB.bin"; // Opcional: se usa si existe
+    private static final String RUTA_PRESTAMOS = DIRECTORIO + "Prestamos.txt";
+    private static final String RUTA_DIARIO_PRESTAMOS = DIRECTORIO + "Prestamos.diario";
+    
+    private static final long TIMEOUT_GA2_MS = 10000;
+    private static final long INTERVALO_REVISION_FLUJO_MS = 1000; // Backlogs, confirmaciones y reconexión del flujo
+    // Cada cuánto se compara el estado de los libros con cada GA2 (AntiEntropia); 0 la desactiva
+    private static final long INTERVALO_ANTIENTROPIA_MS = Long.getLong("ga.antientropiaMs", 600000);
     
     private ZMQ.Context context;
     private ZMQ.Socket responder;
-    private ZMQ.Socket dealer;  // Socket DEALER para comunicarse con GA2
+    // Shards de GA2 (-Dshards.tabla; por defecto uno solo en el puerto 5570) y un canal DEALER hacia
+    // cada uno. Las operaciones sobre un libro van al shard dueño; la sincronización se hace por shard.
+    private final TablaShards tablaShards = TablaShards.desdePropiedades();
+    private final List<CanalGA2<Destino>> canalesGA2 = new ArrayList<>();
+    // Flujo de cambios de cada shard (lo que GA2 aplicó por su cuenta, p. ej. préstamos directos de actores)
+    private final List<FlujoCambios> flujos = new ArrayList<>();
+    private boolean[] pidiendoCanal;
+    // Comparación periódica del estado de los libros con cada shard
+    private final List<AntiEntropia> antientropias = new ArrayList<>();
+    private long proximaAntientropia;
+    // El resumen local de un rango recorre todos sus libros: se calcula en este hilo aparte para no frenar
+    // el bucle de GA, y el resultado vuelve por la cola para que lo procese el hilo de GA
+    private final ExecutorService calculoAntientropia = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "antientropia-ga");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ConcurrentLinkedQueue<ResumenLocal> resumenesLocales = new ConcurrentLinkedQueue<>();
+    private int resumenesEnCalculo;
+
+    // Almacenamiento de libros y préstamos: archivos (DB.txt/DB.bin + diario de Prestamos.txt) por defecto,
+    // o PostgreSQL con -Dga.almacenamiento=jdbc
+    private final Almacenamiento almacenamiento = crearAlmacenamiento();
 
     public static void main(String[] args) {
         new GA().iniciar();
     }
 
+    private static Almacenamiento crearAlmacenamiento() {
+        if ("jdbc".equals(System.getProperty("ga.almacenamiento"))) {
+            return AlmacenamientoJdbc.desdePropiedades("ga", "GA");
+        }
+        return new AlmacenamientoArchivos(RUTA_DB, RUTA_DB_BINARIO, RUTA_PRESTAMOS, RUTA_DIARIO_PRESTAMOS, "GA");
+    }
+
     public void iniciar() {
         context = ZMQ.context(1);
-        responder = context.socket(ZMQ.REP);
+        // ROUTER: varias solicitudes del actor de préstamo pueden estar en curso a la vez
+        responder = context.socket(ZMQ.ROUTER);
         responder.bind("tcp://*:" + PUERTO);
 
-        // Inicializar socket DEALER para conectarse a GA2
-        inicializarDealerSocket();
-        
-        // Esperar un momento para que la conexión se establezca
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        // Cargar el catálogo en memoria una sola vez
+        almacenamiento.asegurarCargado();
+
+        // Canal asíncrono hacia el ROUTER de cada shard de GA2
+        for (TablaShards.Shard shard : tablaShards.getShards()) {
+            CanalGA2<Destino> canal = new CanalGA2<>(context, shard.direccionRouter, "GA-DEALER", TIMEOUT_GA2_MS);
+            canal.negociarBinario();
+            canalesGA2.add(canal);
+            System.out.println(" GA conectado a " + shard.nombre + " en " + shard.direccionRouter + " (DEALER)...");
+        }
+        for (TablaShards.Shard shard : tablaShards.getShards()) {
+            flujos.add(new FlujoCambios(context, shard.nombre));
+            antientropias.add(new AntiEntropia(shard.nombre, shard.desde, shard.hasta));
+        }
+        pidiendoCanal = new boolean[canalesGA2.size()];
+        System.out.println(" GA:  Identidad del DEALER establecida: GA-DEALER");
 
         System.out.println(" GA escuchando en puerto " + PUERTO + "...");
-        System.out.println(" GA conectado a GA2 en puerto " + PUERTOGA2 + " (DEALER)...");
-        
-        // Sincronizar con GA2 al iniciar (obtener cambios pendientes)
-        sincronizarConGA2();
         
-        // Iniciar sincronización periódica cada 30 segundos
-        Thread threadSincronizacion = new Thread(() -> sincronizacionPeriodica());
-        threadSincronizacion.setDaemon(true);
-        threadSincronizacion.start();
+        // Suscribirse al flujo de cambios de cada GA2 (al conectarse se pide todo lo pendiente) desde este
+        // mismo hilo: el DEALER y los SUB no se comparten con otros hilos
+        revisarFlujos();
+        long proximaRevision = System.currentTimeMillis() + INTERVALO_REVISION_FLUJO_MS;
+        proximaAntientropia = System.currentTimeMillis() + INTERVALO_ANTIENTROPIA_MS;
+
+        ZMQ.Poller poller = context.poller(1 + canalesGA2.size() + flujos.size());
+        poller.register(responder, ZMQ.Poller.POLLIN);
+        for (CanalGA2<Destino> canal : canalesGA2) {
+            poller.register(canal.getSocket(), ZMQ.Poller.POLLIN);
+        }
+        for (FlujoCambios flujo : flujos) {
+            poller.register(flujo.getSocket(), ZMQ.Poller.POLLIN);
+        }
 
         while (!Thread.currentThread().isInterrupted()) {
-            String solicitud = responder.recvStr();
-            
-            // Manejar notificaciones de cambios de GA2
-            if (solicitud != null && solicitud.startsWith("NOTIFICACION_CAMBIO:")) {
-                manejarNotificacionCambio(solicitud);
-                responder.send("OK", 0);
-                continue;
+            long espera = Math.max(0, proximaRevision - System.currentTimeMillis());
+            for (CanalGA2<Destino> canal : canalesGA2) {
+                long vencimiento = canal.msHastaProximoVencimiento();
+                if (vencimiento >= 0) {
+                    espera = Math.min(espera, vencimiento);
+                }
+            }
+            if (resumenesEnCalculo > 0) {
+                espera = Math.min(espera, 10); // Revisar pronto si ya terminó el cálculo
+            }
+            if (poller.poll(espera) < 0) {
+                break;
             }
 
-            String respuesta = procesarSolicitud(solicitud);
-            responder.send(respuesta, 0);
+            if (poller.pollin(0)) {
+                recibirSolicitud();
+            }
+            for (int i = 0; i < canalesGA2.size(); i++) {
+                CanalGA2<Destino> canal = canalesGA2.get(i);
+                if (poller.pollin(i + 1)) {
+                    CanalGA2.Respuesta<Destino> respuesta = canal.recibir();
+                    if (respuesta != null) {
+                        completarSolicitud(respuesta);
+                    }
+                }
+                for (CanalGA2.Respuesta<Destino> vencida : canal.vencidas()) {
+                    completarSolicitud(vencida);
+                }
+            }
+
+            for (int i = 0; i < flujos.size(); i++) {
+                if (poller.pollin(1 + canalesGA2.size() + i)) {
+                    String cambio = flujos.get(i).recibir();
+                    if (cambio != null) {
+                        aplicarCambioDesdeLog(cambio);
+                    }
+                    pedirBacklog(i);
+                }
+            }
+
+            recibirResumenesLocales();
+
+            if (System.currentTimeMillis() >= proximaRevision) {
+                revisarFlujos();
+                revisarAntientropia();
+                proximaRevision = System.currentTimeMillis() + INTERVALO_REVISION_FLUJO_MS;
+            }
         }
 
+        calculoAntientropia.shutdownNow();
         responder.close();
-        dealer.close();
+        for (CanalGA2<Destino> canal : canalesGA2) {
+            canal.cerrar();
+        }
+        for (FlujoCambios flujo : flujos) {
+            flujo.cerrar();
+        }
+        almacenamiento.cerrar();
         context.term();
     }
     
-    // Inicializa el socket DEALER y lo conecta a GA2
-    private void inicializarDealerSocket() {
-        dealer = context.socket(ZMQ.DEALER);
-        // Establecer una identidad única para este DEALER (importante para que ROUTER pueda responder)
-        dealer.setIdentity("GA-DEALER".getBytes());
-        // Configurar timeout de recepción (10 segundos)
-        dealer.setReceiveTimeOut(10000);
-        dealer.connect("tcp://localhost:" + PUERTOGA2);
-        System.out.println(" Socket DEALER conectado a GA2 en localhost:" + PUERTOGA2);
-        System.out.println(" GA:  Identidad del DEALER establecida: GA-DEALER");
-        // Pequeño delay para asegurar conexión
-        try {
-            Thread.sleep(200);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    // Recibe una solicitud del ROUTER: [identidad][...sobre...][""][mensaje]. El sobre se guarda para
+    // responder más tarde, cuando llegue la respuesta de GA2.
+    private void recibirSolicitud() {
+        List<byte[]> tramas = new ArrayList<>();
+        tramas.add(responder.recv(0));
+        while (responder.hasReceiveMore()) {
+            tramas.add(responder.recv(0));
+        }
+        byte[][] sobre = tramas.subList(0, tramas.size() - 1).toArray(new byte[0][]);
+        byte[] cuerpo = tramas.get(tramas.size() - 1);
+        // Clave de idempotencia del actor: se quita para interpretar el cuerpo y se reenvía a GA2
+        String clave = ClaveIdempotencia.clave(cuerpo);
+        cuerpo = ClaveIdempotencia.sinClave(cuerpo);
+
+        // Operación en formato binario (actor de préstamo): la misma trama sigue hacia GA2 sin reconvertirse;
+        // el texto equivalente solo se arma para la replicación local
+        if (ProtocoloBinario.esBinario(cuerpo)) {
+            if (ProtocoloBinario.idLibro(cuerpo) < 0) {
+                responder(sobre, "Error: ID de libro no válido");
+                return;
+            }
+            int shard = tablaShards.indiceDe(ProtocoloBinario.idLibro(cuerpo));
+            canalesGA2.get(shard).enviar(ProtocoloBinario.aTexto(cuerpo), cuerpo, clave, new Destino(sobre, shard));
+            return;
+        }
+        String solicitud = new String(cuerpo, StandardCharsets.UTF_8);
+        if (solicitud.equals(ProtocoloBinario.NEGOCIACION)) {
+            responder(sobre, ProtocoloBinario.ACEPTADO);
+            return;
+        }
+
+        if (solicitud.isEmpty()) {
+            responder(sobre, "Solicitud vacía o nula");
+            return;
+        }
+
+        // Un lote con libros de varios shards se divide en un lote por shard
+        if (Lote.esLote(solicitud) && tablaShards.cantidad() > 1) {
+            enviarLote(solicitud, clave, sobre);
+            return;
         }
+
+        // Primero enviar solicitud a GA2 (base principal); se sigue atendiendo mientras responde
+        int shard = tablaShards.indiceDe(solicitud);
+        CanalGA2<Destino> canal = canalesGA2.get(shard);
+        System.out.println("GA:  Enviando solicitud a GA2: " + solicitud + " (" + (canal.enVuelo() + 1) + " en vuelo)");
+        canal.enviar(solicitud, clave, new Destino(sobre, shard));
     }
-    
-    // Envía solicitud a GA2 y espera respuesta
-    private String enviarAGa2(String solicitud) {
-        try {
-            // Enviar solicitud a GA2 usando DEALER socket
-            System.out.println("GA:  Enviando mensaje a GA2: " + solicitud);
-            boolean enviado = dealer.send(solicitud, 0);
-            System.out.println("GA:  Mensaje enviado (" + (enviado ? "exitoso" : "fallido") + "), esperando respuesta...");
-            
-            // Pequeño delay para asegurar que el mensaje se envíe correctamente
-            Thread.sleep(50);
-            
-            // Esperar respuesta de GA2
-            // En jeromq, el DEALER recibe directamente el mensaje del ROUTER
-            // ROUTER envía: [identidad] [respuesta], pero el DEALER solo ve la respuesta
-            System.out.println("GA:  Esperando respuesta de GA2 (timeout: 10 segundos)...");
-            
-            // El DEALER recibe directamente el mensaje (jeromq filtra automáticamente la identidad)
-            // recvStr() retorna null si hay timeout o error
-            String respuesta = dealer.recvStr();
-            
-            if (respuesta == null) {
-                System.err.println("GA:  ✗ ERROR - No se recibió respuesta de GA2 (timeout o error)");
-                return "Error: No se recibió respuesta de GA2";
+
+    // Cada parte lleva la clave del lote + su shard, igual que las que arma el actor si va directo a GA2
+    private void enviarLote(String solicitud, String clave, byte[][] sobre) {
+        List<String> operaciones = Lote.operaciones(solicitud);
+        Map<Integer, List<Integer>> porShard = tablaShards.dividir(operaciones);
+        if (porShard.size() <= 1) {
+            int shard = porShard.isEmpty() ? 0 : porShard.keySet().iterator().next();
+            canalesGA2.get(shard).enviar(solicitud, clave, new Destino(sobre, shard));
+            return;
+        }
+        System.out.println("GA:  Lote de " + operaciones.size() + " operaciones dividido en " + porShard.size() + " shards");
+        LoteDividido<byte[][]> lote = new LoteDividido<>(sobre, operaciones.size(), porShard.size());
+        for (Map.Entry<Integer, List<Integer>> parte : porShard.entrySet()) {
+            int[] posiciones = parte.getValue().stream().mapToInt(Integer::intValue).toArray();
+            canalesGA2.get(parte.getKey()).enviar(LoteDividido.armarParte(operaciones, parte.getValue()),
+                    ClaveIdempotencia.deParte(clave, parte.getKey()), new Destino(sobre, parte.getKey(), lote, posiciones));
+        }
+    }
+
+    // Llegó (o venció) la respuesta de GA2 a una solicitud
+    private void completarSolicitud(CanalGA2.Respuesta<Destino> r) {
+        Destino destino = r.contexto;
+        if (destino.sobre == null) {
+            completarSincronizacion(r, destino.shard);
+            return;
+        }
+        String respuesta;
+        if (r.texto == null) {
+            System.err.println("GA:  ✗ ERROR - No se recibió respuesta de GA2 (timeout) para: " + r.solicitud);
+            respuesta = "Error: No se recibió respuesta de GA2";
+        } else {
+            System.out.println("GA:  ✓ Respuesta recibida de GA2: " + r.texto);
+            try {
+                respuesta = procesarSolicitud(r.solicitud, r.texto, r.cambios);
+            } catch (AlmacenamientoException e) {
+                System.err.println("GA:  Error de almacenamiento: " + e.getMessage());
+                respuesta = "Error: " + e.getMessage();
             }
-            
-            System.out.println("GA:  ✓ Respuesta recibida de GA2: " + respuesta);
-            return respuesta;
-            
-        } catch (Exception e) {
-            System.err.println("GA:  ✗ ERROR al comunicarse con GA2: " + e.getMessage());
-            e.printStackTrace();
-            return "Error: No se pudo comunicar con GA2";
         }
+        if (destino.lote != null) {
+            if (destino.lote.completarParte(destino.posiciones, respuesta)) {
+                responder(destino.lote.getDestino(), destino.lote.respuesta());
+            }
+            return;
+        }
+        responder(destino.sobre, respuesta);
     }
 
-    //  Función principal de procesamiento
-    private String procesarSolicitud(String solicitud) {
-        if (solicitud == null || solicitud.isEmpty()) {
-            return "Solicitud vacía o nula";
+    private void responder(byte[][] sobre, String respuesta) {
+        for (byte[] trama : sobre) {
+            responder.send(trama, ZMQ.SNDMORE);
         }
+        responder.send(respuesta, 0);
+    }
 
-        // Primero enviar solicitud a GA2 (base principal)
-        System.out.println("GA:  Enviando solicitud a GA2: " + solicitud);
-        String respuestaGA2 = enviarAGa2(solicitud);
-        
+    //  Función principal de procesamiento: GA2 ya respondió, se replica localmente si tuvo éxito.
+    //  Con "cambios" (estado resultante de cada libro, ver CambioLibro) se copia ese estado; sin ellos
+    //  (GA2 de una versión anterior) se repite la operación localmente.
+    private String procesarSolicitud(String solicitud, String respuestaGA2, String cambios) {
         // Verificar si GA2 procesó exitosamente
         if (respuestaGA2 == null || respuestaGA2.startsWith("Error")) {
             System.out.println("GA:  GA2 retornó error, NO procesando localmente: " + respuestaGA2);
             return respuestaGA2;
         }
+
+        if (cambios != null) {
+            int aplicados = 0;
+            for (String registro : cambios.split("\\|")) {
+                CambioLibro cambio = CambioLibro.desdeTexto(registro);
+                if (cambio == null) {
+                    if (!registro.isEmpty()) {
+                        System.err.println("GA:  Registro de cambio inválido de GA2: " + registro);
+                    }
+                    continue;
+                }
+                try {
+                    if (cambio.aplicar(almacenamiento)) {
+                        aplicados++;
+                    }
+                } catch (AlmacenamientoException e) {
+                    System.err.println("GA:  Error de almacenamiento al aplicar " + cambio + ": " + e.getMessage());
+                }
+            }
+            System.out.println("GA:  Estado de GA2 copiado localmente (" + aplicados + " libros actualizados)");
+            return respuestaGA2;
+        }
+        
+        // Lote: replicar localmente cada operación según su propio resultado en GA2
+        if (Lote.esLote(solicitud)) {
+            List<String> operaciones = Lote.operaciones(solicitud);
+            List<String> resultados = Lote.resultados(respuestaGA2, operaciones.size());
+            if (resultados == null) {
+                System.out.println("GA:  Respuesta de lote inesperada de GA2, NO procesando localmente");
+                return respuestaGA2;
+            }
+            for (int i = 0; i < operaciones.size(); i++) {
+                try {
+                    procesarSolicitud(operaciones.get(i), resultados.get(i), null);
+                } catch (AlmacenamientoException e) {
+                    System.err.println("GA:  Error de almacenamiento en operación del lote: " + e.getMessage());
+                }
+            }
+            return respuestaGA2;
+        }
         
         // Si GA2 fue exitoso, sincronizar procesando localmente
         if (solicitud.startsWith("Disponibilidad?")) {
@@ -195,21 +372,19 @@ public class GA {
             return "Error: ID de libro no válido";
         }
         
-        // Leer DB.txt
-        List<String> lineas = leerDB();
-        if (lineas == null) {
+        // Consultar el catálogo en memoria
+        if (!almacenamiento.asegurarCargado()) {
             return "Error: No se pudo leer la base de datos";
         }
         
         // Buscar el libro por ID
-        String[] libro = buscarLibro(idLibro, lineas);
-        if (libro == null) {
+        String estado = almacenamiento.obtenerEstadoLibro(CatalogoMemoria.parsearId(idLibro));
+        if (estado == null) {
             System.out.println("GA:  Libro con ID " + idLibro + " no encontrado");
             return "NO (libro no existe)";
         }
         
         // Verificar estado del libro
-        String estado = libro[3].trim();
         System.out.println("GA:  Estado del libro ID " + idLibro + " en DB.txt: '" + estado + "'");
         if (estado.equals("DISPONIBLE")) {
             // Actualizar estado a PRESTADO
@@ -233,145 +408,42 @@ public class GA {
         }
     }
     
-    // Lee todo el archivo DB.txt y retorna una lista de líneas
-    private List<String> leerDB() {
-        try {
-            File archivo = new File(RUTA_DB);
-            if (!archivo.exists()) {
-                System.err.println("GA:  Error - Archivo DB.txt no encontrado en: " + RUTA_DB);
-                return null;
-            }
-            
-            List<String> lineas = Files.readAllLines(Paths.get(RUTA_DB), StandardCharsets.UTF_8);
-            return lineas;
-        } catch (IOException e) {
-            System.err.println("GA:  Error al leer DB.txt: " + e.getMessage());
-            return null;
-        }
-    }
-    
-    // Busca un libro por ID en las líneas del archivo
-    private String[] buscarLibro(String idLibro, List<String> lineas) {
-        for (String linea : lineas) {
-            if (linea == null || linea.trim().isEmpty()) {
-                continue;
-            }
-            
-            String[] libro = parsearLineaLibro(linea);
-            if (libro != null && libro[0].trim().equals(idLibro)) {
-                return libro;
-            }
-        }
-        return null;
-    }
-    
-    // Parsea una línea del formato "ID, NOMBRE, AUTOR, ESTADO"
-    private String[] parsearLineaLibro(String linea) {
-        if (linea == null || linea.trim().isEmpty()) {
-            return null;
-        }
-        
-        // Dividir por comas, pero preservar espacios
-        String[] partes = linea.split(",", 4);
-        if (partes.length == 4) {
-            return partes;
-        }
-        return null;
-    }
-    
-    // Actualiza el estado del libro en DB.txt
+    // Actualiza el estado del libro (catálogo en memoria + DB.txt)
     private boolean actualizarEstadoLibro(String idLibro, String nuevoEstado) {
-        try {
-            // Leer todas las líneas
-            List<String> lineas = leerDB();
-            if (lineas == null) {
-                return false;
-            }
-            
-            // Actualizar la línea correspondiente
-            List<String> lineasActualizadas = new ArrayList<>();
-            boolean encontrado = false;
-            
-            for (String linea : lineas) {
-                if (linea == null || linea.trim().isEmpty()) {
-                    lineasActualizadas.add(linea);
-                    continue;
-                }
-                
-                String[] libro = parsearLineaLibro(linea);
-                if (libro != null && libro[0].trim().equals(idLibro)) {
-                    // Reconstruir la línea con el nuevo estado
-                    String nuevaLinea = libro[0].trim() + ", " + libro[1].trim() + ", " + 
-                                       libro[2].trim() + ", " + nuevoEstado;
-                    lineasActualizadas.add(nuevaLinea);
-                    encontrado = true;
-                } else {
-                    lineasActualizadas.add(linea);
-                }
-            }
-            
-            if (!encontrado) {
-                System.err.println("GA:  No se encontró el libro para actualizar");
-                return false;
-            }
-            
-            // Escribir las líneas actualizadas de vuelta al archivo
-            Files.write(Paths.get(RUTA_DB), lineasActualizadas, StandardCharsets.UTF_8);
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("GA:  Error al actualizar DB.txt: " + e.getMessage());
+        if (!almacenamiento.asegurarCargado()) {
             return false;
         }
+        return almacenamiento.actualizarEstadoLibro(CatalogoMemoria.parsearId(idLibro), nuevoEstado);
     }
 
     // Registra un préstamo en Prestamos.txt
     private void registrarPrestamo(String idLibro) {
-        try {
-            System.out.println("GA:  === INICIANDO registro de préstamo para libro ID: " + idLibro + " ===");
-            
-            // Obtener fecha actual
-            LocalDate fechaActual = LocalDate.now();
-            // Calcular fecha de devolución (14 días después)
-            LocalDate fechaDevolucion = fechaActual.plusDays(14);
-            
-            // Formatear fechas en formato YYYY-MM-DD
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String fechaPrestamoStr = fechaActual.format(formatter);
-            String fechaDevolucionStr = fechaDevolucion.format(formatter);
-            
-            System.out.println("GA:  Fecha préstamo: " + fechaPrestamoStr + ", Fecha devolución: " + fechaDevolucionStr);
-            
-            // Crear la línea del préstamo: ID, fecha actual, fecha devolución, 1
-            String nuevaLinea = idLibro + ", " + fechaPrestamoStr + ", " + fechaDevolucionStr + ", 1";
-            System.out.println("GA:  Nueva línea a agregar: " + nuevaLinea);
-            
-            // Leer el archivo Prestamos.txt (si existe)
-            List<String> lineas = new ArrayList<>();
-            File archivoPrestamos = new File(RUTA_PRESTAMOS);
-            System.out.println("GA:  Ruta de Prestamos.txt: " + RUTA_PRESTAMOS);
-            System.out.println("GA:  Archivo existe: " + archivoPrestamos.exists());
-            
-            if (archivoPrestamos.exists()) {
-                lineas = Files.readAllLines(Paths.get(RUTA_PRESTAMOS), StandardCharsets.UTF_8);
-                System.out.println("GA:  Archivo Prestamos.txt leído correctamente (" + lineas.size() + " líneas existentes)");
-            } else {
-                System.out.println("GA:  Archivo Prestamos.txt no existe, se creará uno nuevo");
-            }
-            
-            // Agregar la nueva línea
-            lineas.add(nuevaLinea);
-            System.out.println("GA:  Total de líneas después de agregar: " + lineas.size());
-            
-            // Escribir todas las líneas al archivo
-            Files.write(Paths.get(RUTA_PRESTAMOS), lineas, StandardCharsets.UTF_8);
-            System.out.println("GA:  ✓✓✓ Préstamo registrado exitosamente en Prestamos.txt: " + nuevaLinea);
-            System.out.println("GA:  === FIN registro de préstamo ===");
-            
-        } catch (IOException e) {
-            System.err.println("GA:  ✗✗✗ ERROR al registrar préstamo en Prestamos.txt: " + e.getMessage());
-            e.printStackTrace();
-        }
+        System.out.println("GA:  === INICIANDO registro de préstamo para libro ID: " + idLibro + " ===");
+        
+        // Obtener fecha actual
+        LocalDate fechaActual = LocalDate.now();
+        // Calcular fecha de devolución (14 días después)
+        LocalDate fechaDevolucion = fechaActual.plusDays(14);
+        
+        // Formatear fechas en formato YYYY-MM-DD
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        String fechaPrestamoStr = fechaActual.format(formatter);
+        String fechaDevolucionStr = fechaDevolucion.format(formatter);
+        
+        System.out.println("GA:  Fecha préstamo: " + fechaPrestamoStr + ", Fecha devolución: " + fechaDevolucionStr);
+        
+        // Crear la línea del préstamo: ID, fecha actual, fecha devolución, 1
+        String nuevaLinea = idLibro + ", " + fechaPrestamoStr + ", " + fechaDevolucionStr + ", 1";
+        System.out.println("GA:  Nueva línea a agregar: " + nuevaLinea);
+        
+        // Agregar el préstamo al diario (sin leer ni reescribir Prestamos.txt)
+        Prestamo prestamo = new Prestamo(CatalogoMemoria.parsearId(idLibro), fechaActual, fechaDevolucion, 1);
+        if (!almacenamiento.registrarPrestamo(prestamo)) {
+            System.err.println("GA:  ✗✗✗ ERROR al registrar préstamo en Prestamos.txt: " + nuevaLinea);
+            return;
+        }
+        System.out.println("GA:  ✓✓✓ Préstamo registrado exitosamente en Prestamos.txt: " + nuevaLinea);
+        System.out.println("GA:  === FIN registro de préstamo ===");
     }
 
     // Extrae el ID del libro de solicitudes como "DEVOLVER:ID", "DEVOLVER DEVOLVER:ID" o "RENOVAR:ID"
@@ -405,142 +477,26 @@ public class GA {
         return null;
     }
     
-    // Lee todo el archivo Prestamos.txt y retorna una lista de líneas
-    private List<String> leerPrestamos() {
-        try {
-            File archivo = new File(RUTA_PRESTAMOS);
-            if (!archivo.exists()) {
-                return new ArrayList<>(); // Retornar lista vacía si no existe
-            }
-            
-            List<String> lineas = Files.readAllLines(Paths.get(RUTA_PRESTAMOS), StandardCharsets.UTF_8);
-            return lineas;
-        } catch (IOException e) {
-            System.err.println("GA:  Error al leer Prestamos.txt: " + e.getMessage());
-            return null;
-        }
-    }
-    
-    // Parsea una línea de Prestamos.txt: "ID, fechaPrestamo, fechaDevolucion, vecesPrestadas"
-    private String[] parsearPrestamo(String linea) {
-        if (linea == null || linea.trim().isEmpty()) {
-            return null;
-        }
-        
-        String[] partes = linea.split(",");
-        if (partes.length >= 4) {
-            // Retornar las 4 partes: ID, fechaPrestamo, fechaDevolucion, vecesPrestadas
-            return new String[] {
-                partes[0].trim(),
-                partes[1].trim(),
-                partes[2].trim(),
-                partes[3].trim()
-            };
-        }
-        return null;
-    }
-    
-    // Busca una línea en Prestamos.txt por ID del libro
-    private String buscarPrestamo(String idLibro, List<String> lineas) {
-        if (lineas == null) {
-            return null;
-        }
-        
-        for (String linea : lineas) {
-            if (linea == null || linea.trim().isEmpty()) {
-                continue;
-            }
-            
-            String[] prestamo = parsearPrestamo(linea);
-            if (prestamo != null && prestamo[0].equals(idLibro)) {
-                return linea;
-            }
-        }
-        return null;
-    }
-    
-    // Elimina todas las líneas relacionadas con un ID de Prestamos.txt
+    // Elimina el préstamo de un libro (registro RETURN en el diario)
     private boolean eliminarPrestamo(String idLibro) {
-        try {
-            List<String> lineas = leerPrestamos();
-            if (lineas == null) {
-                return false;
-            }
-            
-            List<String> lineasActualizadas = new ArrayList<>();
-            boolean encontrado = false;
-            
-            for (String linea : lineas) {
-                if (linea == null || linea.trim().isEmpty()) {
-                    continue; // Omitir líneas vacías
-                }
-                
-                String[] prestamo = parsearPrestamo(linea);
-                if (prestamo != null && !prestamo[0].equals(idLibro)) {
-                    // Solo agregar líneas que NO corresponden al ID a eliminar
-                    lineasActualizadas.add(linea);
-                } else if (prestamo != null && prestamo[0].equals(idLibro)) {
-                    encontrado = true;
-                }
-            }
-            
-            if (!encontrado) {
-                System.out.println("GA:  No se encontró préstamo con ID " + idLibro + " en Prestamos.txt");
-                return false;
-            }
-            
-            // Escribir las líneas actualizadas de vuelta al archivo
-            Files.write(Paths.get(RUTA_PRESTAMOS), lineasActualizadas, StandardCharsets.UTF_8);
+        boolean eliminado = almacenamiento.eliminarPrestamo(CatalogoMemoria.parsearId(idLibro));
+        if (eliminado) {
             System.out.println("GA:  Préstamo con ID " + idLibro + " eliminado de Prestamos.txt");
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("GA:  Error al eliminar préstamo de Prestamos.txt: " + e.getMessage());
-            return false;
+        } else {
+            System.out.println("GA:  No se encontró préstamo con ID " + idLibro + " en Prestamos.txt");
         }
+        return eliminado;
     }
     
-    // Actualiza una línea específica en Prestamos.txt
-    private boolean actualizarPrestamo(String idLibro, String nuevaFechaDevolucion, String nuevasVecesPrestadas) {
-        try {
-            List<String> lineas = leerPrestamos();
-            if (lineas == null) {
-                return false;
-            }
-            
-            List<String> lineasActualizadas = new ArrayList<>();
-            boolean encontrado = false;
-            
-            for (String linea : lineas) {
-                if (linea == null || linea.trim().isEmpty()) {
-                    continue;
-                }
-                
-                String[] prestamo = parsearPrestamo(linea);
-                if (prestamo != null && prestamo[0].equals(idLibro)) {
-                    // Actualizar la línea con la nueva fecha de devolución y veces prestadas
-                    String nuevaLinea = idLibro + ", " + prestamo[1] + ", " + nuevaFechaDevolucion + ", " + nuevasVecesPrestadas;
-                    lineasActualizadas.add(nuevaLinea);
-                    encontrado = true;
-                } else {
-                    lineasActualizadas.add(linea);
-                }
-            }
-            
-            if (!encontrado) {
-                System.err.println("GA:  No se encontró préstamo con ID " + idLibro + " para actualizar");
-                return false;
-            }
-            
-            // Escribir las líneas actualizadas de vuelta al archivo
-            Files.write(Paths.get(RUTA_PRESTAMOS), lineasActualizadas, StandardCharsets.UTF_8);
+    // Actualiza la fecha de devolución y las veces prestadas de un préstamo (registro RENEW en el diario)
+    private boolean actualizarPrestamo(String idLibro, LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas) {
+        boolean actualizado = almacenamiento.actualizarPrestamo(CatalogoMemoria.parsearId(idLibro), nuevaFechaDevolucion, nuevasVecesPrestadas);
+        if (actualizado) {
             System.out.println("GA:  Préstamo con ID " + idLibro + " actualizado en Prestamos.txt");
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("GA:  Error al actualizar préstamo en Prestamos.txt: " + e.getMessage());
-            return false;
+        } else {
+            System.err.println("GA:  No se encontró préstamo con ID " + idLibro + " para actualizar");
         }
+        return actualizado;
     }
 
     //  Función para manejar devoluciones
@@ -553,21 +509,19 @@ public class GA {
             return "Error: ID de libro no válido";
         }
         
-        // Leer DB.txt
-        List<String> lineas = leerDB();
-        if (lineas == null) {
+        // Consultar el catálogo en memoria
+        if (!almacenamiento.asegurarCargado()) {
             return "Error: No se pudo leer la base de datos";
         }
         
         // Buscar el libro por ID
-        String[] libro = buscarLibro(idLibro, lineas);
-        if (libro == null) {
+        String estado = almacenamiento.obtenerEstadoLibro(CatalogoMemoria.parsearId(idLibro));
+        if (estado == null) {
             System.out.println("GA:  Libro con ID " + idLibro + " no encontrado");
             return "Error: Libro no encontrado";
         }
         
         // Verificar estado del libro
-        String estado = libro[3].trim();
         if (estado.equals("PRESTADO")) {
             // Cambiar estado a DISPONIBLE
             boolean actualizado = actualizarEstadoLibro(idLibro, "DISPONIBLE");
@@ -597,44 +551,30 @@ public class GA {
             return "Error: ID de libro no válido";
         }
         
-        // Leer DB.txt
-        List<String> lineas = leerDB();
-        if (lineas == null) {
+        // Consultar el catálogo en memoria
+        if (!almacenamiento.asegurarCargado()) {
             return "Error: No se pudo leer la base de datos";
         }
         
         // Buscar el libro por ID
-        String[] libro = buscarLibro(idLibro, lineas);
-        if (libro == null) {
+        String estado = almacenamiento.obtenerEstadoLibro(CatalogoMemoria.parsearId(idLibro));
+        if (estado == null) {
             System.out.println("GA:  Libro con ID " + idLibro + " no encontrado");
             return "Error: Libro no encontrado";
         }
         
         // Verificar estado del libro
-        String estado = libro[3].trim();
-        
         if (estado.equals("PRESTADO")) {
             // Libro está prestado: buscar en Prestamos.txt
-            List<String> lineasPrestamos = leerPrestamos();
-            if (lineasPrestamos == null) {
-                return "Error: No se pudo leer Prestamos.txt";
-            }
-            
-            String prestamoLinea = buscarPrestamo(idLibro, lineasPrestamos);
-            if (prestamoLinea == null) {
+            Prestamo prestamo = almacenamiento.buscarPrestamo(CatalogoMemoria.parsearId(idLibro));
+            if (prestamo == null) {
                 System.out.println("GA:  No se encontró registro de préstamo para el libro ID " + idLibro);
                 return "Error: No se encontró registro de préstamo";
             }
             
-            // Parsear el préstamo
-            String[] prestamo = parsearPrestamo(prestamoLinea);
-            if (prestamo == null || prestamo.length < 4) {
-                return "Error: Formato de préstamo inválido";
-            }
-            
-            String vecesPrestadas = prestamo[3].trim();
+            int vecesPrestadas = prestamo.getVecesPrestadas();
             
-            if (vecesPrestadas.equals("1")) {
+            if (vecesPrestadas == 1) {
                 // Primera renovación: actualizar fecha de devolución (una semana después del día actual)
                 LocalDate fechaActual = LocalDate.now();
                 LocalDate nuevaFechaDevolucion = fechaActual.plusDays(7);
@@ -642,14 +582,14 @@ public class GA {
                 String nuevaFechaDevolucionStr = nuevaFechaDevolucion.format(formatter);
                 
                 // Actualizar en Prestamos.txt: cambiar fecha de devolución y veces prestadas a "2"
-                boolean actualizado = actualizarPrestamo(idLibro, nuevaFechaDevolucionStr, "2");
+                boolean actualizado = actualizarPrestamo(idLibro, nuevaFechaDevolucion, 2);
                 if (actualizado) {
                     System.out.println("GA:  Renovación exitosa para libro ID " + idLibro);
                     return "Renovación exitosa, nueva fecha de devolución: " + nuevaFechaDevolucionStr;
                 } else {
                     return "Error: No se pudo actualizar el préstamo";
                 }
-            } else if (vecesPrestadas.equals("2")) {
+            } else if (vecesPrestadas == 2) {
                 // Segunda renovación: no se permiten más renovaciones
                 System.out.println("GA:  Libro ID " + idLibro + " ya tiene 2 renovaciones, no se permiten más");
                 return "No se pueden hacer más renovaciones (máximo 2)";
@@ -681,63 +621,132 @@ public class GA {
         }
     }
     
-    // Sincroniza con GA2 al iniciar (obtiene cambios pendientes)
-    private void sincronizarConGA2() {
-        try {
-            System.out.println("GA:  Iniciando sincronización con GA2...");
-            String respuesta = enviarAGa2("OBTENER_CAMBIOS");
-            
-            if (respuesta == null || respuesta.equals("Error:") || respuesta.startsWith("Error")) {
-                System.out.println("GA:  No se pudieron obtener cambios pendientes de GA2");
-                return;
+    // Cada segundo: pide la dirección del flujo a los shards sin suscripción, pide backlog a los flujos
+    // con huecos o en silencio, y confirma a cada GA2 lo aplicado para que lo descarte de su log
+    private void revisarFlujos() {
+        for (int shard = 0; shard < flujos.size(); shard++) {
+            FlujoCambios flujo = flujos.get(shard);
+            if (!flujo.estaConectado()) {
+                if (!pidiendoCanal[shard]) {
+                    pidiendoCanal[shard] = true;
+                    canalesGA2.get(shard).enviar("CANAL_CAMBIOS?", new Destino(null, shard));
+                }
+                continue;
             }
-            
-            if (respuesta.equals("SIN_CAMBIOS")) {
-                System.out.println("GA:  No hay cambios pendientes en GA2");
-                return;
+            pedirBacklog(shard);
+            String confirmacion = flujo.solicitudConfirmacion();
+            if (confirmacion != null) {
+                canalesGA2.get(shard).enviar(confirmacion, new Destino(null, shard));
             }
-            
-            // Parsear cambios (separados por "|")
-            String[] cambios = respuesta.split("\\|");
-            System.out.println("GA:  Obtenidos " + cambios.length + " cambios pendientes de GA2");
-            
-            List<String> cambiosAplicados = new ArrayList<>();
-            for (String cambio : cambios) {
-                if (cambio != null && !cambio.trim().isEmpty()) {
-                    boolean aplicado = aplicarCambioDesdeLog(cambio);
-                    if (aplicado) {
-                        cambiosAplicados.add(cambio);
-                    }
-                }
+        }
+    }
+
+    // Cada INTERVALO_ANTIENTROPIA_MS empieza una pasada de antientropía con cada shard que ya tiene su
+    // flujo de cambios (sin flujo no se puede saber si una diferencia es un cambio en camino)
+    private void revisarAntientropia() {
+        if (INTERVALO_ANTIENTROPIA_MS <= 0 || System.currentTimeMillis() < proximaAntientropia) {
+            return;
+        }
+        proximaAntientropia = System.currentTimeMillis() + INTERVALO_ANTIENTROPIA_MS;
+        for (int shard = 0; shard < antientropias.size(); shard++) {
+            if (flujos.get(shard).estaConectado() && antientropias.get(shard).iniciar()) {
+                pedirAntientropia(shard);
             }
-            
-            // Notificar a GA2 qué cambios fueron sincronizados
-            if (!cambiosAplicados.isEmpty()) {
-                // Enviar cambios completos separados por "|"
-                String cambiosStr = String.join("|", cambiosAplicados);
-                enviarAGa2("CAMBIOS_SINCRONIZADOS:" + cambiosStr);
-                System.out.println("GA:  " + cambiosAplicados.size() + " cambios sincronizados exitosamente");
+        }
+    }
+
+    private void pedirAntientropia(int shard) {
+        String solicitud = antientropias.get(shard).siguienteSolicitud();
+        if (solicitud != null) {
+            canalesGA2.get(shard).enviar(solicitud, new Destino(null, shard));
+        }
+    }
+
+    // Calcula en calculoAntientropia el resumen local del rango de la solicitud (solo si GA2 respondió)
+    private void calcularResumenLocal(String solicitud, String respuesta, int shard) {
+        int[] rango = respuesta != null && respuesta.startsWith("RESUMEN:")
+                ? AntiEntropia.rangoDe(solicitud, "RESUMEN_RANGO:") : null;
+        resumenesEnCalculo++;
+        calculoAntientropia.execute(() -> {
+            long[] propio = null;
+            try {
+                if (rango != null) {
+                    propio = ResumenRangos.resumir(almacenamiento, rango[0], rango[1]);
+                }
+            } catch (AlmacenamientoException e) {
+                System.err.println("GA:  Error de almacenamiento en la antientropía: " + e.getMessage());
             }
-            
-        } catch (Exception e) {
-            System.err.println("GA:  Error al sincronizar con GA2: " + e.getMessage());
-            e.printStackTrace();
+            resumenesLocales.add(new ResumenLocal(solicitud, respuesta, shard, propio));
+        });
+    }
+
+    private void recibirResumenesLocales() {
+        ResumenLocal resumen;
+        while ((resumen = resumenesLocales.poll()) != null) {
+            resumenesEnCalculo--;
+            antientropias.get(resumen.shard).recibirResumen(resumen.solicitud, resumen.respuesta, resumen.propio);
+            pedirAntientropia(resumen.shard);
         }
     }
-    
-    // Sincronización periódica cada 30 segundos
-    private void sincronizacionPeriodica() {
-        while (!Thread.currentThread().isInterrupted()) {
+
+    private void pedirBacklog(int shard) {
+        String solicitud = flujos.get(shard).solicitudBacklog();
+        if (solicitud != null) {
+            canalesGA2.get(shard).enviar(solicitud, new Destino(null, shard));
+        }
+    }
+
+    // Respuesta de un shard a CANAL_CAMBIOS?, OBTENER_CAMBIOS_DESDE, CAMBIOS_SINCRONIZADOS_HASTA o a la
+    // antientropía (cada shard tiene su propio log de cambios y sus propias secuencias)
+    private void completarSincronizacion(CanalGA2.Respuesta<Destino> r, int shard) {
+        FlujoCambios flujo = flujos.get(shard);
+        if (r.solicitud.startsWith("RESUMEN_RANGO:")) {
+            calcularResumenLocal(r.solicitud, r.texto, shard);
+            return;
+        }
+        if (r.solicitud.startsWith("ESTADO_RANGO:")) {
             try {
-                Thread.sleep(30000); // 30 segundos
-                System.out.println("GA:  Ejecutando sincronización periódica...");
-                sincronizarConGA2();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            } catch (Exception e) {
-                System.err.println("GA:  Error en sincronización periódica: " + e.getMessage());
+                antientropias.get(shard).recibirEstado(r.solicitud, r.texto, almacenamiento, flujo.getAplicadoHasta());
+            } catch (AlmacenamientoException e) {
+                System.err.println("GA:  Error de almacenamiento en la antientropía: " + e.getMessage());
+            }
+            pedirAntientropia(shard);
+            return;
+        }
+        if (r.solicitud.equals("CANAL_CAMBIOS?")) {
+            pidiendoCanal[shard] = false;
+            if (r.texto == null || !r.texto.startsWith("CANAL_CAMBIOS:")) {
+                System.out.println("GA:  " + tablaShards.getShards().get(shard).nombre
+                        + " no indicó su flujo de cambios, se reintenta: " + r.texto);
+                return;
+            }
+            // Mismo host que el ROUTER del shard, con el puerto que indicó
+            String router = tablaShards.getShards().get(shard).direccionRouter;
+            flujo.conectar(router.substring(0, router.lastIndexOf(':') + 1) + r.texto.substring("CANAL_CAMBIOS:".length()).trim());
+            pedirBacklog(shard);
+            return;
+        }
+        if (r.solicitud.startsWith("OBTENER_CAMBIOS_DESDE:")) {
+            int aplicados = 0;
+            for (String cambio : flujo.recibirBacklog(r.texto)) {
+                // Un cambio que no aplica también cuenta como procesado
+                if (aplicarCambioDesdeLog(cambio)) {
+                    aplicados++;
+                }
+            }
+            if (aplicados > 0) {
+                System.out.println("GA:  " + aplicados + " cambios aplicados desde el backlog");
             }
+            // Confirmar página por página: si la puesta al día se corta, GA2 ya descartó lo aplicado
+            String confirmacion = flujo.solicitudConfirmacion();
+            if (confirmacion != null) {
+                canalesGA2.get(shard).enviar(confirmacion, new Destino(null, shard));
+            }
+            pedirBacklog(shard);
+            return;
+        }
+        if (r.texto == null || !r.texto.equals("OK")) {
+            System.err.println("GA:  GA2 no confirmó la sincronización: " + r.texto);
         }
     }
     
@@ -755,6 +764,15 @@ public class GA {
             String tipo = partes[1].trim();
             String datos = partes[2].trim();
             
+            // Registro con el estado resultante del libro: se copia tal cual
+            CambioLibro estado = CambioLibro.desdeTexto(datos);
+            if (estado != null) {
+                System.out.println("GA:  Aplicando estado desde log: " + tipo + " - " + estado);
+                estado.aplicar(almacenamiento);
+                return true;
+            }
+
+            // Registro "ID=<id>" de versiones anteriores: se repite la operación
             // Extraer ID del libro
             String idLibro = null;
             if (datos.startsWith("ID=")) {
@@ -787,25 +805,13 @@ public class GA {
                 }
             } else if (tipo.equals("RENOVACION")) {
                 // Simular renovación: actualizar fecha de devolución en Prestamos.txt
-                List<String> lineasPrestamos = leerPrestamos();
-                if (lineasPrestamos != null) {
-                    String prestamoLinea = buscarPrestamo(idLibro, lineasPrestamos);
-                    if (prestamoLinea != null) {
-                        String[] prestamo = parsearPrestamo(prestamoLinea);
-                        if (prestamo != null && prestamo.length >= 4) {
-                            String vecesPrestadas = prestamo[3].trim();
-                            if (vecesPrestadas.equals("1")) {
-                                // Primera renovación: actualizar fecha de devolución
-                                LocalDate fechaActual = LocalDate.now();
-                                LocalDate nuevaFechaDevolucion = fechaActual.plusDays(7);
-                                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                                String nuevaFechaDevolucionStr = nuevaFechaDevolucion.format(formatter);
-                                actualizarPrestamo(idLibro, nuevaFechaDevolucionStr, "2");
-                                System.out.println("GA:  ✓ Cambio aplicado: RENOVACION para libro ID " + idLibro);
-                                return true;
-                            }
-                        }
-                    }
+                Prestamo prestamo = almacenamiento.buscarPrestamo(CatalogoMemoria.parsearId(idLibro));
+                if (prestamo != null && prestamo.getVecesPrestadas() == 1) {
+                    // Primera renovación: actualizar fecha de devolución
+                    LocalDate nuevaFechaDevolucion = LocalDate.now().plusDays(7);
+                    actualizarPrestamo(idLibro, nuevaFechaDevolucion, 2);
+                    System.out.println("GA:  ✓ Cambio aplicado: RENOVACION para libro ID " + idLibro);
+                    return true;
                 }
             }
             
@@ -817,39 +823,37 @@ public class GA {
         }
     }
     
-    // Maneja notificación de cambio de GA2 (sincronización en tiempo real)
-    private void manejarNotificacionCambio(String notificacion) {
-        try {
-            // Formato: NOTIFICACION_CAMBIO:TIPO:DATOS
-            // Ejemplo: "NOTIFICACION_CAMBIO:PRESTAMO:ID=20"
-            String[] partes = notificacion.split(":", 3);
-            if (partes.length < 3) {
-                System.err.println("GA:  Formato de notificación inválido: " + notificacion);
-                return;
-            }
-            
-            String tipo = partes[1].trim();
-            String datos = partes[2].trim();
-            
-            System.out.println("GA:  Notificación de cambio recibida: " + tipo + " - " + datos);
-            
-            // Crear entrada de log para aplicar cambio
-            LocalDateTime ahora = LocalDateTime.now();
-            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            String timestamp = ahora.format(formatter);
-            String cambio = timestamp + ", " + tipo + ", " + datos;
-            
-            // Aplicar cambio
-            boolean aplicado = aplicarCambioDesdeLog(cambio);
-            if (aplicado) {
-                System.out.println("GA:  ✓ Cambio aplicado desde notificación");
-            } else {
-                System.err.println("GA:  ✗ Error al aplicar cambio desde notificación");
-            }
-            
-        } catch (Exception e) {
-            System.err.println("GA:  Error al manejar notificación de cambio: " + e.getMessage());
-            e.printStackTrace();
+    // Hash local de un rango, calculado fuera del hilo de poll, para AntiEntropia.recibirResumen
+    private static final class ResumenLocal {
+        final String solicitud;
+        final String respuesta;  // Respuesta de GA2 a la solicitud
+        final int shard;
+        final long[] propio;     // null si no se pudo calcular
+
+        ResumenLocal(String solicitud, String respuesta, int shard, long[] propio) {
+            this.solicitud = solicitud;
+            this.respuesta = respuesta;
+            this.shard = shard;
+            this.propio = propio;
+        }
+    }
+
+    // Contexto de cada solicitud en vuelo hacia un shard de GA2
+    private static final class Destino {
+        final byte[][] sobre;                // Para responder al cliente; null en las solicitudes de sincronización
+        final int shard;
+        final LoteDividido<byte[][]> lote;   // Lote repartido entre shards (null si la solicitud va completa)
+        final int[] posiciones;              // Posiciones de esta parte dentro del lote original
+
+        Destino(byte[][] sobre, int shard) {
+            this(sobre, shard, null, null);
+        }
+
+        Destino(byte[][] sobre, int shard, LoteDividido<byte[][]> lote, int[] posiciones) {
+            this.sobre = sobre;
+            this.shard = shard;
+            this.lote = lote;
+            this.posiciones = posiciones;
         }
     }
 }
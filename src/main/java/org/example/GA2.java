@@ -3,33 +3,105 @@ package org.example;
 import org.zeromq.ZMQ;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class GA2 {
 
-    private static final int PUERTO_ROUTER = 5570;
-    private static final int PUERTO_REP = 5580;
-    private static final int PUERTO_GA = 5557; // Puerto del GA para notificaciones
-    private static final String RUTA_DB = "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\DB2.txt";
-    private static final String RUTA_PRESTAMOS = "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\Prestamos2.txt";
-    private static final String RUTA_CAMBIOS_PENDIENTES = "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\CambiosPendientes.txt";
+    // Puertos y directorio configurables para correr varios shards (ver TablaShards), incluso en el mismo equipo:
+    // -Dga2.puertoRouter, -Dga2.puertoRep, -Dga2.directorio y -Dga2.rango=DESDE-HASTA (libros de este shard)
+    private static final int PUERTO_ROUTER = Integer.getInteger("ga2.puertoRouter", 5570);
+    private static final int PUERTO_REP = Integer.getInteger("ga2.puertoRep", 5580);
+    private static final int PUERTO_CAMBIOS = Integer.getInteger("ga2.puertoCambios", 5590); // PUB del flujo de cambios para GA
+    private static final long INTERVALO_LATIDO_CAMBIOS_MS = 1000;
+    private static final String DIRECTORIO = directorioDatos();
+    private static final String RUTA_DB = DIRECTORIO + "DB2.txt";
+    private static final String RUTA_DB_BINARIO = DIRECTORIO + "DB2.bin"; // Opcional: se usa si existe
+    private static final String RUTA_PRESTAMOS = DIRECTORIO + "Prestamos2.txt";
+    private static final String RUTA_DIARIO_PRESTAMOS = DIRECTORIO + "Prestamos2.diario";
+    private static final String RUTA_INSTANTANEA_DB = DIRECTORIO + "DB2.instantanea";
+    private static final String RUTA_DIARIO_DB = DIRECTORIO + "DB2.diario";
+    private static final String RUTA_INSTANTANEA_PRESTAMOS = DIRECTORIO + "Prestamos2.instantanea";
+    private static final int LIMITE_VENCIDOS = 100;
+    private static final String RUTA_CAMBIOS_PENDIENTES = DIRECTORIO + "CambiosPendientes.txt"; // Formato anterior, se importa al iniciar
+    private static final String ERROR_AVERIADO = "Error: GA2 fuera de servicio por un fallo de escritura en disco (reiniciar)";
     
-    // Lista en memoria para cambios pendientes (thread-safe)
-    private final CopyOnWriteArrayList<String> cambiosPendientes = new CopyOnWriteArrayList<>();
-    private ZMQ.Context contextNotificacion;
-    private ZMQ.Socket socketNotificacion;
+    // Log de cambios pendientes para GA: cada cambio lleva una secuencia y GA confirma "hasta N"
+    private final RegistroCambios registroCambios = new RegistroCambios(DIRECTORIO, "CambiosPendientes", "GA2");
+    // Flujo de cambios hacia GA (ver FlujoCambios): cada cambio confirmado en disco se publica con su
+    // secuencia, y sin tráfico se publica un latido con la última. Solo lo usa el hilo REP, que es el
+    // único que registra cambios, así que se publican en orden.
+    private ZMQ.Socket publicadorCambios;
+    private long ultimaPublicada;
+    private long proximoLatidoCambios;
+
+    // Almacenamiento de libros y préstamos: archivos (DB2.txt/DB2.bin con instantáneas + diario de Prestamos2.txt) por defecto,
+    // o PostgreSQL con -Dga2.almacenamiento=jdbc
+    private final Almacenamiento almacenamiento;
+
+    // Los hilos ROUTER y REP procesan en paralelo; cada operación sobre un libro toma el bloqueo de su franja
+    private final BloqueosPorLibro bloqueos = new BloqueosPorLibro(Integer.getInteger("ga2.franjasBloqueo", 256));
+    // Resultado de cada operación por clave de idempotencia: los reintentos y las copias de hedging del
+    // actor reciben el resultado original (ver ClaveIdempotencia)
+    private final CacheIdempotencia cacheIdempotencia = CacheIdempotencia.desdePropiedades();
+
+    // Commit en grupo: las escrituras de DB2.txt, Prestamos2 y del log de cambios se vuelcan por lotes
+    private final CommitGrupal commitGrupal = new CommitGrupal(
+            Long.getLong("ga2.commit.ventanaMs", 5), Integer.getInteger("ga2.commit.lote", 64), "GA2");
+
+    // Rango de IDs de este shard (todos si no se indica -Dga2.rango)
+    private final int rangoDesde;
+    private final int rangoHasta;
 
     public static void main(String[] args) {
         new GA2().iniciar();
     }
 
+    private static String directorioDatos() {
+        String directorio = System.getProperty("ga2.directorio",
+                "C:\\Users\\dicaj\\Desktop\\ULTIMO INTENTO\\Biblioteca_distribuidos-842126ed737b86d6648b39a2daad0ea05c1cb1bf\\");
+        return directorio.endsWith("/") || directorio.endsWith("\\") ? directorio : directorio + File.separator;
+    }
+
+    public GA2() {
+        this(crearAlmacenamiento());
+    }
+
+    // Permite usar otro almacenamiento (por ejemplo, archivos temporales en GA2ConcurrenciaTest)
+    GA2(Almacenamiento almacenamiento) {
+        this.almacenamiento = almacenamiento;
+        String rango = System.getProperty("ga2.rango");
+        if (rango == null) {
+            rangoDesde = 0;
+            rangoHasta = Integer.MAX_VALUE;
+        } else {
+            String[] partes = rango.split("-", 2);
+            rangoDesde = Integer.parseInt(partes[0].trim());
+            rangoHasta = partes.length < 2 || partes[1].trim().equals("*") ? Integer.MAX_VALUE : Integer.parseInt(partes[1].trim());
+        }
+    }
+
+    private static Almacenamiento crearAlmacenamiento() {
+        if ("jdbc".equals(System.getProperty("ga2.almacenamiento"))) {
+            return AlmacenamientoJdbc.desdePropiedades("ga2", "GA2");
+        }
+        AlmacenamientoArchivos archivos = new AlmacenamientoArchivos(
+                RUTA_DB, RUTA_DB_BINARIO, RUTA_PRESTAMOS, RUTA_DIARIO_PRESTAMOS, "GA2");
+        // Instantáneas binarias para un arranque rápido (desactivar con -Dga2.instantaneas=false)
+        if (!"false".equals(System.getProperty("ga2.instantaneas"))) {
+            archivos.activarInstantaneas(RUTA_INSTANTANEA_DB, RUTA_DIARIO_DB, RUTA_INSTANTANEA_PRESTAMOS);
+        }
+        return archivos;
+    }
+
     public void iniciar() {
         ZMQ.Context context = ZMQ.context(1);
         
@@ -43,18 +115,31 @@ public class GA2 {
         rep.bind("tcp://*:" + PUERTO_REP);
         System.out.println(" GA2 escuchando en puerto " + PUERTO_REP + " (REP - fallback directo)...");
         
-        // Inicializar socket para notificaciones a GA
-        inicializarSocketNotificacion();
+        // Crear socket PUB para el flujo de cambios hacia GA (puerto 5590)
+        publicadorCambios = context.socket(ZMQ.PUB);
+        publicadorCambios.bind("tcp://*:" + PUERTO_CAMBIOS);
+        System.out.println(" GA2 publicando cambios en puerto " + PUERTO_CAMBIOS + " (PUB)...");
+        
+        // Cargar el catálogo en memoria una sola vez
+        almacenamiento.asegurarCargado();
         
-        // Cargar cambios pendientes desde archivo si existe
-        cargarCambiosPendientes();
+        // Cargar cambios pendientes (segmentos del log; importa CambiosPendientes.txt si quedó del formato anterior)
+        registroCambios.cargar(RUTA_CAMBIOS_PENDIENTES);
+        ultimaPublicada = registroCambios.getUltimaSecuencia();
+        
+        // Activar el commit en grupo sobre el almacenamiento y el log de cambios
+        almacenamiento.setEscrituraDiferida(true);
+        commitGrupal.agregarParticipante(almacenamiento);
+        commitGrupal.agregarParticipante(registroCambios);
+        commitGrupal.iniciar();
         
         // Thread para manejar solicitudes del ROUTER (desde GA)
         Thread threadRouter = new Thread(() -> manejarSolicitudesRouter(context, router));
         threadRouter.setDaemon(true);
         threadRouter.start();
         
-        // Thread para manejar solicitudes del REP (directo de actores)
+        // Thread para manejar solicitudes del REP (directo de actores); el timeout le permite publicar latidos
+        rep.setReceiveTimeOut((int) INTERVALO_LATIDO_CAMBIOS_MS);
         Thread threadRep = new Thread(() -> manejarSolicitudesRep(context, rep));
         threadRep.setDaemon(true);
         threadRep.start();
@@ -69,146 +154,141 @@ public class GA2 {
         
         router.close();
         rep.close();
-        if (socketNotificacion != null) {
-            socketNotificacion.close();
-        }
-        if (contextNotificacion != null) {
-            contextNotificacion.term();
+        publicadorCambios.close();
+        // Volcar lo que quede del último lote y guardar cambios pendientes antes de cerrar.
+        // Tras un volcado fallido no se escribe nada más: al reiniciar se reproduce solo lo confirmado
+        commitGrupal.cerrar();
+        if (!commitGrupal.estaAveriado()) {
+            registroCambios.cerrar();
+            almacenamiento.cerrar();
         }
-        // Guardar cambios pendientes antes de cerrar
-        guardarCambiosPendientes();
         context.term();
     }
     
-    // Inicializa socket para enviar notificaciones a GA
-    private void inicializarSocketNotificacion() {
-        try {
-            contextNotificacion = ZMQ.context(1);
-            socketNotificacion = contextNotificacion.socket(ZMQ.REQ);
-            socketNotificacion.connect("tcp://localhost:" + PUERTO_GA);
-            socketNotificacion.setReceiveTimeOut(1000); // Timeout corto para no bloquear
-            System.out.println(" GA2: Socket de notificación conectado a GA en puerto " + PUERTO_GA);
-        } catch (Exception e) {
-            System.err.println(" GA2: Error al inicializar socket de notificación: " + e.getMessage());
-            socketNotificacion = null;
-        }
-    }
-    
-    // Carga cambios pendientes desde archivo
-    private void cargarCambiosPendientes() {
-        try {
-            File archivo = new File(RUTA_CAMBIOS_PENDIENTES);
-            if (archivo.exists()) {
-                List<String> lineas = Files.readAllLines(Paths.get(RUTA_CAMBIOS_PENDIENTES), StandardCharsets.UTF_8);
-                cambiosPendientes.addAll(lineas);
-                System.out.println(" GA2: Cargados " + cambiosPendientes.size() + " cambios pendientes desde archivo");
-            }
-        } catch (Exception e) {
-            System.err.println(" GA2: Error al cargar cambios pendientes: " + e.getMessage());
-        }
-    }
-    
-    // Guarda cambios pendientes a archivo
-    private void guardarCambiosPendientes() {
-        try {
-            Files.write(Paths.get(RUTA_CAMBIOS_PENDIENTES), cambiosPendientes, StandardCharsets.UTF_8);
-            System.out.println(" GA2: Guardados " + cambiosPendientes.size() + " cambios pendientes en archivo");
-        } catch (Exception e) {
-            System.err.println(" GA2: Error al guardar cambios pendientes: " + e.getMessage());
-        }
-    }
-    
-    // Registra un cambio en el log
-    private void registrarCambio(String tipoOperacion, String datos) {
+    // Registra un cambio en el log; retorna "SEQ, CAMBIO" para publicarlo después del commit (null si falló)
+    private String registrarCambio(String tipoOperacion, String datos) {
         try {
             LocalDateTime ahora = LocalDateTime.now();
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             String timestamp = ahora.format(formatter);
             String cambio = timestamp + ", " + tipoOperacion + ", " + datos;
             
-            cambiosPendientes.add(cambio);
-            System.out.println(" GA2: Cambio registrado en log: " + cambio);
-            
-            // Guardar inmediatamente en archivo para persistencia
-            guardarCambiosPendientes();
+            // Se persiste en el próximo volcado del commit en grupo
+            long seq = registroCambios.agregar(cambio);
+            System.out.println(" GA2: Cambio registrado en log: #" + seq + " " + cambio);
+            return seq + ", " + cambio;
         } catch (Exception e) {
             System.err.println(" GA2: Error al registrar cambio: " + e.getMessage());
+            return null;
         }
     }
     
-    // Intenta enviar notificación a GA (no bloqueante)
-    private void enviarNotificacionAGa(String tipoOperacion, String datos) {
-        if (socketNotificacion == null) {
-            return; // Socket no disponible, cambio quedará en log
+    // Publica a GA cambios ya confirmados en disco ("SEQ, CAMBIO", en orden de secuencia)
+    private void publicarCambios(List<String> cambios) {
+        for (String cambio : cambios) {
+            publicadorCambios.send("CAMBIO:" + cambio, 0);
+            ultimaPublicada = Long.parseLong(cambio.substring(0, cambio.indexOf(',')));
         }
-        
-        try {
-            String notificacion = "NOTIFICACION_CAMBIO:" + tipoOperacion + ":" + datos;
-            socketNotificacion.send(notificacion, 0);
-            String respuesta = socketNotificacion.recvStr();
-            
-            if (respuesta != null && respuesta.equals("OK")) {
-                System.out.println(" GA2: Notificación enviada exitosamente a GA: " + tipoOperacion);
-                // No eliminamos el cambio del log aún, esperamos confirmación explícita
-            } else {
-                System.out.println(" GA2: GA no confirmó notificación, cambio quedará en log");
-            }
-        } catch (Exception e) {
-            System.out.println(" GA2: Error al enviar notificación a GA (GA puede estar caído): " + e.getMessage());
-            // Cambio quedará en log para sincronización posterior
+        if (!cambios.isEmpty()) {
+            System.out.println(" GA2: " + cambios.size() + " cambios publicados a GA (hasta #" + ultimaPublicada + ")");
+            proximoLatidoCambios = System.currentTimeMillis() + INTERVALO_LATIDO_CAMBIOS_MS;
         }
     }
-    
-    // Obtiene lista de cambios pendientes
-    private List<String> obtenerCambiosPendientes() {
-        return new ArrayList<>(cambiosPendientes);
-    }
-    
-    // Marca cambios como sincronizados (los elimina del log)
-    private void marcarCambioSincronizado(List<String> cambiosSincronizados) {
-        try {
-            cambiosPendientes.removeAll(cambiosSincronizados);
-            guardarCambiosPendientes();
-            System.out.println(" GA2: " + cambiosSincronizados.size() + " cambios marcados como sincronizados");
-        } catch (Exception e) {
-            System.err.println(" GA2: Error al marcar cambios como sincronizados: " + e.getMessage());
+
+    // Sin cambios nuevos, GA recibe igual la última secuencia para detectar si perdió alguno
+    private void publicarLatidoCambios() {
+        if (System.currentTimeMillis() < proximoLatidoCambios) {
+            return;
         }
+        publicadorCambios.send("LATIDO_CAMBIOS:" + ultimaPublicada, 0);
+        proximoLatidoCambios = System.currentTimeMillis() + INTERVALO_LATIDO_CAMBIOS_MS;
     }
     
-    // Maneja solicitudes del ROUTER (desde GA)
+    // Maneja solicitudes del ROUTER (desde GA).
+    // Las respuestas se retienen hasta que el commit en grupo confirme su ticket; mientras tanto
+    // el hilo sigue recibiendo solicitudes, que es lo que permite llenar un lote.
     private void manejarSolicitudesRouter(ZMQ.Context context, ZMQ.Socket router) {
+        ZMQ.Poller poller = context.poller(1);
+        poller.register(router, ZMQ.Poller.POLLIN);
+        List<RespuestaRetenida> retenidas = new ArrayList<>();
+        
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                // Recibir formato ROUTER: [identidad] [mensaje]
-                System.out.println("GA2 (ROUTER):  Esperando solicitud...");
-                String identidad = router.recvStr();
-                System.out.println("GA2 (ROUTER):  Identidad recibida: " + identidad);
+                // Sin respuestas retenidas se bloquea; con respuestas retenidas revisa cada milisegundo
+                poller.poll(retenidas.isEmpty() ? -1 : 1);
                 
-                // Verificar si hay más frames
-                String siguiente = router.recvStr();
-                System.out.println("GA2 (ROUTER):  Segundo frame recibido: '" + siguiente + "'");
-                
-                String solicitud;
-                // Si el siguiente frame está vacío, el mensaje está en el tercer frame
-                // Si no está vacío, ese es el mensaje
-                if (siguiente == null || siguiente.isEmpty()) {
-                    System.out.println("GA2 (ROUTER):  Frame vacío detectado, recibiendo mensaje real...");
-                    solicitud = router.recvStr();
-                } else {
-                    solicitud = siguiente;
+                if (poller.pollin(0)) {
+                    // Recibir formato ROUTER: [identidad] [...sobre...] [mensaje]
+                    // GA envía [idCorrelacion][""][mensaje]; el sobre se devuelve tal cual con la respuesta
+                    // para que GA empareje respuestas con muchas solicitudes en vuelo
+                    byte[] identidad = router.recv(0);
+                    System.out.println("GA2 (ROUTER):  Identidad recibida: " + new String(identidad, StandardCharsets.UTF_8));
+                    
+                    List<byte[]> sobre = new ArrayList<>();
+                    byte[] cuerpo = router.recv(0);
+                    while (router.hasReceiveMore()) {
+                        sobre.add(cuerpo);
+                        cuerpo = router.recv(0);
+                    }
+                    String clave = ClaveIdempotencia.clave(cuerpo);
+                    cuerpo = ClaveIdempotencia.sinClave(cuerpo);
+                    
+                    // Operación binaria: se despacha por opcode e ID sin parsear texto
+                    if (ProtocoloBinario.esBinario(cuerpo)) {
+                        List<String> cambios = new ArrayList<>(1);
+                        String respuesta = procesarBinario(cuerpo, clave, cambios);
+                        System.out.println("GA2 (ROUTER):  Operación binaria " + ProtocoloBinario.opcode(cuerpo)
+                                + " libro " + ProtocoloBinario.idLibro(cuerpo) + " -> " + respuesta);
+                        long ticket = esOperacionExitosa(ProtocoloBinario.opcode(cuerpo), respuesta)
+                                ? commitGrupal.registrar() : commitGrupal.ultimoRegistrado();
+                        retenidas.add(new RespuestaRetenida(identidad, sobre, respuesta, registros(cambios), ticket, clave));
+                        continue;
+                    }
+                    String solicitud = new String(cuerpo, StandardCharsets.UTF_8);
+                    if (solicitud.equals(ProtocoloBinario.NEGOCIACION)) {
+                        retenidas.add(new RespuestaRetenida(identidad, sobre, ProtocoloBinario.ACEPTADO, null,
+                                commitGrupal.ultimoRegistrado(), null));
+                        continue;
+                    }
+                    
+                    System.out.println("GA2 (ROUTER):  Solicitud recibida de " + identidad + " -> " + solicitud);
+
+                    List<String> cambios = new ArrayList<>();
+                    String respuesta = procesarSolicitud(solicitud, clave, cambios);
+                    System.out.println("GA2 (ROUTER):  Respuesta procesada: " + respuesta);
+                    
+                    long ticket = solicitud != null && esOperacionExitosa(respuesta, solicitud)
+                            ? commitGrupal.registrar() : commitGrupal.ultimoRegistrado();
+                    retenidas.add(new RespuestaRetenida(identidad, sobre, respuesta, registros(cambios), ticket, clave));
                 }
                 
-                System.out.println("GA2 (ROUTER):  Mensaje recibido: " + solicitud);
-                System.out.println("GA2 (ROUTER):  Solicitud recibida de " + identidad + " -> " + solicitud);
-
-                String respuesta = procesarSolicitud(solicitud);
-                System.out.println("GA2 (ROUTER):  Respuesta procesada: " + respuesta);
-            
-                // Enviar respuesta en formato ROUTER: [identidad] [respuesta]
-                System.out.println("GA2 (ROUTER):  Enviando respuesta a identidad '" + identidad + "'...");
-                router.send(identidad, ZMQ.SNDMORE); // Identidad del DEALER
-                router.send(respuesta, 0);            // Respuesta
-                System.out.println("GA2 (ROUTER):  ✓ Respuesta enviada correctamente: " + respuesta);
+                // Enviar las respuestas cuyo lote ya está en disco
+                Iterator<RespuestaRetenida> it = retenidas.iterator();
+                while (it.hasNext()) {
+                    RespuestaRetenida r = it.next();
+                    if (!commitGrupal.estaConfirmado(r.ticket)) {
+                        continue;
+                    }
+                    boolean exitoso = commitGrupal.fueExitoso(r.ticket);
+                    String respuesta = exitoso ? r.respuesta : "Error: No se pudo confirmar la escritura en disco";
+                    if (!exitoso) {
+                        // El resultado ya se guardó para la clave: un reintento no debe recibir ese éxito
+                        cacheIdempotencia.quitar(r.clave);
+                    }
+                    // Enviar respuesta en formato ROUTER: [identidad] [...sobre...] [respuesta] [cambios]
+                    router.send(r.identidad, ZMQ.SNDMORE); // Identidad del DEALER
+                    for (byte[] trama : r.sobre) {
+                        router.send(trama, ZMQ.SNDMORE);
+                    }
+                    if (exitoso && r.cambios != null) {
+                        router.send(respuesta, ZMQ.SNDMORE);
+                        router.send(r.cambios, 0);          // Estado resultante de los libros (CambioLibro)
+                    } else {
+                        router.send(respuesta, 0);          // Respuesta
+                    }
+                    System.out.println("GA2 (ROUTER):  ✓ Respuesta enviada correctamente: " + respuesta);
+                    it.remove();
+                }
                 
             } catch (Exception e) {
                 System.err.println("GA2 (ROUTER):  Error al procesar solicitud: " + e.getMessage());
@@ -217,31 +297,113 @@ public class GA2 {
         }
     }
     
+    // Registros de CambioLibro para GA: uno por operación, separados por "|" ("" si la operación no cambió
+    // nada), o null si la solicitud no era una operación sobre libros
+    private static String registros(List<String> cambios) {
+        return cambios.isEmpty() ? null : String.join("|", cambios);
+    }
+
+    // Respuesta del ROUTER a la espera de que su commit en grupo se confirme
+    private static class RespuestaRetenida {
+        final byte[] identidad;
+        final List<byte[]> sobre;
+        final String respuesta;
+        final String cambios; // Va en una trama extra después de la respuesta (null: sin trama)
+        final long ticket;
+        final String clave;   // Clave de idempotencia (null si no vino)
+
+        RespuestaRetenida(byte[] identidad, List<byte[]> sobre, String respuesta, String cambios, long ticket, String clave) {
+            this.identidad = identidad;
+            this.sobre = sobre;
+            this.respuesta = respuesta;
+            this.cambios = cambios;
+            this.ticket = ticket;
+            this.clave = clave;
+        }
+    }
+    
     // Maneja solicitudes del REP (directo de actores)
     private void manejarSolicitudesRep(ZMQ.Context context, ZMQ.Socket rep) {
         while (!Thread.currentThread().isInterrupted()) {
             try {
                 // Recibir solicitud del REP (formato simple: mensaje directo)
-                System.out.println("GA2 (REP):  Esperando solicitud directa de actor...");
                 String solicitud = rep.recvStr();
+                publicarLatidoCambios();
+                if (solicitud == null) {
+                    continue; // Timeout: solo tocaba el latido
+                }
                 
-                if (solicitud == null || solicitud.isEmpty()) {
+                if (solicitud.isEmpty()) {
                     System.out.println("GA2 (REP):  Solicitud vacía recibida");
                     continue;
                 }
+                String clave = ClaveIdempotencia.clave(solicitud);
+                solicitud = ClaveIdempotencia.sinClave(solicitud);
                 
                 System.out.println("GA2 (REP):  Solicitud recibida directamente de actor: " + solicitud);
 
-                // Procesar solicitud (solo actualiza DB2.txt y Prestamos2.txt, sin sincronizar con GA)
-                String respuesta = procesarSolicitud(solicitud);
+                // Lote: una transacción para todas sus operaciones; sus cambios se publican juntos
+                if (Lote.esLote(solicitud)) {
+                    ResultadoLote lote = aplicarLote(solicitud, true, null, clave);
+                    String respuestaLote = lote.respuesta;
+                    if (commitGrupal.esperar(lote.ticket)) {
+                        publicarCambios(lote.cambios);
+                    } else {
+                        respuestaLote = "Error: No se pudo confirmar la escritura en disco";
+                        cacheIdempotencia.quitar(clave);
+                    }
+                    rep.send(respuestaLote);
+                    System.out.println("GA2 (REP):  ✓ Respuesta de lote enviada (" + lote.cambios.size() + " cambios)");
+                    continue;
+                }
+
+                // Procesar solicitud (solo actualiza DB2.txt y Prestamos2.txt, sin sincronizar con GA).
+                // El cambio se registra en el log bajo el mismo bloqueo del libro para que el orden del
+                // log coincida con el orden en que se aplicaron las operaciones sobre ese libro.
+                String respuesta;
+                String registrado = null;
+                long ticket;
+                ReentrantLock bloqueo = bloqueoDeSolicitud(solicitud);
+                if (bloqueo != null) {
+                    bloqueo.lock();
+                }
+                try {
+                    String previa = bloqueo != null ? cacheIdempotencia.buscar(clave) : null;
+                    if (previa != null) {
+                        // Repetición: no se vuelve a aplicar ni a registrar, pero la escritura original
+                        // puede no estar en disco todavía, así que se espera un commit igual
+                        System.out.println("GA2 (REP):  Solicitud repetida (" + clave + "), resultado original: " + previa);
+                        respuesta = previa;
+                        ticket = commitGrupal.registrar();
+                    } else {
+                        respuesta = procesarSolicitud(solicitud);
+                        if (esOperacionExitosa(respuesta, solicitud)) {
+                            registrado = registrarCambio(extraerTipoOperacion(solicitud), registroDeLibro(idLibroDeSolicitud(solicitud)));
+                            ticket = commitGrupal.registrar();
+                        } else {
+                            ticket = commitGrupal.ultimoRegistrado();
+                        }
+                        if (bloqueo != null) {
+                            cacheIdempotencia.guardar(clave, respuesta);
+                        }
+                    }
+                } finally {
+                    if (bloqueo != null) {
+                        bloqueo.unlock();
+                    }
+                }
                 System.out.println("GA2 (REP):  Respuesta procesada: " + respuesta);
                 
-                // Si la operación fue exitosa, registrar cambio en log y notificar a GA
-                if (esOperacionExitosa(respuesta, solicitud)) {
-                    String tipoOperacion = extraerTipoOperacion(solicitud);
-                    String datos = extraerDatosOperacion(solicitud);
-                    registrarCambio(tipoOperacion, datos);
-                    enviarNotificacionAGa(tipoOperacion, datos);
+                // Esperar el commit en grupo (también en una repetición, que responde lo que dejó la
+                // original) y publicar el cambio a GA. Si falla, el cliente recibe error y la clave sale
+                // de la caché para que un reintento no reciba un éxito que no llegó a disco
+                if (commitGrupal.esperar(ticket)) {
+                    if (registrado != null) {
+                        publicarCambios(Collections.singletonList(registrado));
+                    }
+                } else {
+                    respuesta = "Error: No se pudo confirmar la escritura en disco";
+                    cacheIdempotencia.quitar(clave);
                 }
             
                 // Enviar respuesta (formato REP: respuesta directa)
@@ -255,11 +417,225 @@ public class GA2 {
         }
     }
 
-    //  Función principal de procesamiento
-    private String procesarSolicitud(String solicitud) {
+    //  Función principal de procesamiento; las operaciones sobre un libro se serializan por su franja de bloqueo
+    String procesarSolicitud(String solicitud) {
+        return procesarSolicitud(solicitud, null, null);
+    }
+
+    // Igual; si "cambios" no es null agrega el estado resultante (CambioLibro) de cada operación sobre un
+    // libro, tomado bajo el mismo bloqueo: uno por operación del lote ("" si falló) o uno si fue exitosa.
+    // Con "clave" (de idempotencia), una operación repetida retorna el resultado original sin ejecutarse y
+    // agrega un solo registro vacío (GA no tiene nada que aplicar).
+    String procesarSolicitud(String solicitud, String clave, List<String> cambios) {
+        if (cambios != null && Lote.esLote(solicitud)) {
+            return aplicarLote(solicitud, false, cambios, clave).respuesta;
+        }
+        ReentrantLock bloqueo = bloqueoDeSolicitud(solicitud);
+        if (bloqueo != null) {
+            bloqueo.lock();
+        }
+        try {
+            String previa = bloqueo != null ? resultadoPrevio(clave, cambios) : null;
+            if (previa != null) {
+                return previa;
+            }
+            String respuesta = despacharSolicitud(solicitud);
+            if (cambios != null && bloqueo != null && esOperacionExitosa(respuesta, solicitud)) {
+                cambios.add(registroDeLibro(idLibroDeSolicitud(solicitud)));
+            }
+            if (bloqueo != null) {
+                cacheIdempotencia.guardar(clave, respuesta);
+            }
+            return respuesta;
+        } catch (AlmacenamientoException e) {
+            System.err.println("GA2:  Error de almacenamiento: " + e.getMessage());
+            return "Error: " + e.getMessage();
+        } finally {
+            if (bloqueo != null) {
+                bloqueo.unlock();
+            }
+        }
+    }
+
+    // Operación en formato ProtocoloBinario: el opcode elige el manejador y el ID ya viene como número
+    String procesarBinario(byte[] trama) {
+        return procesarBinario(trama, null, null);
+    }
+
+    String procesarBinario(byte[] trama, String clave, List<String> cambios) {
+        int id = ProtocoloBinario.idLibro(trama);
+        if (id < 0) {
+            return "Error: ID de libro no válido";
+        }
+        if (commitGrupal.estaAveriado()) {
+            return ERROR_AVERIADO;
+        }
+        ReentrantLock bloqueo = bloqueos.bloqueoPara(id);
+        bloqueo.lock();
+        try {
+            String previa = resultadoPrevio(clave, cambios);
+            if (previa != null) {
+                return previa;
+            }
+            String idLibro = Integer.toString(id);
+            String respuesta;
+            switch (ProtocoloBinario.opcode(trama)) {
+                case ProtocoloBinario.PRESTAMO:
+                    respuesta = prestarLibro(idLibro);
+                    break;
+                case ProtocoloBinario.DEVOLVER:
+                    respuesta = devolverLibro(idLibro);
+                    break;
+                default:
+                    respuesta = renovarLibro(idLibro);
+            }
+            if (cambios != null && esOperacionExitosa(ProtocoloBinario.opcode(trama), respuesta)) {
+                cambios.add(registroDeLibro(id));
+            }
+            cacheIdempotencia.guardar(clave, respuesta);
+            return respuesta;
+        } catch (AlmacenamientoException e) {
+            System.err.println("GA2:  Error de almacenamiento: " + e.getMessage());
+            return "Error: " + e.getMessage();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    // Resultado original de una operación repetida (null si es nueva); llamar con los bloqueos tomados
+    private String resultadoPrevio(String clave, List<String> cambios) {
+        String previa = cacheIdempotencia.buscar(clave);
+        if (previa != null) {
+            System.out.println("GA2:  Solicitud repetida (" + clave + "), se responde el resultado original: " + previa);
+            if (cambios != null) {
+                cambios.add("");
+            }
+        }
+        return previa;
+    }
+
+    // Bloqueo de la franja del libro al que se refiere la solicitud, o null si no es una operación sobre un libro
+    private ReentrantLock bloqueoDeSolicitud(String solicitud) {
+        int id = idLibroDeSolicitud(solicitud);
+        return id < 0 ? null : bloqueos.bloqueoPara(id);
+    }
+
+    // ID del libro de una operación (préstamo, devolución o renovación), o -1 si no es una operación sobre un libro
+    private int idLibroDeSolicitud(String solicitud) {
+        if (solicitud == null) {
+            return -1;
+        }
+        String idLibro;
+        if (solicitud.startsWith("Disponibilidad?")) {
+            idLibro = solicitud.substring("Disponibilidad?".length());
+        } else if (solicitud.startsWith("DEVOLVER")) {
+            idLibro = extraerIdLibro(solicitud, "DEVOLVER");
+        } else if (solicitud.startsWith("RENOVAR")) {
+            idLibro = extraerIdLibro(solicitud, "RENOVAR");
+        } else {
+            return -1;
+        }
+        return CatalogoMemoria.parsearId(idLibro);
+    }
+
+    // Aplica un lote (BATCH) como una sola transacción de almacenamiento: toma los bloqueos de todos sus
+    // libros (en orden de franja) y retiene el volcado del commit en grupo hasta registrar el lote, así
+    // todas sus escrituras van en el mismo volcado. Cada operación produce su propio resultado.
+    // Con registrarEnLog (solicitudes directas de actores) los cambios exitosos se registran para GA; con
+    // "registros" se agrega el estado resultante de cada operación ("" si falló) para la respuesta a GA.
+    private ResultadoLote aplicarLote(String solicitud, boolean registrarEnLog, List<String> registros, String clave) {
+        List<String> operaciones = Lote.operaciones(solicitud);
+        List<String> cambios = new ArrayList<>();
+        if (operaciones.isEmpty()) {
+            return new ResultadoLote("Error: Lote vacío", commitGrupal.ultimoRegistrado(), cambios);
+        }
+        if (operaciones.size() > Lote.MAX_OPERACIONES) {
+            return new ResultadoLote("Error: El lote supera el máximo de " + Lote.MAX_OPERACIONES + " operaciones",
+                    commitGrupal.ultimoRegistrado(), cambios);
+        }
+        System.out.println("GA2:  Aplicando lote de " + operaciones.size() + " operaciones");
+
+        int[] ids = new int[operaciones.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idLibroDeSolicitud(operaciones.get(i));
+        }
+        List<ReentrantLock> bloqueosLote = bloqueos.bloqueosPara(ids);
+        for (ReentrantLock bloqueo : bloqueosLote) {
+            bloqueo.lock();
+        }
+        Lock barrera = commitGrupal.bloqueoLote();
+        barrera.lock();
+        try {
+            String previa = resultadoPrevio(clave, registros);
+            if (previa != null) {
+                // La escritura original del lote puede no estar en disco todavía
+                return new ResultadoLote(previa, commitGrupal.registrar(), cambios);
+            }
+            List<String> resultados = new ArrayList<>(operaciones.size());
+            boolean algunaExitosa = false;
+            for (int i = 0; i < operaciones.size(); i++) {
+                String operacion = operaciones.get(i);
+                String resultado;
+                String registro = ""; // Estado resultante del libro si la operación fue exitosa
+                if (ids[i] < 0) {
+                    resultado = "Error: Operación no válida en un lote: " + operacion;
+                } else {
+                    try {
+                        resultado = despacharSolicitud(operacion);
+                    } catch (AlmacenamientoException e) {
+                        System.err.println("GA2:  Error de almacenamiento: " + e.getMessage());
+                        resultado = "Error: " + e.getMessage();
+                    }
+                    if (esOperacionExitosa(resultado, operacion)) {
+                        algunaExitosa = true;
+                        registro = registroDeLibro(ids[i]);
+                        if (registrarEnLog) {
+                            String registrado = registrarCambio(extraerTipoOperacion(operacion), registro);
+                            if (registrado != null) {
+                                cambios.add(registrado);
+                            }
+                        }
+                    }
+                }
+                if (registros != null) {
+                    registros.add(registro);
+                }
+                resultados.add(resultado);
+            }
+            long ticket = algunaExitosa ? commitGrupal.registrar() : commitGrupal.ultimoRegistrado();
+            String respuesta = Lote.armarResultados(resultados);
+            cacheIdempotencia.guardar(clave, respuesta);
+            return new ResultadoLote(respuesta, ticket, cambios);
+        } finally {
+            barrera.unlock();
+            for (int i = bloqueosLote.size() - 1; i >= 0; i--) {
+                bloqueosLote.get(i).unlock();
+            }
+        }
+    }
+
+    // Respuesta de un lote, ticket del commit en grupo que lo cubre y cambios registrados ("SEQ, CAMBIO")
+    private static class ResultadoLote {
+        final String respuesta;
+        final long ticket;
+        final List<String> cambios;
+
+        ResultadoLote(String respuesta, long ticket, List<String> cambios) {
+            this.respuesta = respuesta;
+            this.ticket = ticket;
+            this.cambios = cambios;
+        }
+    }
+
+    private String despacharSolicitud(String solicitud) {
         if (solicitud == null || solicitud.isEmpty()) {
             return "Solicitud vacía o nula";
         }
+        // Después de un volcado fallido la memoria tiene escrituras que no llegaron a disco: no se
+        // atienden lecturas ni escrituras hasta reiniciar (ver CommitGrupal.estaAveriado)
+        if (commitGrupal.estaAveriado()) {
+            return ERROR_AVERIADO;
+        }
 
         if (solicitud.startsWith("Disponibilidad?")) {
             return manejarDisponibilidad(solicitud);
@@ -269,11 +645,32 @@ public class GA2 {
 
         } else if (solicitud.startsWith("RENOVAR")) {
             return manejarRenovacion(solicitud);
+
+        } else if (Lote.esLote(solicitud)) {
+            return aplicarLote(solicitud, false, null, null).respuesta;
+
+        } else if (solicitud.startsWith("BUSCAR:")) {
+            return manejarBusqueda(solicitud);
+
+        } else if (solicitud.startsWith("VENCIDOS")) {
+            return manejarVencidos(solicitud);
             
+        } else if (solicitud.startsWith("OBTENER_CAMBIOS_DESDE:")) {
+            return procesarBacklog(solicitud);
+
         } else if (solicitud.equals("OBTENER_CAMBIOS")) {
             return procesarSolicitudSync();
+
+        } else if (solicitud.startsWith("RESUMEN_RANGO:")) {
+            return procesarResumenRango(solicitud);
+
+        } else if (solicitud.startsWith("ESTADO_RANGO:")) {
+            return procesarEstadoRango(solicitud);
+
+        } else if (solicitud.equals("CANAL_CAMBIOS?")) {
+            return "CANAL_CAMBIOS:" + PUERTO_CAMBIOS;
             
-        } else if (solicitud.startsWith("CAMBIOS_SINCRONIZADOS:")) {
+        } else if (solicitud.startsWith("CAMBIOS_SINCRONIZADOS_HASTA:")) {
             return procesarCambiosSincronizados(solicitud);
 
         } else {
@@ -282,9 +679,10 @@ public class GA2 {
         }
     }
     
-    // Procesa solicitud de sincronización (retorna cambios pendientes)
+    // Procesa solicitud de sincronización (retorna cambios pendientes como "SEQ, TIMESTAMP, TIPO, DATOS").
+    // Solo la primera página: para el resto hay que usar OBTENER_CAMBIOS_DESDE con el último SEQ recibido
     private String procesarSolicitudSync() {
-        List<String> cambios = obtenerCambiosPendientes();
+        List<String> cambios = registroCambios.pendientesDesde(0, PaginaCambios.MAX_CAMBIOS, PaginaCambios.MAX_CARACTERES);
         if (cambios.isEmpty()) {
             return "SIN_CAMBIOS";
         }
@@ -292,35 +690,86 @@ public class GA2 {
         return String.join("|", cambios);
     }
     
-    // Procesa notificación de cambios sincronizados
-    private String procesarCambiosSincronizados(String solicitud) {
+    // Página del backlog para GA: "OBTENER_CAMBIOS_DESDE:N:MAX[:Z]" -> "ULTIMA[:MAS]|SEQ, CAMBIO|..." con
+    // cambios de secuencia mayor que N (ver PaginaCambios). ULTIMA se lee antes: sin ":MAS", todo lo que
+    // no venga hasta ahí ya estaba confirmado por GA.
+    private String procesarBacklog(String solicitud) {
         try {
-            // Formato: CAMBIOS_SINCRONIZADOS:CAMBIO1|CAMBIO2|CAMBIO3
-            // Donde cada CAMBIO es el string completo del cambio
-            String cambiosStr = solicitud.substring("CAMBIOS_SINCRONIZADOS:".length());
-            if (cambiosStr.isEmpty()) {
-                return "OK";
+            String[] partes = solicitud.substring("OBTENER_CAMBIOS_DESDE:".length()).split(":");
+            long desde = Long.parseLong(partes[0].trim());
+            int maximo = partes.length > 1 ? Integer.parseInt(partes[1].trim()) : PaginaCambios.MAX_CAMBIOS;
+            boolean comprimir = partes.length > 2 && partes[2].trim().equals("Z");
+            long ultima = registroCambios.getUltimaSecuencia();
+            List<String> cambios = registroCambios.pendientesDesde(desde,
+                    Math.max(1, Math.min(maximo, PaginaCambios.MAX_CAMBIOS)), PaginaCambios.MAX_CARACTERES);
+            boolean hayMas = false;
+            if (!cambios.isEmpty()) {
+                String ultimo = cambios.get(cambios.size() - 1);
+                hayMas = Long.parseLong(ultimo.substring(0, ultimo.indexOf(',')).trim()) < ultima;
             }
-            
-            String[] cambiosArray = cambiosStr.split("\\|");
-            List<String> cambiosParaEliminar = new ArrayList<>();
-            
-            // Buscar cambios exactos en la lista de pendientes
-            for (String cambioRecibido : cambiosArray) {
-                cambioRecibido = cambioRecibido.trim();
-                for (String cambio : cambiosPendientes) {
-                    if (cambio.equals(cambioRecibido)) {
-                        cambiosParaEliminar.add(cambio);
-                        break;
-                    }
+            return PaginaCambios.armar(ultima, cambios, hayMas, comprimir);
+        } catch (NumberFormatException e) {
+            return "Error: Solicitud de backlog inválida: " + solicitud;
+        }
+    }
+    
+    // Antientropía con GA (ver ResumenRangos): "RESUMEN_RANGO:DESDE:HASTA" -> "RESUMEN:h0,h1,..." con el
+    // hash de cada subrango
+    private String procesarResumenRango(String solicitud) {
+        int[] rango = parsearRango(solicitud.substring("RESUMEN_RANGO:".length()));
+        if (rango == null) {
+            return "Error: Rango inválido: " + solicitud;
+        }
+        return "RESUMEN:" + ResumenRangos.aTexto(ResumenRangos.resumir(almacenamiento, rango[0], rango[1]));
+    }
+
+    // "ESTADO_RANGO:DESDE:HASTA" -> "ESTADO:SEQ|CAMBIO_LIBRO|..." con cada libro del rango. SEQ se lee
+    // antes: el estado enviado incluye todos los cambios hasta SEQ, y GA lo aplica solo si ya los recibió
+    // por el flujo (si no, un cambio atrasado del flujo podría pisarlo después)
+    private String procesarEstadoRango(String solicitud) {
+        int[] rango = parsearRango(solicitud.substring("ESTADO_RANGO:".length()));
+        if (rango == null || !ResumenRangos.esHoja(rango[0], rango[1])) {
+            return "Error: Rango inválido: " + solicitud;
+        }
+        StringBuilder sb = new StringBuilder("ESTADO:").append(registroCambios.getUltimaSecuencia());
+        for (int id : almacenamiento.idsLibros(rango[0], rango[1])) {
+            ReentrantLock bloqueo = bloqueos.bloqueoPara(id);
+            bloqueo.lock();
+            try {
+                CambioLibro libro = CambioLibro.capturar(almacenamiento, id);
+                if (libro != null) {
+                    sb.append('|').append(libro.aTexto());
                 }
+            } finally {
+                bloqueo.unlock();
             }
-            
-            marcarCambioSincronizado(cambiosParaEliminar);
+        }
+        return sb.toString();
+    }
+
+    private static int[] parsearRango(String texto) {
+        String[] partes = texto.split(":");
+        try {
+            int desde = Integer.parseInt(partes[0].trim());
+            int hasta = partes.length > 1 ? Integer.parseInt(partes[1].trim()) : -1;
+            return desde >= 0 && hasta >= desde ? new int[]{desde, hasta} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Procesa la confirmación de GA: todos los cambios con secuencia <= N ya fueron procesados
+    private String procesarCambiosSincronizados(String solicitud) {
+        try {
+            // Formato: CAMBIOS_SINCRONIZADOS_HASTA:N
+            long hasta = Long.parseLong(solicitud.substring("CAMBIOS_SINCRONIZADOS_HASTA:".length()).trim());
+            int descartados = registroCambios.confirmarHasta(hasta);
+            // Se persiste con el commit en grupo
+            commitGrupal.registrar();
+            System.out.println(" GA2: " + descartados + " cambios marcados como sincronizados (hasta #" + hasta + ")");
             return "OK";
         } catch (Exception e) {
             System.err.println("GA2: Error al procesar cambios sincronizados: " + e.getMessage());
-            e.printStackTrace();
             return "ERROR";
         }
     }
@@ -328,14 +777,27 @@ public class GA2 {
     // Verifica si una operación fue exitosa
     private boolean esOperacionExitosa(String respuesta, String solicitud) {
         if (solicitud.startsWith("Disponibilidad?")) {
-            return respuesta.equals("SI");
+            return esOperacionExitosa(ProtocoloBinario.PRESTAMO, respuesta);
         } else if (solicitud.startsWith("DEVOLVER")) {
-            return respuesta.equals("Devolución registrada exitosamente");
+            return esOperacionExitosa(ProtocoloBinario.DEVOLVER, respuesta);
         } else if (solicitud.startsWith("RENOVAR")) {
-            return respuesta.contains("exitoso") || respuesta.contains("nuevo préstamo");
+            return esOperacionExitosa(ProtocoloBinario.RENOVAR, respuesta);
         }
         return false;
     }
+
+    private boolean esOperacionExitosa(byte opcode, String respuesta) {
+        switch (opcode) {
+            case ProtocoloBinario.PRESTAMO:
+                return respuesta.equals("SI");
+            case ProtocoloBinario.DEVOLVER:
+                return respuesta.equals("Devolución registrada exitosamente");
+            case ProtocoloBinario.RENOVAR:
+                return respuesta.contains("exitoso") || respuesta.contains("nuevo préstamo");
+            default:
+                return false;
+        }
+    }
     
     // Extrae el tipo de operación de una solicitud
     private String extraerTipoOperacion(String solicitud) {
@@ -349,48 +811,10 @@ public class GA2 {
         return "DESCONOCIDO";
     }
     
-    // Extrae los datos de una operación (ID del libro)
-    private String extraerDatosOperacion(String solicitud) {
-        String idLibro = "";
-        if (solicitud.startsWith("Disponibilidad?")) {
-            String[] partes = solicitud.split("\\?");
-            if (partes.length == 2) {
-                idLibro = partes[1].trim();
-            }
-        } else if (solicitud.startsWith("DEVOLVER")) {
-            // Formatos posibles: "DEVOLVER DEVOLVER:ID" o "DEVOLVER ID"
-            String[] partes = solicitud.split(" ");
-            for (int i = 1; i < partes.length; i++) {
-                String parte = partes[i].trim();
-                if (parte.contains(":")) {
-                    String[] subPartes = parte.split(":");
-                    if (subPartes.length >= 2) {
-                        idLibro = subPartes[subPartes.length - 1].trim();
-                        break;
-                    }
-                } else if (!parte.isEmpty() && parte.matches("\\d+")) {
-                    idLibro = parte;
-                    break;
-                }
-            }
-        } else if (solicitud.startsWith("RENOVAR")) {
-            // Formatos posibles: "RENOVAR RENOVAR:ID" o "RENOVAR ID"
-            String[] partes = solicitud.split(" ");
-            for (int i = 1; i < partes.length; i++) {
-                String parte = partes[i].trim();
-                if (parte.contains(":")) {
-                    String[] subPartes = parte.split(":");
-                    if (subPartes.length >= 2) {
-                        idLibro = subPartes[subPartes.length - 1].trim();
-                        break;
-                    }
-                } else if (!parte.isEmpty() && parte.matches("\\d+")) {
-                    idLibro = parte;
-                    break;
-                }
-            }
-        }
-        return "ID=" + idLibro;
+    // Estado del libro después de una operación exitosa (ver CambioLibro); llamar con su bloqueo tomado
+    private String registroDeLibro(int idLibro) {
+        CambioLibro cambio = CambioLibro.capturar(almacenamiento, idLibro);
+        return cambio != null ? cambio.aTexto() : "ID=" + idLibro;
     }
 
     //  Función para manejar disponibilidad
@@ -410,21 +834,38 @@ public class GA2 {
             return "Error: ID de libro no válido";
         }
         
-        // Leer DB2.txt
-        List<String> lineas = leerDB();
-        if (lineas == null) {
+        return prestarLibro(idLibro);
+    }
+
+    // Error si el libro pertenece a otro shard (tabla de ruteo desactualizada, por ejemplo durante un rebalanceo)
+    private String verificarRango(String idLibro) {
+        int id = CatalogoMemoria.parsearId(idLibro);
+        if (id < 0 || (id >= rangoDesde && id <= rangoHasta)) {
+            return null;
+        }
+        System.out.println("GA2:  Libro ID " + idLibro + " fuera del rango de este shard (" + rangoDesde + "-" + rangoHasta + ")");
+        return "Error: El libro " + idLibro + " no pertenece a este shard";
+    }
+
+    // Préstamo del libro (ID ya extraído); la usan el protocolo de texto y el binario
+    private String prestarLibro(String idLibro) {
+        String fueraDeRango = verificarRango(idLibro);
+        if (fueraDeRango != null) {
+            return fueraDeRango;
+        }
+        // Consultar el catálogo en memoria
+        if (!almacenamiento.asegurarCargado()) {
             return "Error: No se pudo leer la base de datos";
         }
         
         // Buscar el libro por ID
-        String[] libro = buscarLibro(idLibro, lineas);
-        if (libro == null) {
+        String estado = almacenamiento.obtenerEstadoLibro(CatalogoMemoria.parsearId(idLibro));
+        if (estado == null) {
             System.out.println("GA2:  Libro con ID " + idLibro + " no encontrado en DB2.txt");
             return "NO (libro no existe)";
         }
         
         // Verificar estado del libro
-        String estado = libro[3].trim();
         System.out.println("GA2:  Libro ID " + idLibro + " encontrado en DB2.txt - Estado actual: '" + estado + "'");
         if (estado.equals("DISPONIBLE")) {
             // Actualizar estado a PRESTADO en DB2.txt
@@ -447,161 +888,42 @@ public class GA2 {
         }
     }
     
-    // Lee todo el archivo DB2.txt y retorna una lista de líneas
-    private List<String> leerDB() {
-        try {
-            File archivo = new File(RUTA_DB);
-            if (!archivo.exists()) {
-                System.err.println("GA2:  ✗ ERROR - Archivo DB2.txt no encontrado en: " + RUTA_DB);
-                return null;
-            }
-            
-            System.out.println("GA2:  Leyendo DB2.txt desde: " + RUTA_DB);
-            List<String> lineas = Files.readAllLines(Paths.get(RUTA_DB), StandardCharsets.UTF_8);
-            System.out.println("GA2:  ✓ Archivo DB2.txt leído correctamente (" + lineas.size() + " líneas)");
-            return lineas;
-        } catch (IOException e) {
-            System.err.println("GA2:  Error al leer DB2.txt: " + e.getMessage());
-            return null;
-        }
-    }
-    
-    // Busca un libro por ID en las líneas del archivo
-    private String[] buscarLibro(String idLibro, List<String> lineas) {
-        for (String linea : lineas) {
-            if (linea == null || linea.trim().isEmpty()) {
-                continue;
-            }
-            
-            String[] libro = parsearLineaLibro(linea);
-            if (libro != null && libro[0].trim().equals(idLibro)) {
-                return libro;
-            }
-        }
-        return null;
-    }
-    
-    // Parsea una línea del formato "ID, NOMBRE, AUTOR, ESTADO"
-    private String[] parsearLineaLibro(String linea) {
-        if (linea == null || linea.trim().isEmpty()) {
-            return null;
-        }
-        
-        // Dividir por comas, pero preservar espacios
-        String[] partes = linea.split(",", 4);
-        if (partes.length == 4) {
-            return partes;
-        }
-        return null;
-    }
-    
-    // Actualiza el estado del libro en DB2.txt
+    // Actualiza el estado del libro (catálogo en memoria + DB2.txt)
     private boolean actualizarEstadoLibro(String idLibro, String nuevoEstado) {
-        try {
-            // Leer todas las líneas
-            List<String> lineas = leerDB();
-            if (lineas == null) {
-                System.err.println("GA2:  Error - No se pudieron leer las líneas de DB2.txt");
-                return false;
-            }
-            
-            System.out.println("GA2:  Buscando libro ID: '" + idLibro + "' en DB2.txt (" + lineas.size() + " líneas)");
-            
-            // Actualizar la línea correspondiente
-            List<String> lineasActualizadas = new ArrayList<>();
-            boolean encontrado = false;
-            
-            for (int i = 0; i < lineas.size(); i++) {
-                String linea = lineas.get(i);
-                
-                if (linea == null || linea.trim().isEmpty()) {
-                    lineasActualizadas.add(linea);
-                    continue;
-                }
-                
-                String[] libro = parsearLineaLibro(linea);
-                if (libro != null) {
-                    String idLibroEnArchivo = libro[0].trim();
-                    System.out.println("GA2:  Línea " + (i+1) + " - ID en archivo: '" + idLibroEnArchivo + "', buscando: '" + idLibro + "'");
-                    
-                    if (idLibroEnArchivo.equals(idLibro)) {
-                        // Reconstruir la línea con el nuevo estado
-                        String estadoAnterior = libro[3].trim();
-                        String nuevaLinea = libro[0].trim() + ", " + libro[1].trim() + ", " + 
-                                           libro[2].trim() + ", " + nuevoEstado;
-                        lineasActualizadas.add(nuevaLinea);
-                        encontrado = true;
-                        System.out.println("GA2:  ✓ Libro encontrado en línea " + (i+1) + " - Estado: '" + estadoAnterior + "' -> '" + nuevoEstado + "'");
-                        System.out.println("GA2:  Nueva línea: " + nuevaLinea);
-                    } else {
-                        lineasActualizadas.add(linea);
-                    }
-                } else {
-                    lineasActualizadas.add(linea);
-                }
-            }
-            
-            if (!encontrado) {
-                System.err.println("GA2:  ✗ ERROR - No se encontró el libro con ID '" + idLibro + "' en DB2.txt");
-                return false;
-            }
-            
-            // Escribir las líneas actualizadas de vuelta al archivo DB2.txt
-            System.out.println("GA2:  Escribiendo " + lineasActualizadas.size() + " líneas actualizadas a DB2.txt...");
-            System.out.println("GA2:  Ruta del archivo: " + RUTA_DB);
-            Files.write(Paths.get(RUTA_DB), lineasActualizadas, StandardCharsets.UTF_8);
-            System.out.println("GA2:  ✓ DB2.txt actualizado exitosamente - Libro ID " + idLibro + " ahora está " + nuevoEstado);
-            
-            // Verificar que el archivo se escribió correctamente
-            File archivoVerificar = new File(RUTA_DB);
-            if (archivoVerificar.exists()) {
-                System.out.println("GA2:  ✓ Archivo DB2.txt existe y fue actualizado");
-            } else {
-                System.err.println("GA2:  ✗ ERROR - Archivo DB2.txt no existe después de escribir");
-            }
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("GA2:  ✗ ERROR al actualizar DB2.txt: " + e.getMessage());
-            e.printStackTrace();
+        if (!almacenamiento.asegurarCargado()) {
+            System.err.println("GA2:  Error - No se pudo cargar el catálogo de DB2.txt");
             return false;
         }
+        boolean actualizado = almacenamiento.actualizarEstadoLibro(CatalogoMemoria.parsearId(idLibro), nuevoEstado);
+        if (actualizado) {
+            System.out.println("GA2:  ✓ DB2.txt actualizado exitosamente - Libro ID " + idLibro + " ahora está " + nuevoEstado);
+        }
+        return actualizado;
     }
 
     // Registra un préstamo en Prestamos2.txt
     private void registrarPrestamo(String idLibro) {
-        try {
-            // Obtener fecha actual
-            LocalDate fechaActual = LocalDate.now();
-            // Calcular fecha de devolución (14 días después)
-            LocalDate fechaDevolucion = fechaActual.plusDays(14);
-            
-            // Formatear fechas en formato YYYY-MM-DD
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String fechaPrestamoStr = fechaActual.format(formatter);
-            String fechaDevolucionStr = fechaDevolucion.format(formatter);
-            
-            // Crear la línea del préstamo
-            String nuevaLinea = idLibro + ", " + fechaPrestamoStr + ", " + fechaDevolucionStr + ", 1";
-            
-            // Leer el archivo Prestamos2.txt (si existe)
-            List<String> lineas = new ArrayList<>();
-            File archivoPrestamos = new File(RUTA_PRESTAMOS);
-            if (archivoPrestamos.exists()) {
-                lineas = Files.readAllLines(Paths.get(RUTA_PRESTAMOS), StandardCharsets.UTF_8);
-            }
-            
-            // Agregar la nueva línea
-            lineas.add(nuevaLinea);
-            
-            // Escribir todas las líneas al archivo
-            Files.write(Paths.get(RUTA_PRESTAMOS), lineas, StandardCharsets.UTF_8);
-            
-            System.out.println("GA2:  Préstamo registrado en Prestamos2.txt: " + nuevaLinea);
-            
-        } catch (IOException e) {
-            System.err.println("GA2:  Error al registrar préstamo en Prestamos2.txt: " + e.getMessage());
+        // Obtener fecha actual
+        LocalDate fechaActual = LocalDate.now();
+        // Calcular fecha de devolución (14 días después)
+        LocalDate fechaDevolucion = fechaActual.plusDays(14);
+        
+        // Formatear fechas en formato YYYY-MM-DD
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        String fechaPrestamoStr = fechaActual.format(formatter);
+        String fechaDevolucionStr = fechaDevolucion.format(formatter);
+        
+        // Crear la línea del préstamo
+        String nuevaLinea = idLibro + ", " + fechaPrestamoStr + ", " + fechaDevolucionStr + ", 1";
+        
+        // Agregar el préstamo al diario (sin leer ni reescribir Prestamos2.txt)
+        Prestamo prestamo = new Prestamo(CatalogoMemoria.parsearId(idLibro), fechaActual, fechaDevolucion, 1);
+        if (!almacenamiento.registrarPrestamo(prestamo)) {
+            System.err.println("GA2:  Error al registrar préstamo en Prestamos2.txt: " + nuevaLinea);
+            return;
         }
+        
+        System.out.println("GA2:  Préstamo registrado en Prestamos2.txt: " + nuevaLinea);
     }
 
     // Extrae el ID del libro de solicitudes como "DEVOLVER:ID", "DEVOLVER DEVOLVER:ID" o "RENOVAR:ID"
@@ -635,142 +957,77 @@ public class GA2 {
         return null;
     }
     
-    // Lee todo el archivo Prestamos2.txt y retorna una lista de líneas
-    private List<String> leerPrestamos() {
-        try {
-            File archivo = new File(RUTA_PRESTAMOS);
-            if (!archivo.exists()) {
-                return new ArrayList<>(); // Retornar lista vacía si no existe
-            }
-            
-            List<String> lineas = Files.readAllLines(Paths.get(RUTA_PRESTAMOS), StandardCharsets.UTF_8);
-            return lineas;
-        } catch (IOException e) {
-            System.err.println("GA2:  Error al leer Prestamos2.txt: " + e.getMessage());
-            return null;
+    // Elimina el préstamo de un libro (registro RETURN en el diario)
+    private boolean eliminarPrestamo(String idLibro) {
+        boolean eliminado = almacenamiento.eliminarPrestamo(CatalogoMemoria.parsearId(idLibro));
+        if (eliminado) {
+            System.out.println("GA2:  Préstamo con ID " + idLibro + " eliminado de Prestamos2.txt");
+        } else {
+            System.out.println("GA2:  No se encontró préstamo con ID " + idLibro + " en Prestamos2.txt");
         }
+        return eliminado;
     }
     
-    // Parsea una línea de Prestamos2.txt: "ID, fechaPrestamo, fechaDevolucion, vecesPrestadas"
-    private String[] parsearPrestamo(String linea) {
-        if (linea == null || linea.trim().isEmpty()) {
-            return null;
-        }
-        
-        String[] partes = linea.split(",");
-        if (partes.length >= 4) {
-            // Retornar las 4 partes: ID, fechaPrestamo, fechaDevolucion, vecesPrestadas
-            return new String[] {
-                partes[0].trim(),
-                partes[1].trim(),
-                partes[2].trim(),
-                partes[3].trim()
-            };
+    // Actualiza la fecha de devolución y las veces prestadas de un préstamo (registro RENEW en el diario)
+    private boolean actualizarPrestamo(String idLibro, LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas) {
+        boolean actualizado = almacenamiento.actualizarPrestamo(CatalogoMemoria.parsearId(idLibro), nuevaFechaDevolucion, nuevasVecesPrestadas);
+        if (actualizado) {
+            System.out.println("GA2:  Préstamo con ID " + idLibro + " actualizado en Prestamos2.txt");
+        } else {
+            System.err.println("GA2:  No se encontró préstamo con ID " + idLibro + " para actualizar");
         }
-        return null;
+        return actualizado;
     }
-    
-    // Busca una línea en Prestamos2.txt por ID del libro
-    private String buscarPrestamo(String idLibro, List<String> lineas) {
-        if (lineas == null) {
-            return null;
+
+    //  Función para manejar búsquedas por título o autor (formato: "BUSCAR:<pagina>:<texto>")
+    private String manejarBusqueda(String solicitud) {
+        String resto = solicitud.substring("BUSCAR:".length());
+        int pagina = 1;
+        String consulta = resto;
+        String[] partes = resto.split(":", 2);
+        if (partes.length == 2 && partes[0].trim().matches("\\d{1,6}")) {
+            pagina = Math.max(1, Integer.parseInt(partes[0].trim()));
+            consulta = partes[1];
         }
-        
-        for (String linea : lineas) {
-            if (linea == null || linea.trim().isEmpty()) {
-                continue;
-            }
-            
-            String[] prestamo = parsearPrestamo(linea);
-            if (prestamo != null && prestamo[0].equals(idLibro)) {
-                return linea;
-            }
+        if (consulta.trim().isEmpty()) {
+            return "Error: Búsqueda vacía";
         }
-        return null;
-    }
-    
-    // Elimina todas las líneas relacionadas con un ID de Prestamos2.txt
-    private boolean eliminarPrestamo(String idLibro) {
-        try {
-            List<String> lineas = leerPrestamos();
-            if (lineas == null) {
-                return false;
-            }
-            
-            List<String> lineasActualizadas = new ArrayList<>();
-            boolean encontrado = false;
-            
-            for (String linea : lineas) {
-                if (linea == null || linea.trim().isEmpty()) {
-                    continue; // Omitir líneas vacías
-                }
-                
-                String[] prestamo = parsearPrestamo(linea);
-                if (prestamo != null && !prestamo[0].equals(idLibro)) {
-                    // Solo agregar líneas que NO corresponden al ID a eliminar
-                    lineasActualizadas.add(linea);
-                } else if (prestamo != null && prestamo[0].equals(idLibro)) {
-                    encontrado = true;
-                }
-            }
-            
-            if (!encontrado) {
-                System.out.println("GA2:  No se encontró préstamo con ID " + idLibro + " en Prestamos2.txt");
-                return false;
-            }
-            
-            // Escribir las líneas actualizadas de vuelta al archivo
-            Files.write(Paths.get(RUTA_PRESTAMOS), lineasActualizadas, StandardCharsets.UTF_8);
-            System.out.println("GA2:  Préstamo con ID " + idLibro + " eliminado de Prestamos2.txt");
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("GA2:  Error al eliminar préstamo de Prestamos2.txt: " + e.getMessage());
-            return false;
+        if (!almacenamiento.asegurarCargado()) {
+            return "Error: No se pudo leer la base de datos";
         }
+        ResultadoBusqueda resultado = almacenamiento.buscarLibros(consulta, pagina, ResultadoBusqueda.TAMANO_PAGINA);
+        System.out.println("GA2:  Búsqueda '" + consulta.trim() + "' página " + pagina + ": " + resultado.getTotal() + " resultados");
+        return resultado.aTexto();
     }
-    
-    // Actualiza una línea específica en Prestamos2.txt
-    private boolean actualizarPrestamo(String idLibro, String nuevaFechaDevolucion, String nuevasVecesPrestadas) {
-        try {
-            List<String> lineas = leerPrestamos();
-            if (lineas == null) {
-                return false;
-            }
-            
-            List<String> lineasActualizadas = new ArrayList<>();
-            boolean encontrado = false;
-            
-            for (String linea : lineas) {
-                if (linea == null || linea.trim().isEmpty()) {
-                    continue;
-                }
-                
-                String[] prestamo = parsearPrestamo(linea);
-                if (prestamo != null && prestamo[0].equals(idLibro)) {
-                    // Actualizar la línea con la nueva fecha de devolución y veces prestadas
-                    String nuevaLinea = idLibro + ", " + prestamo[1] + ", " + nuevaFechaDevolucion + ", " + nuevasVecesPrestadas;
-                    lineasActualizadas.add(nuevaLinea);
-                    encontrado = true;
-                } else {
-                    lineasActualizadas.add(linea);
-                }
-            }
-            
-            if (!encontrado) {
-                System.err.println("GA2:  No se encontró préstamo con ID " + idLibro + " para actualizar");
-                return false;
-            }
-            
-            // Escribir las líneas actualizadas de vuelta al archivo
-            Files.write(Paths.get(RUTA_PRESTAMOS), lineasActualizadas, StandardCharsets.UTF_8);
-            System.out.println("GA2:  Préstamo con ID " + idLibro + " actualizado en Prestamos2.txt");
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("GA2:  Error al actualizar préstamo en Prestamos2.txt: " + e.getMessage());
-            return false;
+
+    //  Función para manejar el reporte de préstamos vencidos (formato: "VENCIDOS" o "VENCIDOS:<limite>")
+    private String manejarVencidos(String solicitud) {
+        int limite = LIMITE_VENCIDOS;
+        String[] partes = solicitud.split(":", 2);
+        if (partes.length == 2 && partes[1].trim().matches("\\d{1,6}")) {
+            limite = Math.max(1, Integer.parseInt(partes[1].trim()));
         }
+        if (!almacenamiento.asegurarCargado()) {
+            return "Error: No se pudo leer la base de datos";
+        }
+        LocalDate hoy = LocalDate.now();
+        // Se pide uno más para saber si el reporte quedó recortado
+        List<Prestamo> vencidos = almacenamiento.prestamosVencidos(hoy, limite + 1);
+        boolean hayMas = vencidos.size() > limite;
+        if (hayMas) {
+            vencidos = vencidos.subList(0, limite);
+        }
+        System.out.println("GA2:  Reporte de vencidos: " + vencidos.size() + (hayMas ? "+" : "") + " préstamos");
+        if (vencidos.isEmpty()) {
+            return "No hay préstamos vencidos";
+        }
+        StringBuilder sb = new StringBuilder("Préstamos vencidos: " + vencidos.size()
+                + (hayMas ? " (se muestran los primeros " + limite + ")" : ""));
+        for (Prestamo p : vencidos) {
+            sb.append('\n').append(p.aLinea())
+              .append(" (").append(ChronoUnit.DAYS.between(p.getFechaDevolucion(), hoy)).append(" días de atraso)");
+        }
+        return sb.toString();
     }
 
     //  Función para manejar devoluciones
@@ -783,21 +1040,28 @@ public class GA2 {
             return "Error: ID de libro no válido";
         }
         
-        // Leer DB2.txt
-        List<String> lineas = leerDB();
-        if (lineas == null) {
+        return devolverLibro(idLibro);
+    }
+
+    // Devolución del libro (ID ya extraído); la usan el protocolo de texto y el binario
+    private String devolverLibro(String idLibro) {
+        String fueraDeRango = verificarRango(idLibro);
+        if (fueraDeRango != null) {
+            return fueraDeRango;
+        }
+        // Consultar el catálogo en memoria
+        if (!almacenamiento.asegurarCargado()) {
             return "Error: No se pudo leer la base de datos";
         }
         
         // Buscar el libro por ID
-        String[] libro = buscarLibro(idLibro, lineas);
-        if (libro == null) {
+        String estado = almacenamiento.obtenerEstadoLibro(CatalogoMemoria.parsearId(idLibro));
+        if (estado == null) {
             System.out.println("GA2:  Libro con ID " + idLibro + " no encontrado");
             return "Error: Libro no encontrado";
         }
         
         // Verificar estado del libro
-        String estado = libro[3].trim();
         if (estado.equals("PRESTADO")) {
             // Cambiar estado a DISPONIBLE en DB2.txt
             System.out.println("GA2:  Actualizando estado del libro ID " + idLibro + " en DB2.txt: PRESTADO -> DISPONIBLE");
@@ -829,44 +1093,39 @@ public class GA2 {
             return "Error: ID de libro no válido";
         }
         
-        // Leer DB2.txt
-        List<String> lineas = leerDB();
-        if (lineas == null) {
+        return renovarLibro(idLibro);
+    }
+
+    // Renovación del libro (ID ya extraído); la usan el protocolo de texto y el binario
+    private String renovarLibro(String idLibro) {
+        String fueraDeRango = verificarRango(idLibro);
+        if (fueraDeRango != null) {
+            return fueraDeRango;
+        }
+        // Consultar el catálogo en memoria
+        if (!almacenamiento.asegurarCargado()) {
             return "Error: No se pudo leer la base de datos";
         }
         
         // Buscar el libro por ID
-        String[] libro = buscarLibro(idLibro, lineas);
-        if (libro == null) {
+        String estado = almacenamiento.obtenerEstadoLibro(CatalogoMemoria.parsearId(idLibro));
+        if (estado == null) {
             System.out.println("GA2:  Libro con ID " + idLibro + " no encontrado");
             return "Error: Libro no encontrado";
         }
         
         // Verificar estado del libro
-        String estado = libro[3].trim();
-        
         if (estado.equals("PRESTADO")) {
             // Libro está prestado: buscar en Prestamos2.txt
-            List<String> lineasPrestamos = leerPrestamos();
-            if (lineasPrestamos == null) {
-                return "Error: No se pudo leer Prestamos2.txt";
-            }
-            
-            String prestamoLinea = buscarPrestamo(idLibro, lineasPrestamos);
-            if (prestamoLinea == null) {
+            Prestamo prestamo = almacenamiento.buscarPrestamo(CatalogoMemoria.parsearId(idLibro));
+            if (prestamo == null) {
                 System.out.println("GA2:  No se encontró registro de préstamo para el libro ID " + idLibro + " en Prestamos2.txt");
                 return "Error: No se encontró registro de préstamo";
             }
             
-            // Parsear el préstamo
-            String[] prestamo = parsearPrestamo(prestamoLinea);
-            if (prestamo == null || prestamo.length < 4) {
-                return "Error: Formato de préstamo inválido";
-            }
-            
-            String vecesPrestadas = prestamo[3].trim();
+            int vecesPrestadas = prestamo.getVecesPrestadas();
             
-            if (vecesPrestadas.equals("1")) {
+            if (vecesPrestadas == 1) {
                 // Primera renovación: actualizar fecha de devolución (una semana después del día actual)
                 LocalDate fechaActual = LocalDate.now();
                 LocalDate nuevaFechaDevolucion = fechaActual.plusDays(7);
@@ -874,14 +1133,14 @@ public class GA2 {
                 String nuevaFechaDevolucionStr = nuevaFechaDevolucion.format(formatter);
                 
                 // Actualizar en Prestamos2.txt: cambiar fecha de devolución y veces prestadas a "2"
-                boolean actualizado = actualizarPrestamo(idLibro, nuevaFechaDevolucionStr, "2");
+                boolean actualizado = actualizarPrestamo(idLibro, nuevaFechaDevolucion, 2);
                 if (actualizado) {
                     System.out.println("GA2:  Renovación exitosa para libro ID " + idLibro);
                     return "Renovación exitosa, nueva fecha de devolución: " + nuevaFechaDevolucionStr;
                 } else {
                     return "Error: No se pudo actualizar el préstamo";
                 }
-            } else if (vecesPrestadas.equals("2")) {
+            } else if (vecesPrestadas == 2) {
                 // Segunda renovación: no se permiten más renovaciones
                 System.out.println("GA2:  Libro ID " + idLibro + " ya tiene 2 renovaciones, no se permiten más");
                 return "No se pueden hacer más renovaciones (máximo 2)";
@@ -2,16 +2,29 @@ package org.example;
 
 import org.zeromq.ZMQ;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class GC {
 
     private static final String PUERTO_PS = "tcp://localhost:5555";  // Puerto donde recibe solicitudes de PS
     private static final String PUERTO_PUBLICADOR = "tcp://*:5560";  // Canal de publicación
-    private static final String PUERTO_PRESTAMO = "tcp://localhost:5556"; // Comunicación con actor de préstamo
+    private static final String DIRECCION_TRABAJADORES = "inproc://gc-trabajadores";
+
+    // Cantidad de hilos que atienden solicitudes en paralelo (-Dgc.trabajadores=N)
+    private final int cantidadTrabajadores = Integer.getInteger("gc.trabajadores", 8);
+    // Devoluciones/renovaciones por cola durable con ACK (ColaDevoluciones) en lugar de PUB/SUB
+    // (-Ddevoluciones.cola=true; DevolucionRenovacion debe arrancar con la misma opción)
+    private final boolean modoCola = Boolean.getBoolean("devoluciones.cola");
+    // Shards de GA2: las consultas (BUSCAR, VENCIDOS) van al REP de cada uno y se combinan
+    private final TablaShards tablaShards = TablaShards.desdePropiedades();
 
     private ZMQ.Context context;
-    private ZMQ.Socket socketPS;
-    private ZMQ.Socket publicador;
-    private ZMQ.Socket actorPrestamo;
+    private ZMQ.Socket frontend;   // ROUTER: recibe de todos los PS y recuerda la identidad de cada uno
+    private ZMQ.Socket backend;    // DEALER: reparte las solicitudes entre los trabajadores
+    private ZMQ.Socket publicador; // Compartido por los trabajadores; los envíos se serializan con synchronized
 
     public static void main(String[] args) throws InterruptedException {
         new GC().iniciar();
@@ -22,80 +35,58 @@ public class GC {
 
         inicializarSockets();
 
-        System.out.println(" GC escuchando solicitudes en " + PUERTO_PS + "...");
+        // Los actores de préstamo se conectan al GC y el broker les reparte los préstamos de los trabajadores
+        BrokerActores brokerActores = new BrokerActores(context);
+        brokerActores.iniciar();
+        Thread hiloBroker = new Thread(brokerActores, "gc-actores");
+        hiloBroker.setDaemon(true);
+        hiloBroker.start();
 
-        while (!Thread.currentThread().isInterrupted()) {
-            String solicitud = socketPS.recvStr();
-            System.out.println(" Solicitud recibida: " + solicitud);
-
-            String respuesta = procesarSolicitud(solicitud);
-            socketPS.send(respuesta, 0);
+        if (modoCola) {
+            ColaDevoluciones cola = new ColaDevoluciones(context, System.getProperty("devoluciones.spool", "ColaDevoluciones.log"));
+            try {
+                cola.iniciar();
+            } catch (IOException e) {
+                throw new IllegalStateException("No se pudo abrir el spool de la cola de devoluciones: " + e.getMessage(), e);
+            }
+            Thread hiloCola = new Thread(cola, "gc-cola");
+            hiloCola.setDaemon(true);
+            hiloCola.start();
+        }
 
-            Thread.sleep(100);
+        // Cada trabajador tiene su propio REP hacia el backend y sus propios REQ hacia el broker de actores
+        // y GA2, así que una solicitud lenta no bloquea a las demás. El sobre con la identidad del PS
+        // viaja con la solicitud, y el ROUTER devuelve cada respuesta al cliente correcto.
+        for (int i = 1; i <= cantidadTrabajadores; i++) {
+            Thread trabajador = new Thread(new Trabajador(i), "gc-trabajador-" + i);
+            trabajador.setDaemon(true);
+            trabajador.start();
         }
 
+        System.out.println(" GC escuchando solicitudes en " + PUERTO_PS + " con " + cantidadTrabajadores + " trabajadores...");
+
+        // Reenvía PS -> trabajadores y trabajadores -> PS hasta que se cierre el contexto
+        ZMQ.proxy(frontend, backend, null);
+
         cerrarSockets();
     }
 
     // inicializar sockets
     private void inicializarSockets() {
-        socketPS = context.socket(ZMQ.REP);
-        socketPS.bind(PUERTO_PS);
+        frontend = context.socket(ZMQ.ROUTER);
+        frontend.bind(PUERTO_PS);
+
+        backend = context.socket(ZMQ.DEALER);
+        backend.bind(DIRECCION_TRABAJADORES);
 
         publicador = context.socket(ZMQ.PUB);
         publicador.bind(PUERTO_PUBLICADOR);
-
-        actorPrestamo = context.socket(ZMQ.REQ);
-        actorPrestamo.connect(PUERTO_PRESTAMO);
     }
 
-    // Procesamiento de solicitudes
-    private String procesarSolicitud(String solicitud) {
-        if (solicitud == null || solicitud.isEmpty()) {
-            return "Solicitud vacía o nula";
+    private void publicar(String mensaje) {
+        synchronized (publicador) {
+            publicador.send(mensaje);
         }
-
-        if (solicitud.startsWith("DEVOLVER")) {
-            return manejarDevolucion(solicitud);
-
-        } else if (solicitud.startsWith("RENOVAR")) {
-            return manejarRenovacion(solicitud);
-
-        } else if (solicitud.startsWith("PRESTAMO")) {
-            return manejarPrestamo(solicitud);
-
-        } else {
-            System.out.println("️ Solicitud no reconocida: " + solicitud);
-            return "Solicitud no reconocida";
-        }
-    }
-
-
-
-    //  Devolución
-    private String manejarDevolucion(String solicitud) {
-        System.out.println(" Procesando devolución...");
-        publicador.send("DEVOLUCION " + solicitud);
-        System.out.println(" Publicado en canal DEVOLUCION: " + solicitud);
-        return "Devolución aceptada, gracias.";
-    }
-
-    //  Renovación
-    private String manejarRenovacion(String solicitud) {
-        System.out.println(" Procesando renovación...");
-        String nuevaFecha = obtenerFechaRenovacion();
-        publicador.send("RENOVACION " + solicitud);
-        System.out.println(" Publicado en canal RENOVACION: " + solicitud);
-        return "Renovación aceptada, nueva fecha: " + nuevaFecha;
-    }
-
-    //  Préstamo
-    private String manejarPrestamo(String solicitud) {
-        System.out.println(" Procesando préstamo...");
-        actorPrestamo.send(solicitud, 0);
-        String respuestaPrestamo = actorPrestamo.recvStr();
-        System.out.println(" Respuesta del actor de préstamo: " + respuestaPrestamo);
-        return respuestaPrestamo;
     }
 
     // Nuevo tiempo
@@ -106,10 +97,227 @@ public class GC {
 
     //Cierre de socket
     private void cerrarSockets() {
-        socketPS.close();
+        frontend.close();
+        backend.close();
         publicador.close();
-        actorPrestamo.close();
         context.term();
         System.out.println(" Sockets cerrados correctamente.");
     }
+
+    // Atiende solicitudes una a la vez con sus propios sockets (los sockets ZMQ no se comparten entre hilos)
+    private class Trabajador implements Runnable {
+
+        private final int numero;
+        private ZMQ.Socket socketPS;
+        private ZMQ.Socket actorPrestamo; // REQ al broker, que elige el actor de préstamo
+        private ZMQ.Socket[] socketsGA2;
+        private ZMQ.Socket socketCola; // REQ a ColaDevoluciones (solo en modo cola)
+
+        Trabajador(int numero) {
+            this.numero = numero;
+        }
+
+        @Override
+        public void run() {
+            socketPS = context.socket(ZMQ.REP);
+            socketPS.connect(DIRECCION_TRABAJADORES);
+
+            actorPrestamo = context.socket(ZMQ.REQ);
+            actorPrestamo.connect(BrokerActores.DIRECCION_TRABAJADORES);
+
+            socketsGA2 = new ZMQ.Socket[tablaShards.cantidad()];
+            for (int i = 0; i < socketsGA2.length; i++) {
+                conectarGA2(i);
+            }
+
+            if (modoCola) {
+                socketCola = context.socket(ZMQ.REQ);
+                socketCola.connect(ColaDevoluciones.DIRECCION_ENCOLAR);
+            }
+
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    String solicitud = socketPS.recvStr();
+                    if (solicitud == null) {
+                        break;
+                    }
+                    System.out.println(" [T" + numero + "] Solicitud recibida: " + solicitud);
+
+                    String respuesta = procesarSolicitud(solicitud);
+                    socketPS.send(respuesta, 0);
+                }
+            } catch (RuntimeException e) {
+                // Al cerrar el contexto los sockets de los trabajadores dejan de funcionar
+                System.out.println(" [T" + numero + "] Trabajador detenido: " + e.getMessage());
+            } finally {
+                socketPS.close();
+                actorPrestamo.close();
+                for (ZMQ.Socket socketGA2 : socketsGA2) {
+                    socketGA2.close();
+                }
+                if (socketCola != null) {
+                    socketCola.close();
+                }
+            }
+        }
+
+        // Socket REQ hacia el REP de un shard de GA2; se recrea si una consulta no recibe respuesta
+        private void conectarGA2(int shard) {
+            socketsGA2[shard] = context.socket(ZMQ.REQ);
+            socketsGA2[shard].setReceiveTimeOut(3000);
+            socketsGA2[shard].setLinger(0);
+            socketsGA2[shard].connect(tablaShards.getShards().get(shard).direccionRep);
+        }
+
+        // Procesamiento de solicitudes
+        private String procesarSolicitud(String solicitud) {
+            if (solicitud == null || solicitud.isEmpty()) {
+                return "Solicitud vacía o nula";
+            }
+
+            if (Lote.esLote(solicitud)) {
+                return manejarLote(solicitud);
+
+            } else if (solicitud.startsWith("DEVOLVER")) {
+                return manejarDevolucion(solicitud);
+
+            } else if (solicitud.startsWith("RENOVAR")) {
+                return manejarRenovacion(solicitud);
+
+            } else if (solicitud.startsWith("PRESTAMO")) {
+                return manejarPrestamo(solicitud);
+
+            } else if (solicitud.startsWith("BUSCAR") || solicitud.startsWith("VENCIDOS")) {
+                return manejarConsulta(solicitud);
+
+            } else {
+                System.out.println("️ Solicitud no reconocida: " + solicitud);
+                return "Solicitud no reconocida";
+            }
+        }
+
+        //  Envía "TOPICO contenido" a DevolucionRenovacion: publicado en el canal, o en modo cola recién
+        //  cuando la cola confirma que quedó en el spool. Retorna false si no se pudo encolar.
+        private boolean emitir(String topico, String contenido) {
+            String mensaje = topico + " " + contenido;
+            if (!modoCola) {
+                publicar(mensaje);
+                System.out.println(" Publicado en canal " + topico + ": " + contenido);
+                return true;
+            }
+            socketCola.send(mensaje, 0);
+            String respuesta = socketCola.recvStr();
+            if (!"OK".equals(respuesta)) {
+                System.out.println(" ⚠ No se pudo encolar en " + topico + ": " + respuesta);
+                return false;
+            }
+            System.out.println(" Encolado en " + topico + ": " + contenido);
+            return true;
+        }
+
+        //  Devolución
+        private String manejarDevolucion(String solicitud) {
+            System.out.println(" Procesando devolución...");
+            if (!emitir("DEVOLUCION", solicitud)) {
+                return "Error: No se pudo registrar la devolución";
+            }
+            return "Devolución aceptada, gracias.";
+        }
+
+        //  Renovación
+        private String manejarRenovacion(String solicitud) {
+            System.out.println(" Procesando renovación...");
+            String nuevaFecha = obtenerFechaRenovacion();
+            if (!emitir("RENOVACION", solicitud)) {
+                return "Error: No se pudo registrar la renovación";
+            }
+            return "Renovación aceptada, nueva fecha: " + nuevaFecha;
+        }
+
+        //  Préstamo
+        private String manejarPrestamo(String solicitud) {
+            System.out.println(" Procesando préstamo...");
+            actorPrestamo.send(solicitud, 0);
+            String respuestaPrestamo = actorPrestamo.recvStr();
+            System.out.println(" Respuesta del actor de préstamo: " + respuestaPrestamo);
+            return respuestaPrestamo;
+        }
+
+        //  Lote: los préstamos van juntos al actor de préstamo (necesitan confirmación) y las devoluciones
+        //  y renovaciones se publican juntas en un solo mensaje del canal LOTE. La respuesta tiene un
+        //  resultado por operación, en el orden original.
+        private String manejarLote(String solicitud) {
+            List<String> operaciones = Lote.operaciones(solicitud);
+            if (operaciones.isEmpty()) {
+                return "Error: Lote vacío";
+            }
+            if (operaciones.size() > Lote.MAX_OPERACIONES) {
+                return "Error: El lote supera el máximo de " + Lote.MAX_OPERACIONES + " operaciones";
+            }
+            System.out.println(" Procesando lote de " + operaciones.size() + " operaciones...");
+
+            String[] resultados = new String[operaciones.size()];
+            List<Integer> posicionesPrestamo = new ArrayList<>();
+            List<String> prestamos = new ArrayList<>();
+            List<Integer> posicionesPublicadas = new ArrayList<>();
+            List<String> publicadas = new ArrayList<>();
+            String nuevaFecha = obtenerFechaRenovacion();
+            for (int i = 0; i < operaciones.size(); i++) {
+                String operacion = operaciones.get(i);
+                if (operacion.startsWith("PRESTAMO")) {
+                    posicionesPrestamo.add(i);
+                    prestamos.add(operacion);
+                } else if (operacion.startsWith("DEVOLVER")) {
+                    posicionesPublicadas.add(i);
+                    publicadas.add(operacion);
+                    resultados[i] = "Devolución aceptada, gracias.";
+                } else if (operacion.startsWith("RENOVAR")) {
+                    posicionesPublicadas.add(i);
+                    publicadas.add(operacion);
+                    resultados[i] = "Renovación aceptada, nueva fecha: " + nuevaFecha;
+                } else {
+                    resultados[i] = "Solicitud no reconocida";
+                }
+            }
+
+            if (!publicadas.isEmpty() && !emitir("LOTE", Lote.armar(publicadas))) {
+                for (int posicion : posicionesPublicadas) {
+                    resultados[posicion] = "Error: No se pudo registrar la operación";
+                }
+            }
+
+            if (!prestamos.isEmpty()) {
+                String respuesta = manejarPrestamo(Lote.armar(prestamos));
+                List<String> resultadosPrestamo = Lote.resultados(respuesta, prestamos.size());
+                for (int j = 0; j < posicionesPrestamo.size(); j++) {
+                    resultados[posicionesPrestamo.get(j)] = resultadosPrestamo != null ? resultadosPrestamo.get(j) : respuesta;
+                }
+            }
+            return Lote.armarResultados(Arrays.asList(resultados));
+        }
+
+        //  Consultas de solo lectura (búsqueda por título/autor, préstamos vencidos): se envían directo a GA2;
+        //  con varios shards se consultan todos y se combinan las respuestas
+        private String manejarConsulta(String solicitud) {
+            System.out.println(" Procesando consulta...");
+            String respuesta = tablaShards.cantidad() == 1 ? consultarShard(0, solicitud)
+                    : ConsultaShards.consultar(solicitud, tablaShards.cantidad(), this::consultarShard);
+            if (respuesta == null) {
+                return "Error: GA2 no respondió a la consulta";
+            }
+            System.out.println(" Respuesta de GA2 a la consulta: " + respuesta.split("\n", 2)[0]);
+            return respuesta;
+        }
+
+        private String consultarShard(int shard, String solicitud) {
+            socketsGA2[shard].send(solicitud, 0);
+            String respuesta = socketsGA2[shard].recvStr();
+            if (respuesta == null) {
+                System.out.println(" ⚠ " + tablaShards.getShards().get(shard).nombre + " no respondió a la consulta (timeout)");
+                socketsGA2[shard].close();
+                conectarGA2(shard);
+            }
+            return respuesta;
+        }
+    }
 }
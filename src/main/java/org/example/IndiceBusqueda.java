@@ -0,0 +1,142 @@
+package org.example;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+// Índice invertido por palabra sobre títulos y autores: palabra normalizada -> posiciones del catálogo.
+// Las palabras se guardan ordenadas (TreeMap), así una búsqueda por prefijo recorre solo el rango
+// [prefijo, prefijo + '\uffff'). Se mantiene de forma incremental con agregar()/quitar().
+public class IndiceBusqueda {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    private final TreeMap<String, ListaPosiciones> palabras = new TreeMap<>();
+
+    // Indexa las palabras del título y el autor de una posición
+    public void agregar(int pos, String titulo, String autor) {
+        for (String palabra : palabrasDe(titulo, autor)) {
+            palabras.computeIfAbsent(palabra, p -> new ListaPosiciones()).agregar(pos);
+        }
+    }
+
+    // Quita una posición del índice (antes de cambiarle el título o el autor)
+    public void quitar(int pos, String titulo, String autor) {
+        for (String palabra : palabrasDe(titulo, autor)) {
+            ListaPosiciones lista = palabras.get(palabra);
+            if (lista != null && lista.quitar(pos) && lista.cantidad == 0) {
+                palabras.remove(palabra);
+            }
+        }
+    }
+
+    public int cantidadPalabras() {
+        return palabras.size();
+    }
+
+    // Posiciones (ordenadas, sin repetir) con alguna palabra que empiece por el prefijo dado
+    public int[] candidatos(String prefijo) {
+        Map<String, ListaPosiciones> rango = palabras.subMap(prefijo, true, prefijo + '\uffff', false);
+        int total = 0;
+        for (ListaPosiciones lista : rango.values()) {
+            total += lista.cantidad;
+        }
+        int[] resultado = new int[total];
+        int n = 0;
+        for (ListaPosiciones lista : rango.values()) {
+            System.arraycopy(lista.posiciones, 0, resultado, n, lista.cantidad);
+            n += lista.cantidad;
+        }
+        if (rango.size() > 1) {
+            Arrays.sort(resultado);
+            n = sinRepetidos(resultado);
+        }
+        return n == resultado.length ? resultado : Arrays.copyOf(resultado, n);
+    }
+
+    // Cuántas posiciones tendría que recorrer candidatos(prefijo); sirve para elegir la palabra más selectiva
+    public int costo(String prefijo) {
+        int total = 0;
+        for (ListaPosiciones lista : palabras.subMap(prefijo, true, prefijo + '\uffff', false).values()) {
+            total += lista.cantidad;
+        }
+        return total;
+    }
+
+    // Palabras normalizadas (minúsculas, sin tildes, solo letras y dígitos) de los textos dados
+    public static List<String> palabrasDe(String... textos) {
+        List<String> resultado = new ArrayList<>();
+        for (String texto : textos) {
+            if (texto == null) {
+                continue;
+            }
+            for (String palabra : SEPARADORES.split(normalizar(texto))) {
+                if (!palabra.isEmpty() && !resultado.contains(palabra)) {
+                    resultado.add(palabra);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    public static String normalizar(String texto) {
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    private static int sinRepetidos(int[] ordenados) {
+        if (ordenados.length == 0) {
+            return 0;
+        }
+        int n = 1;
+        for (int i = 1; i < ordenados.length; i++) {
+            if (ordenados[i] != ordenados[n - 1]) {
+                ordenados[n++] = ordenados[i];
+            }
+        }
+        return n;
+    }
+
+    // Lista de posiciones de una palabra; se mantiene ordenada porque la carga agrega en orden creciente
+    private static final class ListaPosiciones {
+        int[] posiciones = new int[2];
+        int cantidad;
+
+        void agregar(int pos) {
+            if (cantidad > 0 && posiciones[cantidad - 1] >= pos) {
+                int i = Arrays.binarySearch(posiciones, 0, cantidad, pos);
+                if (i >= 0) {
+                    return;
+                }
+                insertar(-i - 1, pos);
+                return;
+            }
+            insertar(cantidad, pos);
+        }
+
+        boolean quitar(int pos) {
+            int i = Arrays.binarySearch(posiciones, 0, cantidad, pos);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(posiciones, i + 1, posiciones, i, cantidad - i - 1);
+            cantidad--;
+            return true;
+        }
+
+        private void insertar(int i, int pos) {
+            if (cantidad == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, cantidad * 2);
+            }
+            System.arraycopy(posiciones, i, posiciones, i + 1, cantidad - i);
+            posiciones[i] = pos;
+            cantidad++;
+        }
+    }
+}
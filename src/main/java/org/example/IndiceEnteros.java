@@ -0,0 +1,79 @@
+package org.example;
+
+import java.util.Arrays;
+
+// Tabla hash de direccionamiento abierto con claves y valores int primitivos (sin boxing)
+public class IndiceEnteros {
+
+    private static final int VACIO = Integer.MIN_VALUE;
+
+    private int[] claves;
+    private int[] valores;
+    private int cantidad;
+
+    public IndiceEnteros(int capacidadInicial) {
+        int capacidad = 16;
+        while (capacidad < capacidadInicial * 2) {
+            capacidad <<= 1;
+        }
+        claves = new int[capacidad];
+        valores = new int[capacidad];
+        Arrays.fill(claves, VACIO);
+    }
+
+    // Retorna el valor asociado a la clave, o -1 si no existe
+    public int obtener(int clave) {
+        int mascara = claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                return valores[i];
+            }
+            i = (i + 1) & mascara;
+        }
+        return -1;
+    }
+
+    // Inserta o reemplaza el valor de una clave
+    public void poner(int clave, int valor) {
+        if ((cantidad + 1) * 2 > claves.length) {
+            redimensionar();
+        }
+        int mascara = claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        cantidad++;
+    }
+
+    public int tamano() {
+        return cantidad;
+    }
+
+    private void redimensionar() {
+        int[] clavesViejas = claves;
+        int[] valoresViejos = valores;
+        claves = new int[clavesViejas.length * 2];
+        valores = new int[valoresViejos.length * 2];
+        Arrays.fill(claves, VACIO);
+        cantidad = 0;
+        for (int i = 0; i < clavesViejas.length; i++) {
+            if (clavesViejas[i] != VACIO) {
+                poner(clavesViejas[i], valoresViejos[i]);
+            }
+        }
+    }
+
+    // Dispersa los bits de la clave para que IDs consecutivos no formen racimos
+    private static int mezclar(int clave) {
+        int h = clave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
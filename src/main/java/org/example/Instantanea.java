@@ -0,0 +1,188 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Lectura y escritura en bloque de instantáneas binarias (catálogo y préstamos).
+// Cabecera: MAGICO(4) VERSION(4) SECUENCIA(8); luego cada dueño escribe sus arreglos.
+// Los arreglos de int se copian por bloques a través de un ByteBuffer, sin parsear texto,
+// así que cargar una instantánea cuesta lo que tarde en leerse el archivo.
+public final class Instantanea {
+
+    private static final int TAM_BUFFER = 1 << 20;
+
+    private Instantanea() {
+    }
+
+    // Escribe sobre un archivo temporal; terminar() hace fsync y lo mueve sobre el definitivo
+    public static final class Escritor implements AutoCloseable {
+
+        private final Path destino;
+        private final Path temporal;
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAM_BUFFER);
+        private boolean terminado;
+
+        public Escritor(Path destino, int magico, int version, long secuencia) throws IOException {
+            this.destino = destino;
+            this.temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+            this.canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            escribirInt(magico);
+            escribirInt(version);
+            escribirLong(secuencia);
+        }
+
+        public void escribirInt(int valor) throws IOException {
+            asegurarEspacio(4);
+            buffer.putInt(valor);
+        }
+
+        public void escribirLong(long valor) throws IOException {
+            asegurarEspacio(8);
+            buffer.putLong(valor);
+        }
+
+        public void escribirEnteros(int[] valores, int cantidad) throws IOException {
+            int escritos = 0;
+            while (escritos < cantidad) {
+                asegurarEspacio(4);
+                int n = Math.min(cantidad - escritos, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(valores, escritos, n);
+                buffer.position(buffer.position() + n * 4);
+                escritos += n;
+            }
+        }
+
+        public void escribirBytes(byte[] valores, int cantidad) throws IOException {
+            int escritos = 0;
+            while (escritos < cantidad) {
+                asegurarEspacio(1);
+                int n = Math.min(cantidad - escritos, buffer.remaining());
+                buffer.put(valores, escritos, n);
+                escritos += n;
+            }
+        }
+
+        public void escribirTexto(String texto) throws IOException {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            escribirInt(bytes.length);
+            escribirBytes(bytes, bytes.length);
+        }
+
+        public void terminar() throws IOException {
+            vaciar();
+            canal.force(true);
+            canal.close();
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            terminado = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!terminado) {
+                canal.close();
+                Files.deleteIfExists(temporal);
+            }
+        }
+
+        private void asegurarEspacio(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                vaciar();
+            }
+        }
+
+        private void vaciar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    public static final class Lector implements AutoCloseable {
+
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAM_BUFFER);
+        private final long secuencia;
+
+        public Lector(Path origen, int magico, int version) throws IOException {
+            this.canal = FileChannel.open(origen, StandardOpenOption.READ);
+            buffer.limit(0);
+            if (leerInt() != magico || leerInt() != version) {
+                canal.close();
+                throw new IOException("Instantánea inválida o de otra versión: " + origen.getFileName());
+            }
+            this.secuencia = leerLong();
+        }
+
+        public long getSecuencia() {
+            return secuencia;
+        }
+
+        public int leerInt() throws IOException {
+            asegurarDisponibles(4);
+            return buffer.getInt();
+        }
+
+        public long leerLong() throws IOException {
+            asegurarDisponibles(8);
+            return buffer.getLong();
+        }
+
+        public int[] leerEnteros(int cantidad) throws IOException {
+            int[] valores = new int[cantidad];
+            int leidos = 0;
+            while (leidos < cantidad) {
+                asegurarDisponibles(4);
+                int n = Math.min(cantidad - leidos, buffer.remaining() / 4);
+                buffer.asIntBuffer().get(valores, leidos, n);
+                buffer.position(buffer.position() + n * 4);
+                leidos += n;
+            }
+            return valores;
+        }
+
+        public byte[] leerBytes(int cantidad) throws IOException {
+            byte[] valores = new byte[cantidad];
+            int leidos = 0;
+            while (leidos < cantidad) {
+                asegurarDisponibles(1);
+                int n = Math.min(cantidad - leidos, buffer.remaining());
+                buffer.get(valores, leidos, n);
+                leidos += n;
+            }
+            return valores;
+        }
+
+        public String leerTexto() throws IOException {
+            int largo = leerInt();
+            return new String(leerBytes(largo), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+
+        private void asegurarDisponibles(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (canal.read(buffer) < 0) {
+                    throw new IOException("Instantánea truncada");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
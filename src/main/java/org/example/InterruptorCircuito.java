@@ -0,0 +1,81 @@
+package org.example;
+
+// Circuit breaker para el fallback GA -> GA2:
+//   CERRADO:     las solicitudes van a GA. Tras "fallosParaAbrir" timeouts seguidos pasa a ABIERTO.
+//   ABIERTO:     las solicitudes van directo a GA2, sin pagar el timeout de GA. Pasado "esperaMs" pasa
+//                a SEMIABIERTO.
+//   SEMIABIERTO: una sola solicitud (la sonda) vuelve a probar GA; el resto sigue yendo a GA2.
+//                Si la sonda responde se cierra el circuito; si falla vuelve a ABIERTO.
+// Lo usan ClienteGA (DevolucionRenovacion) y el actor de préstamo. No es thread-safe.
+public class InterruptorCircuito {
+
+    public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final String nombre;
+    private final int fallosParaAbrir;
+    private final long esperaMs;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoDesde;
+    private boolean sondaEnCurso;
+
+    public InterruptorCircuito(String nombre, int fallosParaAbrir, long esperaMs) {
+        this.nombre = nombre;
+        this.fallosParaAbrir = fallosParaAbrir;
+        this.esperaMs = esperaMs;
+    }
+
+    // Configuración por defecto: -Dcircuito.fallos=1 y -Dcircuito.esperaMs=5000
+    public InterruptorCircuito(String nombre) {
+        this(nombre, Integer.getInteger("circuito.fallos", 1), Long.getLong("circuito.esperaMs", 5000));
+    }
+
+    // true si la próxima solicitud debe intentarse con el servicio principal
+    public boolean permitir() {
+        if (estado == Estado.ABIERTO && System.currentTimeMillis() - abiertoDesde >= esperaMs) {
+            estado = Estado.SEMIABIERTO;
+            sondaEnCurso = false;
+        }
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case SEMIABIERTO:
+                if (sondaEnCurso) {
+                    return false;
+                }
+                sondaEnCurso = true;
+                System.out.println(" Circuito " + nombre + ": probando si volvió a responder...");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public void registrarExito() {
+        if (estado != Estado.CERRADO) {
+            System.out.println(" ✓ Circuito " + nombre + " cerrado: vuelve a responder");
+        }
+        estado = Estado.CERRADO;
+        fallosSeguidos = 0;
+        sondaEnCurso = false;
+    }
+
+    // Retorna true si este fallo abrió el circuito
+    public boolean registrarFallo() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMIABIERTO || (estado == Estado.CERRADO && fallosSeguidos >= fallosParaAbrir)) {
+            estado = Estado.ABIERTO;
+            abiertoDesde = System.currentTimeMillis();
+            sondaEnCurso = false;
+            System.out.println(" ⚠ Circuito " + nombre + " abierto: las solicitudes van directo al fallback por "
+                    + esperaMs + " ms");
+            return true;
+        }
+        return false;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Mensaje BATCH: varias operaciones de libro en un solo mensaje (por ejemplo, las devoluciones en bloque
+// de fin de período). Lo usan PS, GC, el actor de préstamo, DevolucionRenovacion, GA y GA2.
+//   Solicitud: "BATCH:<op1>;<op2>;..."        cada op en el formato que entiende el destino ("DEVOLVER:5", "Disponibilidad?7")
+//   Respuesta: "LOTE:<n>\n<resultado1>\n..."   un resultado por operación, en el mismo orden
+public final class Lote {
+
+    public static final String PREFIJO = "BATCH:";
+    public static final String PREFIJO_RESULTADOS = "LOTE:";
+    public static final int MAX_OPERACIONES = 1000;
+
+    private Lote() {
+    }
+
+    public static boolean esLote(String mensaje) {
+        return mensaje != null && mensaje.startsWith(PREFIJO);
+    }
+
+    public static String armar(List<String> operaciones) {
+        return PREFIJO + String.join(";", operaciones);
+    }
+
+    public static List<String> operaciones(String mensaje) {
+        List<String> operaciones = new ArrayList<>();
+        for (String op : mensaje.substring(PREFIJO.length()).split(";")) {
+            if (!op.trim().isEmpty()) {
+                operaciones.add(op.trim());
+            }
+        }
+        return operaciones;
+    }
+
+    public static String armarResultados(List<String> resultados) {
+        StringBuilder sb = new StringBuilder(PREFIJO_RESULTADOS).append(resultados.size());
+        for (String resultado : resultados) {
+            // Cada resultado ocupa exactamente una línea
+            sb.append('\n').append(resultado == null ? "Error: sin respuesta" : resultado.replace('\n', ' '));
+        }
+        return sb.toString();
+    }
+
+    // Resultados de una respuesta "LOTE:<n>\n...", o null si la respuesta no tiene ese formato
+    // (por ejemplo un error que afectó al lote completo)
+    public static List<String> resultados(String respuesta, int esperados) {
+        if (respuesta == null || !respuesta.startsWith(PREFIJO_RESULTADOS)) {
+            return null;
+        }
+        String[] lineas = respuesta.split("\n", -1);
+        if (lineas.length - 1 != esperados) {
+            return null;
+        }
+        return new ArrayList<>(Arrays.asList(lineas).subList(1, lineas.length));
+    }
+}
@@ -0,0 +1,49 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Lote cuyas operaciones pertenecen a varios shards: cada shard recibe su parte como un BATCH propio y
+// los resultados se vuelven a juntar en el orden original. "destino" es lo que necesita quien lo armó
+// para responder cuando llegue la última parte (el sobre del cliente en GA, la solicitud en el actor).
+public class LoteDividido<T> {
+
+    private final T destino;
+    private final String[] resultados;
+    private int partesPendientes;
+
+    public LoteDividido(T destino, int operaciones, int partes) {
+        this.destino = destino;
+        this.resultados = new String[operaciones];
+        this.partesPendientes = partes;
+    }
+
+    // Operaciones de una parte, en el formato de Lote
+    public static String armarParte(List<String> operaciones, List<Integer> posiciones) {
+        List<String> parte = new ArrayList<>(posiciones.size());
+        for (int posicion : posiciones) {
+            parte.add(operaciones.get(posicion));
+        }
+        return Lote.armar(parte);
+    }
+
+    // Registra la respuesta de una parte (null si no llegó); retorna true cuando ya están todas.
+    // Si la respuesta no es un "LOTE:n" válido, todas las operaciones de la parte llevan esa respuesta.
+    public boolean completarParte(int[] posiciones, String respuesta) {
+        List<String> parciales = Lote.resultados(respuesta, posiciones.length);
+        for (int i = 0; i < posiciones.length; i++) {
+            resultados[posiciones[i]] = parciales != null ? parciales.get(i)
+                    : (respuesta != null ? respuesta : "Error: No se recibió respuesta de GA2");
+        }
+        return --partesPendientes == 0;
+    }
+
+    public T getDestino() {
+        return destino;
+    }
+
+    public String respuesta() {
+        return Lote.armarResultados(Arrays.asList(resultados));
+    }
+}
@@ -4,7 +4,11 @@ import org.zeromq.ZMQ;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class PS {
 
@@ -75,6 +79,9 @@ public class PS {
     private void ingresoManual() {
         System.out.println("\nIngrese solicitudes (formato: <TIPO> <ISBN>)");
         System.out.println("Ejemplo: PRESTAMO 9780134685991");
+        System.out.println("Búsqueda: BUSCAR <título o autor> [PAGINA <n>]");
+        System.out.println("Préstamos vencidos: VENCIDOS [<limite>]");
+        System.out.println("Lote: BATCH <TIPO> <ISBN> [<ISBN>...] [<TIPO> <ISBN>...]");
         System.out.println("Escriba 'SALIR' para terminar.\n");
 
         while (true) {
@@ -92,6 +99,30 @@ public class PS {
         linea = linea.trim();
         if (linea.isEmpty()) return;
 
+        // BUSCAR conserva el texto completo: "BUSCAR <texto>" o "BUSCAR <texto> PAGINA <n>"
+        if (linea.toUpperCase().startsWith("BUSCAR")) {
+            enviarSolicitud(mensajeBusqueda(linea.substring("BUSCAR".length())));
+            return;
+        }
+
+        // VENCIDOS no lleva ID: "VENCIDOS" o "VENCIDOS <limite>"
+        if (linea.toUpperCase().startsWith("VENCIDOS")) {
+            String limite = linea.substring("VENCIDOS".length()).replaceAll("[ ,:]+", "");
+            enviarSolicitud(limite.isEmpty() ? "VENCIDOS" : "VENCIDOS:" + limite);
+            return;
+        }
+
+        // BATCH agrupa varias operaciones: "BATCH DEVOLVER 1 2 3 RENOVAR 4 PRESTAMO 5"
+        if (linea.toUpperCase().startsWith("BATCH")) {
+            String mensaje = mensajeLote(linea.substring("BATCH".length()));
+            if (mensaje == null) {
+                System.out.println(" Formato inválido en línea: " + linea);
+                return;
+            }
+            enviarSolicitud(mensaje);
+            return;
+        }
+
         String[] partes = linea.split("[ ,:]+"); // acepta espacio, coma o dos puntos
         if (partes.length < 2) {
             System.out.println(" Formato inválido en línea: " + linea);
@@ -105,6 +136,37 @@ public class PS {
         enviarSolicitud(mensaje);
     }
 
+    // Arma "BATCH:TIPO:ID;TIPO:ID;...": cada tipo aplica a los IDs que lo siguen, hasta el próximo tipo
+    private String mensajeLote(String resto) {
+        List<String> operaciones = new ArrayList<>();
+        String tipo = null;
+        for (String parte : resto.trim().split("[ ,:;]+")) {
+            if (parte.isEmpty()) {
+                continue;
+            }
+            if (parte.matches("[A-Za-z]+")) {
+                tipo = parte.toUpperCase();
+            } else if (tipo != null) {
+                operaciones.add(tipo + ":" + parte);
+            } else {
+                return null;
+            }
+        }
+        return operaciones.isEmpty() ? null : Lote.armar(operaciones);
+    }
+
+    // Arma "BUSCAR:<pagina>:<texto>"
+    private String mensajeBusqueda(String resto) {
+        String texto = resto.replaceFirst("^[ ,:]+", "").trim();
+        int pagina = 1;
+        Matcher m = Pattern.compile("(?i)^(.*?)\\s+PAGINA\\s+(\\d+)$").matcher(texto);
+        if (m.matches()) {
+            texto = m.group(1).trim();
+            pagina = Integer.parseInt(m.group(2));
+        }
+        return "BUSCAR:" + pagina + ":" + texto;
+    }
+
     // Enviar solicitud y recibir respuesta
     private void enviarSolicitud(String mensaje) {
         System.out.println(" Enviando solicitud -> " + mensaje);
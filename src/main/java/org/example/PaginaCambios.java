@@ -0,0 +1,99 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Página del backlog de cambios de GA2 para OBTENER_CAMBIOS_DESDE:
+//   "ULTIMA|SEQ, CAMBIO|..."       la página trae todo lo pendiente hasta ahora
+//   "ULTIMA:MAS|SEQ, CAMBIO|..."   quedan más cambios: pedir la siguiente desde el último SEQ recibido
+// Una página tiene a lo sumo MAX_CAMBIOS cambios y unos MAX_CARACTERES caracteres (siempre al menos un
+// cambio), así que ponerse al día después de una caída larga no arma un mensaje gigante de ninguno de
+// los dos lados. El cursor es la secuencia del último cambio aplicado: si GA se cae a mitad de camino
+// retoma desde lo último que confirmó.
+// Si la solicitud termina en ":Z" la página viaja comprimida como "Z:" + Base64(deflate(UTF-8)), solo
+// cuando así ocupa menos (el canal con GA2 es de texto, por eso Base64).
+public final class PaginaCambios {
+
+    public static final int MAX_CAMBIOS = 1000;
+    public static final int MAX_CARACTERES = 256 * 1024;
+
+    static final String COMPRIMIDA = "Z:";
+    static final String MAS = ":MAS";
+
+    private PaginaCambios() {
+    }
+
+    public static String armar(long ultima, List<String> cambios, boolean hayMas, boolean comprimir) {
+        StringBuilder sb = new StringBuilder(Long.toString(ultima));
+        if (hayMas) {
+            sb.append(MAS);
+        }
+        for (String cambio : cambios) {
+            sb.append('|').append(cambio);
+        }
+        String pagina = sb.toString();
+        if (!comprimir || pagina.length() < 256) {
+            return pagina;
+        }
+        String comprimida = COMPRIMIDA + Base64.getEncoder().encodeToString(deflate(pagina.getBytes(StandardCharsets.UTF_8)));
+        return comprimida.length() < pagina.length() ? comprimida : pagina;
+    }
+
+    // Texto de la página tal como se armó (descomprimido si hacía falta); null si no se pudo leer
+    public static String abrir(String respuesta) {
+        if (respuesta == null || !respuesta.startsWith(COMPRIMIDA)) {
+            return respuesta;
+        }
+        try {
+            byte[] datos = Base64.getDecoder().decode(respuesta.substring(COMPRIMIDA.length()));
+            return inflate(datos);
+        } catch (IllegalArgumentException | DataFormatException e) {
+            System.err.println("GA:  Página de cambios comprimida inválida: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] deflate(byte[] datos) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(datos);
+            deflater.finish();
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4 + 64);
+            byte[] bloque = new byte[8192];
+            while (!deflater.finished()) {
+                salida.write(bloque, 0, deflater.deflate(bloque));
+            }
+            return salida.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Con tope: una página válida no pasa de MAX_CARACTERES caracteres más el último cambio
+    private static String inflate(byte[] datos) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(datos);
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length * 4);
+            byte[] bloque = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(bloque);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("datos incompletos");
+                }
+                salida.write(bloque, 0, n);
+                if (salida.size() > MAX_CARACTERES * 8) {
+                    throw new DataFormatException("la página supera el tamaño máximo");
+                }
+            }
+            return new String(salida.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Pool de conexiones JDBC de tamaño fijo: las conexiones se crean a demanda hasta el máximo
+// y se reutilizan; una conexión inválida se reemplaza al pedirla.
+public class PoolConexiones {
+
+    private static final int ESPERA_MAXIMA_SEGUNDOS = 5;
+
+    private final String url;
+    private final String usuario;
+    private final String clave;
+    private final int tamano;
+    private final BlockingQueue<Connection> libres;
+    private int creadas;
+
+    public PoolConexiones(String url, String usuario, String clave, int tamano) {
+        this.url = url;
+        this.usuario = usuario;
+        this.clave = clave;
+        this.tamano = tamano;
+        this.libres = new ArrayBlockingQueue<>(tamano);
+    }
+
+    public Connection obtener() throws SQLException {
+        Connection conexion = libres.poll();
+        if (conexion == null) {
+            conexion = crearSiHayCupo();
+        }
+        if (conexion == null) {
+            try {
+                conexion = libres.poll(ESPERA_MAXIMA_SEGUNDOS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido esperando una conexión del pool");
+            }
+            if (conexion == null) {
+                throw new SQLException("No hay conexiones libres en el pool (" + tamano + ")");
+            }
+        }
+        if (!conexion.isValid(1)) {
+            cerrarSilencioso(conexion);
+            conexion = DriverManager.getConnection(url, usuario, clave);
+        }
+        return conexion;
+    }
+
+    public void devolver(Connection conexion) {
+        if (conexion != null && !libres.offer(conexion)) {
+            cerrarSilencioso(conexion);
+        }
+    }
+
+    public synchronized void cerrar() {
+        Connection conexion;
+        while ((conexion = libres.poll()) != null) {
+            cerrarSilencioso(conexion);
+        }
+        creadas = 0;
+    }
+
+    private synchronized Connection crearSiHayCupo() throws SQLException {
+        if (creadas >= tamano) {
+            return null;
+        }
+        Connection conexion = DriverManager.getConnection(url, usuario, clave);
+        creadas++;
+        return conexion;
+    }
+
+    private static void cerrarSilencioso(Connection conexion) {
+        try {
+            conexion.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
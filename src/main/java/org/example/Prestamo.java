@@ -0,0 +1,68 @@
+package org.example;
+
+import java.time.LocalDate;
+
+// Préstamo activo de un libro: "ID, fechaPrestamo, fechaDevolucion, vecesPrestadas"
+public class Prestamo {
+
+    private final int idLibro;
+    private final LocalDate fechaPrestamo;
+    private final LocalDate fechaDevolucion;
+    private final int vecesPrestadas;
+
+    public Prestamo(int idLibro, LocalDate fechaPrestamo, LocalDate fechaDevolucion, int vecesPrestadas) {
+        this.idLibro = idLibro;
+        this.fechaPrestamo = fechaPrestamo;
+        this.fechaDevolucion = fechaDevolucion;
+        this.vecesPrestadas = vecesPrestadas;
+    }
+
+    public int getIdLibro() {
+        return idLibro;
+    }
+
+    public LocalDate getFechaPrestamo() {
+        return fechaPrestamo;
+    }
+
+    public LocalDate getFechaDevolucion() {
+        return fechaDevolucion;
+    }
+
+    public int getVecesPrestadas() {
+        return vecesPrestadas;
+    }
+
+    // Copia del préstamo con nueva fecha de devolución y contador (renovación)
+    public Prestamo renovado(LocalDate nuevaFechaDevolucion, int nuevasVecesPrestadas) {
+        return new Prestamo(idLibro, fechaPrestamo, nuevaFechaDevolucion, nuevasVecesPrestadas);
+    }
+
+    // Formato de línea de Prestamos.txt
+    public String aLinea() {
+        return idLibro + ", " + fechaPrestamo + ", " + fechaDevolucion + ", " + vecesPrestadas;
+    }
+
+    // Parsea una línea de Prestamos.txt; retorna null si el formato no es válido
+    public static Prestamo desdeLinea(String linea) {
+        if (linea == null || linea.trim().isEmpty()) {
+            return null;
+        }
+        String[] partes = linea.split(",");
+        if (partes.length < 4) {
+            return null;
+        }
+        try {
+            int id = CatalogoMemoria.parsearId(partes[0]);
+            if (id < 0) {
+                return null;
+            }
+            return new Prestamo(id,
+                    LocalDate.parse(partes[1].trim()),
+                    LocalDate.parse(partes[2].trim()),
+                    Integer.parseInt(partes[3].trim()));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.example;
+
+// Protocolo binario opcional entre el actor de préstamo, GA y GA2, como alternativa a los mensajes de texto
+// ("Disponibilidad?42", "DEVOLVER DEVOLVER:42"...). Una operación sobre un libro viaja en una sola trama:
+//   [opcode (1 byte)][ID del libro (varint)]
+// y el ID de solicitud va en su propia trama del sobre, también como varint. Las tramas de texto siempre
+// empiezan con un carácter imprimible, así que un primer byte < 0x20 identifica una trama binaria y ambos
+// formatos pueden convivir en el mismo socket.
+// Negociación: el cliente envía NEGOCIACION como texto; quien soporta el formato responde ACEPTADO.
+// Cualquier otra respuesta (por ejemplo "Solicitud no reconocida") deja la conexión en texto.
+public final class ProtocoloBinario {
+
+    public static final byte PRESTAMO = 1;
+    public static final byte DEVOLVER = 2;
+    public static final byte RENOVAR = 3;
+
+    public static final String NEGOCIACION = "PROTOCOLO?BINARIO";
+    public static final String ACEPTADO = "PROTOCOLO:BINARIO";
+
+    private ProtocoloBinario() {
+    }
+
+    public static boolean esBinario(byte[] trama) {
+        return trama != null && trama.length >= 2 && trama[0] >= PRESTAMO && trama[0] <= RENOVAR;
+    }
+
+    public static byte[] codificar(byte opcode, int idLibro) {
+        byte[] trama = new byte[1 + largoVarint(idLibro)];
+        trama[0] = opcode;
+        escribirVarint(trama, 1, idLibro);
+        return trama;
+    }
+
+    public static byte opcode(byte[] trama) {
+        return trama[0];
+    }
+
+    // ID del libro de una trama binaria, o -1 si está mal formada
+    public static int idLibro(byte[] trama) {
+        long id = leerVarint(trama, 1);
+        return id > Integer.MAX_VALUE ? -1 : (int) id;
+    }
+
+    // Texto equivalente (el que entienden los manejadores y el log de cambios)
+    public static String aTexto(byte[] trama) {
+        int id = idLibro(trama);
+        switch (opcode(trama)) {
+            case PRESTAMO:
+                return "Disponibilidad?" + id;
+            case DEVOLVER:
+                return "DEVOLVER:" + id;
+            default:
+                return "RENOVAR:" + id;
+        }
+    }
+
+    // Trama binaria de una solicitud de texto de un solo libro, o null si no tiene equivalente binario.
+    // Acepta "Disponibilidad?ID", "DEVOLVER:ID", "DEVOLVER DEVOLVER:ID", "DEVOLVER ID" (y lo mismo con RENOVAR).
+    public static byte[] desdeTexto(String solicitud) {
+        byte opcode;
+        if (solicitud.startsWith("Disponibilidad?")) {
+            opcode = PRESTAMO;
+        } else if (solicitud.startsWith("DEVOLVER")) {
+            opcode = DEVOLVER;
+        } else if (solicitud.startsWith("RENOVAR")) {
+            opcode = RENOVAR;
+        } else {
+            return null;
+        }
+        // El ID son los dígitos del final, precedidos por '?', ':' o un espacio
+        int fin = solicitud.length();
+        while (fin > 0 && Character.isWhitespace(solicitud.charAt(fin - 1))) {
+            fin--;
+        }
+        int inicio = fin;
+        long id = 0;
+        long potencia = 1;
+        while (inicio > 0 && solicitud.charAt(inicio - 1) >= '0' && solicitud.charAt(inicio - 1) <= '9') {
+            inicio--;
+            id += (solicitud.charAt(inicio) - '0') * potencia;
+            potencia *= 10;
+            if (fin - inicio > 9) {
+                return null;
+            }
+        }
+        if (inicio == fin || inicio == 0) {
+            return null;
+        }
+        char separador = solicitud.charAt(inicio - 1);
+        if (separador != '?' && separador != ':' && separador != ' ') {
+            return null;
+        }
+        return codificar(opcode, (int) id);
+    }
+
+    public static byte[] codificarVarint(long valor) {
+        byte[] bytes = new byte[largoVarint(valor)];
+        escribirVarint(bytes, 0, valor);
+        return bytes;
+    }
+
+    // Varint de una trama completa, o -1 si está mal formado
+    public static long leerVarint(byte[] bytes) {
+        return leerVarint(bytes, 0);
+    }
+
+    private static long leerVarint(byte[] bytes, int desde) {
+        long valor = 0;
+        int desplazamiento = 0;
+        for (int i = desde; i < bytes.length && desplazamiento < 63; i++) {
+            valor |= (long) (bytes[i] & 0x7F) << desplazamiento;
+            if ((bytes[i] & 0x80) == 0) {
+                return i == bytes.length - 1 ? valor : -1;
+            }
+            desplazamiento += 7;
+        }
+        return -1;
+    }
+
+    private static int largoVarint(long valor) {
+        int largo = 1;
+        while ((valor >>>= 7) != 0) {
+            largo++;
+        }
+        return largo;
+    }
+
+    private static void escribirVarint(byte[] destino, int desde, long valor) {
+        int i = desde;
+        while ((valor & ~0x7FL) != 0) {
+            destino[i++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino[i] = (byte) valor;
+    }
+}
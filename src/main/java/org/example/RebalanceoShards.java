@@ -0,0 +1,155 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reparte los libros y préstamos de los shards de GA2 según una nueva tabla de rangos (ver TablaShards).
+// Se ejecuta con los GA2 detenidos y después de que GA sincronizó todos los cambios pendientes:
+//  1) Carga cada shard de la tabla actual como lo haría GA2 (texto o binario, instantáneas y diarios).
+//  2) Escribe en el directorio de cada shard de la tabla nueva su DB2.txt y Prestamos2.txt, y borra los
+//     archivos derivados (DB2.bin, instantáneas, diarios) para que GA2 arranque desde el texto.
+// Después se arrancan los GA2 con los nuevos -Dga2.rango y se distribuye la tabla nueva a GA, GC y actores.
+// Uso: RebalanceoShards <tabla actual> <tabla nueva> [--forzar]   (--forzar ignora cambios sin sincronizar)
+public class RebalanceoShards {
+
+    private static final String[] ARCHIVOS_DERIVADOS = {
+            "DB2.bin", "DB2.instantanea", "DB2.diario", "DB2.diario.instantanea",
+            "Prestamos2.diario", "Prestamos2.diario.compactando", "Prestamos2.instantanea"
+    };
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Uso: RebalanceoShards <tabla actual> <tabla nueva> [--forzar]");
+            return;
+        }
+        boolean forzar = args.length > 2 && args[2].equals("--forzar");
+        try {
+            rebalancear(TablaShards.cargar(args[0]), TablaShards.cargar(args[1]), forzar);
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println(" Error al rebalancear shards: " + e.getMessage());
+        }
+    }
+
+    public static void rebalancear(TablaShards actual, TablaShards nueva, boolean forzar) throws IOException {
+        verificarDirectorios(actual);
+        verificarDirectorios(nueva);
+
+        // 1) Leer todo antes de escribir: los directorios de ambas tablas pueden coincidir
+        List<String> libros = new ArrayList<>();
+        List<Integer> idsLibros = new ArrayList<>();
+        List<Prestamo> prestamos = new ArrayList<>();
+        for (TablaShards.Shard shard : actual.getShards()) {
+            verificarSincronizado(shard, forzar);
+            String dir = directorio(shard);
+            CatalogoMemoria catalogo = new CatalogoMemoria(dir + "DB2.txt", dir + "DB2.bin", "REBALANCEO");
+            DiarioPrestamos diario = new DiarioPrestamos(dir + "Prestamos2.txt", dir + "Prestamos2.diario", "REBALANCEO");
+            if (!"false".equals(System.getProperty("ga2.instantaneas"))) {
+                catalogo.activarInstantaneas(dir + "DB2.instantanea", dir + "DB2.diario");
+                diario.activarBaseBinaria(dir + "Prestamos2.instantanea");
+            }
+            try {
+                if (!catalogo.asegurarCargado() || !diario.asegurarCargado()) {
+                    throw new IOException("No se pudo cargar el shard " + shard.nombre + " desde " + dir);
+                }
+                for (int id : catalogo.ids()) {
+                    idsLibros.add(id);
+                    libros.add(id + ", " + catalogo.obtenerTitulo(id) + ", " + catalogo.obtenerAutor(id) + ", "
+                            + catalogo.obtenerEstado(id));
+                }
+                prestamos.addAll(diario.todos());
+            } finally {
+                catalogo.cerrar();
+                diario.cerrar();
+            }
+            System.out.println(" " + shard.nombre + ": " + catalogo.tamano() + " libros, " + diario.cantidad() + " préstamos");
+        }
+
+        // 2) Repartir según la tabla nueva
+        List<List<String>> librosPorShard = new ArrayList<>();
+        List<List<String>> prestamosPorShard = new ArrayList<>();
+        for (int i = 0; i < nueva.cantidad(); i++) {
+            librosPorShard.add(new ArrayList<>());
+            prestamosPorShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < libros.size(); i++) {
+            librosPorShard.get(shardObligatorio(nueva, idsLibros.get(i)).indice).add(libros.get(i));
+        }
+        for (Prestamo p : prestamos) {
+            prestamosPorShard.get(shardObligatorio(nueva, p.getIdLibro()).indice).add(p.aLinea());
+        }
+
+        for (TablaShards.Shard shard : nueva.getShards()) {
+            Path dir = Paths.get(directorio(shard));
+            Files.createDirectories(dir);
+            escribir(dir.resolve("DB2.txt"), librosPorShard.get(shard.indice));
+            escribir(dir.resolve("Prestamos2.txt"), prestamosPorShard.get(shard.indice));
+            for (String derivado : ARCHIVOS_DERIVADOS) {
+                Files.deleteIfExists(dir.resolve(derivado));
+            }
+            System.out.println(" " + shard.nombre + " -> " + dir + ": " + librosPorShard.get(shard.indice).size()
+                    + " libros, " + prestamosPorShard.get(shard.indice).size() + " préstamos (arrancar con -Dga2.rango="
+                    + shard.desde + "-" + (shard.hasta == Integer.MAX_VALUE ? "*" : String.valueOf(shard.hasta)) + ")");
+        }
+
+        for (TablaShards.Shard viejo : actual.getShards()) {
+            boolean reutilizado = nueva.getShards().stream().anyMatch(s -> Paths.get(directorio(s)).equals(Paths.get(directorio(viejo))));
+            if (!reutilizado) {
+                System.out.println(" El directorio " + directorio(viejo) + " ya no pertenece a ningún shard y puede archivarse");
+            }
+        }
+        System.out.println(" Rebalanceo terminado: " + libros.size() + " libros y " + prestamos.size() + " préstamos en "
+                + nueva.cantidad() + " shards");
+    }
+
+    // El log de cambios de un shard debe estar vacío: GA no podría sincronizar cambios de libros que se mudaron
+    private static void verificarSincronizado(TablaShards.Shard shard, boolean forzar) {
+        RegistroCambios registro = new RegistroCambios(directorio(shard), "CambiosPendientes", "REBALANCEO");
+        registro.cargar(null);
+        int pendientes = registro.cantidadPendientes();
+        registro.cerrar();
+        if (pendientes > 0 && !forzar) {
+            throw new IllegalStateException(shard.nombre + " tiene " + pendientes
+                    + " cambios sin sincronizar con GA; sincronizar primero o usar --forzar");
+        }
+    }
+
+    private static TablaShards.Shard shardObligatorio(TablaShards tabla, int idLibro) {
+        TablaShards.Shard shard = tabla.shardDe(idLibro);
+        if (shard == null) {
+            throw new IllegalArgumentException("El libro " + idLibro + " no queda en ningún rango de la tabla nueva");
+        }
+        return shard;
+    }
+
+    private static void verificarDirectorios(TablaShards tabla) {
+        for (TablaShards.Shard shard : tabla.getShards()) {
+            if (shard.directorio == null) {
+                throw new IllegalArgumentException("La tabla no indica el directorio de " + shard.nombre);
+            }
+        }
+    }
+
+    private static String directorio(TablaShards.Shard shard) {
+        return shard.directorio.endsWith("/") || shard.directorio.endsWith("\\") ? shard.directorio
+                : shard.directorio + java.io.File.separator;
+    }
+
+    // Escribe a un temporal y lo mueve encima, para no dejar un archivo a medias
+    private static void escribir(Path destino, List<String> lineas) throws IOException {
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".rebalanceo");
+        try (BufferedWriter bw = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            for (String linea : lineas) {
+                bw.write(linea);
+                bw.newLine();
+            }
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
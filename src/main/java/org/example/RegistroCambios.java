@@ -0,0 +1,279 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+// Log de cambios pendientes de sincronizar con GA, con número de secuencia monótono por cambio.
+// Se guarda en segmentos de solo-agregar ("<base>.<primerSeq>.seg", una línea "SEQ, CAMBIO" por cambio)
+// y un archivo "<base>.confirmado" con la última secuencia que GA confirmó. Confirmar "hasta N"
+// descarta los cambios del frente de la cola; en el próximo volcar() se escribe la confirmación y recién
+// después se borran los segmentos completos, sin reescribir nada. En ese orden, tras una caída los
+// segmentos que quedan siempre llegan al menos hasta la confirmación guardada, así que la secuencia
+// nunca retrocede (y no se reutilizan números que GA ya vio).
+public class RegistroCambios implements CommitGrupal.Participante {
+
+    private static final int CAMBIOS_POR_SEGMENTO = 10000;
+
+    private final Path directorio;
+    private final String base;
+    private final Path rutaConfirmado;
+    private final String etiqueta;
+
+    // Cambios en orden de secuencia; los no confirmados empiezan en "primero". Los confirmados se quitan
+    // del frente de a bloques, y una página se ubica por búsqueda binaria en vez de recorrer desde el frente.
+    private final ArrayList<Cambio> pendientes = new ArrayList<>();
+    private int primero;
+    // Primera secuencia de cada segmento -> archivo del segmento
+    private final TreeMap<Long, Path> segmentos = new TreeMap<>();
+
+    private FileOutputStream salida;
+    private BufferedWriter escritor;
+    private int cambiosEnSegmento;
+    private long ultimaSecuencia;
+    private long confirmadoHasta;
+    private boolean confirmacionSucia;
+
+    public RegistroCambios(String directorio, String base, String etiqueta) {
+        this.directorio = Paths.get(directorio);
+        this.base = base;
+        this.rutaConfirmado = this.directorio.resolve(base + ".confirmado");
+        this.etiqueta = etiqueta;
+    }
+
+    // Carga los segmentos y la última confirmación. Si existe el archivo de texto anterior
+    // (una línea por cambio, sin secuencia) sus cambios se importan al log y se borra.
+    public synchronized void cargar(String rutaLegado) {
+        try {
+            if (Files.exists(rutaConfirmado)) {
+                confirmadoHasta = Long.parseLong(Files.readString(rutaConfirmado, StandardCharsets.UTF_8).trim());
+            }
+            ultimaSecuencia = confirmadoHasta;
+            try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, base + ".*.seg")) {
+                for (Path archivo : archivos) {
+                    String nombre = archivo.getFileName().toString();
+                    String numero = nombre.substring(base.length() + 1, nombre.length() - ".seg".length());
+                    segmentos.put(Long.parseLong(numero), archivo);
+                }
+            }
+            for (Path segmento : segmentos.values()) {
+                for (String linea : Files.readAllLines(segmento, StandardCharsets.UTF_8)) {
+                    String[] partes = linea.split(",\\s*", 2);
+                    if (partes.length < 2) {
+                        continue;
+                    }
+                    long seq;
+                    try {
+                        seq = Long.parseLong(partes[0].trim());
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    ultimaSecuencia = Math.max(ultimaSecuencia, seq);
+                    if (seq > confirmadoHasta) {
+                        pendientes.add(new Cambio(seq, partes[1]));
+                    }
+                }
+            }
+
+            Path legado = rutaLegado != null ? Paths.get(rutaLegado) : null;
+            if (legado != null && Files.exists(legado)) {
+                int importados = 0;
+                for (String linea : Files.readAllLines(legado, StandardCharsets.UTF_8)) {
+                    if (!linea.trim().isEmpty()) {
+                        agregar(linea.trim());
+                        importados++;
+                    }
+                }
+                volcar();
+                Files.delete(legado);
+                System.out.println(" " + etiqueta + ": Importados " + importados + " cambios de " + legado.getFileName());
+            }
+            System.out.println(" " + etiqueta + ": Cargados " + cantidadPendientes() + " cambios pendientes (secuencia "
+                    + ultimaSecuencia + ", confirmados hasta " + confirmadoHasta + ")");
+        } catch (IOException | RuntimeException e) {
+            System.err.println(" " + etiqueta + ": Error al cargar cambios pendientes: " + e.getMessage());
+        }
+    }
+
+    // Agrega un cambio y retorna su número de secuencia; se hace durable en el próximo volcar()
+    public synchronized long agregar(String cambio) throws IOException {
+        if (escritor == null || cambiosEnSegmento >= CAMBIOS_POR_SEGMENTO) {
+            abrirSegmento(ultimaSecuencia + 1);
+        }
+        long seq = ultimaSecuencia + 1;
+        escritor.write(seq + ", " + cambio);
+        escritor.newLine();
+        ultimaSecuencia = seq;
+        cambiosEnSegmento++;
+        pendientes.add(new Cambio(seq, cambio));
+        return seq;
+    }
+
+    // Hasta "maximo" cambios pendientes con secuencia mayor que "desde", como "SEQ, CAMBIO", y sin pasar
+    // de unos "maxCaracteres" (siempre al menos uno). Es una página del backlog de GA: ver PaginaCambios.
+    public synchronized List<String> pendientesDesde(long desde, int maximo, int maxCaracteres) {
+        List<String> resultado = new ArrayList<>(Math.min(maximo, cantidadPendientes()));
+        int caracteres = 0;
+        for (int i = primeroMayorQue(desde); i < pendientes.size(); i++) {
+            if (resultado.size() >= maximo || (!resultado.isEmpty() && caracteres >= maxCaracteres)) {
+                break;
+            }
+            Cambio c = pendientes.get(i);
+            String linea = c.seq + ", " + c.texto;
+            resultado.add(linea);
+            caracteres += linea.length() + 1;
+        }
+        return resultado;
+    }
+
+    // Posición del primer cambio pendiente con secuencia mayor que "seq"
+    private int primeroMayorQue(long seq) {
+        int bajo = primero;
+        int alto = pendientes.size();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (pendientes.get(medio).seq <= seq) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    public synchronized int cantidadPendientes() {
+        return pendientes.size() - primero;
+    }
+
+    public synchronized long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    // GA confirmó todos los cambios con secuencia <= seq; retorna cuántos se descartaron
+    public synchronized int confirmarHasta(long seq) {
+        if (seq <= confirmadoHasta) {
+            return 0;
+        }
+        seq = Math.min(seq, ultimaSecuencia);
+        int hasta = primeroMayorQue(seq);
+        int descartados = hasta - primero;
+        primero = hasta;
+        // Se compacta cuando lo confirmado ocupa más de la mitad, así cada cambio se mueve O(1) veces en promedio
+        if (primero > 1024 && primero * 2 > pendientes.size()) {
+            pendientes.subList(0, primero).clear();
+            primero = 0;
+        }
+        confirmadoHasta = seq;
+        confirmacionSucia = true;
+        return descartados;
+    }
+
+    // Participante del commit en grupo: fsync del segmento actual y de la confirmación, y luego
+    // borrado de los segmentos que la confirmación ya cubre
+    @Override
+    public synchronized void volcar() throws IOException {
+        if (escritor != null) {
+            escritor.flush();
+            salida.getChannel().force(false);
+        }
+        if (confirmacionSucia) {
+            Path temporal = rutaConfirmado.resolveSibling(rutaConfirmado.getFileName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temporal.toFile())) {
+                out.write(Long.toString(confirmadoHasta).getBytes(StandardCharsets.UTF_8));
+                out.getChannel().force(false);
+            }
+            Files.move(temporal, rutaConfirmado, StandardCopyOption.REPLACE_EXISTING);
+            forzarDirectorio();
+            confirmacionSucia = false;
+        }
+        borrarSegmentosConfirmados(confirmadoHasta);
+    }
+
+    // Un segmento se puede borrar si el siguiente empieza después de lo confirmado (o, si es el actual,
+    // si todo lo escrito en él ya está confirmado). Solo se llama con una confirmación ya en disco.
+    private void borrarSegmentosConfirmados(long seq) {
+        while (!segmentos.isEmpty()) {
+            Long primero = segmentos.firstKey();
+            Long siguiente = segmentos.higherKey(primero);
+            boolean completo = siguiente != null ? siguiente - 1 <= seq : ultimaSecuencia <= seq;
+            if (!completo) {
+                break;
+            }
+            if (siguiente == null) {
+                cerrarEscritor();
+            }
+            try {
+                Files.deleteIfExists(segmentos.remove(primero));
+            } catch (IOException e) {
+                System.err.println(" " + etiqueta + ": No se pudo borrar segmento de cambios: " + e.getMessage());
+            }
+        }
+    }
+
+    // fsync del directorio para que el renombrado de la confirmación también sea durable antes de
+    // borrar segmentos (no todos los sistemas de archivos lo permiten; ahí alcanza con el renombrado)
+    private void forzarDirectorio() {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    public synchronized void cerrar() {
+        try {
+            volcar();
+        } catch (IOException e) {
+            System.err.println(" " + etiqueta + ": Error al guardar cambios pendientes: " + e.getMessage());
+        }
+        cerrarEscritor();
+        System.out.println(" " + etiqueta + ": Guardados " + cantidadPendientes() + " cambios pendientes");
+    }
+
+    private void abrirSegmento(long primeraSecuencia) throws IOException {
+        if (escritor != null) {
+            escritor.flush();
+            salida.getChannel().force(false);
+            escritor.close();
+        }
+        Path archivo = directorio.resolve(String.format("%s.%020d.seg", base, primeraSecuencia));
+        salida = new FileOutputStream(archivo.toFile(), true);
+        escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        segmentos.put(primeraSecuencia, archivo);
+        cambiosEnSegmento = 0;
+    }
+
+    private void cerrarEscritor() {
+        if (escritor == null) {
+            return;
+        }
+        try {
+            escritor.close();
+        } catch (IOException e) {
+            System.err.println(" " + etiqueta + ": Error al cerrar segmento de cambios: " + e.getMessage());
+        }
+        escritor = null;
+        salida = null;
+    }
+
+    private static final class Cambio {
+        final long seq;
+        final String texto;
+
+        Cambio(long seq, String texto) {
+            this.seq = seq;
+            this.texto = texto;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Página de resultados de BUSCAR: libros con su estado actual y el total de coincidencias
+public class ResultadoBusqueda {
+
+    // Resultados por página de BUSCAR en GA2
+    public static final int TAMANO_PAGINA = 10;
+
+    private final int pagina;
+    private final int tamanoPagina;
+    private final int total;
+    private final List<String> libros = new ArrayList<>();
+
+    public ResultadoBusqueda(int pagina, int tamanoPagina, int total) {
+        this.pagina = pagina;
+        this.tamanoPagina = tamanoPagina;
+        this.total = total;
+    }
+
+    // Agrega un libro en el formato de DB.txt: "ID, TITULO, AUTOR, ESTADO"
+    public void agregar(int id, String titulo, String autor, String estado) {
+        libros.add(id + ", " + titulo + ", " + autor + ", " + estado);
+    }
+
+    // Agrega una línea ya armada (al combinar respuestas de varios shards)
+    public void agregarLinea(String libro) {
+        libros.add(libro);
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public List<String> getLibros() {
+        return libros;
+    }
+
+    // Respuesta del protocolo: una línea de encabezado y luego un libro por línea
+    public String aTexto() {
+        if (total == 0) {
+            return "Sin resultados";
+        }
+        int paginas = (total + tamanoPagina - 1) / tamanoPagina;
+        if (libros.isEmpty()) {
+            return "Sin resultados en la página " + pagina + " (" + total + " resultados, " + paginas + " páginas)";
+        }
+        int desde = (pagina - 1) * tamanoPagina + 1;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Resultados ").append(desde).append("-").append(desde + libros.size() - 1)
+          .append(" de ").append(total).append(" (página ").append(pagina).append(" de ").append(paginas).append(")");
+        for (String libro : libros) {
+            sb.append('\n').append(libro);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+// Resumen por hash del estado de los libros (estado + préstamo, el mismo texto que CambioLibro) en un
+// rango de IDs, para comparar el almacenamiento de GA con el de GA2 sin transferir los datos. Es un árbol
+// de Merkle que se calcula a pedido: un rango se divide en PARTES subrangos del mismo ancho y el hash de
+// cada uno es la suma de los hashes de sus libros (no depende del orden y un rango vacío vale 0). Solo
+// se baja a los subrangos que difieren, hasta rangos de a lo sumo HOJA IDs, donde se comparan los libros.
+// Ambos lados usan esta clase, así que PARTES y la función de hash tienen que coincidir.
+public final class ResumenRangos {
+
+    public static final int PARTES = 16;
+    public static final int HOJA = 256;
+
+    private ResumenRangos() {
+    }
+
+    // Límites [desde, hasta] del subrango "parte" de [desde, hasta]; desde > hasta si queda vacío
+    public static int[] subrango(int desde, int hasta, int parte) {
+        long ancho = ancho(desde, hasta);
+        long inicio = desde + ancho * parte;
+        long fin = Math.min(hasta, inicio + ancho - 1);
+        return new int[]{(int) Math.min(inicio, Integer.MAX_VALUE), (int) fin};
+    }
+
+    public static boolean esHoja(int desde, int hasta) {
+        return (long) hasta - desde + 1 <= HOJA;
+    }
+
+    // Hash de cada uno de los PARTES subrangos de [desde, hasta] en el almacenamiento
+    public static long[] resumir(Almacenamiento almacenamiento, int desde, int hasta) {
+        long[] hashes = new long[PARTES];
+        long ancho = ancho(desde, hasta);
+        for (CambioLibro libro : almacenamiento.librosEnRango(desde, hasta)) {
+            hashes[(int) ((libro.getIdLibro() - (long) desde) / ancho)] += hashLibro(libro);
+        }
+        return hashes;
+    }
+
+    // "h0,h1,...": hashes en hexadecimal
+    public static String aTexto(long[] hashes) {
+        StringBuilder sb = new StringBuilder(hashes.length * 17);
+        for (int i = 0; i < hashes.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(Long.toHexString(hashes[i]));
+        }
+        return sb.toString();
+    }
+
+    // Retorna null si el texto no tiene PARTES hashes válidos
+    public static long[] desdeTexto(String texto) {
+        String[] partes = texto.split(",");
+        if (partes.length != PARTES) {
+            return null;
+        }
+        long[] hashes = new long[PARTES];
+        try {
+            for (int i = 0; i < PARTES; i++) {
+                hashes[i] = Long.parseUnsignedLong(partes[i].trim(), 16);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return hashes;
+    }
+
+    // FNV-1a de 64 bits del texto del libro, mezclado para que la suma de muchos no se concentre
+    public static long hashLibro(CambioLibro libro) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : libro.aTexto().getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long ancho(int desde, int hasta) {
+        long largo = (long) hasta - desde + 1;
+        return (largo + PARTES - 1) / PARTES;
+    }
+}
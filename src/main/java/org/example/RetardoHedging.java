@@ -0,0 +1,84 @@
+package org.example;
+
+import java.util.Arrays;
+
+// Retardo de hedging del actor de préstamo: si GA no respondió dentro del percentil configurado de sus
+// últimas latencias, la misma consulta se envía también a GA2. Guarda las últimas MUESTRAS latencias en
+// un buffer circular y recalcula el percentil cada RECALCULAR_CADA muestras. También lleva la cuenta
+// de cuántos hedges se enviaron y quién respondió primero.
+// No es thread-safe (lo usa solo el hilo del actor).
+public class RetardoHedging {
+
+    private static final int MUESTRAS = 1000;
+    private static final int MUESTRAS_MINIMAS = 20;
+    private static final int RECALCULAR_CADA = 50;
+
+    private final double percentil;
+    private final long minimoMs;
+    private final long inicialMs;
+
+    private final long[] muestras = new long[MUESTRAS];
+    private int cantidad;
+    private int siguiente;
+    private int desdeRecalculo;
+    private long retardoMs;
+
+    private long hedgesEnviados;
+    private long ganadosPorGA;
+    private long ganadosPorHedge;
+
+    public RetardoHedging(double percentil, long minimoMs, long inicialMs) {
+        this.percentil = percentil;
+        this.minimoMs = minimoMs;
+        this.inicialMs = inicialMs;
+        this.retardoMs = inicialMs;
+    }
+
+    // Configuración: -Dactor.hedgingPercentil=95, -Dactor.hedgingMinMs=5, -Dactor.hedgingInicialMs=100
+    // (el inicial se usa hasta juntar MUESTRAS_MINIMAS latencias)
+    public static RetardoHedging desdePropiedades() {
+        return new RetardoHedging(Double.parseDouble(System.getProperty("actor.hedgingPercentil", "95")),
+                Long.getLong("actor.hedgingMinMs", 5), Long.getLong("actor.hedgingInicialMs", 100));
+    }
+
+    // Latencia de una respuesta de GA
+    public void registrarLatencia(long ms) {
+        muestras[siguiente] = ms;
+        siguiente = (siguiente + 1) % MUESTRAS;
+        cantidad = Math.min(cantidad + 1, MUESTRAS);
+        if (++desdeRecalculo >= RECALCULAR_CADA && cantidad >= MUESTRAS_MINIMAS) {
+            desdeRecalculo = 0;
+            long[] ordenadas = Arrays.copyOf(muestras, cantidad);
+            Arrays.sort(ordenadas);
+            int posicion = (int) Math.ceil(percentil / 100.0 * cantidad) - 1;
+            retardoMs = Math.max(minimoMs, ordenadas[Math.max(0, Math.min(cantidad - 1, posicion))]);
+        }
+    }
+
+    public long getRetardoMs() {
+        return cantidad >= MUESTRAS_MINIMAS ? retardoMs : inicialMs;
+    }
+
+    public void registrarHedge() {
+        hedgesEnviados++;
+    }
+
+    // Una consulta con hedge se resolvió; "porHedge" si la respuesta usada vino de GA2
+    public void registrarGanador(boolean porHedge) {
+        if (porHedge) {
+            ganadosPorHedge++;
+        } else {
+            ganadosPorGA++;
+        }
+        if ((ganadosPorGA + ganadosPorHedge) % 100 == 0) {
+            System.out.println(" " + resumen());
+        }
+    }
+
+    public String resumen() {
+        long resueltos = ganadosPorGA + ganadosPorHedge;
+        return "Hedging: retardo p" + percentil + " = " + getRetardoMs() + " ms, " + hedgesEnviados + " hedges enviados, "
+                + ganadosPorHedge + " ganados por GA2 y " + ganadosPorGA + " por GA"
+                + (resueltos > 0 ? String.format(" (%.1f%% GA2)", ganadosPorHedge * 100.0 / resueltos) : "");
+    }
+}
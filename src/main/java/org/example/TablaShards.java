@@ -0,0 +1,153 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tabla de ruteo de libros a nodos GA2 (shards) por rangos de ID. Cada GA2 guarda solo los libros y
+// préstamos de su rango, y GA y el actor de préstamo envían cada operación al shard dueño del libro.
+// Archivo (-Dshards.tabla=ruta), una línea por shard, ordenadas y sin solaparse:
+//   <desde> <hasta> <ROUTER de GA2> <REP de GA2> [directorio de datos]
+//   1      499999  tcp://nodo1:5570 tcp://nodo1:5580 /datos/ga2-a
+//   500000 *       tcp://nodo2:5570 tcp://nodo2:5580 /datos/ga2-b
+// "*" como hasta significa sin límite. El directorio solo lo usa RebalanceoShards. Sin archivo hay un
+// único shard con todos los libros en los puertos de siempre (5570/5580 en localhost).
+// Las solicitudes sin ID de libro (sincronización, consultas) van a cada shard por separado o al primero.
+public class TablaShards {
+
+    public static final String ROUTER_POR_DEFECTO = "tcp://localhost:5570";
+    public static final String REP_POR_DEFECTO = "tcp://localhost:5580";
+
+    private final List<Shard> shards;
+
+    public TablaShards(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("La tabla de shards está vacía");
+        }
+        for (int i = 1; i < shards.size(); i++) {
+            if (shards.get(i).desde <= shards.get(i - 1).hasta) {
+                throw new IllegalArgumentException("Los rangos de los shards " + shards.get(i - 1).nombre + " y "
+                        + shards.get(i).nombre + " se solapan o no están ordenados");
+            }
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    }
+
+    // Tabla de -Dshards.tabla, o un solo shard local si no está configurada
+    public static TablaShards desdePropiedades() {
+        String ruta = System.getProperty("shards.tabla");
+        if (ruta == null) {
+            return new TablaShards(Collections.singletonList(
+                    new Shard(0, 0, Integer.MAX_VALUE, ROUTER_POR_DEFECTO, REP_POR_DEFECTO, null)));
+        }
+        try {
+            return cargar(ruta);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer la tabla de shards " + ruta + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static TablaShards cargar(String ruta) throws IOException {
+        List<Shard> shards = new ArrayList<>();
+        int numeroLinea = 0;
+        for (String linea : Files.readAllLines(Paths.get(ruta), StandardCharsets.UTF_8)) {
+            numeroLinea++;
+            String limpia = linea.trim();
+            if (limpia.isEmpty() || limpia.startsWith("#")) {
+                continue;
+            }
+            String[] partes = limpia.split("\\s+");
+            if (partes.length < 4) {
+                throw new IOException("Línea " + numeroLinea + " incompleta: " + linea);
+            }
+            try {
+                int desde = Integer.parseInt(partes[0]);
+                int hasta = partes[1].equals("*") ? Integer.MAX_VALUE : Integer.parseInt(partes[1]);
+                if (desde < 0 || hasta < desde) {
+                    throw new IOException("Línea " + numeroLinea + ": rango inválido " + partes[0] + "-" + partes[1]);
+                }
+                shards.add(new Shard(shards.size(), desde, hasta, partes[2], partes[3], partes.length > 4 ? partes[4] : null));
+            } catch (NumberFormatException e) {
+                throw new IOException("Línea " + numeroLinea + ": rango inválido: " + linea);
+            }
+        }
+        return new TablaShards(shards);
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public int cantidad() {
+        return shards.size();
+    }
+
+    // Shard dueño del libro, o null si ningún rango lo cubre
+    public Shard shardDe(int idLibro) {
+        int bajo = 0;
+        int alto = shards.size() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            Shard s = shards.get(medio);
+            if (idLibro < s.desde) {
+                alto = medio - 1;
+            } else if (idLibro > s.hasta) {
+                bajo = medio + 1;
+            } else {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    // Índice del shard para una solicitud de un libro en formato de texto ("Disponibilidad?7",
+    // "DEVOLVER:7"...); las que no tienen ID, o cuyo ID no está en ningún rango, van al primer shard
+    public int indiceDe(String solicitud) {
+        byte[] trama = ProtocoloBinario.desdeTexto(solicitud);
+        return trama == null ? 0 : indiceDe(ProtocoloBinario.idLibro(trama));
+    }
+
+    public int indiceDe(int idLibro) {
+        Shard s = idLibro < 0 ? null : shardDe(idLibro);
+        return s == null ? 0 : s.indice;
+    }
+
+    // Posiciones de las operaciones de un lote agrupadas por shard (en orden de shard)
+    public Map<Integer, List<Integer>> dividir(List<String> operaciones) {
+        Map<Integer, List<Integer>> porShard = new LinkedHashMap<>();
+        for (int i = 0; i < operaciones.size(); i++) {
+            porShard.computeIfAbsent(indiceDe(operaciones.get(i)), k -> new ArrayList<>()).add(i);
+        }
+        return porShard;
+    }
+
+    public static final class Shard {
+        public final int indice;
+        public final int desde;
+        public final int hasta;
+        public final String direccionRouter;
+        public final String direccionRep;
+        public final String directorio; // null si la tabla no lo indica
+        public final String nombre;
+
+        public Shard(int indice, int desde, int hasta, String direccionRouter, String direccionRep, String directorio) {
+            this.indice = indice;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.direccionRouter = direccionRouter;
+            this.direccionRep = direccionRep;
+            this.directorio = directorio;
+            this.nombre = "GA2[" + desde + "-" + (hasta == Integer.MAX_VALUE ? "*" : String.valueOf(hasta)) + "]";
+        }
+
+        public boolean contiene(int idLibro) {
+            return idLibro >= desde && idLibro <= hasta;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Textos (títulos, autores) guardados como UTF-8 contiguo en un solo byte[] con inicio y largo
+// por posición, en vez de un objeto String por libro. Ocupa una fracción de la memoria y se
+// escribe/lee en bloque en las instantáneas. Los String se crean solo al consultarlos.
+public class TextosEmpaquetados {
+
+    private byte[] datos;
+    private int usados;
+    private int[] inicios;
+    private int[] largos;
+
+    public TextosEmpaquetados(int capacidad) {
+        this.datos = new byte[Math.max(capacidad, 16) * 16];
+        this.inicios = new int[Math.max(capacidad, 16)];
+        this.largos = new int[Math.max(capacidad, 16)];
+    }
+
+    private TextosEmpaquetados(byte[] datos, int[] inicios, int[] largos) {
+        this.datos = datos;
+        this.usados = datos.length;
+        this.inicios = inicios;
+        this.largos = largos;
+    }
+
+    // Asigna el texto de una posición; si ya tenía uno, el anterior queda sin referenciar
+    public void poner(int pos, String texto) {
+        if (pos >= inicios.length) {
+            int nuevaCapacidad = Math.max(inicios.length * 2, pos + 1);
+            inicios = Arrays.copyOf(inicios, nuevaCapacidad);
+            largos = Arrays.copyOf(largos, nuevaCapacidad);
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if ((long) usados + bytes.length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Los textos del catálogo superan 2 GB");
+        }
+        if (usados + bytes.length > datos.length) {
+            long nuevoTamano = Math.max((long) datos.length * 2, (long) usados + bytes.length);
+            datos = Arrays.copyOf(datos, (int) Math.min(nuevoTamano, Integer.MAX_VALUE - 8));
+        }
+        System.arraycopy(bytes, 0, datos, usados, bytes.length);
+        inicios[pos] = usados;
+        largos[pos] = bytes.length;
+        usados += bytes.length;
+    }
+
+    public String obtener(int pos) {
+        return new String(datos, inicios[pos], largos[pos], StandardCharsets.UTF_8);
+    }
+
+    public void escribir(Instantanea.Escritor escritor, int cantidad) throws IOException {
+        escritor.escribirInt(usados);
+        escritor.escribirBytes(datos, usados);
+        escritor.escribirEnteros(inicios, cantidad);
+        escritor.escribirEnteros(largos, cantidad);
+    }
+
+    public static TextosEmpaquetados leer(Instantanea.Lector lector, int cantidad) throws IOException {
+        byte[] datos = lector.leerBytes(lector.leerInt());
+        int[] inicios = lector.leerEnteros(cantidad);
+        int[] largos = lector.leerEnteros(cantidad);
+        return new TextosEmpaquetados(datos, inicios, largos);
+    }
+}
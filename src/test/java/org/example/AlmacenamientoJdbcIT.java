@@ -0,0 +1,121 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+// Prueba contra un PostgreSQL local; solo corre si se define BIBLIOTECA_JDBC_URL, por ejemplo:
+//   BIBLIOTECA_JDBC_URL=jdbc:postgresql://localhost:5432/biblioteca_pruebas gradle test
+// (usuario y clave en BIBLIOTECA_JDBC_USUARIO / BIBLIOTECA_JDBC_CLAVE, por defecto postgres/postgres).
+// Crea las tablas si no existen y usa IDs desde ID_BASE, que borra al terminar.
+@EnabledIfEnvironmentVariable(named = "BIBLIOTECA_JDBC_URL", matches = ".+")
+class AlmacenamientoJdbcIT {
+
+    private static final int ID_BASE = 900000000;
+
+    private PoolConexiones pool;
+    private AlmacenamientoJdbc almacenamiento;
+
+    @BeforeEach
+    void conectar() throws SQLException {
+        pool = new PoolConexiones(System.getenv("BIBLIOTECA_JDBC_URL"),
+                System.getenv().getOrDefault("BIBLIOTECA_JDBC_USUARIO", "postgres"),
+                System.getenv().getOrDefault("BIBLIOTECA_JDBC_CLAVE", "postgres"), 2);
+        almacenamiento = new AlmacenamientoJdbc(pool, "TEST");
+        assertTrue(almacenamiento.asegurarCargado());
+        borrarDatosDePrueba();
+        ejecutar("INSERT INTO libros (id, titulo, autor, estado) VALUES (" + ID_BASE + ", 'Libro', 'Autor', 'DISPONIBLE')");
+    }
+
+    @AfterEach
+    void limpiar() throws SQLException {
+        borrarDatosDePrueba();
+        almacenamiento.cerrar();
+    }
+
+    @Test
+    void unLoteDiferidoQuedaEnLaBaseAlVolcar() throws IOException {
+        almacenamiento.setEscrituraDiferida(true);
+        LocalDate hoy = LocalDate.now();
+        assertTrue(almacenamiento.actualizarEstadoLibro(ID_BASE, CatalogoMemoria.PRESTADO));
+        assertTrue(almacenamiento.registrarPrestamo(new Prestamo(ID_BASE, hoy, hoy.plusWeeks(2), 1)));
+        almacenamiento.volcar();
+
+        AlmacenamientoJdbc otro = new AlmacenamientoJdbc(pool, "TEST");
+        assertEquals(CatalogoMemoria.PRESTADO, otro.obtenerEstadoLibro(ID_BASE));
+        assertEquals(hoy.plusWeeks(2), otro.buscarPrestamo(ID_BASE).getFechaDevolucion());
+        assertEquals(1, otro.idsLibros(ID_BASE, ID_BASE).length);
+    }
+
+    @Test
+    void librosEnRangoCombinaLoPendienteConLaBase() throws IOException, SQLException {
+        ejecutar("INSERT INTO libros (id, titulo, autor, estado) VALUES (" + (ID_BASE + 1) + ", 'Otro', 'Autor', 'DISPONIBLE')");
+        LocalDate hoy = LocalDate.now();
+        almacenamiento.registrarPrestamo(new Prestamo(ID_BASE + 1, hoy, hoy.plusWeeks(2), 1));
+        almacenamiento.setEscrituraDiferida(true);
+        assertTrue(almacenamiento.actualizarEstadoLibro(ID_BASE, CatalogoMemoria.PRESTADO));
+        assertTrue(almacenamiento.eliminarPrestamo(ID_BASE + 1));
+
+        List<CambioLibro> libros = almacenamiento.librosEnRango(ID_BASE, ID_BASE + 10);
+        assertEquals(2, libros.size());
+        assertEquals(CambioLibro.capturar(almacenamiento, ID_BASE).aTexto(), libros.get(0).aTexto());
+        assertEquals(CambioLibro.capturar(almacenamiento, ID_BASE + 1).aTexto(), libros.get(1).aTexto());
+        assertEquals("ID=" + (ID_BASE + 1) + ";DISPONIBLE", libros.get(1).aTexto());
+        almacenamiento.volcar();
+    }
+
+    @Test
+    void unLoteQueFallaNoQuedaVisible() {
+        almacenamiento.setEscrituraDiferida(true);
+        LocalDate hoy = LocalDate.now();
+        assertTrue(almacenamiento.actualizarEstadoLibro(ID_BASE, CatalogoMemoria.PRESTADO));
+        // Libro inexistente: la clave foránea hace fallar todo el lote
+        assertTrue(almacenamiento.registrarPrestamo(new Prestamo(ID_BASE + 1, hoy, hoy.plusWeeks(2), 1)));
+        assertThrows(IOException.class, almacenamiento::volcar);
+
+        assertEquals(CatalogoMemoria.DISPONIBLE, almacenamiento.obtenerEstadoLibro(ID_BASE));
+        assertNull(almacenamiento.buscarPrestamo(ID_BASE + 1));
+    }
+
+    @Test
+    void laBusquedaIgnoraTildesYCuentaElTotalFueraDeLaUltimaPagina() throws SQLException {
+        ejecutar("INSERT INTO libros (id, titulo, autor, estado) VALUES (" + (ID_BASE + 1)
+                + ", 'Crónica de una muerte anunciada', 'Gabriel GARCÍA Márquez zzprueba', 'DISPONIBLE')");
+
+        ResultadoBusqueda resultado = almacenamiento.buscarLibros("garcia cronica zzprueba", 1, 10);
+        assertEquals(1, resultado.getTotal());
+        assertTrue(resultado.getLibros().get(0).startsWith((ID_BASE + 1) + ", "));
+        assertEquals(1, almacenamiento.buscarLibros("García zzprueba", 1, 10).getTotal());
+
+        ResultadoBusqueda pasada = almacenamiento.buscarLibros("zzprueba", 3, 10);
+        assertEquals(1, pasada.getTotal());
+        assertTrue(pasada.getLibros().isEmpty());
+    }
+
+    private void borrarDatosDePrueba() throws SQLException {
+        ejecutar("DELETE FROM prestamos WHERE id_libro >= " + ID_BASE);
+        ejecutar("DELETE FROM libros WHERE id >= " + ID_BASE);
+    }
+
+    private void ejecutar(String sql) throws SQLException {
+        Connection conexion = pool.obtener();
+        try (PreparedStatement ps = conexion.prepareStatement(sql)) {
+            ps.executeUpdate();
+        } finally {
+            pool.devolver(conexion);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogoMemoriaTest {
+
+    @TempDir
+    Path dir;
+
+    private Path crearDb() throws Exception {
+        Path db = dir.resolve("DB.txt");
+        Files.write(db, List.of("1, Libro uno, Autor, DISPONIBLE", "2, Libro dos, Autor, DISPONIBLE"), StandardCharsets.UTF_8);
+        return db;
+    }
+
+    @Test
+    void enModoTextoLosCambiosVanAlDiarioYNoReescribenElArchivo() throws Exception {
+        Path db = crearDb();
+        byte[] original = Files.readAllBytes(db);
+        CatalogoMemoria catalogo = new CatalogoMemoria(db.toString(), "TEST");
+        assertTrue(catalogo.asegurarCargado());
+
+        assertTrue(catalogo.actualizarEstado(1, CatalogoMemoria.PRESTADO));
+
+        assertEquals(new String(original, StandardCharsets.UTF_8), Files.readString(db));
+        assertTrue(Files.readString(dir.resolve("DB.txt.diario")).contains("ESTADO, 1, PRESTADO"));
+    }
+
+    @Test
+    void alArrancarSinCerrarSeReproduceElDiario() throws Exception {
+        Path db = crearDb();
+        CatalogoMemoria catalogo = new CatalogoMemoria(db.toString(), "TEST");
+        assertTrue(catalogo.asegurarCargado());
+        assertTrue(catalogo.actualizarEstado(2, CatalogoMemoria.PRESTADO));
+        // Sin cerrar(): simula una caída
+
+        CatalogoMemoria reiniciado = new CatalogoMemoria(db.toString(), "TEST");
+        assertTrue(reiniciado.asegurarCargado());
+        assertEquals(CatalogoMemoria.PRESTADO, reiniciado.obtenerEstado(2));
+        assertEquals(CatalogoMemoria.DISPONIBLE, reiniciado.obtenerEstado(1));
+        // La carga compactó el diario en el archivo de texto
+        assertTrue(Files.readString(db).contains("2, Libro dos, Autor, PRESTADO"));
+        reiniciado.cerrar();
+    }
+
+    @Test
+    void cerrarDejaElArchivoAlDiaYBorraElDiario() throws Exception {
+        Path db = crearDb();
+        CatalogoMemoria catalogo = new CatalogoMemoria(db.toString(), "TEST");
+        assertTrue(catalogo.asegurarCargado());
+        assertTrue(catalogo.actualizarEstado(1, CatalogoMemoria.PRESTADO));
+
+        catalogo.cerrar();
+
+        assertFalse(Files.exists(dir.resolve("DB.txt.diario")));
+        assertTrue(Files.readString(db).contains("1, Libro uno, Autor, PRESTADO"));
+    }
+
+    @Test
+    void idsEnRangoDevuelveLosIdsOrdenados() throws Exception {
+        Path db = dir.resolve("DB.txt");
+        Files.write(db, List.of("30, C, Autor, DISPONIBLE", "10, A, Autor, PRESTADO", "20, B, Autor, DISPONIBLE",
+                "40, D, Autor, DISPONIBLE"), StandardCharsets.UTF_8);
+        CatalogoMemoria catalogo = new CatalogoMemoria(db.toString(), "TEST");
+        assertTrue(catalogo.asegurarCargado());
+
+        assertArrayEquals(new int[]{10, 20, 30, 40}, catalogo.idsEnRango(0, Integer.MAX_VALUE));
+        assertArrayEquals(new int[]{20, 30}, catalogo.idsEnRango(15, 30));
+        assertArrayEquals(new int[]{20, 30}, catalogo.idsEnRango(20, 35));
+        assertArrayEquals(new int[0], catalogo.idsEnRango(21, 29));
+        assertArrayEquals(new int[0], catalogo.idsEnRango(41, 50));
+        assertArrayEquals(new int[0], catalogo.idsEnRango(30, 20));
+        catalogo.cerrar();
+    }
+}
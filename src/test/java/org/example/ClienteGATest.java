@@ -0,0 +1,40 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.zeromq.ZMQ;
+
+class ClienteGATest {
+
+    @Test
+    void elReenvioAGA2LlevaLaMismaClaveQueLaSolicitudAGA() throws Exception {
+        ZMQ.Context context = ZMQ.context(1);
+        ZMQ.Socket ga = context.socket(ZMQ.ROUTER);   // Recibe y nunca responde (timeout)
+        ga.bind("inproc://ga-prueba");
+        ZMQ.Socket ga2 = context.socket(ZMQ.REP);
+        ga2.bind("inproc://ga2-prueba");
+        ClienteGA cliente = new ClienteGA(context, "inproc://ga-prueba", "inproc://ga2-prueba", 200, 2000);
+        try {
+            CompletableFuture<String> respuesta = CompletableFuture.supplyAsync(() -> cliente.enviar("RENOVAR 5", "p-1"));
+
+            ga.recv(0);
+            ga.recv(0);
+            assertEquals(ClaveIdempotencia.agregar("p-1", "RENOVAR 5"), ga.recvStr(0));
+            String reenviada = ga2.recvStr(0);
+            assertEquals("p-1", ClaveIdempotencia.clave(reenviada));
+            assertEquals("RENOVAR 5", ClaveIdempotencia.sinClave(reenviada));
+            ga2.send("Libro renovado", 0);
+
+            assertEquals("Libro renovado", respuesta.get(5, TimeUnit.SECONDS));
+        } finally {
+            cliente.cerrar();
+            ga.close();
+            ga2.close();
+            context.term();
+        }
+    }
+}
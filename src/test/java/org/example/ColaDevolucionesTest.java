@@ -0,0 +1,104 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.zeromq.ZMQ;
+
+// Usa los puertos reales de la cola (inproc + 5561), así que el GC no debe estar corriendo
+class ColaDevolucionesTest {
+
+    private static final String DIRECCION_CONSUMIDORES = "tcp://localhost:5561";
+
+    @TempDir
+    Path dir;
+
+    // Cola corriendo en su hilo, con su propio contexto (cerrarlo la detiene, como al cerrar el GC)
+    private static final class ColaEnMarcha implements AutoCloseable {
+        final ZMQ.Context context = ZMQ.context(1);
+        final Thread hilo;
+        // Se cierran en close() aunque la prueba falle, si no context.term() no retorna
+        final List<ZMQ.Socket> sockets = new ArrayList<>();
+
+        ColaEnMarcha(Path spool) throws Exception {
+            ColaDevoluciones cola = new ColaDevoluciones(context, spool.toString());
+            cola.iniciar();
+            hilo = new Thread(cola, "gc-cola-prueba");
+            hilo.start();
+        }
+
+        String encolar(String mensaje) {
+            try (ZMQ.Socket req = context.socket(ZMQ.REQ)) {
+                req.setReceiveTimeOut(5000);
+                req.connect(ColaDevoluciones.DIRECCION_ENCOLAR);
+                req.send(mensaje, 0);
+                return req.recvStr(0);
+            }
+        }
+
+        ZMQ.Socket consumidor() {
+            ZMQ.Socket dealer = context.socket(ZMQ.DEALER);
+            dealer.setLinger(0);
+            dealer.setReceiveTimeOut(2000);
+            dealer.connect(DIRECCION_CONSUMIDORES);
+            dealer.send("LISTO", 0);
+            sockets.add(dealer);
+            return dealer;
+        }
+
+        @Override
+        public void close() throws Exception {
+            for (ZMQ.Socket socket : sockets) {
+                socket.close();
+            }
+            context.term();
+            hilo.join(5000);
+        }
+    }
+
+    @Test
+    void unMensajeSinAckSobreviveAlReinicio() throws Exception {
+        Path spool = dir.resolve("cola.log");
+        String clave;
+        try (ColaEnMarcha cola = new ColaEnMarcha(spool)) {
+            assertEquals("OK", cola.encolar("DEVOLUCION 7"));
+            assertEquals("OK", cola.encolar("RENOVACION 8"));
+
+            // Se entrega el primero y el consumidor "muere" antes del ACK
+            ZMQ.Socket consumidor = cola.consumidor();
+            assertEquals("1", consumidor.recvStr(0));
+            String entregado = consumidor.recvStr(0);
+            assertEquals("DEVOLUCION 7", ClaveIdempotencia.sinClave(entregado));
+            clave = ClaveIdempotencia.clave(entregado);
+            assertNotNull(clave);
+        }
+
+        // Reinicio: los dos vuelven a entregarse, en orden, y al confirmarlos no queda nada
+        try (ColaEnMarcha cola = new ColaEnMarcha(spool)) {
+            ZMQ.Socket consumidor = cola.consumidor();
+            assertEquals("1", consumidor.recvStr(0));
+            String reentregado = consumidor.recvStr(0);
+            assertEquals("DEVOLUCION 7", ClaveIdempotencia.sinClave(reentregado));
+            // La reentrega lleva la misma clave: GA2 no vuelve a aplicar la operación
+            assertEquals(clave, ClaveIdempotencia.clave(reentregado));
+            consumidor.send("ACK:1", 0);
+            assertEquals("2", consumidor.recvStr(0));
+            String segundo = consumidor.recvStr(0);
+            assertEquals("RENOVACION 8", ClaveIdempotencia.sinClave(segundo));
+            assertNotEquals(clave, ClaveIdempotencia.clave(segundo));
+            consumidor.send("ACK:2", 0);
+            assertNull(consumidor.recvStr(0));
+        }
+        try (ColaEnMarcha cola = new ColaEnMarcha(spool)) {
+            assertNull(cola.consumidor().recvStr(0));
+        }
+    }
+}
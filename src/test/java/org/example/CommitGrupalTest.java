@@ -0,0 +1,43 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class CommitGrupalTest {
+
+    @Test
+    void despuesDeUnVolcadoFallidoNoSeConfirmaNadaMas() {
+        boolean[] fallar = {false};
+        int[] volcados = {0};
+        CommitGrupal commit = new CommitGrupal(0, 1, "TEST");
+        commit.agregarParticipante(() -> {
+            volcados[0]++;
+            if (fallar[0]) {
+                throw new IOException("disco lleno");
+            }
+        });
+        // El hilo de volcado no se inicia: cerrar() vuelca lo pendiente en el hilo del test
+        long previo = commit.registrar();
+        commit.cerrar();
+        assertTrue(commit.esperar(previo));
+
+        fallar[0] = true;
+        long fallido = commit.registrar();
+        commit.cerrar();
+        assertFalse(commit.esperar(fallido));
+        assertTrue(commit.estaAveriado());
+
+        // El disco se recupera, pero la memoria ya tiene la escritura fallida: no se vuelve a volcar
+        fallar[0] = false;
+        long siguiente = commit.registrar();
+        commit.cerrar();
+        assertFalse(commit.esperar(siguiente));
+        assertEquals(2, volcados[0]);
+        assertTrue(commit.fueExitoso(previo));
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiarioPrestamosTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void laCompactacionDejaLaBaseDeTextoCompletaYBorraElDiarioCongelado() {
+        Path base = dir.resolve("Prestamos.txt");
+        Path diario = dir.resolve("Prestamos.diario");
+        DiarioPrestamos prestamos = new DiarioPrestamos(base.toString(), diario.toString(), "TEST");
+        assertTrue(prestamos.asegurarCargado());
+
+        // Pasar el umbral de compactación (más registros que préstamos activos); cerrar() espera a que termine
+        LocalDate hoy = LocalDate.now();
+        for (int id = 1; id <= 600; id++) {
+            assertTrue(prestamos.registrar(new Prestamo(id, hoy, hoy.plusDays(14), 1)));
+        }
+        for (int id = 1; id <= 600; id++) {
+            assertTrue(prestamos.renovar(id, hoy.plusDays(7), 2));
+        }
+        prestamos.cerrar();
+
+        assertFalse(Files.exists(dir.resolve("Prestamos.diario.compactando")));
+        assertFalse(Files.exists(dir.resolve("Prestamos.txt.tmp")));
+        assertTrue(Files.exists(base));
+
+        DiarioPrestamos reiniciado = new DiarioPrestamos(base.toString(), diario.toString(), "TEST");
+        assertTrue(reiniciado.asegurarCargado());
+        assertEquals(600, reiniciado.cantidad());
+        assertEquals(2, reiniciado.buscar(600).getVecesPrestadas());
+        reiniciado.cerrar();
+    }
+}
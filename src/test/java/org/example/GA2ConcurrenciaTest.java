@@ -0,0 +1,113 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// GA2.procesarSolicitud con muchos hilos sobre pocos libros (mucha contención). Cada hilo envía
+// préstamos (Disponibilidad?ID), devoluciones y renovaciones al azar; al final, libro por libro:
+//   préstamos confirmados (incluye renovaciones como nuevo préstamo) - devoluciones confirmadas
+//   == 1 si el libro quedó PRESTADO, 0 si no
+//   el libro está PRESTADO si y solo si tiene un préstamo registrado
+class GA2ConcurrenciaTest {
+
+    private static final int HILOS = 32;
+    private static final int OPERACIONES = 2000;
+    private static final int LIBROS = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void noSePierdenActualizacionesBajoContencion() throws Exception {
+        StringBuilder db = new StringBuilder();
+        for (int id = 1; id <= LIBROS; id++) {
+            db.append(id).append(", Libro ").append(id).append(", Autor, DISPONIBLE").append(System.lineSeparator());
+        }
+        Files.writeString(dir.resolve("DB2.txt"), db);
+        Files.writeString(dir.resolve("Prestamos2.txt"), "");
+
+        AlmacenamientoArchivos almacenamiento = new AlmacenamientoArchivos(
+                dir.resolve("DB2.txt").toString(), dir.resolve("DB2.bin").toString(),
+                dir.resolve("Prestamos2.txt").toString(), dir.resolve("Prestamos2.diario").toString(), "Prueba");
+        assertTrue(almacenamiento.asegurarCargado());
+        GA2 ga2 = new GA2(almacenamiento);
+
+        AtomicIntegerArray prestamos = new AtomicIntegerArray(LIBROS + 1);
+        AtomicIntegerArray devoluciones = new AtomicIntegerArray(LIBROS + 1);
+        AtomicInteger errores = new AtomicInteger();
+
+        // Los manejadores de GA2 escriben mucho en consola; se silencia durante la prueba
+        PrintStream consola = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Thread[] trabajadores = new Thread[HILOS];
+            for (int h = 0; h < HILOS; h++) {
+                trabajadores[h] = new Thread(() -> {
+                    ThreadLocalRandom azar = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERACIONES; i++) {
+                        int id = 1 + azar.nextInt(LIBROS);
+                        int tipo = azar.nextInt(3);
+                        String r;
+                        if (tipo == 0) {
+                            r = ga2.procesarSolicitud("Disponibilidad?" + id);
+                            if (r.equals("SI")) {
+                                prestamos.incrementAndGet(id);
+                            }
+                        } else if (tipo == 1) {
+                            r = ga2.procesarSolicitud("DEVOLVER:" + id);
+                            if (r.equals("Devolución registrada exitosamente")) {
+                                devoluciones.incrementAndGet(id);
+                            }
+                        } else {
+                            // Renovar un libro disponible lo presta como nuevo préstamo
+                            r = ga2.procesarSolicitud("RENOVAR:" + id);
+                            if (r.startsWith("Libro renovado como nuevo préstamo")) {
+                                prestamos.incrementAndGet(id);
+                            }
+                        }
+                        if (r.startsWith("Error")) {
+                            errores.incrementAndGet();
+                        }
+                    }
+                });
+                trabajadores[h].start();
+            }
+            for (Thread t : trabajadores) {
+                t.join();
+            }
+        } finally {
+            System.setOut(consola);
+        }
+
+        assertEquals(0, errores.get(), "errores de almacenamiento");
+        int totalPrestamos = 0;
+        int prestados = 0;
+        for (int id = 1; id <= LIBROS; id++) {
+            boolean prestado = CatalogoMemoria.PRESTADO.equals(almacenamiento.obtenerEstadoLibro(id));
+            Prestamo prestamo = almacenamiento.buscarPrestamo(id);
+            assertEquals(prestado ? 1 : 0, prestamos.get(id) - devoluciones.get(id),
+                    "préstamos - devoluciones del libro " + id);
+            assertEquals(prestado, prestamo != null, "préstamo registrado del libro " + id);
+            totalPrestamos += prestamos.get(id);
+            if (prestado) {
+                prestados++;
+            }
+        }
+        assertTrue(totalPrestamos > 0);
+        assertEquals(prestados, almacenamiento.prestamosVencidos(LocalDate.MAX, LIBROS + 1).size(),
+                "cantidad de préstamos registrados");
+        almacenamiento.cerrar();
+    }
+}
@@ -0,0 +1,94 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RegistroCambiosTest {
+
+    @TempDir
+    Path dir;
+
+    private RegistroCambios abrir() {
+        RegistroCambios registro = new RegistroCambios(dir.toString(), "cambios", "TEST");
+        registro.cargar(null);
+        return registro;
+    }
+
+    private long segmentos() throws IOException {
+        try (Stream<Path> archivos = Files.list(dir)) {
+            return archivos.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    void caidaEntreConfirmarYVolcarNoReutilizaSecuencias() throws IOException {
+        RegistroCambios registro = abrir();
+        for (int i = 0; i < 3; i++) {
+            registro.agregar("ESTADO, " + i + ", PRESTADO");
+        }
+        registro.volcar();
+
+        registro.confirmarHasta(3);
+        // Caída antes del volcado: la confirmación no llegó a disco y los segmentos tienen que seguir ahí
+        assertEquals(1, segmentos());
+
+        RegistroCambios reiniciado = abrir();
+        assertEquals(3, reiniciado.getUltimaSecuencia());
+        assertEquals(3, reiniciado.cantidadPendientes());
+        assertEquals(4, reiniciado.agregar("ESTADO, 9, DISPONIBLE"));
+    }
+
+    @Test
+    void losSegmentosSeBorranDespuesDeGuardarLaConfirmacion() throws IOException {
+        RegistroCambios registro = abrir();
+        for (int i = 0; i < 3; i++) {
+            registro.agregar("ESTADO, " + i + ", PRESTADO");
+        }
+        registro.confirmarHasta(3);
+        registro.volcar();
+
+        assertEquals(0, segmentos());
+        assertEquals("3", Files.readString(dir.resolve("cambios.confirmado")).trim());
+        RegistroCambios reiniciado = abrir();
+        assertEquals(3, reiniciado.getUltimaSecuencia());
+        assertEquals(0, reiniciado.cantidadPendientes());
+        assertEquals(4, reiniciado.agregar("ESTADO, 9, DISPONIBLE"));
+    }
+
+    @Test
+    void pendientesDesdeDevuelveLaPaginaSiguiente() throws IOException {
+        RegistroCambios registro = abrir();
+        for (int i = 1; i <= 10; i++) {
+            registro.agregar("ESTADO, " + i + ", PRESTADO");
+        }
+        registro.confirmarHasta(2);
+
+        assertEquals(List.of("6, ESTADO, 6, PRESTADO", "7, ESTADO, 7, PRESTADO"), registro.pendientesDesde(5, 2, 1024));
+        assertEquals(List.of("3, ESTADO, 3, PRESTADO"), registro.pendientesDesde(0, 1, 1024));
+        assertEquals(1, registro.pendientesDesde(2, 10, 1).size());
+        assertTrue(registro.pendientesDesde(10, 10, 1024).isEmpty());
+    }
+
+    @Test
+    void lasPaginasSiguenBienDespuesDeDescartarLoConfirmado() throws IOException {
+        RegistroCambios registro = abrir();
+        for (int i = 1; i <= 5000; i++) {
+            registro.agregar("ESTADO, " + i + ", PRESTADO");
+        }
+        assertEquals(3000, registro.confirmarHasta(3000));
+        assertEquals(2000, registro.cantidadPendientes());
+        assertEquals(List.of("4001, ESTADO, 4001, PRESTADO"), registro.pendientesDesde(4000, 1, 1024));
+        assertEquals("3001, ESTADO, 3001, PRESTADO", registro.pendientesDesde(0, 1, 1024).get(0));
+        assertEquals(1000, registro.confirmarHasta(4000));
+        assertEquals(1000, registro.pendientesDesde(0, 5000, Integer.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResumenRangosTest {
+
+    @TempDir
+    Path dir;
+
+    private AlmacenamientoArchivos crear(String nombre) throws Exception {
+        List<String> lineas = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            lineas.add(id + ", Libro " + id + ", Autor, DISPONIBLE");
+        }
+        Path db = dir.resolve(nombre + ".txt");
+        Files.write(db, lineas, StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve(nombre + "-prestamos.txt"), "");
+        AlmacenamientoArchivos almacenamiento = new AlmacenamientoArchivos(db.toString(), dir.resolve(nombre + ".bin").toString(),
+                dir.resolve(nombre + "-prestamos.txt").toString(), dir.resolve(nombre + "-prestamos.diario").toString(), "TEST");
+        assertTrue(almacenamiento.asegurarCargado());
+        return almacenamiento;
+    }
+
+    @Test
+    void soloDifiereElSubrangoDelLibroCambiado() throws Exception {
+        AlmacenamientoArchivos a = crear("a");
+        AlmacenamientoArchivos b = crear("b");
+        assertArrayEquals(ResumenRangos.resumir(a, 0, 1599), ResumenRangos.resumir(b, 0, 1599));
+
+        b.actualizarEstadoLibro(250, CatalogoMemoria.PRESTADO);
+        long[] ha = ResumenRangos.resumir(a, 0, 1599);
+        long[] hb = ResumenRangos.resumir(b, 0, 1599);
+        // Subrangos de 100 IDs: el libro 250 cae en el tercero
+        for (int i = 0; i < ResumenRangos.PARTES; i++) {
+            if (i == 2) {
+                assertNotEquals(ha[i], hb[i]);
+            } else {
+                assertTrue(ha[i] == hb[i], "subrango " + i);
+            }
+        }
+        a.cerrar();
+        b.cerrar();
+    }
+}